@@ -64,6 +64,20 @@ public abstract class Audio implements Disposable{
      */
     public abstract Sound newSound(FileHandle file);
 
+    /**
+     * Creates several {@link Sound}s at once, like {@link #newSound(FileHandle)}. Backends may decode the files in parallel,
+     * which makes loading many short sounds faster than creating them one by one.
+     * @return the new Sounds, in the order of the files.
+     * @throws ArcRuntimeException in case a sound could not be loaded
+     */
+    public Sound[] newSounds(FileHandle... files){
+        Sound[] sounds = new Sound[files.length];
+        for(int i = 0; i < files.length; i++){
+            sounds[i] = newSound(files[i]);
+        }
+        return sounds;
+    }
+
     /**
      * Creates a new {@link Music} instance which is used to play back a music stream from a file. Currently supported formats are
      * WAV, MP3 and OGG. The Music instance has to be disposed if it is no longer used via the {@link Music#dispose()} method.
@@ -0,0 +1,58 @@
+package io.anuke.arc.audio;
+
+import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.func.Func;
+
+import java.util.concurrent.ForkJoinTask;
+
+/** The 16-bit signed little endian PCM samples of a fully decoded sound, interleaved if it is stereo. */
+public class DecodedSound{
+    public final byte[] pcm;
+    public final int channels, sampleRate;
+
+    public DecodedSound(byte[] pcm, int channels, int sampleRate){
+        this.pcm = pcm;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+    }
+
+    /** @return the length of the sound in seconds. */
+    public float duration(){
+        return pcm.length / (2f * channels * sampleRate);
+    }
+
+    /**
+     * Decodes several files at once on the common fork join pool, with the first one decoded on the calling thread.
+     * @return the decoded sounds, in the order of the files.
+     * @throws RuntimeException the error thrown by the decoder for the first file that failed, after all other files have
+     * been decoded.
+     */
+    public static DecodedSound[] decodeAll(FileHandle[] files, Func<FileHandle, DecodedSound> decoder){
+        DecodedSound[] sounds = new DecodedSound[files.length];
+        //kept per file, as joining a task from outside the pool throws a copy of its exception instead
+        RuntimeException[] errors = new RuntimeException[files.length];
+        if(files.length == 0) return sounds;
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[files.length - 1];
+        for(int i = 1; i < files.length; i++){
+            int index = i;
+            tasks[i - 1] = ForkJoinTask.adapt(() -> decode(files, decoder, sounds, errors, index)).fork();
+        }
+        decode(files, decoder, sounds, errors, 0);
+        for(ForkJoinTask<?> task : tasks){
+            task.join();
+        }
+        for(RuntimeException error : errors){
+            if(error != null) throw error;
+        }
+        return sounds;
+    }
+
+    private static void decode(FileHandle[] files, Func<FileHandle, DecodedSound> decoder, DecodedSound[] sounds, RuntimeException[] errors, int index){
+        try{
+            sounds[index] = decoder.get(files[index]);
+        }catch(RuntimeException e){
+            errors[index] = e;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.anuke.arc.audio;
+
+import io.anuke.arc.func.Intc;
+import io.anuke.arc.math.Mathf;
+
+/**
+ * Mixes many voices of {@link DecodedSound}s into one stream of 16-bit stereo samples, so that a backend can play any number of
+ * quiet or unimportant sounds through a single streaming source. Voices are resampled to the output rate with linear
+ * interpolation, which also applies their pitch. Mono voices are panned with constant power, stereo voices by balance.
+ * Needs no audio device. Not thread safe.
+ */
+public class SoftwareMixer{
+    /** Volume of the whole mix. */
+    public float volume = 1f;
+
+    private final int sampleRate;
+    private final Voice[] voices;
+    private float[] mix = {};
+    private Intc endListener = voice -> {};
+    private int playing;
+
+    /**
+     * @param voices the number of voices that play at once.
+     * @param sampleRate the sample rate of the mixed stream in Hz.
+     */
+    public SoftwareMixer(int voices, int sampleRate){
+        this.sampleRate = sampleRate;
+        this.voices = new Voice[voices];
+        for(int i = 0; i < voices; i++){
+            this.voices[i] = new Voice();
+        }
+    }
+
+    /** Sets the listener called with the index of a voice that reached its end while mixing. */
+    public void setEndListener(Intc listener){
+        endListener = listener;
+    }
+
+    /** Starts playing a sound in a voice, replacing whatever it played. */
+    public void play(int voice, DecodedSound sound, float volume, float pitch, float pan, boolean looping){
+        Voice v = voices[voice];
+        if(!v.playing) playing++;
+        v.sound = sound;
+        v.frames = sound.pcm.length / (2 * sound.channels);
+        v.position = 0;
+        v.volume = volume;
+        v.pitch = pitch;
+        v.pan = pan;
+        v.looping = looping;
+        v.paused = false;
+        v.playing = true;
+    }
+
+    public void stop(int voice){
+        Voice v = voices[voice];
+        if(v.playing) playing--;
+        v.playing = false;
+        v.sound = null;
+    }
+
+    public void setPaused(int voice, boolean paused){
+        voices[voice].paused = paused;
+    }
+
+    public void setVolume(int voice, float volume){
+        voices[voice].volume = volume;
+    }
+
+    public void setPitch(int voice, float pitch){
+        voices[voice].pitch = pitch;
+    }
+
+    public void setPan(int voice, float pan){
+        voices[voice].pan = pan;
+    }
+
+    public void setLooping(int voice, boolean looping){
+        voices[voice].looping = looping;
+    }
+
+    public boolean isPlaying(int voice){
+        return voices[voice].playing;
+    }
+
+    public boolean isPaused(int voice){
+        return voices[voice].paused;
+    }
+
+    /** @return the number of voices playing, including paused ones. */
+    public int getPlaying(){
+        return playing;
+    }
+
+    public int getVoices(){
+        return voices.length;
+    }
+
+    public int getSampleRate(){
+        return sampleRate;
+    }
+
+    /**
+     * Mixes the next frames of every playing voice, overwriting the output. Voices that reach their end stop and are passed to
+     * the end listener.
+     * @param out receives the interleaved left and right samples.
+     * @param frames the number of stereo frames to mix; twice as many samples are written.
+     */
+    public void mix(short[] out, int offset, int frames){
+        int samples = frames * 2;
+        if(mix.length < samples) mix = new float[samples];
+        float[] mix = this.mix;
+        for(int i = 0; i < samples; i++){
+            mix[i] = 0f;
+        }
+
+        for(int i = 0; i < voices.length; i++){
+            Voice voice = voices[i];
+            if(!voice.playing || voice.paused) continue;
+            if(voice.mix(mix, frames, sampleRate)){
+                stop(i);
+                endListener.get(i);
+            }
+        }
+
+        float gain = volume;
+        for(int i = 0; i < samples; i++){
+            float sample = mix[i] * gain;
+            out[offset + i] = (short)(sample >= 32767f ? 32767 : sample <= -32768f ? -32768 : sample);
+        }
+    }
+
+    private static class Voice{
+        DecodedSound sound;
+        int frames;
+        double position;
+        float volume, pitch, pan;
+        boolean looping, paused, playing;
+
+        /** @return whether the voice ended. */
+        boolean mix(float[] mix, int count, int outputRate){
+            byte[] pcm = sound.pcm;
+            int channels = sound.channels;
+            if(frames == 0) return true;
+
+            float left, right;
+            if(channels == 1){
+                double angle = (Mathf.clamp(pan, -1f, 1f) + 1f) * Math.PI / 4;
+                left = (float)Math.cos(angle) * volume;
+                right = (float)Math.sin(angle) * volume;
+            }else{
+                left = Math.min(1f, 1f - pan) * volume;
+                right = Math.min(1f, 1f + pan) * volume;
+            }
+
+            double step = (double)pitch * sound.sampleRate / outputRate;
+            double position = this.position;
+            for(int i = 0; i < count; i++){
+                if(position >= frames){
+                    if(!looping) return true;
+                    position %= frames;
+                }
+                int frame = (int)position;
+                float fraction = (float)(position - frame);
+                int following = frame + 1 < frames ? frame + 1 : looping ? 0 : frame;
+
+                int a = frame * channels * 2, b = following * channels * 2;
+                float first = sample(pcm, a), second = sample(pcm, b);
+                float l = first + (second - first) * fraction;
+                if(channels == 1){
+                    mix[i * 2] += l * left;
+                    mix[i * 2 + 1] += l * right;
+                }else{
+                    first = sample(pcm, a + 2);
+                    second = sample(pcm, b + 2);
+                    mix[i * 2] += l * left;
+                    mix[i * 2 + 1] += (first + (second - first) * fraction) * right;
+                }
+                position += step;
+            }
+            this.position = position;
+            return !looping && position >= frames;
+        }
+
+        static float sample(byte[] pcm, int index){
+            return (short)(pcm[index] & 0xff | pcm[index + 1] << 8);
+        }
+    }
+}
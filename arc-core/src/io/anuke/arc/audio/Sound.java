@@ -191,4 +191,20 @@ public interface Sound extends Disposable{
      * @param volume the volume in the range [0,1].
      */
     void setPan(int soundId, float pan, float volume);
+
+    /**
+     * Sets how important this sound is when more sounds play than there are voices: instances of a higher priority stop those of
+     * a lower one, and equally important instances are compared by volume. Backends without voice management ignore this.
+     * @param priority the priority, 0 by default.
+     */
+    default void setPriority(float priority){
+    }
+
+    /**
+     * Limits the number of instances of this sound that play at once; playing another stops the oldest. Backends without voice
+     * management ignore this.
+     * @param max the most instances, or 0 for no limit.
+     */
+    default void setMaxConcurrent(int max){
+    }
 }
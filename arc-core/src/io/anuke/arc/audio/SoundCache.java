@@ -0,0 +1,21 @@
+package io.anuke.arc.audio;
+
+import io.anuke.arc.collection.LruCache;
+import io.anuke.arc.files.FileHandle;
+
+/**
+ * A cache of {@link DecodedSound}s by file, bounded by the total size of their samples in bytes, which evicts the least recently
+ * used sounds first. Loading the same short sound again, or loading it for another audio backend, then skips decoding it. Only
+ * sounds up to {@link #getMaxEntrySize()} are cached, so a few long ones cannot push out all the short effects. The samples of
+ * cached sounds must not be modified. All methods are thread safe.
+ */
+public class SoundCache extends LruCache<FileHandle, DecodedSound>{
+
+    /**
+     * @param maxSize the maximum total size of the cached samples in bytes.
+     * @param maxSoundSize the maximum size of a single sound's samples in bytes.
+     */
+    public SoundCache(long maxSize, int maxSoundSize){
+        super(maxSize, maxSoundSize, sound -> sound.pcm.length);
+    }
+}
@@ -0,0 +1,278 @@
+package io.anuke.arc.audio;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.util.ArcRuntimeException;
+import io.anuke.arc.util.Disposable;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decodes music on a background thread ahead of playback, so that the thread updating the audio only has to upload samples that
+ * are already decoded. Each open {@link Stream} keeps a few chunks of decoded samples ready; the thread tops them up whenever
+ * one is taken, a chunk per stream at a time, and sleeps while all of them are full.
+ * <p>
+ * A stream's {@link Source} is only read by one thread at a time: the decoder thread, or the thread calling {@link Stream#take()},
+ * {@link Stream#reset()}, {@link Stream#skip(byte[])} or {@link Stream#flush(Runnable)}, which wait for a chunk being decoded to
+ * finish.
+ */
+public class StreamDecoder implements Disposable{
+    private final Array<Stream> streams = new Array<>(false, 4, Stream.class);
+    private final String name;
+    private Stream[] snapshot = {};
+    private volatile boolean changed, disposed;
+    private Thread thread;
+
+    /** @param name the name of the decoder thread. */
+    public StreamDecoder(String name){
+        this.name = name;
+    }
+
+    /**
+     * Starts decoding a source ahead. The stream must be {@link Stream#close() closed} when it is no longer played.
+     * @param chunkSize the size of each chunk in bytes.
+     * @param chunks the number of chunks decoded ahead.
+     */
+    public Stream open(Source source, int chunkSize, int chunks){
+        if(disposed) throw new IllegalStateException("The decoder has been disposed.");
+        Stream stream = new Stream(this, source, chunkSize, chunks);
+        synchronized(streams){
+            streams.add(stream);
+            changed = true;
+            if(thread == null){
+                thread = new Thread(this::run, name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        wake();
+        return stream;
+    }
+
+    /** @return the number of open streams. */
+    public int getStreams(){
+        synchronized(streams){
+            return streams.size;
+        }
+    }
+
+    /** Stops the decoder thread. Open streams are no longer decoded ahead, but can still be read with {@link Stream#take()}. */
+    @Override
+    public void dispose(){
+        disposed = true;
+        wake();
+    }
+
+    void wake(){
+        Thread thread = this.thread;
+        if(thread != null) LockSupport.unpark(thread);
+    }
+
+    void remove(Stream stream){
+        synchronized(streams){
+            streams.removeValue(stream, true);
+            changed = true;
+        }
+    }
+
+    private void run(){
+        while(!disposed){
+            if(changed){
+                synchronized(streams){
+                    changed = false;
+                    snapshot = streams.toArray();
+                }
+            }
+
+            boolean decoded = false;
+            for(Stream stream : snapshot){
+                decoded |= stream.decodeAhead();
+            }
+            if(!decoded) LockSupport.park(this);
+        }
+    }
+
+    /** Decoded audio read by a {@link StreamDecoder}. */
+    public interface Source{
+        /** Fills as much of the buffer as possible and returns the number of bytes filled, or <= 0 at the end. */
+        int read(byte[] buffer);
+
+        /** Rewinds to the beginning when playback should continue there after the end. */
+        void loop();
+
+        /** Rewinds to the beginning. */
+        void reset();
+
+        /** @return whether to {@link #loop()} at the end. Read from the decoder thread. */
+        boolean isLooping();
+    }
+
+    /** Decoded samples of a stream. */
+    public static class Chunk{
+        public final byte[] data;
+        /** The number of bytes of data filled. */
+        public int length;
+        /** Whether the source looped back to its beginning for this chunk. */
+        public boolean looped;
+
+        Chunk(int size){
+            data = new byte[size];
+        }
+    }
+
+    /** A source being decoded ahead. */
+    public static class Stream{
+        private final StreamDecoder decoder;
+        private final Source source;
+        private final ArrayBlockingQueue<Chunk> ready, free;
+        private volatile boolean ended, closed;
+        private volatile RuntimeException error;
+        private long decodedBytes;
+
+        Stream(StreamDecoder decoder, Source source, int chunkSize, int chunks){
+            this.decoder = decoder;
+            this.source = source;
+            ready = new ArrayBlockingQueue<>(chunks);
+            free = new ArrayBlockingQueue<>(chunks);
+            for(int i = 0; i < chunks; i++){
+                free.add(new Chunk(chunkSize));
+            }
+        }
+
+        /**
+         * Never blocks; if the decoder thread has fallen behind, playback should carry on with what it has and poll again later.
+         * The chunk must be passed to {@link #recycle(Chunk)} once its data has been used.
+         * @return the next decoded chunk, or null if none is ready.
+         * @throws ArcRuntimeException if the source failed to decode.
+         */
+        public Chunk poll(){
+            Chunk chunk = ready.poll();
+            if(chunk == null){
+                checkError();
+                if(!ended) decoder.wake();
+            }
+            return chunk;
+        }
+
+        /**
+         * Like {@link #poll()}, but decodes the next chunk on the calling thread if none is ready, for starting playback without
+         * waiting on the decoder thread.
+         * @return the next decoded chunk, or null at the end of the source.
+         */
+        public Chunk take(){
+            Chunk chunk = ready.poll();
+            if(chunk != null) return chunk;
+            synchronized(this){
+                if(ready.isEmpty()) decode();
+                chunk = ready.poll();
+            }
+            if(chunk == null) checkError();
+            return chunk;
+        }
+
+        /** Returns a chunk taken from this stream, to be decoded into again. */
+        public void recycle(Chunk chunk){
+            free.offer(chunk);
+            decoder.wake();
+        }
+
+        /** @return whether the end of the source has been reached and every chunk before it has been taken. */
+        public boolean isDrained(){
+            return ended && ready.isEmpty();
+        }
+
+        /** @return the number of bytes read from the source since it last started from the beginning. */
+        public synchronized long getDecodedBytes(){
+            return decodedBytes;
+        }
+
+        /** Discards the decoded chunks and rewinds the source. */
+        public synchronized void reset(){
+            discard();
+            source.reset();
+            decodedBytes = 0;
+        }
+
+        /**
+         * Reads and discards the next bytes of the source, without looping, for seeking forward. Must be called from
+         * {@link #flush(Runnable)}.
+         * @return the number of bytes skipped, or <= 0 at the end of the source.
+         */
+        public synchronized int skip(byte[] buffer){
+            int length = source.read(buffer);
+            if(length > 0) decodedBytes += length;
+            return length;
+        }
+
+        /**
+         * Discards the decoded chunks and runs the action while the decoder thread is kept away from the source, so that it can
+         * seek with {@link #reset()} and {@link #skip(byte[])}. Decoding continues from wherever the source is left.
+         */
+        public synchronized void flush(Runnable action){
+            discard();
+            action.run();
+            decoder.wake();
+        }
+
+        /** Stops decoding ahead, waiting for a chunk being decoded to finish. The source is left where it was. */
+        public synchronized void close(){
+            closed = true;
+            ready.clear();
+            decoder.remove(this);
+        }
+
+        /** Decodes a chunk if there is room for one. Called by the decoder thread. */
+        boolean decodeAhead(){
+            if(ended || closed || free.isEmpty()) return false;
+            synchronized(this){
+                if(ended || closed || free.isEmpty()) return false;
+                decode();
+                return true;
+            }
+        }
+
+        private void discard(){
+            Chunk chunk;
+            while((chunk = ready.poll()) != null){
+                free.offer(chunk);
+            }
+            ended = false;
+            error = null;
+        }
+
+        private void decode(){
+            Chunk chunk = free.poll();
+            if(chunk == null || ended) return;
+            try{
+                chunk.looped = false;
+                int length = source.read(chunk.data);
+                if(length <= 0 && source.isLooping()){
+                    source.loop();
+                    decodedBytes = 0;
+                    chunk.looped = true;
+                    length = source.read(chunk.data);
+                }
+                if(length <= 0){
+                    ended = true;
+                    free.offer(chunk);
+                    return;
+                }
+                decodedBytes += length;
+                chunk.length = length;
+                ready.offer(chunk);
+            }catch(RuntimeException e){
+                error = e;
+                ended = true;
+                free.offer(chunk);
+            }
+        }
+
+        private void checkError(){
+            RuntimeException error = this.error;
+            if(error != null){
+                this.error = null;
+                throw error instanceof ArcRuntimeException ? error : new ArcRuntimeException("Error decoding audio.", error);
+            }
+        }
+    }
+}
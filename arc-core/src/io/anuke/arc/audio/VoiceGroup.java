@@ -0,0 +1,20 @@
+package io.anuke.arc.audio;
+
+/**
+ * The voices of one sound in a {@link VoicePool}, with the settings that decide which of them play when there are too many.
+ * Changes apply to voices started afterwards.
+ */
+public class VoiceGroup{
+    /** How important the sound is: voices of a higher priority stop those of a lower one when all voices are taken. */
+    public float priority;
+    /** The most voices of this sound that play at once; starting another stops the oldest. 0 for no limit. */
+    public int limit;
+
+    /** Voices in the order they were started, linked through the pool. */
+    int head = -1, tail = -1, count;
+
+    /** @return the number of voices of this sound playing. */
+    public int getCount(){
+        return count;
+    }
+}
@@ -0,0 +1,339 @@
+package io.anuke.arc.audio;
+
+import io.anuke.arc.func.Intc;
+
+import java.util.Arrays;
+
+/**
+ * Hands out a fixed number of voices to sounds as they are played, for an audio backend with a limited number of hardware
+ * sources. Voices are numbered by slot: the first {@link #getHardware()} slots stand for hardware sources, the rest for voices
+ * of a {@link SoftwareMixer}.
+ * <p>
+ * Free slots are kept on a stack and playing voices in a heap ordered by priority, volume and age, so starting a voice takes
+ * constant time when one is free and logarithmic time when it has to take the place of another: when all voices are taken, the
+ * new one stops the weakest playing voice, the one of the lowest {@link VoiceGroup#priority}, then the lowest volume, which
+ * includes the distance falloff, then the oldest, unless that one is stronger than the new voice. Each start is identified by an
+ * id which turns stale once its voice stops, so a stopped sound id never controls the voice that took its place.
+ * <p>
+ * Voices of sounds with a priority below {@link #softwarePriority} are mixed in software, as are voices for which there is no
+ * hardware source left.
+ * <p>
+ * A backend finds the hardware voices that finished by themselves with {@link #eachFinished(long, Intc)}, which only offers those
+ * past the end time set with {@link #setEndTime(int, long)}, so the audio device is not asked about every source. Not thread
+ * safe.
+ */
+public class VoicePool{
+    private static final int slotBits = 12, slotMask = (1 << slotBits) - 1, generationMask = (1 << (31 - slotBits)) - 1;
+
+    /** Voices of a priority below this are mixed in software, if there are software voices. */
+    public float softwarePriority = Float.NEGATIVE_INFINITY;
+
+    private final int hardware, software;
+    private final int[] ids, generations, prev, next, heapIndex;
+    private final float[] priorities, volumes;
+    private final long[] sequences, endTimes;
+    private final VoiceGroup[] groups;
+    private final boolean[] reserved;
+    private final Pool hardwarePool, softwarePool;
+    private Intc stopListener = slot -> {};
+    private long sequence, stolen, rejected;
+    private int nextCheck;
+
+    /**
+     * @param hardware the number of hardware voices.
+     * @param software the number of software mixed voices.
+     */
+    public VoicePool(int hardware, int software){
+        int capacity = hardware + software;
+        if(hardware < 0 || software < 0 || capacity > slotMask + 1)
+            throw new IllegalArgumentException("Invalid voice count: " + hardware + " + " + software);
+        this.hardware = hardware;
+        this.software = software;
+        ids = new int[capacity];
+        generations = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        heapIndex = new int[capacity];
+        priorities = new float[capacity];
+        volumes = new float[capacity];
+        sequences = new long[capacity];
+        endTimes = new long[capacity];
+        groups = new VoiceGroup[capacity];
+        reserved = new boolean[capacity];
+        Arrays.fill(ids, -1);
+        hardwarePool = new Pool(0, hardware);
+        softwarePool = new Pool(hardware, software);
+    }
+
+    /** Sets the listener called with the slot of a voice stopped to make room for another, which must stop it right away. */
+    public void setStopListener(Intc listener){
+        stopListener = listener;
+    }
+
+    /**
+     * Starts a voice of a sound, stopping another if needed.
+     * @return the id of the voice, or -1 if all voices are taken by stronger ones.
+     */
+    public int obtain(VoiceGroup group, float volume){
+        float priority = group.priority;
+        if(group.limit > 0 && group.count >= group.limit){
+            stop(group.head);
+        }
+
+        Pool pool = software > 0 && priority < softwarePriority ? softwarePool : hardwarePool;
+        int slot = pool.take(priority, volume);
+        if(slot == -1 && pool == hardwarePool && software > 0) slot = (pool = softwarePool).take(priority, volume);
+        if(slot == -1){
+            rejected++;
+            return -1;
+        }
+
+        priorities[slot] = priority;
+        volumes[slot] = volume;
+        sequences[slot] = sequence++;
+        groups[slot] = group;
+        prev[slot] = group.tail;
+        next[slot] = -1;
+        if(group.tail == -1){
+            group.head = slot;
+        }else{
+            next[group.tail] = slot;
+        }
+        group.tail = slot;
+        group.count++;
+        pool.push(slot);
+        return start(slot);
+    }
+
+    /**
+     * Takes a hardware voice for good, such as for streaming music, stopping the weakest voice if none is free. Reserved voices
+     * are never stopped to make room and must be returned with {@link #free(int)}.
+     * @return the id of the voice, or -1 if every hardware voice is reserved.
+     */
+    public int reserve(){
+        int slot = hardwarePool.take(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        if(slot == -1) return -1;
+        reserved[slot] = true;
+        return start(slot);
+    }
+
+    /** @return the slot of the voice with the given id, or -1 if it has stopped since. */
+    public int slot(int id){
+        if(id < 0) return -1;
+        int slot = id & slotMask;
+        return slot < ids.length && ids[slot] == id ? slot : -1;
+    }
+
+    /** @return the id of the voice playing in a slot, or -1 if it is free. */
+    public int id(int slot){
+        return ids[slot];
+    }
+
+    public boolean isHardware(int slot){
+        return slot < hardware;
+    }
+
+    public boolean isActive(int slot){
+        return ids[slot] != -1;
+    }
+
+    public boolean isReserved(int slot){
+        return reserved[slot];
+    }
+
+    /** Stops a voice through the stop listener and frees its slot. */
+    public void stop(int slot){
+        stopListener.get(slot);
+        free(slot);
+    }
+
+    /** Frees the slot of a voice that has stopped by itself or was stopped by the caller. Does nothing if it is free already. */
+    public void free(int slot){
+        if(ids[slot] == -1) return;
+        ids[slot] = -1;
+        generations[slot] = (generations[slot] + 1) & generationMask;
+        Pool pool = slot < hardware ? hardwarePool : softwarePool;
+        if(reserved[slot]){
+            reserved[slot] = false;
+        }else{
+            pool.remove(slot);
+            VoiceGroup group = groups[slot];
+            if(prev[slot] == -1) group.head = next[slot];
+            else next[prev[slot]] = next[slot];
+            if(next[slot] == -1) group.tail = prev[slot];
+            else prev[next[slot]] = prev[slot];
+            group.count--;
+            groups[slot] = null;
+        }
+        pool.free[pool.freeCount++] = slot;
+    }
+
+    /** Stops every voice of a sound. */
+    public void stopAll(VoiceGroup group){
+        while(group.head != -1){
+            stop(group.head);
+        }
+    }
+
+    /** Calls the consumer with the slot of every voice of a sound, oldest first. */
+    public void each(VoiceGroup group, Intc cons){
+        for(int slot = group.head; slot != -1; ){
+            int following = next[slot];
+            cons.get(slot);
+            slot = following;
+        }
+    }
+
+    /**
+     * Sets when the voice in a hardware slot is expected to finish, in the time base of {@link io.anuke.arc.util.Time#nanos()}.
+     * Voices that do not finish by themselves, such as looping or paused ones, use {@link Long#MAX_VALUE}, which is what every
+     * voice starts with.
+     */
+    public void setEndTime(int slot, long time){
+        endTimes[slot] = time;
+    }
+
+    public long getEndTime(int slot){
+        return endTimes[slot];
+    }
+
+    /**
+     * Calls the consumer with the slots of the playing, unreserved hardware voices that may have finished at the given time:
+     * every one past its end time, then one other in turn, so that a voice that finished earlier than expected is still found
+     * within as many calls as there are hardware voices. The consumer checks the source, then frees the slot or sets a later
+     * end time.
+     */
+    public void eachFinished(long time, Intc cons){
+        for(int slot = 0; slot < hardware; slot++){
+            if(ids[slot] != -1 && !reserved[slot] && endTimes[slot] <= time) cons.get(slot);
+        }
+        if(hardware == 0) return;
+        int slot = nextCheck;
+        nextCheck = (nextCheck + 1) % hardware;
+        if(ids[slot] != -1 && !reserved[slot] && endTimes[slot] > time) cons.get(slot);
+    }
+
+    /** Changes the volume a voice is compared with when another needs its place. */
+    public void setVolume(int slot, float volume){
+        if(ids[slot] == -1 || reserved[slot]) return;
+        volumes[slot] = volume;
+        (slot < hardware ? hardwarePool : softwarePool).update(slot);
+    }
+
+    public int getHardware(){
+        return hardware;
+    }
+
+    public int getSoftware(){
+        return software;
+    }
+
+    /** @return the number of free hardware voices. */
+    public int getFreeHardware(){
+        return hardwarePool.freeCount;
+    }
+
+    /** @return the number of free software voices. */
+    public int getFreeSoftware(){
+        return softwarePool.freeCount;
+    }
+
+    /** @return the number of voices stopped to make room for stronger ones, not counting those over a group limit. */
+    public long getStolen(){
+        return stolen;
+    }
+
+    /** @return the number of voices that did not start because all voices were taken by stronger ones. */
+    public long getRejected(){
+        return rejected;
+    }
+
+    private int start(int slot){
+        endTimes[slot] = Long.MAX_VALUE;
+        return ids[slot] = generations[slot] << slotBits | slot;
+    }
+
+    /** @return whether voice a should be stopped before voice b. */
+    private boolean weaker(int a, int b){
+        if(priorities[a] != priorities[b]) return priorities[a] < priorities[b];
+        if(volumes[a] != volumes[b]) return volumes[a] < volumes[b];
+        return sequences[a] < sequences[b];
+    }
+
+    /** The free slots and a min-heap of the playing voices of one kind. */
+    private class Pool{
+        final int[] free, heap;
+        int freeCount, heapSize;
+
+        Pool(int start, int size){
+            free = new int[size];
+            heap = new int[size];
+            //lowest slots are handed out first
+            for(int i = 0; i < size; i++){
+                free[i] = start + size - 1 - i;
+            }
+            freeCount = size;
+        }
+
+        /** @return a free slot, stopping the weakest voice if it is weaker than one of the given priority and volume, or -1. */
+        int take(float priority, float volume){
+            if(freeCount == 0){
+                if(heapSize == 0) return -1;
+                int weakest = heap[0];
+                if(priority < priorities[weakest] || (priority == priorities[weakest] && volume < volumes[weakest])) return -1;
+                stop(weakest);
+                stolen++;
+            }
+            return free[--freeCount];
+        }
+
+        void push(int slot){
+            heap[heapSize] = slot;
+            heapIndex[slot] = heapSize++;
+            up(heapSize - 1);
+        }
+
+        void remove(int slot){
+            int index = heapIndex[slot];
+            int last = heap[--heapSize];
+            if(index == heapSize) return;
+            heap[index] = last;
+            heapIndex[last] = index;
+            update(last);
+        }
+
+        void update(int slot){
+            int index = heapIndex[slot];
+            up(index);
+            down(heapIndex[slot]);
+        }
+
+        void up(int index){
+            int slot = heap[index];
+            while(index > 0){
+                int parent = (index - 1) >> 1;
+                if(!weaker(slot, heap[parent])) break;
+                heap[index] = heap[parent];
+                heapIndex[heap[index]] = index;
+                index = parent;
+            }
+            heap[index] = slot;
+            heapIndex[slot] = index;
+        }
+
+        void down(int index){
+            int slot = heap[index];
+            while(true){
+                int child = index * 2 + 1;
+                if(child >= heapSize) break;
+                if(child + 1 < heapSize && weaker(heap[child + 1], heap[child])) child++;
+                if(!weaker(heap[child], slot)) break;
+                heap[index] = heap[child];
+                heapIndex[heap[index]] = index;
+                index = child;
+            }
+            heap[index] = slot;
+            heapIndex[slot] = index;
+        }
+    }
+}
@@ -640,19 +640,24 @@ public class Array<T> implements Iterable<T>{
         return newItems;
     }
 
-    /**
-     * Sorts this array. The array elements must implement {@link Comparable}. This method is not thread safe (uses
-     * {@link Sort#instance()}).
-     */
+    /** Sorts this array. The array elements must implement {@link Comparable}. Uses the {@link Sort#instance()} of this thread. */
     public void sort(){
         Sort.instance().sort(items, 0, size);
     }
 
-    /** Sorts the array. This method is not thread safe (uses {@link Sort#instance()}). */
+    /** Sorts the array. Uses the {@link Sort#instance()} of this thread. */
     public void sort(Comparator<? super T> comparator){
         Sort.instance().sort(items, comparator, 0, size);
     }
 
+    /**
+     * Sorts the array by ascending key, which is read once per element. Faster than comparing keys for large arrays. The
+     * sort is stable.
+     */
+    public void sort(Floatf<T> key){
+        Sort.instance().sort(this, key);
+    }
+
     public Array<T> selectFrom(Array<T> base, Boolf<T> predicate){
         clear();
         base.each(t -> {
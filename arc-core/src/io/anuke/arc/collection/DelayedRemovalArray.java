@@ -1,5 +1,7 @@
 package io.anuke.arc.collection;
 
+import io.anuke.arc.func.Floatf;
+
 import java.util.Comparator;
 
 /**
@@ -155,6 +157,11 @@ public class DelayedRemovalArray<T> extends Array<T>{
         super.sort(comparator);
     }
 
+    public void sort(Floatf<T> key){
+        if(iterating > 0) throw new IllegalStateException("Invalid between begin/end.");
+        super.sort(key);
+    }
+
     public void reverse(){
         if(iterating > 0) throw new IllegalStateException("Invalid between begin/end.");
         super.reverse();
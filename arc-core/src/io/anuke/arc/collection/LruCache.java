@@ -0,0 +1,145 @@
+package io.anuke.arc.collection;
+
+import io.anuke.arc.func.Func;
+import io.anuke.arc.func.Intf;
+import io.anuke.arc.util.ArcAnnotate.*;
+
+import java.util.*;
+
+/**
+ * A cache bounded by the total size of its values in bytes, which evicts the least recently used values first. Only values up
+ * to {@link #getMaxEntrySize()} are cached, so a few large ones cannot push out all the small ones. Keeps count of hits,
+ * misses and evictions. All methods are thread safe.
+ * @param <K> the key type, which must implement hashCode and equals.
+ * @param <V> the value type. Cached values must not be modified.
+ */
+public class LruCache<K, V>{
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Intf<V> sizer;
+    private final long maxSize, maxEntrySize;
+    private long size, hits, misses, evictions;
+
+    /**
+     * @param maxSize the maximum total size of the cached values in bytes.
+     * @param sizer returns the size of a value in bytes.
+     */
+    public LruCache(long maxSize, Intf<V> sizer){
+        this(maxSize, maxSize, sizer);
+    }
+
+    /**
+     * @param maxSize the maximum total size of the cached values in bytes.
+     * @param maxEntrySize the maximum size of a single value in bytes.
+     * @param sizer returns the size of a value in bytes.
+     */
+    public LruCache(long maxSize, long maxEntrySize, Intf<V> sizer){
+        if(maxSize < 0) throw new IllegalArgumentException("maxSize must be >= 0: " + maxSize);
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxEntrySize;
+        this.sizer = sizer;
+    }
+
+    /** @return the cached value of a key, or null. */
+    public synchronized @Nullable V get(K key){
+        V value = entries.get(key);
+        if(value == null){
+            misses++;
+        }else{
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * @return the cached value of a key, or the value loaded and cached now if there is none. The cache is not locked while
+     * loading, so a key loaded by two threads at once is loaded twice.
+     */
+    public V get(K key, Func<K, V> loader){
+        V value = get(key);
+        if(value == null){
+            value = loader.get(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /** @return whether a key is cached, without counting a hit or miss or marking it as used. */
+    public synchronized boolean contains(K key){
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Caches the value of a key, evicting the least recently used values until it fits. Values larger than
+     * {@link #getMaxEntrySize()} or the whole cache are not cached.
+     */
+    public synchronized void put(K key, V value){
+        int valueSize = sizer.get(value);
+        if(valueSize > maxEntrySize || valueSize > maxSize) return;
+
+        V previous = entries.put(key, value);
+        if(previous != null) size -= sizer.get(previous);
+        size += valueSize;
+
+        Iterator<V> iterator = entries.values().iterator();
+        while(size > maxSize){
+            V eldest = iterator.next();
+            iterator.remove();
+            size -= sizer.get(eldest);
+            evictions++;
+        }
+    }
+
+    public synchronized void remove(K key){
+        V value = entries.remove(key);
+        if(value != null) size -= sizer.get(value);
+    }
+
+    public synchronized void clear(){
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized void resetStats(){
+        hits = misses = evictions = 0;
+    }
+
+    /** @return whether a value of this many bytes can be cached without evicting anything. */
+    public synchronized boolean fits(long bytes){
+        return bytes <= maxEntrySize && size + bytes <= maxSize;
+    }
+
+    public long getMaxSize(){
+        return maxSize;
+    }
+
+    public long getMaxEntrySize(){
+        return maxEntrySize;
+    }
+
+    /** @return the total size of the cached values in bytes. */
+    public synchronized long getSize(){
+        return size;
+    }
+
+    /** @return the number of cached values. */
+    public synchronized int getCount(){
+        return entries.size();
+    }
+
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    public synchronized long getEvictions(){
+        return evictions;
+    }
+
+    /** @return the fraction of lookups that were hits, or 0 if there were none. */
+    public synchronized float getHitRate(){
+        return hits + misses == 0 ? 0f : (float)hits / (hits + misses);
+    }
+}
@@ -0,0 +1,233 @@
+package io.anuke.arc.collection;
+
+import io.anuke.arc.func.Floatf;
+import io.anuke.arc.func.Intc;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Stable least significant digit radix sort of 32 bit keys, one byte per pass. Passes where all keys have the same byte
+ * are skipped, so keys in a narrow range take fewer passes. Working memory is kept between sorts.
+ */
+final class RadixSort{
+    /** Below this size, insertion sort is faster. */
+    private static final int insertionThreshold = 64;
+
+    private int[] keys = {}, keys2 = {}, indices = {}, indices2 = {};
+    private Object[] objects = {};
+    private int[][] counts = {};
+
+    void sort(int[] a, int from, int to){
+        int n = to - from;
+        ensure(n, false);
+        for(int i = 0; i < n; i++){
+            keys[i] = a[from + i] ^ 0x80000000;
+        }
+        sortKeys(n, false);
+        for(int i = 0; i < n; i++){
+            a[from + i] = keys[i] ^ 0x80000000;
+        }
+    }
+
+    void sort(float[] a, int from, int to){
+        int n = to - from;
+        ensure(n, false);
+        for(int i = 0; i < n; i++){
+            keys[i] = sortable(a[from + i]);
+        }
+        sortKeys(n, false);
+        for(int i = 0; i < n; i++){
+            a[from + i] = unsortable(keys[i]);
+        }
+    }
+
+    <T> void sort(T[] items, int from, int to, Floatf<T> key, boolean parallel){
+        int n = to - from;
+        ensure(n, true);
+        int chunks = parallel ? chunks(n) : 1;
+
+        forEachChunk(chunks, c -> {
+            int start = n * c / chunks, end = n * (c + 1) / chunks;
+            for(int i = start; i < end; i++){
+                keys[i] = sortable(key.get(items[from + i]));
+                indices[i] = i;
+            }
+        });
+
+        if(chunks == 1){
+            sortKeys(n, true);
+        }else{
+            sortKeysParallel(n, chunks);
+        }
+
+        Object[] objects = this.objects;
+        forEachChunk(chunks, c -> {
+            int start = n * c / chunks, end = n * (c + 1) / chunks;
+            for(int i = start; i < end; i++){
+                objects[i] = items[from + indices[i]];
+            }
+        });
+        System.arraycopy(objects, 0, items, from, n);
+        Arrays.fill(objects, 0, n, null);
+    }
+
+    /** Sorts the first n keys, and the indices along with them if requested. */
+    private void sortKeys(int n, boolean withIndices){
+        if(n < insertionThreshold){
+            insertionSort(n, withIndices);
+            return;
+        }
+
+        int[] counts = this.counts[0];
+        Arrays.fill(counts, 0);
+        int[] keys = this.keys;
+        for(int i = 0; i < n; i++){
+            int key = keys[i];
+            counts[key & 0xFF]++;
+            counts[256 + ((key >>> 8) & 0xFF)]++;
+            counts[512 + ((key >>> 16) & 0xFF)]++;
+            counts[768 + (key >>> 24)]++;
+        }
+
+        for(int pass = 0; pass < 4; pass++){
+            int offset = pass * 256, shift = pass * 8;
+            if(counts[offset + ((this.keys[0] >>> shift) & 0xFF)] == n) continue;
+
+            int total = 0;
+            for(int b = 0; b < 256; b++){
+                int count = counts[offset + b];
+                counts[offset + b] = total;
+                total += count;
+            }
+
+            int[] src = this.keys, dst = this.keys2;
+            if(withIndices){
+                int[] srcIndices = indices, dstIndices = indices2;
+                for(int i = 0; i < n; i++){
+                    int key = src[i], position = counts[offset + ((key >>> shift) & 0xFF)]++;
+                    dst[position] = key;
+                    dstIndices[position] = srcIndices[i];
+                }
+                indices = dstIndices;
+                indices2 = srcIndices;
+            }else{
+                for(int i = 0; i < n; i++){
+                    int key = src[i];
+                    dst[counts[offset + ((key >>> shift) & 0xFF)]++] = key;
+                }
+            }
+            this.keys = dst;
+            this.keys2 = src;
+        }
+    }
+
+    /** Sorts keys and indices with each pass split into chunks; chunks are scattered in order, so it stays stable. */
+    private void sortKeysParallel(int n, int chunks){
+        int[][] counts = this.counts;
+
+        for(int pass = 0; pass < 4; pass++){
+            int shift = pass * 8;
+            int[] src = keys, dst = keys2, srcIndices = indices, dstIndices = indices2;
+
+            forEachChunk(chunks, c -> {
+                int[] count = counts[c];
+                Arrays.fill(count, 0, 256, 0);
+                int start = n * c / chunks, end = n * (c + 1) / chunks;
+                for(int i = start; i < end; i++){
+                    count[(src[i] >>> shift) & 0xFF]++;
+                }
+            });
+
+            int total = 0;
+            for(int b = 0; b < 256; b++){
+                for(int c = 0; c < chunks; c++){
+                    int count = counts[c][b];
+                    counts[c][b] = total;
+                    total += count;
+                }
+            }
+            //every key in the same bucket: the pass would not move anything
+            int first = (src[0] >>> shift) & 0xFF;
+            if(counts[0][first] == 0 && (first == 255 || counts[0][first + 1] == n)) continue;
+
+            forEachChunk(chunks, c -> {
+                int[] count = counts[c];
+                int start = n * c / chunks, end = n * (c + 1) / chunks;
+                for(int i = start; i < end; i++){
+                    int key = src[i], position = count[(key >>> shift) & 0xFF]++;
+                    dst[position] = key;
+                    dstIndices[position] = srcIndices[i];
+                }
+            });
+
+            keys = dst;
+            keys2 = src;
+            indices = dstIndices;
+            indices2 = srcIndices;
+        }
+    }
+
+    private void insertionSort(int n, boolean withIndices){
+        int[] keys = this.keys, indices = this.indices;
+        for(int i = 1; i < n; i++){
+            int key = keys[i], index = withIndices ? indices[i] : 0;
+            int j = i - 1;
+            while(j >= 0 && Integer.compareUnsigned(keys[j], key) > 0){
+                keys[j + 1] = keys[j];
+                if(withIndices) indices[j + 1] = indices[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            if(withIndices) indices[j + 1] = index;
+        }
+    }
+
+    private void ensure(int n, boolean withObjects){
+        if(keys.length < n){
+            keys = new int[n];
+            keys2 = new int[n];
+        }
+        if(withObjects && indices.length < n){
+            indices = new int[n];
+            indices2 = new int[n];
+            objects = new Object[n];
+        }
+        int chunks = chunks(n);
+        if(counts.length < chunks){
+            counts = new int[chunks][1024];
+        }
+    }
+
+    private static int chunks(int n){
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), n / Sort.parallelThreshold * 2));
+    }
+
+    /** Maps floats to ints whose unsigned order is the order of the floats. */
+    static int sortable(float value){
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) | 0x80000000);
+    }
+
+    static float unsortable(int key){
+        return Float.intBitsToFloat(key ^ (~(key >> 31) | 0x80000000));
+    }
+
+    /** Runs the chunks on the common fork-join pool, the first one on this thread. */
+    private static void forEachChunk(int chunks, Intc body){
+        if(chunks == 1){
+            body.get(0);
+            return;
+        }
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[chunks - 1];
+        for(int i = 1; i < chunks; i++){
+            int chunk = i;
+            tasks[i - 1] = ForkJoinTask.adapt(() -> body.get(chunk)).fork();
+        }
+        body.get(0);
+        for(ForkJoinTask<?> task : tasks){
+            task.join();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package io.anuke.arc.collection;
 
+import io.anuke.arc.func.Floatf;
+
 import java.util.Comparator;
 
 /**
@@ -150,6 +152,11 @@ public class SnapshotArray<T> extends Array<T>{
         super.sort(comparator);
     }
 
+    public void sort(Floatf<T> key){
+        modified();
+        super.sort(key);
+    }
+
     public void reverse(){
         modified();
         super.reverse();
@@ -13,26 +13,37 @@
 
 package io.anuke.arc.collection;
 
+import io.anuke.arc.func.Floatf;
+
+import java.util.Arrays;
 import java.util.Comparator;
 
 /**
  * Provides methods to sort arrays of objects. Sorting requires working memory and this class allows that memory to be reused to
  * avoid allocation. The sorting is otherwise identical to the Arrays.sort methods (uses timsort).<br>
  * <br>
+ * Objects can also be sorted by a float key, which extracts every key once and radix sorts them, instead of comparing
+ * objects O(n log n) times. Primitive arrays of ints and floats are radix sorted as well. The parallel methods split arrays
+ * of at least {@link #parallelThreshold} elements over the common fork-join pool.<br>
+ * <br>
  * Note that sorting primitive arrays with the Arrays.sort methods does not allocate memory (unless sorting large arrays of char,
  * short, or byte).
  * @author Nathan Sweet
  */
 public class Sort{
-    static private Sort instance;
+    static private final ThreadLocal<Sort> instances = ThreadLocal.withInitial(Sort::new);
+    /** Arrays smaller than this are sorted on the calling thread by the parallel methods. */
+    public static int parallelThreshold = 16384;
+    /** Primitive arrays smaller than this are sorted with Arrays.sort, which is faster for them than radix sort. */
+    static private final int radixThreshold = 256;
 
     private TimSort timSort;
     private ComparableTimSort comparableTimSort;
+    private RadixSort radixSort;
 
-    /** Returns a Sort instance for convenience. Multiple threads must not use this instance at the same time. */
+    /** Returns the Sort instance of the calling thread, so that its working memory is reused. */
     public static Sort instance(){
-        if(instance == null) instance = new Sort();
-        return instance;
+        return instances.get();
     }
 
     public <T> void sort(Array<T> a){
@@ -64,4 +75,57 @@ public class Sort{
         if(timSort == null) timSort = new TimSort();
         timSort.doSort(a, c, fromIndex, toIndex);
     }
+
+    /** Sorts by ascending key. The sort is stable; NaN keys go last. */
+    public <T> void sort(Array<T> a, Floatf<T> key){
+        radix().sort(a.items, 0, a.size, key, false);
+    }
+
+    public <T> void sort(T[] a, Floatf<T> key, int fromIndex, int toIndex){
+        radix().sort(a, fromIndex, toIndex, key, false);
+    }
+
+    public void sort(int[] a, int fromIndex, int toIndex){
+        if(toIndex - fromIndex < radixThreshold){
+            Arrays.sort(a, fromIndex, toIndex);
+        }else{
+            radix().sort(a, fromIndex, toIndex);
+        }
+    }
+
+    /** Sorts like Arrays.sort, except that NaNs are made canonical. */
+    public void sort(float[] a, int fromIndex, int toIndex){
+        if(toIndex - fromIndex < radixThreshold){
+            Arrays.sort(a, fromIndex, toIndex);
+        }else{
+            radix().sort(a, fromIndex, toIndex);
+        }
+    }
+
+    public void sort(IntArray a){
+        sort(a.items, 0, a.size);
+    }
+
+    public void sort(FloatArray a){
+        sort(a.items, 0, a.size);
+    }
+
+    /** Sorts by ascending key on multiple threads, if the array is large enough. */
+    public <T> void parallelSort(Array<T> a, Floatf<T> key){
+        radix().sort(a.items, 0, a.size, key, a.size >= parallelThreshold);
+    }
+
+    /** Sorts on multiple threads with Arrays.parallelSort, if the array is large enough. */
+    public <T> void parallelSort(Array<T> a, Comparator<? super T> c){
+        if(a.size < parallelThreshold){
+            sort(a, c);
+        }else{
+            Arrays.parallelSort(a.items, 0, a.size, c);
+        }
+    }
+
+    private RadixSort radix(){
+        if(radixSort == null) radixSort = new RadixSort();
+        return radixSort;
+    }
 }
@@ -0,0 +1,15 @@
+package io.anuke.arc.files;
+
+import io.anuke.arc.collection.LruCache;
+
+/**
+ * A cache of file contents by path, bounded by their total size in bytes, which evicts the least recently used files first.
+ * The cached arrays must not be modified. All methods are thread safe.
+ */
+public class FileCache extends LruCache<String, byte[]>{
+
+    /** @param maxSize the maximum total size of the cached files in bytes. */
+    public FileCache(long maxSize){
+        super(maxSize, bytes -> bytes.length);
+    }
+}
@@ -0,0 +1,141 @@
+package io.anuke.arc.files;
+
+import io.anuke.arc.Files.*;
+import io.anuke.arc.collection.*;
+import io.anuke.arc.util.*;
+import io.anuke.arc.util.ArcAnnotate.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel.*;
+
+/**
+ * A file of a {@link VirtualFiles} filesystem. Reads go to the file of the topmost layer that has this path, through the
+ * cache. Virtual files are read only, like {@link FileType#Internal} files.
+ */
+public class VirtualFileHandle extends FileHandle{
+    private final VirtualFiles files;
+    private final String path;
+
+    VirtualFileHandle(VirtualFiles files, String path){
+        super(new File(path), FileType.Internal);
+        this.files = files;
+        this.path = path;
+    }
+
+    /** @return the file of the topmost layer that has this path, or null if none does. */
+    public @Nullable FileHandle source(){
+        return files.find(path);
+    }
+
+    private FileHandle require(){
+        FileHandle source = source();
+        if(source == null) throw new ArcRuntimeException("File not found: " + this);
+        return source;
+    }
+
+    @Override
+    public String path(){
+        return path;
+    }
+
+    @Override
+    public File file(){
+        FileHandle source = source();
+        return source == null ? file : source.file();
+    }
+
+    @Override
+    public boolean exists(){
+        return source() != null;
+    }
+
+    @Override
+    public boolean isDirectory(){
+        return files.isDirectory(path);
+    }
+
+    @Override
+    public InputStream read(){
+        FileHandle source = require();
+        if(source.isDirectory()) throw new ArcRuntimeException("Cannot open a stream to a directory: " + this);
+        byte[] bytes = files.bytes(path, source);
+        return bytes == null ? source.read() : new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public byte[] readBytes(){
+        FileHandle source = require();
+        byte[] bytes = files.bytes(path, source);
+        return bytes == null ? source.readBytes() : bytes.clone();
+    }
+
+    @Override
+    public ByteBuffer map(MapMode mode){
+        return require().map(mode);
+    }
+
+    @Override
+    public long length(){
+        FileHandle source = source();
+        return source == null ? 0 : source.length();
+    }
+
+    @Override
+    public long lastModified(){
+        FileHandle source = source();
+        return source == null ? 0 : source.lastModified();
+    }
+
+    @Override
+    public FileHandle[] list(){
+        return files.list(path);
+    }
+
+    @Override
+    public FileHandle[] list(FileFilter filter){
+        return Array.with(list()).select(f -> filter.accept(f.file())).toArray(FileHandle.class);
+    }
+
+    @Override
+    public FileHandle[] list(FilenameFilter filter){
+        return Array.with(list()).select(f -> filter.accept(file(), f.name())).toArray(FileHandle.class);
+    }
+
+    @Override
+    public FileHandle[] list(String suffix){
+        return Array.with(list()).select(f -> f.name().endsWith(suffix)).toArray(FileHandle.class);
+    }
+
+    @Override
+    public FileHandle child(String name){
+        return files.get(path.isEmpty() ? name : path + "/" + name);
+    }
+
+    @Override
+    public FileHandle sibling(String name){
+        if(path.isEmpty()) throw new ArcRuntimeException("Cannot get the sibling of the root.");
+        return parent().child(name);
+    }
+
+    @Override
+    public FileHandle parent(){
+        int slash = path.lastIndexOf('/');
+        return slash == -1 ? files.root() : files.get(path.substring(0, slash));
+    }
+
+    @Override
+    public boolean equals(Object obj){
+        return obj instanceof VirtualFileHandle && ((VirtualFileHandle)obj).files == files && ((VirtualFileHandle)obj).path.equals(path);
+    }
+
+    @Override
+    public int hashCode(){
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString(){
+        return path;
+    }
+}
@@ -0,0 +1,198 @@
+package io.anuke.arc.files;
+
+import io.anuke.arc.assets.*;
+import io.anuke.arc.assets.loaders.*;
+import io.anuke.arc.collection.*;
+import io.anuke.arc.util.ArcAnnotate.*;
+import io.anuke.arc.util.async.*;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A virtual filesystem made of layers, such as the game's own assets and the directories or {@link ZipFileHandle zip files}
+ * of mods on top of them. A path resolves to the file of the topmost layer that has it, and directories list the files of
+ * all layers. Contents of files that are read are kept in a shared {@link FileCache}, so a file read by several loaders, or
+ * read again after being unloaded, is only read from its layer once.
+ * <p>
+ * As a {@link FileHandleResolver}, it can be passed to an {@link AssetManager}, which shares it with all its loaders.
+ * Layers are expected to not change while in use; call {@link #refresh()} when they do.
+ */
+public class VirtualFiles implements FileHandleResolver{
+    private static final FileHandle missing = new FileHandle("");
+
+    private final Array<FileHandle> layers = new Array<>();
+    /** Copy of the layers for lookups, replaced whenever they change. */
+    private volatile FileHandle[] snapshot = {};
+    private final ObjectMap<String, FileHandle> resolved = new ObjectMap<>();
+    private final FileCache cache;
+    private final VirtualFileHandle root = new VirtualFileHandle(this, "");
+    /** Files larger than this are streamed from their layer instead of being cached. */
+    private long maxCachedLength;
+
+    /** @param cacheSize the maximum size of cached file contents in bytes. */
+    public VirtualFiles(long cacheSize){
+        this(new FileCache(cacheSize));
+    }
+
+    public VirtualFiles(FileCache cache){
+        this.cache = cache;
+        this.maxCachedLength = cache.getMaxSize() / 4;
+    }
+
+    /** Adds a layer on top of all others. The root is usually a directory or a {@link ZipFileHandle}. */
+    public synchronized void addLayer(FileHandle root){
+        layers.add(root);
+        snapshot = layers.toArray(FileHandle.class);
+        refresh();
+    }
+
+    public synchronized void removeLayer(FileHandle root){
+        layers.remove(root);
+        snapshot = layers.toArray(FileHandle.class);
+        refresh();
+    }
+
+    /** @return the layers, from the bottom to the top. Must not be modified. */
+    public Array<FileHandle> getLayers(){
+        return layers;
+    }
+
+    /** Forgets which layer each file is in and clears the cache, for when layers or their files change. */
+    public synchronized void refresh(){
+        resolved.clear();
+        cache.clear();
+    }
+
+    public FileCache getCache(){
+        return cache;
+    }
+
+    /** Sets the length of the largest file that is cached. Larger files are read from their layer every time. */
+    public void setMaxCachedLength(long maxCachedLength){
+        this.maxCachedLength = maxCachedLength;
+    }
+
+    /** @return the root directory of this filesystem. */
+    public VirtualFileHandle root(){
+        return root;
+    }
+
+    /** @return a handle to the path, which does not need to exist. */
+    public VirtualFileHandle get(String path){
+        path = normalize(path);
+        return path.isEmpty() ? root : new VirtualFileHandle(this, path);
+    }
+
+    @Override
+    public FileHandle resolve(String fileName){
+        return get(fileName);
+    }
+
+    /**
+     * Reads files into the cache in parallel, with up to a number of tasks running on the executor. Files that do not exist
+     * or do not fit into the cache are skipped.
+     * @return the results of the tasks; get() all of them to wait for the prefetch to finish.
+     */
+    public Array<AsyncResult<Void>> prefetch(AsyncExecutor executor, int tasks, Array<String> paths){
+        AtomicInteger next = new AtomicInteger();
+        Array<AsyncResult<Void>> results = new Array<>(tasks);
+        for(int i = 0; i < tasks; i++){
+            results.add(executor.submit(() -> {
+                for(int index = next.getAndIncrement(); index < paths.size; index = next.getAndIncrement()){
+                    String path = normalize(paths.get(index));
+                    FileHandle file = find(path);
+                    if(file == null || file.isDirectory() || cache.contains(path)) continue;
+
+                    long length = file.length();
+                    if(length > maxCachedLength || !cache.fits(length)) continue;
+                    cache.put(path, file.readBytes());
+                }
+            }));
+        }
+        return results;
+    }
+
+    /**
+     * Prefetches the files listed in a manifest, one path per line. Empty lines and lines starting with # are ignored.
+     * @see #prefetch(AsyncExecutor, int, Array)
+     */
+    public Array<AsyncResult<Void>> prefetch(AsyncExecutor executor, int tasks, FileHandle manifest){
+        Array<String> paths = new Array<>();
+        for(String line : manifest.readString().split("\n")){
+            line = line.trim();
+            if(!line.isEmpty() && !line.startsWith("#")) paths.add(line);
+        }
+        return prefetch(executor, tasks, paths);
+    }
+
+    /** @return the file of the topmost layer that has the path, or null. */
+    @Nullable FileHandle find(String path){
+        synchronized(this){
+            FileHandle file = resolved.get(path);
+            if(file != null) return file == missing ? null : file;
+        }
+
+        FileHandle found = null;
+        FileHandle[] layers = snapshot;
+        for(int i = layers.length - 1; i >= 0; i--){
+            FileHandle file = path.isEmpty() ? layers[i] : layers[i].child(path);
+            if(file.exists()){
+                found = file;
+                break;
+            }
+        }
+
+        synchronized(this){
+            resolved.put(path, found == null ? missing : found);
+        }
+        return found;
+    }
+
+    /** @return whether any layer has a directory at the path. */
+    boolean isDirectory(String path){
+        if(path.isEmpty()) return true;
+        for(FileHandle layer : snapshot){
+            if(layer.child(path).isDirectory()) return true;
+        }
+        return false;
+    }
+
+    /** @return the files of a directory in all layers, in the order of the lowest layer that has them. */
+    FileHandle[] list(String path){
+        OrderedSet<String> names = new OrderedSet<>();
+        for(FileHandle layer : snapshot){
+            FileHandle directory = path.isEmpty() ? layer : layer.child(path);
+            if(!directory.isDirectory()) continue;
+            for(FileHandle child : directory.list()){
+                names.add(child.name());
+            }
+        }
+
+        FileHandle[] handles = new FileHandle[names.size];
+        int i = 0;
+        for(String name : names.orderedItems()){
+            handles[i++] = new VirtualFileHandle(this, path.isEmpty() ? name : path + "/" + name);
+        }
+        return handles;
+    }
+
+    /** @return the contents of a file, shared with the cache, or null if the file is too large to be cached. */
+    @Nullable byte[] bytes(String path, FileHandle file){
+        byte[] bytes = cache.get(path);
+        if(bytes != null) return bytes;
+        if(file.length() > maxCachedLength) return null;
+
+        bytes = file.readBytes();
+        cache.put(path, bytes);
+        return bytes;
+    }
+
+    static String normalize(String path){
+        path = path.replace('\\', '/');
+        int start = 0, end = path.length();
+        while(start < end && path.charAt(start) == '/') start++;
+        while(end > start && path.charAt(end - 1) == '/') end--;
+        if(path.startsWith("./", start)) return normalize(path.substring(start + 2, end));
+        return start == 0 && end == path.length() ? path : path.substring(start, end);
+    }
+}
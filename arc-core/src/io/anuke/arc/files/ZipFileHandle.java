@@ -4,76 +4,216 @@ import io.anuke.arc.Files.*;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.util.*;
 import io.anuke.arc.util.ArcAnnotate.*;
+import io.anuke.arc.util.io.*;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel.*;
+import java.nio.charset.*;
 import java.util.*;
 import java.util.zip.*;
 
-/** A FileHandle meant for easily representing and reading the contents of a zip/jar file.*/
+/**
+ * A FileHandle meant for easily representing and reading the contents of a zip/jar file.
+ * <p>
+ * The directory tree is built in a single pass over the central directory of the archive, and every path is indexed, so
+ * {@link #child(String)} is a hash lookup. Child arrays are only created when a directory is listed. Where possible, entries
+ * that are stored without compression are read straight from the archive file, without going through the ZipFile. The archive
+ * is not memory mapped, so {@link #delete()} closes it right away; only {@link #map(MapMode)} maps an entry, on request.
+ */
 public class ZipFileHandle extends FileHandle{
-    private ZipFileHandle[] children = {};
-    private ZipFileHandle parent;
+    private static final int centralHeader = 0x02014b50, endHeader = 0x06054b50, localHeaderSize = 30;
 
-    private final @Nullable ZipEntry entry;
-    private final @NonNull ZipFile zip;
+    private final Archive archive;
+    /** Path in the archive without leading or trailing slashes, empty for the root. */
+    private final String key;
+    private final @Nullable String entryName;
+    private final boolean directory;
+    private final int method;
+    private final long size;
+    /** Offset of the local header of the entry in the archive file, or -1. */
+    private final long offset;
+    /** Offset of the stored data of the entry in the archive file, or -1 until its local header is read. */
+    private volatile long dataOffset = -1;
+
+    private ZipFileHandle parent, firstChild, lastChild, sibling;
+    private int childCount;
+    private ZipFileHandle[] children;
+    private @Nullable ZipEntry entry;
 
     public ZipFileHandle(FileHandle zipFileLoc){
         super(new File(""), FileType.Absolute);
-        entry = null;
+        key = "";
+        entryName = null;
+        directory = true;
+        method = -1;
+        size = 0;
+        offset = -1;
 
         try{
-            zip = new ZipFile(zipFileLoc.file());
+            archive = new Archive(new ZipFile(zipFileLoc.file()));
+            archive.index.put(key, this);
+            archive.raf = new RandomAccessFile(zipFileLoc.file(), "r");
 
-            Array<String> names = Array.with(Collections.list(zip.entries())).map(ZipEntry::getName);
-            ObjectSet<String> paths = new ObjectSet<>();
+            if(!readCentralDirectory(archive.raf)){
+                Streams.closeQuietly(archive.raf);
+                archive.raf = null;
+                archive.index.clear();
+                archive.index.put(key, this);
+                archive.last = null;
+                firstChild = lastChild = null;
+                childCount = 0;
 
-            for(String path : names){
-                paths.add(path);
-                while(path.contains("/") && !path.equals("/") && path.substring(0, path.length() - 1).contains("/")){
-                    int index = path.endsWith("/") ? path.substring(0, path.length() - 1).lastIndexOf('/') : path.lastIndexOf('/');
-                    path = path.substring(0, index);
-                    paths.add(path.endsWith("/") ? path : path + "/");
+                Enumeration<? extends ZipEntry> entries = archive.zip.entries();
+                while(entries.hasMoreElements()){
+                    ZipEntry entry = entries.nextElement();
+                    ZipFileHandle handle = add(entry.getName(), entry.getMethod(), entry.getSize(), -1);
+                    if(handle != null) handle.entry = entry;
                 }
             }
+        }catch(IOException e){
+            throw new ArcRuntimeException(e);
+        }
+    }
 
-            if(paths.contains("/")){
-                file = new File("/");
-                paths.remove("/");
+    private ZipFileHandle(Archive archive, String key, String entryName, boolean directory, int method, long size, long offset){
+        super(new File(key), FileType.Absolute);
+        this.archive = archive;
+        this.key = key;
+        this.entryName = entryName;
+        this.directory = directory;
+        this.method = method;
+        this.size = size;
+        this.offset = offset;
+    }
+
+    /**
+     * Adds the entries of the central directory of the archive, read in two reads: the end of the file, then the directory.
+     * @return false if the archive uses features this does not read, such as zip64, in which case it must be read by the ZipFile.
+     */
+    private boolean readCentralDirectory(RandomAccessFile raf){
+        try{
+            long fileLength = raf.length();
+            int tailLength = (int)Math.min(fileLength, 22 + 0xFFFF);
+            ByteBuffer tail = readAt(raf, fileLength - tailLength, tailLength);
+            int end = -1;
+            for(int i = tailLength - 22; i >= 0; i--){
+                if(tail.getInt(i) == endHeader){
+                    end = i;
+                    break;
+                }
             }
+            if(end == -1) return false;
 
-            Array<ZipFileHandle> files = Array.with(paths).map(s -> zip.getEntry(s) != null ?
-                new ZipFileHandle(zip.getEntry(s), zip) : new ZipFileHandle(s, zip));
+            int count = tail.getShort(end + 10) & 0xFFFF;
+            long length = tail.getInt(end + 12) & 0xFFFFFFFFL, start = tail.getInt(end + 16) & 0xFFFFFFFFL;
+            if(count == 0xFFFF || start == 0xFFFFFFFFL) return false;
+            //data prepended to the archive, such as by self-extracting executables, shifts all offsets
+            long prefix = fileLength - tailLength + end - length - start;
+            if(prefix < 0) return false;
 
-            files.add(this);
+            ByteBuffer buffer = readAt(raf, start + prefix, (int)length);
+            int position = 0;
+            byte[] name = new byte[64];
+            for(int i = 0; i < count; i++){
+                if(buffer.getInt(position) != centralHeader) return false;
+                int method = buffer.getShort(position + 10) & 0xFFFF;
+                long size = buffer.getInt(position + 24) & 0xFFFFFFFFL, local = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+                int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+                int extraLength = buffer.getShort(position + 30) & 0xFFFF, commentLength = buffer.getShort(position + 32) & 0xFFFF;
+                if(size == 0xFFFFFFFFL || local == 0xFFFFFFFFL || (buffer.getInt(position + 20) & 0xFFFFFFFFL) == 0xFFFFFFFFL) return false;
 
-            //find parents
-            files.each(file -> file.parent = files.find(other -> other.isDirectory() && other != file
-                && file.path().startsWith(other.path()) && !file.path().substring(1 + other.path().length()).contains("/")));
-            //transform parents into children
-            files.each(file -> file.children = files.select(f -> f.parent == file).toArray(ZipFileHandle.class));
+                if(name.length < nameLength) name = new byte[nameLength];
+                for(int c = 0; c < nameLength; c++){
+                    name[c] = buffer.get(position + 46 + c);
+                }
+                add(new String(name, 0, nameLength, StandardCharsets.UTF_8), method, size, local + prefix);
+                position += 46 + nameLength + extraLength + commentLength;
+            }
+            return true;
+        }catch(IndexOutOfBoundsException | IOException e){
+            return false;
+        }
+    }
 
-            parent = null;
-        }catch(IOException e){
-            throw new ArcRuntimeException(e);
+    /** Adds an entry, along with any parent directories that have no entry of their own. */
+    private @Nullable ZipFileHandle add(String name, int method, long size, long offset){
+        boolean directory = name.endsWith("/");
+        int start = 0, end = directory ? name.length() - 1 : name.length();
+        while(start < end && name.charAt(start) == '/') start++;
+        if(start >= end){
+            //an entry for the root itself
+            if(name.startsWith("/")) file = new File("/");
+            return null;
         }
+        String key = start == 0 && end == name.length() ? name : name.substring(start, end);
+
+        ZipFileHandle existing = archive.index.get(key);
+        if(existing != null){
+            //a directory that was created for its children before its own entry was found, or a duplicate entry
+            return null;
+        }
+
+        ZipFileHandle handle = new ZipFileHandle(archive, key, name, directory, method, size, offset);
+        archive.index.put(key, handle);
+        archive.directory(key.lastIndexOf('/'), key).link(handle);
+        return handle;
+    }
+
+    private void link(ZipFileHandle child){
+        child.parent = this;
+        if(lastChild == null){
+            firstChild = child;
+        }else{
+            lastChild.sibling = child;
+        }
+        lastChild = child;
+        childCount++;
+    }
+
+    /** @return a little endian heap buffer of bytes of the archive file. */
+    private static ByteBuffer readAt(RandomAccessFile raf, long position, int length) throws IOException{
+        byte[] bytes = new byte[length];
+        readAt(raf, position, bytes, 0, length);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void readAt(RandomAccessFile raf, long position, byte[] bytes, int offset, int length) throws IOException{
+        //reads of an archive share one file, so a seek and the read after it must not be interleaved with others
+        synchronized(raf){
+            raf.seek(position);
+            raf.readFully(bytes, offset, length);
+        }
+    }
+
+    /** @return whether this entry can be read straight from the archive file. */
+    private boolean isStored(){
+        return !directory && method == ZipEntry.STORED && offset != -1 && archive.raf != null;
     }
 
-    private ZipFileHandle(ZipEntry entry, ZipFile file){
-        super(new File(entry.getName()), FileType.Absolute);
-        this.entry = entry;
-        this.zip = file;
+    /** @return the offset of the stored data of this entry in the archive file, which follows its local header. */
+    private long dataOffset() throws IOException{
+        if(dataOffset == -1){
+            ByteBuffer header = readAt(archive.raf, offset, localHeaderSize);
+            if(header.getInt(0) != 0x04034b50) throw new ArcRuntimeException("Invalid local header: " + this);
+            dataOffset = offset + localHeaderSize + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        }
+        return dataOffset;
     }
 
-    private ZipFileHandle(String path, ZipFile file){
-        super(new File(path), FileType.Absolute);
-        this.entry = null;
-        this.zip = file;
+    private ZipEntry entry(){
+        if(entry == null){
+            entry = archive.zip.getEntry(entryName);
+            if(entry == null) throw new ArcRuntimeException("Entry not found in archive: " + this);
+        }
+        return entry;
     }
 
     @Override
     public boolean delete(){
         try{
-            zip.close();
+            if(archive.raf != null) archive.raf.close();
+            archive.zip.close();
         }catch(IOException e){
             Log.err(e);
             return false;
@@ -89,10 +229,9 @@ public class ZipFileHandle extends FileHandle{
 
     @Override
     public FileHandle child(String name){
-        for(ZipFileHandle child : children){
-            if(child.name().equals(name)){
-                return child;
-            }
+        ZipFileHandle child = directory ? archive.index.get(key.isEmpty() ? name : key + "/" + name) : null;
+        if(child != null){
+            return child;
         }
         return new FileHandle(new File(file, name)){
             @Override
@@ -114,26 +253,136 @@ public class ZipFileHandle extends FileHandle{
 
     @Override
     public FileHandle[] list(){
+        if(children == null){
+            ZipFileHandle[] result = new ZipFileHandle[childCount];
+            int i = 0;
+            for(ZipFileHandle child = firstChild; child != null; child = child.sibling){
+                result[i++] = child;
+            }
+            children = result;
+        }
         return children;
     }
 
     @Override
     public boolean isDirectory(){
-        return entry == null || entry.isDirectory();
+        return directory;
     }
 
     @Override
     public InputStream read(){
-        if(entry == null) throw new RuntimeException("Not permitted.");
+        if(directory) throw new RuntimeException("Not permitted.");
         try{
-            return zip.getInputStream(entry);
+            if(isStored()){
+                return new StoredInputStream(archive.raf, dataOffset(), size);
+            }
+            return archive.zip.getInputStream(entry());
         }catch(IOException e){
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public byte[] readBytes(){
+        if(isStored()){
+            try{
+                byte[] bytes = new byte[(int)size];
+                readAt(archive.raf, dataOffset(), bytes, 0, bytes.length);
+                return bytes;
+            }catch(IOException e){
+                throw new ArcRuntimeException("Error reading file: " + this, e);
+            }
+        }
+        return super.readBytes();
+    }
+
+    /**
+     * Maps entries stored without compression. Compressed entries cannot be mapped. As with other files, the mapping is only
+     * released once the buffer is garbage collected, and may keep the archive from being deleted until then.
+     */
+    @Override
+    public ByteBuffer map(MapMode mode){
+        if(mode != MapMode.READ_ONLY || !isStored()) throw new ArcRuntimeException("Cannot map a compressed or writable zip entry: " + this);
+        try{
+            return archive.raf.getChannel().map(MapMode.READ_ONLY, dataOffset(), size).order(ByteOrder.nativeOrder());
+        }catch(IOException e){
+            throw new ArcRuntimeException("Error memory mapping file: " + this, e);
+        }
+    }
+
     @Override
     public long length(){
-        return isDirectory() ? 0 : entry.getSize();
+        return directory ? 0 : size;
+    }
+
+    /** State shared by all handles of an archive. */
+    private static class Archive{
+        final ZipFile zip;
+        final ObjectMap<String, ZipFileHandle> index = new ObjectMap<>();
+        /** Directory of the previous entry, as entries of the same directory are usually next to each other. */
+        ZipFileHandle last;
+        /** The archive file, for reading stored entries, or null if the ZipFile reads them. */
+        @Nullable RandomAccessFile raf;
+
+        Archive(ZipFile zip){
+            this.zip = zip;
+        }
+
+        /** @return the directory of an entry, created if it has no entry of its own. */
+        ZipFileHandle directory(int slash, String child){
+            if(slash == -1) return index.get("");
+            if(last != null && last.key.length() == slash && child.startsWith(last.key)) return last;
+
+            String key = child.substring(0, slash);
+            ZipFileHandle directory = index.get(key);
+            if(directory == null){
+                directory = new ZipFileHandle(this, key, null, true, -1, 0, -1);
+                index.put(key, directory);
+                directory(key.lastIndexOf('/'), key).link(directory);
+            }
+            return last = directory;
+        }
+    }
+
+    /** Reads the stored data of an entry from the archive file. */
+    private static class StoredInputStream extends InputStream{
+        private final RandomAccessFile raf;
+        private final byte[] single = new byte[1];
+        private long position, remaining;
+
+        StoredInputStream(RandomAccessFile raf, long position, long length){
+            this.raf = raf;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException{
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException{
+            if(length == 0) return 0;
+            if(remaining == 0) return -1;
+            length = (int)Math.min(length, remaining);
+            readAt(raf, position, bytes, offset, length);
+            position += length;
+            remaining -= length;
+            return length;
+        }
+
+        @Override
+        public long skip(long n){
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available(){
+            return (int)Math.min(remaining, Integer.MAX_VALUE);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package io.anuke.arc.graphics;
+
+import java.nio.Buffer;
+
+/**
+ * The GL30 functions for reading pixels into a pixel pack buffer and mapping it back, which not every backend binds. A
+ * {@link GL30} that implements this interface supports them; check with {@code instanceof} before using them.
+ */
+public interface GL30Readback extends GL30{
+
+    // C function void glReadPixels ( GLint x, GLint y, GLsizei width, GLsizei height, GLenum format, GLenum type, GLint offset )
+
+    void glReadPixels(int x, int y, int width, int height, int format, int type, int offset);
+
+    // C function GLvoid * glMapBufferRange ( GLenum target, GLintptr offset, GLsizeiptr length, GLbitfield access )
+
+    Buffer glMapBufferRange(int target, int offset, int length, int access);
+}
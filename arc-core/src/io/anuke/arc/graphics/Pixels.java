@@ -0,0 +1,248 @@
+package io.anuke.arc.graphics;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.func.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Bulk operations on images stored as arrays of RGBA8888 pixels, row by row from the top, as {@link Pixmaps#pixels(Pixmap)}
+ * returns them. These work on whole rows at a time instead of going through {@link Pixmap#getPixel(int, int)} for every
+ * pixel, and images with at least {@link #parallelThreshold} pixels are split into bands of rows processed in parallel.
+ */
+public class Pixels{
+    /** Images with fewer pixels than this are processed on the calling thread. */
+    public static int parallelThreshold = 256 * 256;
+
+    /**
+     * Outlines the opaque parts of an image: every transparent pixel within thickness pixels of an opaque pixel is set to the
+     * color. Pixels outside the image count as transparent. Uses a distance transform, so it takes the same time for any
+     * thickness.
+     * @param dst receives the outlined image; may be the same array as src.
+     */
+    public static void outline(int[] src, int[] dst, int width, int height, int color, int thickness){
+        if(width == 0 || height == 0) return;
+        int cap = thickness + 1, max = thickness * thickness;
+        //vertical distance to the nearest opaque pixel, capped as anything beyond the thickness is too far anyway
+        int[] vertical = new int[width * height];
+        boolean parallel = parallel(width, height);
+
+        bands(width, parallel, (start, end) -> {
+            for(int x = start; x < end; x++){
+                vertical[x] = empty(src[x]) ? cap : 0;
+            }
+            for(int y = 1; y < height; y++){
+                int row = y * width;
+                for(int x = start; x < end; x++){
+                    vertical[row + x] = empty(src[row + x]) ? Math.min(cap, vertical[row - width + x] + 1) : 0;
+                }
+            }
+            for(int y = height - 2; y >= 0; y--){
+                int row = y * width;
+                for(int x = start; x < end; x++){
+                    vertical[row + x] = Math.min(vertical[row + x], vertical[row + width + x] + 1);
+                }
+            }
+        });
+
+        bands(height, parallel, (start, end) -> {
+            int[] f = new int[width], v = new int[width];
+            double[] z = new double[width + 1];
+            for(int y = start; y < end; y++){
+                int row = y * width;
+                for(int x = 0; x < width; x++){
+                    int d = vertical[row + x];
+                    f[x] = d * d;
+                }
+
+                //lower envelope of the parabolas (x - i)^2 + f[i], after Felzenszwalb and Huttenlocher
+                int k = 0;
+                v[0] = 0;
+                z[0] = Double.NEGATIVE_INFINITY;
+                z[1] = Double.POSITIVE_INFINITY;
+                for(int q = 1; q < width; q++){
+                    double s = intersect(f, q, v[k]);
+                    while(s <= z[k]){
+                        k--;
+                        s = intersect(f, q, v[k]);
+                    }
+                    k++;
+                    v[k] = q;
+                    z[k] = s;
+                    z[k + 1] = Double.POSITIVE_INFINITY;
+                }
+
+                k = 0;
+                for(int x = 0; x < width; x++){
+                    while(z[k + 1] < x) k++;
+                    int p = v[k], distance = (x - p) * (x - p) + f[p];
+                    int pixel = src[row + x];
+                    dst[row + x] = empty(pixel) && distance <= max ? color : pixel;
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces colors by others, such as to swap the palette of a sprite. Colors that are not keys of the map are kept.
+     * @param dst may be the same array as src.
+     */
+    public static void recolor(int[] src, int[] dst, int width, int height, IntIntMap colors){
+        bands(height, parallel(width, height), (start, end) -> {
+            if(start == end) return;
+            //sprites have long runs of the same color, so the last lookup is remembered
+            int last = src[start * width], replaced = colors.get(last, last);
+            for(int i = start * width, n = end * width; i < n; i++){
+                int pixel = src[i];
+                if(pixel != last){
+                    last = pixel;
+                    replaced = colors.get(pixel, pixel);
+                }
+                dst[i] = replaced;
+            }
+        });
+    }
+
+    /**
+     * Bleeds the colors of opaque pixels into the transparent pixels around them, keeping those transparent, so that
+     * filtering does not blend the edges of sprites with the black or white of transparent pixels. Each iteration spreads the
+     * colors one more pixel, with every transparent pixel taking the average color of its neighbors that already have one.
+     */
+    public static void bleed(int[] pixels, int width, int height, int iterations){
+        //0: no color yet, 1: queued for this iteration, 2: has a color
+        byte[] state = new byte[width * height];
+        IntArray current = new IntArray(), next = new IntArray();
+
+        for(int i = 0; i < pixels.length; i++){
+            if(!empty(pixels[i])) state[i] = 2;
+        }
+        for(int i = 0; i < pixels.length; i++){
+            if(state[i] == 0 && hasNeighbor(state, i, width, height, (byte)2)){
+                state[i] = 1;
+                current.add(i);
+            }
+        }
+
+        for(int iteration = 0; iteration < iterations && current.size > 0; iteration++){
+            IntArray queue = current;
+            int[] colors = new int[queue.size];
+            bands(queue.size, queue.size >= parallelThreshold / 8, (start, end) -> {
+                for(int q = start; q < end; q++){
+                    colors[q] = average(pixels, state, queue.get(q), width, height);
+                }
+            });
+
+            for(int q = 0; q < queue.size; q++){
+                int index = queue.get(q);
+                pixels[index] = colors[q];
+                state[index] = 2;
+            }
+
+            next.clear();
+            for(int q = 0; q < queue.size; q++){
+                int index = queue.get(q), x = index % width, y = index / width;
+                for(int dy = -1; dy <= 1; dy++){
+                    for(int dx = -1; dx <= 1; dx++){
+                        int nx = x + dx, ny = y + dy;
+                        if(nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                        int other = nx + ny * width;
+                        if(state[other] == 0){
+                            state[other] = 1;
+                            next.add(other);
+                        }
+                    }
+                }
+            }
+            current = next;
+            next = queue;
+        }
+    }
+
+    /**
+     * Scales an image with nearest neighbor sampling. Destination pixel (x, y) takes the source pixel
+     * ((int)(x / scaleX), (int)(y / scaleY)), or is transparent if that is outside the source.
+     */
+    public static void scale(int[] src, int width, int height, int[] dst, int dstWidth, int dstHeight, float scaleX, float scaleY){
+        int[] columns = new int[dstWidth];
+        for(int x = 0; x < dstWidth; x++){
+            columns[x] = (int)(x / scaleX);
+        }
+
+        bands(dstHeight, parallel(dstWidth, dstHeight), (start, end) -> {
+            for(int y = start; y < end; y++){
+                int sy = (int)(y / scaleY), row = y * dstWidth;
+                if(sy < 0 || sy >= height){
+                    Arrays.fill(dst, row, row + dstWidth, 0);
+                    continue;
+                }
+                int srcRow = sy * width;
+                for(int x = 0; x < dstWidth; x++){
+                    int sx = columns[x];
+                    dst[row + x] = sx >= 0 && sx < width ? src[srcRow + sx] : 0;
+                }
+            }
+        });
+    }
+
+    /** @return where the parabolas of q and p intersect. */
+    private static double intersect(int[] f, int q, int p){
+        return ((f[q] + q * q) - (f[p] + p * p)) / (2.0 * (q - p));
+    }
+
+    private static int average(int[] pixels, byte[] state, int index, int width, int height){
+        int x = index % width, y = index / width, r = 0, g = 0, b = 0, count = 0;
+        for(int dy = -1; dy <= 1; dy++){
+            for(int dx = -1; dx <= 1; dx++){
+                int nx = x + dx, ny = y + dy;
+                if(nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int other = nx + ny * width;
+                if(state[other] != 2) continue;
+                int pixel = pixels[other];
+                r += pixel >>> 24;
+                g += (pixel >>> 16) & 0xff;
+                b += (pixel >>> 8) & 0xff;
+                count++;
+            }
+        }
+        return count == 0 ? pixels[index] : ((r / count) << 24) | ((g / count) << 16) | ((b / count) << 8);
+    }
+
+    private static boolean hasNeighbor(byte[] state, int index, int width, int height, byte value){
+        int x = index % width, y = index / width;
+        for(int dy = -1; dy <= 1; dy++){
+            for(int dx = -1; dx <= 1; dx++){
+                int nx = x + dx, ny = y + dy;
+                if(nx >= 0 && ny >= 0 && nx < width && ny < height && state[nx + ny * width] == value) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean empty(int pixel){
+        return (pixel & 0xff) == 0;
+    }
+
+    private static boolean parallel(int width, int height){
+        return (long)width * height >= parallelThreshold;
+    }
+
+    /** Splits [0, count) into one band per processor and runs them on the common fork-join pool, the first one on this thread. */
+    static void bands(int count, boolean parallel, Intc2 band){
+        int bands = parallel ? Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() + 1, count / 16)) : 1;
+        if(bands == 1){
+            band.get(0, count);
+            return;
+        }
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[bands - 1];
+        for(int i = 1; i < bands; i++){
+            int start = count * i / bands, end = count * (i + 1) / bands;
+            tasks[i - 1] = ForkJoinTask.adapt(() -> band.get(start, end)).fork();
+        }
+        band.get(0, count / bands);
+        for(ForkJoinTask<?> task : tasks){
+            task.join();
+        }
+    }
+}
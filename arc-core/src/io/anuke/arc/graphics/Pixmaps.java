@@ -1,13 +1,14 @@
 package io.anuke.arc.graphics;
 
+import io.anuke.arc.collection.IntIntMap;
 import io.anuke.arc.func.Intc2;
 import io.anuke.arc.graphics.Pixmap.*;
 import io.anuke.arc.graphics.Texture.TextureWrap;
 import io.anuke.arc.graphics.g2d.TextureRegion;
-import io.anuke.arc.math.Mathf;
 import io.anuke.arc.math.geom.Vector2;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /** Various pixmap utilities. */
 public class Pixmaps{
@@ -44,58 +45,76 @@ public class Pixmaps{
     }
 
     public static Pixmap scale(Pixmap input, float scalex, float scaley){
-        Pixmap pixmap = new Pixmap((int)(input.getWidth() * scalex), (int)(input.getHeight() * scaley), Format.RGBA8888);
-        for(int x = 0; x < pixmap.getWidth(); x++){
-            for(int y = 0; y < pixmap.getHeight(); y++){
-                pixmap.draw(x, y, input.getPixel((int)(x / scalex), (int)(y / scaley)));
-            }
-        }
-        return pixmap;
+        int width = (int)(input.getWidth() * scalex), height = (int)(input.getHeight() * scaley);
+        int[] pixels = new int[width * height];
+        Pixels.scale(pixels(input), input.getWidth(), input.getHeight(), pixels, width, height, scalex, scaley);
+        return pixmap(pixels, width, height);
     }
 
+    /** Outlines the opaque parts of an image with a color. See {@link Pixels#outline(int[], int[], int, int, int, int)}. */
     public static Pixmap outline(Pixmap input, Color color, int thickness){
-        if(thickness == 1){
-            return outline(input, color);
-        }else{
-            Pixmap pixmap = copy(input);
-            pixmap.setColor(color);
+        int[] pixels = pixels(input);
+        Pixels.outline(pixels, pixels, input.getWidth(), input.getHeight(), color.rgba(), thickness);
+        return pixmap(pixels, input.getWidth(), input.getHeight());
+    }
 
-            for(int x = 0; x < pixmap.getWidth(); x++){
-                for(int y = 0; y < pixmap.getHeight(); y++){
-                    if(empty(input.getPixel(x, y))){
-                        boolean found = false;
-                        outer:
-                        for(int dx = -thickness; dx <= thickness; dx++){
-                            for(int dy = -thickness; dy <= thickness; dy++){
-                                if(Mathf.dst2(dx, dy) <= thickness * thickness && !empty(input.getPixel(x + dx, y + dy))){
-                                    found = true;
-                                    break outer;
-                                }
-                            }
-                        }
-                        if(found){
-                            pixmap.draw(x, y);
-                        }
-                    }
+    public static Pixmap outline(Pixmap input, Color color){
+        return outline(input, color, 1);
+    }
 
+    /** Replaces colors of a pixmap in place. See {@link Pixels#recolor(int[], int[], int, int, IntIntMap)}. */
+    public static void recolor(Pixmap pixmap, IntIntMap colors){
+        int[] pixels = pixels(pixmap);
+        Pixels.recolor(pixels, pixels, pixmap.getWidth(), pixmap.getHeight(), colors);
+        setPixels(pixmap, pixels);
+    }
 
+    /** Bleeds the colors of a pixmap into its transparent pixels in place. See {@link Pixels#bleed(int[], int, int, int)}. */
+    public static void bleed(Pixmap pixmap, int iterations){
+        int[] pixels = pixels(pixmap);
+        Pixels.bleed(pixels, pixmap.getWidth(), pixmap.getHeight(), iterations);
+        setPixels(pixmap, pixels);
+    }
+
+    /** @return the pixels of a pixmap as RGBA8888 ints, row by row from the top. */
+    public static int[] pixels(Pixmap pixmap){
+        int width = pixmap.getWidth(), height = pixmap.getHeight();
+        int[] pixels = new int[width * height];
+        if(pixmap.getFormat() == Format.RGBA8888){
+            //bytes are in the order red, green, blue, alpha, which read as a big endian int is RGBA8888
+            pixmap.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(pixels);
+        }else{
+            for(int y = 0; y < height; y++){
+                for(int x = 0; x < width; x++){
+                    pixels[x + y * width] = pixmap.getPixel(x, y);
                 }
             }
-            return pixmap;
         }
+        return pixels;
     }
 
-    public static Pixmap outline(Pixmap input, Color color){
-        Pixmap pixmap = copy(input);
-        pixmap.setColor(color);
-
-        for(int x = 0; x < pixmap.getWidth(); x++){
-            for(int y = 0; y < pixmap.getHeight(); y++){
-                if(empty(input.getPixel(x, y)) &&
-                (!empty(input.getPixel(x, y + 1)) || !empty(input.getPixel(x, y - 1)) || !empty(input.getPixel(x - 1, y)) || !empty(input.getPixel(x + 1, y))))
-                    pixmap.draw(x, y);
+    /** Replaces all pixels of a pixmap with RGBA8888 ints, without blending. */
+    public static void setPixels(Pixmap pixmap, int[] pixels){
+        int width = pixmap.getWidth(), height = pixmap.getHeight();
+        if(pixmap.getFormat() == Format.RGBA8888){
+            ByteBuffer buffer = pixmap.getPixels().duplicate();
+            buffer.clear();
+            buffer.order(ByteOrder.BIG_ENDIAN).asIntBuffer().put(pixels, 0, width * height);
+        }else{
+            Pixmap.Blending blending = pixmap.getBlending();
+            pixmap.setBlending(Pixmap.Blending.None);
+            for(int y = 0; y < height; y++){
+                for(int x = 0; x < width; x++){
+                    pixmap.draw(x, y, pixels[x + y * width]);
+                }
             }
+            pixmap.setBlending(blending);
         }
+    }
+
+    private static Pixmap pixmap(int[] pixels, int width, int height){
+        Pixmap pixmap = new Pixmap(width, height, Format.RGBA8888);
+        setPixels(pixmap, pixels);
         return pixmap;
     }
 
@@ -148,10 +167,6 @@ public class Pixmaps{
         return pixmap;
     }
 
-    private static boolean empty(int i){
-        return (i & 0x000000ff) == 0;
-    }
-
     public static void traverse(Pixmap input, Intc2 t){
         for(int x = 0; x < input.getWidth(); x++){
             for(int y = 0; y < input.getHeight(); y++){
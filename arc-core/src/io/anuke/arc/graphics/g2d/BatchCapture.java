@@ -0,0 +1,152 @@
+package io.anuke.arc.graphics.g2d;
+
+import io.anuke.arc.Core;
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.collection.FloatArray;
+import io.anuke.arc.graphics.Blending;
+import io.anuke.arc.graphics.GL20;
+import io.anuke.arc.graphics.Texture;
+import io.anuke.arc.graphics.glutils.HdpiUtils;
+import io.anuke.arc.graphics.glutils.Shader;
+import io.anuke.arc.math.Matrix3;
+import io.anuke.arc.math.geom.Rectangle;
+
+import java.util.Arrays;
+
+/**
+ * Records the vertices flushed by {@link SpriteBatch}, along with the texture, blending, shader, transform and scissors
+ * they were drawn with, so they can be drawn again without re-running the code that produced them.
+ * Only geometry that goes through the batch is recorded; direct GL calls are not.
+ */
+public class BatchCapture{
+    private final FloatArray vertices = new FloatArray(1024);
+    private final Array<Segment> segments = new Array<>(false, 16, Segment.class);
+    private int segmentCount;
+
+    private final Matrix3 projection = new Matrix3(), transform = new Matrix3();
+    private final Rectangle scissor = new Rectangle();
+    private Blending blending;
+    private Shader shader;
+    private boolean apply, scissored;
+
+    /** Clears this capture and starts recording everything drawn through {@link Core#batch}. */
+    public void begin(){
+        SpriteBatch batch = Core.batch;
+        batch.flush();
+        clear();
+
+        projection.set(batch.getProjection());
+        transform.set(batch.getTransform());
+        blending = batch.blending;
+        shader = batch.customShader;
+        apply = batch.apply;
+        Rectangle current = ScissorStack.currentScissors();
+        scissored = current != null;
+        if(scissored) scissor.set(current);
+
+        batch.setCapture(this);
+    }
+
+    /** Flushes the batch and stops recording. */
+    public void end(){
+        Core.batch.setCapture(null);
+    }
+
+    /** Removes all recorded vertices. */
+    public void clear(){
+        vertices.clear();
+        segmentCount = 0;
+    }
+
+    public boolean isEmpty(){
+        return segmentCount == 0;
+    }
+
+    /** @return the number of recorded vertex floats. */
+    public int size(){
+        return vertices.size;
+    }
+
+    /**
+     * @return whether the batch is currently in the same state it was in when recording began, so that
+     * {@link #replay()} would produce the same output on screen.
+     */
+    public boolean valid(){
+        SpriteBatch batch = Core.batch;
+        Rectangle current = ScissorStack.currentScissors();
+
+        return Arrays.equals(batch.getProjection().val, projection.val) && Arrays.equals(batch.getTransform().val, transform.val) &&
+            batch.blending == blending && batch.customShader == shader && batch.apply == apply &&
+            (current == null ? !scissored : scissored && current.equals(scissor));
+    }
+
+    /** Draws all recorded vertices through {@link Core#batch}, restoring its state afterwards. */
+    public void replay(){
+        SpriteBatch batch = Core.batch;
+        float[] items = vertices.items;
+        boolean clipped = scissored;
+        Rectangle clip = scissor;
+
+        for(int i = 0; i < segmentCount; i++){
+            Segment segment = segments.items[i];
+
+            if(batch.blending != segment.blending) batch.setBlending(segment.blending);
+            if(batch.customShader != segment.shader || batch.apply != segment.apply) batch.setShader(segment.shader, segment.apply);
+            if(!Arrays.equals(batch.getTransform().val, segment.transform.val)) batch.setTransform(segment.transform);
+            if(clipped != segment.scissored || (clipped && !clip.equals(segment.scissor))){
+                batch.flush();
+                applyScissors(segment.scissored, segment.scissor);
+                clipped = segment.scissored;
+                clip = segment.scissor;
+            }
+
+            batch.draw(segment.texture, items, segment.offset, segment.count);
+        }
+
+        if(batch.blending != blending) batch.setBlending(blending);
+        if(batch.customShader != shader || batch.apply != apply) batch.setShader(shader, apply);
+        if(!Arrays.equals(batch.getTransform().val, transform.val)) batch.setTransform(transform);
+        if(clipped != scissored || (clipped && !clip.equals(scissor))){
+            batch.flush();
+            applyScissors(scissored, scissor);
+        }
+    }
+
+    /** Called by the batch on every flush while recording. */
+    void add(Texture texture, float[] data, int count, Blending blending, Shader shader, boolean apply, Matrix3 transform){
+        Rectangle current = ScissorStack.currentScissors();
+
+        if(segmentCount == segments.size) segments.add(new Segment());
+        Segment segment = segments.items[segmentCount++];
+        segment.texture = texture;
+        segment.offset = vertices.size;
+        segment.count = count;
+        segment.blending = blending;
+        segment.shader = shader;
+        segment.apply = apply;
+        segment.transform.set(transform);
+        segment.scissored = current != null;
+        if(current != null) segment.scissor.set(current);
+
+        vertices.addAll(data, 0, count);
+    }
+
+    private void applyScissors(boolean enabled, Rectangle rect){
+        if(enabled){
+            Core.gl.glEnable(GL20.GL_SCISSOR_TEST);
+            HdpiUtils.glScissor((int)rect.x, (int)rect.y, (int)rect.width, (int)rect.height);
+        }else{
+            Core.gl.glDisable(GL20.GL_SCISSOR_TEST);
+        }
+    }
+
+    static class Segment{
+        final Matrix3 transform = new Matrix3();
+        final Rectangle scissor = new Rectangle();
+        Texture texture;
+        Blending blending;
+        Shader shader;
+        int offset, count;
+        boolean apply, scissored;
+    }
+}
@@ -190,6 +190,16 @@ public class Draw{
         Core.batch.flush();
     }
 
+    /** Starts recording all flushed vertices into the specified capture. Pass null to stop recording. */
+    public static void capture(BatchCapture capture){
+        Core.batch.setCapture(capture);
+    }
+
+    /** @return the capture currently receiving vertices, or null. */
+    public static BatchCapture capture(){
+        return Core.batch.getCapture();
+    }
+
     public static void proj(Matrix3 proj){
         Core.batch.setProjection(proj);
     }
@@ -0,0 +1,368 @@
+package io.anuke.arc.graphics.g2d;
+
+import io.anuke.arc.Core;
+import io.anuke.arc.graphics.*;
+import io.anuke.arc.graphics.VertexAttributes.Usage;
+import io.anuke.arc.graphics.glutils.Shader;
+import io.anuke.arc.graphics.glutils.VertexBufferObject;
+import io.anuke.arc.math.Mathf;
+import io.anuke.arc.math.Matrix3;
+import io.anuke.arc.util.Disposable;
+import io.anuke.arc.util.Strings;
+
+/**
+ * Draws large numbers of rotated, tinted quads from a single texture using GL30 instancing.
+ * Each sprite is uploaded as one compact instance record instead of four full vertices; quads are expanded in the vertex shader.
+ * Sprites reference regions registered with {@link #region(TextureRegion)}, all of which must share one texture.
+ * When GL30 is not available, every instance is expanded with {@link #expand(int, float[], int)} and drawn through
+ * {@link Core#batch} instead.
+ */
+public class InstancedBatch implements Disposable{
+    /** center xy + size + rotation + region index + color + mix_color */
+    public static final int INSTANCE_SIZE = 2 + 2 + 1 + 1 + 1 + 1;
+    /** The maximum amount of regions that can be registered. Limited by the uniform array in the shader. */
+    public static final int MAX_REGIONS = 128;
+
+    private static final String vertexShader =
+    Strings.join("\n",
+        "attribute vec2 a_corner;",
+        "attribute vec4 " + Shader.POSITION_ATTRIBUTE + ";",
+        "attribute vec2 a_transform;",
+        "attribute vec4 " + Shader.COLOR_ATTRIBUTE + ";",
+        "attribute vec4 " + Shader.MIX_COLOR_ATTRIBUTE + ";",
+        "uniform mat4 u_projTrans;",
+        "uniform vec4 u_regions[" + MAX_REGIONS + "];",
+        "varying vec4 v_color;",
+        "varying vec4 v_mix_color;",
+        "varying vec2 v_texCoords;",
+        "",
+        "void main(){",
+        "   vec2 local = (a_corner - 0.5) * " + Shader.POSITION_ATTRIBUTE + ".zw;",
+        "   float rad = radians(a_transform.x);",
+        "   float c = cos(rad);",
+        "   float s = sin(rad);",
+        "   vec2 pos = " + Shader.POSITION_ATTRIBUTE + ".xy + vec2(c * local.x - s * local.y, s * local.x + c * local.y);",
+        "   vec4 region = u_regions[int(a_transform.y)];",
+        "   v_color = " + Shader.COLOR_ATTRIBUTE + ";",
+        "   v_color.a = v_color.a * (255.0/254.0);",
+        "   v_mix_color = " + Shader.MIX_COLOR_ATTRIBUTE + ";",
+        "   v_mix_color.a *= (255.0/254.0);",
+        "   v_texCoords = vec2(mix(region.x, region.z, a_corner.x), mix(region.y, region.w, a_corner.y));",
+        "   gl_Position = u_projTrans * vec4(pos, 0.0, 1.0);",
+        "}"
+    );
+    private static final String fragmentShader =
+    Strings.join("\n",
+        "#ifdef GL_ES",
+        "#define LOWP lowp",
+        "precision mediump float;",
+        "#else",
+        "#define LOWP ",
+        "#endif",
+        "",
+        "varying LOWP vec4 v_color;",
+        "varying LOWP vec4 v_mix_color;",
+        "varying vec2 v_texCoords;",
+        "uniform sampler2D u_texture;",
+        "",
+        "void main(){",
+        "  vec4 c = texture2D(u_texture, v_texCoords);",
+        "  gl_FragColor = v_color * mix(c, vec4(v_mix_color.rgb, c.a), v_mix_color.a);",
+        "}"
+    );
+
+    protected final float[] instances;
+    protected int idx = 0;
+
+    protected final TextureRegion[] regions = new TextureRegion[MAX_REGIONS];
+    /** u, v2, u2, v for each region; bottom-left to top-right, as used by SpriteBatch. */
+    protected final float[] regionUVs = new float[MAX_REGIONS * 4];
+    protected int regionCount;
+    protected Texture texture;
+    /** Scratch space for one expanded instance. */
+    protected final float[] expanded = new float[24];
+
+    protected float colorPacked = Color.whiteFloatBits;
+    protected float mixColorPacked = Color.clearFloatBits;
+
+    /** Whether instances are rendered with GL30. If false, all rendering goes through {@link Core#batch}. */
+    protected final boolean instanced;
+    protected final Matrix3 combinedMatrix = new Matrix3();
+    protected VertexBufferObject quad, instanceData;
+    protected Shader shader;
+    protected int vao;
+
+    /** Number of render calls since the last {@link #resetStats()}. */
+    public int renderCalls = 0;
+    /** The maximum number of instances rendered in one call so far. */
+    public int maxInstancesInBatch = 0;
+
+    /** Creates an instanced batch, using GL30 instancing if it is available. */
+    public InstancedBatch(int size){
+        this(size, Core.gl30 != null);
+    }
+
+    /**
+     * @param size the max number of instances in a single draw call.
+     * @param instanced whether to use GL30 instancing. If false, no GL resources are allocated and
+     * instances are expanded into {@link Core#batch} on flush.
+     */
+    public InstancedBatch(int size, boolean instanced){
+        if(instanced && Core.gl30 == null) throw new IllegalArgumentException("Instanced rendering requires GL30.");
+
+        this.instanced = instanced;
+        this.instances = new float[size * INSTANCE_SIZE];
+
+        if(instanced){
+            quad = new VertexBufferObject(true, 4, new VertexAttribute(Usage.Generic, 2, "a_corner"));
+            quad.setVertices(new float[]{0, 0, 0, 1, 1, 1, 1, 0}, 0, 8);
+
+            instanceData = new VertexBufferObject(false, size,
+            new VertexAttribute(Usage.Position, 4, Shader.POSITION_ATTRIBUTE),
+            new VertexAttribute(Usage.Generic, 2, "a_transform"),
+            new VertexAttribute(Usage.ColorPacked, 4, Shader.COLOR_ATTRIBUTE),
+            new VertexAttribute(Usage.ColorPacked, 4, Shader.MIX_COLOR_ATTRIBUTE));
+
+            shader = new Shader(vertexShader, fragmentShader);
+
+            int[] handle = new int[1];
+            Core.gl30.glGenVertexArrays(1, handle, 0);
+            vao = handle[0];
+        }
+    }
+
+    /**
+     * Registers a region for use with {@link #draw(int, float, float, float, float, float)}.
+     * @return the index of this region; registering the same region twice returns the same index.
+     */
+    public int region(TextureRegion region){
+        for(int i = 0; i < regionCount; i++){
+            if(regions[i] == region) return i;
+        }
+
+        if(regionCount >= MAX_REGIONS) throw new IllegalArgumentException("Can't have more than " + MAX_REGIONS + " regions per instanced batch.");
+        if(texture != null && region.texture != texture) throw new IllegalArgumentException("All regions of an instanced batch must share the same texture.");
+
+        texture = region.texture;
+        int index = regionCount++;
+        regions[index] = region;
+        regionUVs[index * 4] = region.u;
+        regionUVs[index * 4 + 1] = region.v2;
+        regionUVs[index * 4 + 2] = region.u2;
+        regionUVs[index * 4 + 3] = region.v;
+        return index;
+    }
+
+    /** Removes all registered regions. Pending instances are flushed first. */
+    public void clearRegions(){
+        flush();
+        for(int i = 0; i < regionCount; i++){
+            regions[i] = null;
+        }
+        regionCount = 0;
+        texture = null;
+    }
+
+    public void setColor(Color color){
+        colorPacked = color.toFloatBits();
+    }
+
+    public void setPackedColor(float color){
+        colorPacked = color;
+    }
+
+    public void setMixColor(Color color){
+        mixColorPacked = color.toFloatBits();
+    }
+
+    public void setPackedMixColor(float color){
+        mixColorPacked = color;
+    }
+
+    /** Queues a sprite centered on x/y, rotated around its center by the specified amount of degrees. */
+    public void draw(int region, float x, float y, float width, float height, float rotation){
+        if(region < 0 || region >= regionCount) throw new IllegalArgumentException("Unknown region index: " + region);
+        if(idx == instances.length) flush();
+
+        float[] instances = this.instances;
+        int idx = this.idx;
+        instances[idx] = x;
+        instances[idx + 1] = y;
+        instances[idx + 2] = width;
+        instances[idx + 3] = height;
+        instances[idx + 4] = rotation;
+        instances[idx + 5] = region;
+        instances[idx + 6] = colorPacked;
+        instances[idx + 7] = mixColorPacked;
+        this.idx = idx + INSTANCE_SIZE;
+    }
+
+    /** @return the number of queued instances. */
+    public int getCount(){
+        return idx / INSTANCE_SIZE;
+    }
+
+    /** @return the raw instance buffer. Only the first {@link #getCount()} records are valid. */
+    public float[] getInstances(){
+        return instances;
+    }
+
+    /**
+     * Expands a queued instance into the 4 vertices the vertex shader produces for it, in the layout SpriteBatch uses.
+     * Like the shader, this rotates with exact trigonometry instead of the lookup table of {@link Mathf#sinDeg(float)}, so
+     * rotated sprites can be a tiny fraction of a unit off from the same sprite drawn through SpriteBatch.
+     * @param instance the index of the instance record
+     * @param out the destination array; must have space for 24 floats starting at offset
+     */
+    public void expand(int instance, float[] out, int offset){
+        float[] instances = this.instances;
+        int i = instance * INSTANCE_SIZE;
+        float width = instances[i + 2], height = instances[i + 3], rotation = instances[i + 4];
+        float originX = width / 2f, originY = height / 2f;
+        float worldOriginX = instances[i], worldOriginY = instances[i + 1];
+        int region = (int)instances[i + 5] * 4;
+        float color = instances[i + 6], mixColor = instances[i + 7];
+
+        float u = regionUVs[region], v = regionUVs[region + 1], u2 = regionUVs[region + 2], v2 = regionUVs[region + 3];
+
+        float fx = -originX, fy = -originY, fx2 = width - originX, fy2 = height - originY;
+        float x1, y1, x2, y2, x3, y3, x4, y4;
+
+        if(!Mathf.zero(rotation)){
+            double radians = Math.toRadians(rotation);
+            float cos = (float)Math.cos(radians);
+            float sin = (float)Math.sin(radians);
+
+            x1 = cos * fx - sin * fy;
+            y1 = sin * fx + cos * fy;
+
+            x2 = cos * fx - sin * fy2;
+            y2 = sin * fx + cos * fy2;
+
+            x3 = cos * fx2 - sin * fy2;
+            y3 = sin * fx2 + cos * fy2;
+
+            x4 = x1 + (x3 - x2);
+            y4 = y3 - (y2 - y1);
+        }else{
+            x1 = x2 = fx;
+            y1 = y4 = fy;
+            x3 = x4 = fx2;
+            y2 = y3 = fy2;
+        }
+
+        out[offset] = x1 + worldOriginX;
+        out[offset + 1] = y1 + worldOriginY;
+        out[offset + 2] = color;
+        out[offset + 3] = u;
+        out[offset + 4] = v;
+        out[offset + 5] = mixColor;
+
+        out[offset + 6] = x2 + worldOriginX;
+        out[offset + 7] = y2 + worldOriginY;
+        out[offset + 8] = color;
+        out[offset + 9] = u;
+        out[offset + 10] = v2;
+        out[offset + 11] = mixColor;
+
+        out[offset + 12] = x3 + worldOriginX;
+        out[offset + 13] = y3 + worldOriginY;
+        out[offset + 14] = color;
+        out[offset + 15] = u2;
+        out[offset + 16] = v2;
+        out[offset + 17] = mixColor;
+
+        out[offset + 18] = x4 + worldOriginX;
+        out[offset + 19] = y4 + worldOriginY;
+        out[offset + 20] = color;
+        out[offset + 21] = u2;
+        out[offset + 22] = v;
+        out[offset + 23] = mixColor;
+    }
+
+    /** Renders all queued instances. Anything pending in {@link Core#batch} is flushed first to preserve draw order. */
+    public void flush(){
+        if(idx == 0) return;
+
+        if(instanced){
+            flushInstanced();
+        }else{
+            flushBatch();
+        }
+
+        idx = 0;
+    }
+
+    protected void flushBatch(){
+        SpriteBatch batch = Core.batch;
+        float[] expanded = this.expanded;
+
+        for(int i = 0, count = getCount(); i < count; i++){
+            expand(i, expanded, 0);
+            batch.draw(texture, expanded, 0, 24);
+        }
+    }
+
+    protected void flushInstanced(){
+        SpriteBatch batch = Core.batch;
+        batch.flush();
+
+        int count = idx / INSTANCE_SIZE;
+        renderCalls++;
+        if(count > maxInstancesInBatch) maxInstancesInBatch = count;
+
+        Blending blending = batch.blending;
+        if(blending != Blending.disabled){
+            Core.gl.glEnable(GL20.GL_BLEND);
+            Core.gl.glBlendFuncSeparate(blending.src, blending.dst, blending.src, blending.dst);
+        }else{
+            Core.gl.glDisable(GL20.GL_BLEND);
+        }
+
+        shader.begin();
+        combinedMatrix.set(batch.getProjection()).mul(batch.getTransform());
+        shader.setUniformMatrix4("u_projTrans", BatchShader.copyTransform(combinedMatrix));
+        shader.setUniformi("u_texture", 0);
+        shader.setUniform4fv("u_regions", regionUVs, 0, regionCount * 4);
+
+        texture.bind();
+        instanceData.setVertices(instances, 0, idx);
+
+        GL30 gl = Core.gl30;
+        gl.glBindVertexArray(vao);
+        quad.bind(shader);
+        instanceData.bind(shader);
+        setDivisors(gl, 1);
+
+        gl.glDrawArraysInstanced(GL20.GL_TRIANGLE_FAN, 0, 4, count);
+
+        setDivisors(gl, 0);
+        instanceData.unbind(shader);
+        quad.unbind(shader);
+        gl.glBindVertexArray(0);
+
+        shader.end();
+    }
+
+    private void setDivisors(GL30 gl, int divisor){
+        VertexAttributes attributes = instanceData.getAttributes();
+        for(int i = 0; i < attributes.size(); i++){
+            int location = shader.getAttributeLocation(attributes.get(i).alias);
+            if(location >= 0) gl.glVertexAttribDivisor(location, divisor);
+        }
+    }
+
+    public void resetStats(){
+        renderCalls = 0;
+    }
+
+    @Override
+    public void dispose(){
+        if(instanced){
+            quad.dispose();
+            instanceData.dispose();
+            shader.dispose();
+            Core.gl30.glDeleteVertexArrays(1, new int[]{vao}, 0);
+        }
+    }
+}
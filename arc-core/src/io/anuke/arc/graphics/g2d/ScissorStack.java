@@ -82,6 +82,11 @@ public class ScissorStack{
         return scissors.peek();
     }
 
+    /** @return the current top of the stack, or null if no scissors are applied. */
+    static Rectangle currentScissors(){
+        return scissors.size == 0 ? null : scissors.peek();
+    }
+
     private static void fix(Rectangle rect){
         rect.x = Math.round(rect.x);
         rect.y = Math.round(rect.y);
@@ -44,6 +44,9 @@ public class SpriteBatch implements Disposable{
     protected final Color mixColor = Color.clear;
     protected float mixColorPacked = Color.clearFloatBits;
 
+    /** Receives a copy of every flushed set of vertices, if not null. */
+    protected BatchCapture capture;
+
     /** Number of render calls. **/
     int renderCalls = 0;
     /** Number of rendering calls, ever. Will not be reset unless set manually. **/
@@ -337,6 +340,10 @@ public class SpriteBatch implements Disposable{
     protected void flush(){
         if(idx == 0) return;
 
+        if(capture != null){
+            capture.add(lastTexture, vertices, idx, blending, customShader, apply, transformMatrix);
+        }
+
         renderCalls = 0;
 
         getShader().begin();
@@ -371,6 +378,15 @@ public class SpriteBatch implements Disposable{
         getShader().end();
     }
 
+    void setCapture(BatchCapture capture){
+        flush();
+        this.capture = capture;
+    }
+
+    BatchCapture getCapture(){
+        return capture;
+    }
+
     void setBlending(Blending blending){
         flush();
         this.blending = blending;
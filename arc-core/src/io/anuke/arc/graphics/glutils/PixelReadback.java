@@ -0,0 +1,226 @@
+package io.anuke.arc.graphics.glutils;
+
+import io.anuke.arc.Core;
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.func.Cons;
+import io.anuke.arc.graphics.GL20;
+import io.anuke.arc.graphics.GL30;
+import io.anuke.arc.graphics.GL30Readback;
+import io.anuke.arc.util.BufferUtils;
+import io.anuke.arc.util.Disposable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads pixels from the bound framebuffer without stalling until the GPU has finished drawing them. When the GL30 of the backend
+ * is a {@link GL30Readback}, each read goes into one of a small ring of pixel buffer objects and is copied out
+ * {@link #getLatency()} frames later, when the GPU is long done with it; the callback is then run from {@link #update()}.
+ * Otherwise pixels are read with a plain glReadPixels and the callback is run right away.
+ * <p>
+ * Pixels are passed to callbacks as RGBA8888 arrays taken from a pool. A callback that is done with an array can return it with
+ * {@link #free(byte[])}, from any thread, so that reading every frame does not allocate. Callbacks run on the rendering thread,
+ * in the order the reads were made.
+ * <p>
+ * The buffers are not managed, so a PixelReadback must be recreated after the context is lost, and disposed when no longer
+ * needed.
+ */
+public class PixelReadback implements Disposable{
+    private final Read[] ring;
+    private final Array<byte[]> pool = new Array<>(false, 4, byte[].class);
+    private int next, maxPooled = 4;
+    private long frame;
+    private final boolean async;
+    /** Used for synchronous reads. */
+    private ByteBuffer scratch;
+
+    /** Creates a ring of 3 buffers, delivering pixels 2 frames after they are read. */
+    public PixelReadback(){
+        this(3);
+    }
+
+    /** @param buffers how many reads may be in flight at once; pixels are delivered buffers - 1 frames after they are read. */
+    public PixelReadback(int buffers){
+        if(buffers < 2) throw new IllegalArgumentException("At least 2 buffers are needed, got " + buffers);
+        ring = new Read[buffers];
+        for(int i = 0; i < buffers; i++){
+            ring[i] = new Read();
+        }
+        async = Core.gl30 instanceof GL30Readback;
+    }
+
+    /**
+     * Reads a region of the bound framebuffer.
+     * @param flipY whether to flip the rows, so that the first row of the array is the top of the region instead of the bottom.
+     * @param callback receives width * height * 4 bytes of RGBA8888 pixels, now or {@link #getLatency()} calls to
+     * {@link #update()} later if {@link #isAsync()}. If all buffers are still in flight, the oldest read is completed first.
+     */
+    public void read(int x, int y, int width, int height, boolean flipY, Cons<byte[]> callback){
+        if(async){
+            readAsync(x, y, width, height, flipY, callback);
+            return;
+        }
+
+        int size = width * height * 4;
+        if(scratch == null || scratch.capacity() < size){
+            scratch = BufferUtils.newByteBuffer(size);
+        }
+        scratch.clear();
+        Core.gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+        Core.gl.glReadPixels(x, y, width, height, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, scratch);
+        callback.get(copy(scratch, width, height, flipY));
+    }
+
+    /** Completes the reads that are at least {@link #getLatency()} frames old. Call once per frame, after rendering. */
+    public void update(){
+        frame++;
+        for(int i = 0; i < ring.length; i++){
+            Read read = ring[(next + i) % ring.length];
+            if(read.pending && frame - read.frame >= ring.length - 1){
+                complete(read);
+            }
+        }
+    }
+
+    /** Completes all reads in flight now, waiting for the GPU if needed. */
+    public void flush(){
+        for(int i = 0; i < ring.length; i++){
+            Read read = ring[(next + i) % ring.length];
+            if(read.pending) complete(read);
+        }
+    }
+
+    /**
+     * Returns an array received by a callback to the pool, to be reused by a later read. The array must not be used afterwards.
+     * May be called from any thread.
+     */
+    public void free(byte[] pixels){
+        synchronized(pool){
+            if(pool.size < maxPooled) pool.add(pixels);
+        }
+    }
+
+    /** Sets how many freed arrays are kept for reuse. Defaults to 4. */
+    public void setMaxPooled(int maxPooled){
+        synchronized(pool){
+            this.maxPooled = maxPooled;
+            pool.truncate(Math.min(pool.size, maxPooled));
+        }
+    }
+
+    /** @return whether reads go through pixel buffer objects, rather than reading synchronously. */
+    public boolean isAsync(){
+        return async;
+    }
+
+    /** @return how many calls to {@link #update()} it takes for a read to be delivered. */
+    public int getLatency(){
+        return async ? ring.length - 1 : 0;
+    }
+
+    /** @return the number of reads in flight. */
+    public int getPending(){
+        int pending = 0;
+        for(Read read : ring){
+            if(read.pending) pending++;
+        }
+        return pending;
+    }
+
+    /** Deletes the buffers. Reads still in flight are discarded without running their callbacks. */
+    @Override
+    public void dispose(){
+        for(Read read : ring){
+            read.pending = false;
+            read.callback = null;
+        }
+        if(async) deleteBuffers();
+        scratch = null;
+        synchronized(pool){
+            pool.clear();
+        }
+    }
+
+    private void readAsync(int x, int y, int width, int height, boolean flipY, Cons<byte[]> callback){
+        Read read = ring[next];
+        //every buffer is in flight; this one is the oldest
+        if(read.pending) complete(read);
+
+        GL30Readback gl = (GL30Readback)Core.gl30;
+        int size = width * height * 4;
+        if(read.handle == 0) read.handle = gl.glGenBuffer();
+        gl.glBindBuffer(GL30.GL_PIXEL_PACK_BUFFER, read.handle);
+        if(read.capacity < size){
+            gl.glBufferData(GL30.GL_PIXEL_PACK_BUFFER, size, null, GL30.GL_STREAM_READ);
+            read.capacity = size;
+        }
+        gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+        gl.glReadPixels(x, y, width, height, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, 0);
+        gl.glBindBuffer(GL30.GL_PIXEL_PACK_BUFFER, 0);
+
+        read.width = width;
+        read.height = height;
+        read.flipY = flipY;
+        read.callback = callback;
+        read.frame = frame;
+        read.pending = true;
+        next = (next + 1) % ring.length;
+    }
+
+    private void complete(Read read){
+        GL30Readback gl = (GL30Readback)Core.gl30;
+        int size = read.width * read.height * 4;
+        gl.glBindBuffer(GL30.GL_PIXEL_PACK_BUFFER, read.handle);
+        ByteBuffer mapped = (ByteBuffer)gl.glMapBufferRange(GL30.GL_PIXEL_PACK_BUFFER, 0, size, GL30.GL_MAP_READ_BIT);
+        byte[] pixels = copy(mapped, read.width, read.height, read.flipY);
+        gl.glUnmapBuffer(GL30.GL_PIXEL_PACK_BUFFER);
+        gl.glBindBuffer(GL30.GL_PIXEL_PACK_BUFFER, 0);
+
+        Cons<byte[]> callback = read.callback;
+        read.callback = null;
+        read.pending = false;
+        callback.get(pixels);
+    }
+
+    private byte[] copy(ByteBuffer buffer, int width, int height, boolean flipY){
+        byte[] pixels = obtain(width * height * 4);
+        int stride = width * 4;
+        if(flipY){
+            for(int i = 0; i < height; i++){
+                buffer.position((height - i - 1) * stride);
+                buffer.get(pixels, i * stride, stride);
+            }
+        }else{
+            buffer.position(0);
+            buffer.get(pixels);
+        }
+        return pixels;
+    }
+
+    private byte[] obtain(int size){
+        synchronized(pool){
+            for(int i = pool.size - 1; i >= 0; i--){
+                if(pool.get(i).length == size) return pool.remove(i);
+            }
+            //arrays of other sizes are left over from a resize
+            pool.clear();
+        }
+        return new byte[size];
+    }
+
+    private void deleteBuffers(){
+        for(Read read : ring){
+            if(read.handle != 0){
+                Core.gl30.glDeleteBuffer(read.handle);
+                read.handle = 0;
+                read.capacity = 0;
+            }
+        }
+    }
+
+    private static class Read{
+        int handle, capacity, width, height;
+        boolean flipY, pending;
+        long frame;
+        Cons<byte[]> callback;
+    }
+}
@@ -21,7 +21,7 @@ public class GL30Interceptor extends GLInterceptor implements GL30{
         this.gl30 = gl30;
     }
 
-    private void check(){
+    protected void check(){
         int error = gl30.glGetError();
         while(error != GL20.GL_NO_ERROR){
             glProfiler.getListener().onError(error);
@@ -0,0 +1,31 @@
+package io.anuke.arc.graphics.profiling;
+
+import io.anuke.arc.graphics.GL30Readback;
+
+import java.nio.Buffer;
+
+/** A {@link GL30Interceptor} for backends that also support {@link GL30Readback}, so profiling does not hide it. */
+public class GL30ReadbackInterceptor extends GL30Interceptor implements GL30Readback{
+
+    protected final GL30Readback readback;
+
+    protected GL30ReadbackInterceptor(GLProfiler glProfiler, GL30Readback gl30){
+        super(glProfiler, gl30);
+        this.readback = gl30;
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, int offset){
+        calls++;
+        readback.glReadPixels(x, y, width, height, format, type, offset);
+        check();
+    }
+
+    @Override
+    public Buffer glMapBufferRange(int target, int offset, int length, int access){
+        calls++;
+        final Buffer result = readback.glMapBufferRange(target, offset, length, access);
+        check();
+        return result;
+    }
+}
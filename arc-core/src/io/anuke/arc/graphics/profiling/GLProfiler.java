@@ -2,6 +2,7 @@ package io.anuke.arc.graphics.profiling;
 
 import io.anuke.arc.Graphics;
 import io.anuke.arc.graphics.GL30;
+import io.anuke.arc.graphics.GL30Readback;
 import io.anuke.arc.math.FloatCounter;
 
 /**
@@ -28,8 +29,10 @@ public class GLProfiler{
     public GLProfiler(Graphics graphics){
         this.graphics = graphics;
         GL30 gl30 = graphics.getGL30();
-        if(gl30 != null){
-            glInterceptor = new GL30Interceptor(this, graphics.getGL30());
+        if(gl30 instanceof GL30Readback){
+            glInterceptor = new GL30ReadbackInterceptor(this, (GL30Readback)gl30);
+        }else if(gl30 != null){
+            glInterceptor = new GL30Interceptor(this, gl30);
         }else{
             glInterceptor = new GL20Interceptor(this, graphics.getGL20());
         }
@@ -1,14 +1,19 @@
 package io.anuke.arc.input;
 
-import io.anuke.arc.collection.IntArray;
 import io.anuke.arc.util.Time;
 
 /**
  * Queues events that are later passed to the wrapped {@link InputProcessor}.
+ * <p>
+ * Events are written to a ring buffer without locking or allocating: one thread queues events, such as the thread polling the
+ * window system, and one thread drains them, such as the rendering thread, which may be the same one. If events come in faster
+ * than they are drained, the ring is replaced by one twice as large, which the draining thread moves on to once it has read the
+ * old one. Runs of consecutive mouse moves, and of drags of the same pointer, are passed on as only their last event when
+ * drained, so a mouse polled thousands of times per second costs the processor one call per frame. Every event keeps the time
+ * it was queued at, available from {@link #getCurrentEventTime()} while it is processed.
  * @author Nathan Sweet
  */
 public class InputEventQueue implements InputProcessor{
-    static private final int SKIP = -1;
     static private final int KEY_DOWN = 0;
     static private final int KEY_UP = 1;
     static private final int KEY_TYPED = 2;
@@ -17,15 +22,27 @@ public class InputEventQueue implements InputProcessor{
     static private final int TOUCH_DRAGGED = 5;
     static private final int MOUSE_MOVED = 6;
     static private final int SCROLLED = 7;
-    private final IntArray queue = new IntArray();
-    private final IntArray processingQueue = new IntArray();
+    /** Ints per event: the type, the time as two ints, and up to four arguments. */
+    static private final int STRIDE = 8;
+
+    /** The ring events are written to, and the one they are read from; the latter lags behind after growing. */
+    private Ring writeRing, readRing;
+    /** Number of events ever queued and drained; each is only written by its own thread. */
+    private volatile long tail, head;
     private InputProcessor processor;
     private long currentEventTime;
 
     public InputEventQueue(){
+        this(256);
+    }
+
+    /** @param capacity the number of events the queue holds before growing, rounded up to a power of two. */
+    public InputEventQueue(int capacity){
+        writeRing = readRing = new Ring(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1, 0);
     }
 
     public InputEventQueue(InputProcessor processor){
+        this();
         this.processor = processor;
     }
 
@@ -37,181 +54,162 @@ public class InputEventQueue implements InputProcessor{
         this.processor = processor;
     }
 
+    /** Passes the queued events to the processor, or discards them if there is none. Must only be called from one thread. */
     public void drain(){
-        synchronized(this){
-            if(processor == null){
-                queue.clear();
-                return;
-            }
-            processingQueue.addAll(queue);
-            queue.clear();
-        }
-        int[] q = processingQueue.items;
+        long end = tail;
+        long index = head;
         InputProcessor localProcessor = processor;
-        for(int i = 0, n = processingQueue.size; i < n; ){
-            int type = q[i++];
-            currentEventTime = (long)q[i++] << 32 | q[i++] & 0xFFFFFFFFL;
-            switch(type){
-                case SKIP:
-                    i += q[i];
-                    break;
-                case KEY_DOWN:
-                    localProcessor.keyDown(KeyCode.byOrdinal(q[i++]));
-                    break;
-                case KEY_UP:
-                    localProcessor.keyUp(KeyCode.byOrdinal(q[i++]));
-                    break;
-                case KEY_TYPED:
-                    localProcessor.keyTyped((char)q[i++]);
-                    break;
-                case TOUCH_DOWN:
-                    localProcessor.touchDown(q[i++], q[i++], q[i++], KeyCode.byOrdinal(q[i++]));
-                    break;
-                case TOUCH_UP:
-                    localProcessor.touchUp(q[i++], q[i++], q[i++], KeyCode.byOrdinal(q[i++]));
-                    break;
-                case TOUCH_DRAGGED:
-                    localProcessor.touchDragged(q[i++], q[i++], q[i++]);
-                    break;
-                case MOUSE_MOVED:
-                    localProcessor.mouseMoved(q[i++], q[i++]);
-                    break;
-                case SCROLLED:
-                    localProcessor.scrolled(q[i++] / 256f, q[i++] / 256f);
-                    break;
-                default:
-                    throw new RuntimeException();
-            }
-        }
-        processingQueue.clear();
-    }
 
-    private synchronized int next(int nextType, int i){
-        int[] q = queue.items;
-        for(int n = queue.size; i < n; ){
+        while(index < end){
+            Ring ring = readRing;
+            if(index == ring.end){
+                readRing = ring = ring.next;
+            }
+            int[] q = ring.events;
+            int i = ring.offset(index);
             int type = q[i];
-            if(type == nextType) return i;
-            i += 3;
+            long time = (long)q[i + 1] << 32 | q[i + 2] & 0xFFFFFFFFL;
+            int a = q[i + 3], b = q[i + 4], c = q[i + 5], d = q[i + 6];
+
+            //a newer move or drag of the same pointer follows, which makes this one pointless
+            boolean coalesced = false;
+            if((type == MOUSE_MOVED || type == TOUCH_DRAGGED) && index + 1 < end && index + 1 != ring.end){
+                int next = ring.offset(index + 1);
+                coalesced = q[next] == type && (type == MOUSE_MOVED || q[next + 5] == c);
+            }
+
+            //the slot can be reused as soon as it is read, even while the processor runs
+            head = ++index;
+            if(localProcessor == null || coalesced) continue;
+
+            currentEventTime = time;
             switch(type){
-                case SKIP:
-                    i += q[i];
-                    break;
                 case KEY_DOWN:
-                    i++;
+                    localProcessor.keyDown(KeyCode.byOrdinal(a));
                     break;
                 case KEY_UP:
-                    i++;
+                    localProcessor.keyUp(KeyCode.byOrdinal(a));
                     break;
                 case KEY_TYPED:
-                    i++;
+                    localProcessor.keyTyped((char)a);
                     break;
                 case TOUCH_DOWN:
-                    i += 4;
+                    localProcessor.touchDown(a, b, c, KeyCode.byOrdinal(d));
                     break;
                 case TOUCH_UP:
-                    i += 4;
+                    localProcessor.touchUp(a, b, c, KeyCode.byOrdinal(d));
                     break;
                 case TOUCH_DRAGGED:
-                    i += 3;
+                    localProcessor.touchDragged(a, b, c);
                     break;
                 case MOUSE_MOVED:
-                    i += 2;
+                    localProcessor.mouseMoved(a, b);
                     break;
                 case SCROLLED:
-                    i += 2;
+                    localProcessor.scrolled(Float.intBitsToFloat(a), Float.intBitsToFloat(b));
                     break;
                 default:
                     throw new RuntimeException();
             }
         }
-        return -1;
     }
 
-    private void queueTime(){
-        long time = Time.nanos();
-        queue.add((int)(time >> 32));
-        queue.add((int)time);
+    /** @return the number of events waiting to be drained. */
+    public int size(){
+        return (int)(tail - head);
+    }
+
+    /** @return the number of events the queue holds before it has to grow. */
+    public int getCapacity(){
+        return writeRing.capacity;
     }
 
-    public synchronized boolean keyDown(KeyCode keycode){
-        queue.add(KEY_DOWN);
-        queueTime();
-        queue.add(keycode.ordinal());
+    private void queue(int type, int a, int b, int c, int d){
+        long index = tail;
+        Ring ring = writeRing;
+        //full: start a larger ring, which the reader moves on to once it reaches this point
+        if(index - Math.max(head, ring.start) >= ring.capacity){
+            Ring larger = new Ring(ring.capacity * 2, index);
+            ring.next = larger;
+            ring.end = index;
+            writeRing = ring = larger;
+        }
+
+        int[] q = ring.events;
+        int i = ring.offset(index);
+        long time = Time.nanos();
+        q[i] = type;
+        q[i + 1] = (int)(time >> 32);
+        q[i + 2] = (int)time;
+        q[i + 3] = a;
+        q[i + 4] = b;
+        q[i + 5] = c;
+        q[i + 6] = d;
+        //publishes the event to the reader
+        tail = index + 1;
+    }
+
+    public boolean keyDown(KeyCode keycode){
+        queue(KEY_DOWN, keycode.ordinal(), 0, 0, 0);
         return false;
     }
 
-    public synchronized boolean keyUp(KeyCode keycode){
-        queue.add(KEY_UP);
-        queueTime();
-        queue.add(keycode.ordinal());
+    public boolean keyUp(KeyCode keycode){
+        queue(KEY_UP, keycode.ordinal(), 0, 0, 0);
         return false;
     }
 
-    public synchronized boolean keyTyped(char character){
-        queue.add(KEY_TYPED);
-        queueTime();
-        queue.add(character);
+    public boolean keyTyped(char character){
+        queue(KEY_TYPED, character, 0, 0, 0);
         return false;
     }
 
-    public synchronized boolean touchDown(int screenX, int screenY, int pointer, KeyCode button){
-        queue.add(TOUCH_DOWN);
-        queueTime();
-        queue.add(screenX);
-        queue.add(screenY);
-        queue.add(pointer);
-        queue.add(button.ordinal());
+    public boolean touchDown(int screenX, int screenY, int pointer, KeyCode button){
+        queue(TOUCH_DOWN, screenX, screenY, pointer, button.ordinal());
         return false;
     }
 
-    public synchronized boolean touchUp(int screenX, int screenY, int pointer, KeyCode button){
-        queue.add(TOUCH_UP);
-        queueTime();
-        queue.add(screenX);
-        queue.add(screenY);
-        queue.add(pointer);
-        queue.add(button.ordinal());
+    public boolean touchUp(int screenX, int screenY, int pointer, KeyCode button){
+        queue(TOUCH_UP, screenX, screenY, pointer, button.ordinal());
         return false;
     }
 
-    public synchronized boolean touchDragged(int screenX, int screenY, int pointer){
-        // Skip any queued touch dragged events for the same pointer.
-        for(int i = next(TOUCH_DRAGGED, 0); i >= 0; i = next(TOUCH_DRAGGED, i + 6)){
-            if(queue.get(i + 5) == pointer){
-                queue.set(i, SKIP);
-                queue.set(i + 3, 3);
-            }
-        }
-        queue.add(TOUCH_DRAGGED);
-        queueTime();
-        queue.add(screenX);
-        queue.add(screenY);
-        queue.add(pointer);
+    public boolean touchDragged(int screenX, int screenY, int pointer){
+        queue(TOUCH_DRAGGED, screenX, screenY, pointer, 0);
         return false;
     }
 
-    public synchronized boolean mouseMoved(int screenX, int screenY){
-        // Skip any queued mouse moved events.
-        for(int i = next(MOUSE_MOVED, 0); i >= 0; i = next(MOUSE_MOVED, i + 5)){
-            queue.set(i, SKIP);
-            queue.set(i + 3, 2);
-        }
-        queue.add(MOUSE_MOVED);
-        queueTime();
-        queue.add(screenX);
-        queue.add(screenY);
+    public boolean mouseMoved(int screenX, int screenY){
+        queue(MOUSE_MOVED, screenX, screenY, 0, 0);
         return false;
     }
 
-    public synchronized boolean scrolled(float amountX, float amountY){
-        queue.add(SCROLLED);
-        queueTime();
-        queue.add((int)(amountX * 256));
-        queue.add((int)(amountY * 256));
+    public boolean scrolled(float amountX, float amountY){
+        queue(SCROLLED, Float.floatToRawIntBits(amountX), Float.floatToRawIntBits(amountY), 0, 0);
         return false;
     }
 
     public long getCurrentEventTime(){
         return currentEventTime;
     }
+
+    private static class Ring{
+        final int[] events;
+        final int capacity;
+        /** The index of the first event written to this ring. */
+        final long start;
+        /** Set by the writer when it moves on to the next ring, before publishing any event in it. */
+        long end = Long.MAX_VALUE;
+        Ring next;
+
+        Ring(int capacity, long start){
+            this.capacity = capacity;
+            this.start = start;
+            events = new int[capacity * STRIDE];
+        }
+
+        int offset(long index){
+            return (int)(index & (capacity - 1)) * STRIDE;
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package io.anuke.arc.math.pathfinding;
+
+/**
+ * Priority queue of grid cells, stored as longs with the priority in the high bits, so that no node objects are needed.
+ * Cells are not updated in place when their priority improves; they are added again, and outdated entries are skipped
+ * when polled.
+ */
+final class CellHeap{
+    private long[] items = new long[256];
+    int size;
+
+    void add(int priority, int cell){
+        if(size == items.length){
+            long[] larger = new long[size << 1];
+            System.arraycopy(items, 0, larger, 0, size);
+            items = larger;
+        }
+
+        long item = ((long)priority << 32) | (cell & 0xFFFFFFFFL);
+        int index = size++;
+        while(index > 0){
+            int parent = (index - 1) >>> 1;
+            if(items[parent] <= item) break;
+            items[index] = items[parent];
+            index = parent;
+        }
+        items[index] = item;
+    }
+
+    /** @return the entry with the lowest priority; use {@link #cell(long)} and {@link #priority(long)} to read it. */
+    long poll(){
+        long[] items = this.items;
+        long first = items[0];
+        long last = items[--size];
+
+        int index = 0, half = size >>> 1;
+        while(index < half){
+            int child = (index << 1) + 1;
+            if(child + 1 < size && items[child + 1] < items[child]) child++;
+            if(last <= items[child]) break;
+            items[index] = items[child];
+            index = child;
+        }
+        items[index] = last;
+        return first;
+    }
+
+    boolean isEmpty(){
+        return size == 0;
+    }
+
+    void clear(){
+        size = 0;
+    }
+
+    static int cell(long item){
+        return (int)item;
+    }
+
+    static int priority(long item){
+        return (int)(item >>> 32);
+    }
+}
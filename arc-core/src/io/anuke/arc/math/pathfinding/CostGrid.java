@@ -0,0 +1,57 @@
+package io.anuke.arc.math.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Costs of moving into the cells of a grid, for {@link GridPathfinder} and {@link FlowField}. Cells are indexed as
+ * <code>x + y * width</code>. Moving straight into a cell costs {@link #straightCost} times its cost, and moving diagonally
+ * {@link #diagonalCost} times its cost. Diagonal moves are only allowed if both cells beside them can be entered, so paths
+ * never cut corners.
+ */
+public class CostGrid{
+    /** Cost of cells that cannot be entered. */
+    public static final int solid = 0;
+    /** Multipliers of cell costs for straight and diagonal moves; their ratio approximates the square root of 2. */
+    public static final int straightCost = 10, diagonalCost = 14;
+
+    public final int width, height;
+    final int[] costs;
+
+    /** Creates a grid where every cell costs 1. */
+    public CostGrid(int width, int height){
+        this.width = width;
+        this.height = height;
+        this.costs = new int[width * height];
+        Arrays.fill(costs, 1);
+    }
+
+    /** @return the cost of the cell, or {@link #solid} if it is out of bounds. */
+    public int get(int x, int y){
+        return in(x, y) ? costs[x + y * width] : solid;
+    }
+
+    /**
+     * Sets the cost of a cell. Costs should be kept small enough that the cost of the longest path fits into an int.
+     * {@link FlowField Flow fields} must be {@link FlowField#repair(int, int) told} about changes.
+     */
+    public void set(int x, int y, int cost){
+        if(cost < 0) throw new IllegalArgumentException("Costs cannot be negative: " + cost);
+        costs[x + y * width] = cost;
+    }
+
+    public void fill(int cost){
+        Arrays.fill(costs, cost);
+    }
+
+    public boolean passable(int x, int y){
+        return in(x, y) && costs[x + y * width] != solid;
+    }
+
+    public boolean in(int x, int y){
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    public int index(int x, int y){
+        return x + y * width;
+    }
+}
@@ -0,0 +1,302 @@
+package io.anuke.arc.math.pathfinding;
+
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.collection.IntQueue;
+import io.anuke.arc.math.geom.Point2;
+import io.anuke.arc.util.async.AsyncExecutor;
+import io.anuke.arc.util.async.AsyncResult;
+
+import java.util.Arrays;
+
+import static io.anuke.arc.math.geom.Geometry.d8;
+import static io.anuke.arc.math.pathfinding.CostGrid.*;
+
+/**
+ * The cost of the cheapest path from every cell of a {@link CostGrid} to the nearest of a set of targets. Any number of
+ * units can then move towards the targets by stepping to the neighbor with the lowest cost, without searching paths of
+ * their own.
+ * <p>
+ * Fields are calculated with Dijkstra's algorithm from all targets at once. When only a few cells change, call
+ * {@link #repair(int, int)} for each of them: {@link #update()} then only recalculates the cells whose cost depended on
+ * them, instead of the whole grid. Several fields over the same grid, such as one per team, can be updated in parallel
+ * with {@link #updateAll(AsyncExecutor, FlowField...)}.
+ */
+public class FlowField{
+    /** Distance of cells that cannot reach any target. */
+    public static final int unreachable = Integer.MAX_VALUE;
+
+    private final CostGrid grid;
+    /** Costs the distances were calculated with, so that changes can be compared against them. */
+    private final int[] costs, distance, invalid;
+    private final IntArray targets = new IntArray(), repairs = new IntArray(), invalidated = new IntArray();
+    private final IntQueue queue = new IntQueue();
+    private final CellHeap heap = new CellHeap();
+    private boolean diagonal = true, calculated;
+    private int stamp;
+
+    public FlowField(CostGrid grid){
+        this.grid = grid;
+        int cells = grid.width * grid.height;
+        costs = new int[cells];
+        distance = new int[cells];
+        invalid = new int[cells];
+        Arrays.fill(distance, unreachable);
+    }
+
+    /** Sets whether units can move diagonally. Changing it recalculates the field on the next update. Defaults to true. */
+    public void setDiagonal(boolean diagonal){
+        this.diagonal = diagonal;
+        calculated = false;
+    }
+
+    /** Adds a target. The field is recalculated on the next update. */
+    public void addTarget(int x, int y){
+        targets.add(grid.index(x, y));
+        calculated = false;
+    }
+
+    /** Removes all targets. The field is recalculated on the next update. */
+    public void clearTargets(){
+        targets.clear();
+        calculated = false;
+    }
+
+    /** Marks a cell whose cost changed, to be repaired on the next update. */
+    public void repair(int x, int y){
+        repairs.add(grid.index(x, y));
+    }
+
+    /** Calculates the whole field if targets changed, and otherwise repairs the cells marked with {@link #repair(int, int)}. */
+    public void update(){
+        if(!calculated){
+            calculate();
+        }else if(repairs.size > 0){
+            applyRepairs();
+        }
+    }
+
+    /** Calculates the whole field. */
+    public void calculate(){
+        System.arraycopy(grid.costs, 0, costs, 0, costs.length);
+        Arrays.fill(distance, unreachable);
+        repairs.clear();
+        heap.clear();
+
+        for(int i = 0; i < targets.size; i++){
+            int target = targets.get(i);
+            if(costs[target] != solid){
+                distance[target] = 0;
+                heap.add(0, target);
+            }
+        }
+        propagate();
+        calculated = true;
+    }
+
+    /**
+     * Updates several fields of the same grid in parallel, one per thread of the executor, and waits for them. The grid
+     * must not change meanwhile.
+     */
+    public static void updateAll(AsyncExecutor executor, FlowField... fields){
+        if(fields.length == 0) return;
+
+        AsyncResult<?>[] results = new AsyncResult<?>[fields.length];
+        for(int i = 1; i < fields.length; i++){
+            results[i] = executor.submit(fields[i]::update);
+        }
+        fields[0].update();
+        for(int i = 1; i < fields.length; i++){
+            results[i].get();
+        }
+    }
+
+    /** @return the cost of the cheapest path from the cell to a target, or {@link #unreachable}. */
+    public int getDistance(int x, int y){
+        return grid.in(x, y) ? distance[grid.index(x, y)] : unreachable;
+    }
+
+    /**
+     * @return the index into {@link io.anuke.arc.math.geom.Geometry#d8} of the direction to move in from the cell to get
+     * closer to a target, or -1 if the cell is a target or cannot reach one.
+     */
+    public int getDirection(int x, int y){
+        if(!grid.in(x, y)) return -1;
+        int cell = grid.index(x, y);
+        if(distance[cell] == 0 || distance[cell] == unreachable) return -1;
+
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for(int i = 0; i < 8; i += diagonal ? 1 : 2){
+            if(!canMove(x, y, i)) continue;
+            int next = cell + d8[i].x + d8[i].y * grid.width;
+            if(distance[next] == unreachable) continue;
+
+            long total = (long)distance[next] + costs[next] * step(i);
+            if(total < bestDistance){
+                bestDistance = total;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** @return the index of the cell to move to from this cell to get closer to a target, or -1. */
+    public int getNext(int x, int y){
+        int direction = getDirection(x, y);
+        return direction == -1 ? -1 : grid.index(x + d8[direction].x, y + d8[direction].y);
+    }
+
+    private void applyRepairs(){
+        if(++stamp == Integer.MAX_VALUE){
+            stamp = 1;
+            Arrays.fill(invalid, 0);
+        }
+        invalidated.clear();
+        queue.clear();
+
+        //find every cell whose distance may have depended on cells that became more expensive, with the old costs
+        for(int i = 0; i < repairs.size; i++){
+            int cell = repairs.get(i), now = grid.costs[cell], before = costs[cell];
+            if(now == before || (before != solid && now != solid && now < before)) continue;
+
+            queue.addLast(cell);
+            if(now == solid){
+                invalidate(cell);
+                invalidateCorners(cell);
+            }
+        }
+        while(queue.size > 0){
+            invalidateDependents(queue.removeFirst());
+        }
+
+        for(int i = 0; i < repairs.size; i++){
+            int cell = repairs.get(i);
+            costs[cell] = grid.costs[cell];
+            if(costs[cell] == solid) distance[cell] = unreachable;
+        }
+        for(int i = 0; i < invalidated.size; i++){
+            distance[invalidated.get(i)] = unreachable;
+        }
+
+        //recalculate invalidated cells from their valid neighbors, and let cells near cheaper ones improve
+        heap.clear();
+        for(int i = 0; i < targets.size; i++){
+            int target = targets.get(i);
+            if(costs[target] != solid && distance[target] != 0){
+                distance[target] = 0;
+                heap.add(0, target);
+            }
+        }
+        for(int i = 0; i < invalidated.size; i++){
+            reseed(invalidated.get(i));
+        }
+        int width = grid.width;
+        for(int i = 0; i < repairs.size; i++){
+            int cell = repairs.get(i), x = cell % width, y = cell / width;
+            reseed(cell);
+            for(int d = 0; d < 8; d++){
+                if(grid.in(x + d8[d].x, y + d8[d].y)) reseed(cell + d8[d].x + d8[d].y * width);
+            }
+        }
+        repairs.clear();
+        propagate();
+    }
+
+    private void invalidate(int cell){
+        if(invalid[cell] == stamp || distance[cell] == 0 || distance[cell] == unreachable) return;
+        invalid[cell] = stamp;
+        invalidated.add(cell);
+        queue.addLast(cell);
+    }
+
+    /** Invalidates cells whose cheapest move went into this cell. */
+    private void invalidateDependents(int cell){
+        int width = grid.width, x = cell % width, y = cell / width;
+        if(distance[cell] == unreachable) return;
+
+        for(int i = 0; i < 8; i += diagonal ? 1 : 2){
+            if(!canMove(x, y, i)) continue;
+            int from = cell + d8[i].x + d8[i].y * width;
+            if(distance[from] != unreachable && (long)distance[from] == (long)distance[cell] + costs[cell] * step(i)){
+                invalidate(from);
+            }
+        }
+    }
+
+    /** Invalidates cells whose cheapest move was a diagonal past the corner of this cell, which is now solid. */
+    private void invalidateCorners(int cell){
+        if(!diagonal) return;
+        int width = grid.width, x = cell % width, y = cell / width;
+
+        for(int i = 0; i < 8; i += 2){
+            Point2 a = d8[i], b = d8[(i + 2) % 8];
+            int ax = x + a.x, ay = y + a.y, bx = x + b.x, by = y + b.y;
+            if(!grid.in(ax, ay) || !grid.in(bx, by)) continue;
+
+            int first = ax + ay * width, second = bx + by * width;
+            if(costs[first] == solid || costs[second] == solid) continue;
+            if(dependsOn(first, second)) invalidate(first);
+            if(dependsOn(second, first)) invalidate(second);
+        }
+    }
+
+    private boolean dependsOn(int from, int to){
+        return distance[from] != unreachable && distance[to] != unreachable
+            && (long)distance[from] == (long)distance[to] + costs[to] * diagonalCost;
+    }
+
+    /** Lowers the distance of a cell to the cheapest move into a neighbor with a known distance. */
+    private void reseed(int cell){
+        if(costs[cell] == solid) return;
+        int width = grid.width, x = cell % width, y = cell / width;
+        long best = distance[cell];
+
+        for(int i = 0; i < 8; i += diagonal ? 1 : 2){
+            if(!canMove(x, y, i)) continue;
+            int next = cell + d8[i].x + d8[i].y * width;
+            if(distance[next] == unreachable) continue;
+            best = Math.min(best, (long)distance[next] + costs[next] * step(i));
+        }
+
+        if(best < distance[cell]){
+            distance[cell] = (int)best;
+            heap.add((int)best, cell);
+        }
+    }
+
+    private void propagate(){
+        int width = grid.width;
+        CellHeap heap = this.heap;
+        while(!heap.isEmpty()){
+            long item = heap.poll();
+            int cell = CellHeap.cell(item), cost = CellHeap.priority(item);
+            if(cost != distance[cell]) continue;
+
+            int x = cell % width, y = cell / width, enter = costs[cell];
+            for(int i = 0; i < 8; i += diagonal ? 1 : 2){
+                if(!canMove(x, y, i)) continue;
+                int from = cell + d8[i].x + d8[i].y * width;
+                int total = cost + enter * step(i);
+                if(total < distance[from]){
+                    distance[from] = total;
+                    heap.add(total, from);
+                }
+            }
+        }
+    }
+
+    /** @return whether units can move between the cell and its neighbor in a direction, with the current costs. */
+    private boolean canMove(int x, int y, int direction){
+        Point2 d = d8[direction];
+        if(!passable(x + d.x, y + d.y)) return false;
+        return (direction & 1) == 0 || (passable(x + d.x, y) && passable(x, y + d.y));
+    }
+
+    private boolean passable(int x, int y){
+        return grid.in(x, y) && costs[x + y * grid.width] != solid;
+    }
+
+    private static int step(int direction){
+        return (direction & 1) == 0 ? straightCost : diagonalCost;
+    }
+}
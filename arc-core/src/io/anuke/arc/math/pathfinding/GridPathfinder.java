@@ -0,0 +1,244 @@
+package io.anuke.arc.math.pathfinding;
+
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.math.geom.Point2;
+
+import java.util.Arrays;
+
+import static io.anuke.arc.math.geom.Geometry.d8;
+import static io.anuke.arc.math.pathfinding.CostGrid.*;
+
+/**
+ * Finds shortest paths between two cells of a {@link CostGrid} with A*. All search state is kept in arrays the size of
+ * the grid, which are reused between searches without clearing, so searching allocates nothing.
+ * <p>
+ * With {@link #setJumpPoints(boolean) jump points}, searches skip over the many equivalent paths of open areas, which
+ * makes them much faster on large grids, but cell costs are ignored: every passable cell costs the same.
+ * <p>
+ * A pathfinder must only be used by one thread at a time.
+ */
+public class GridPathfinder{
+    private final CostGrid grid;
+    private final int[] cost, parent, seen, closed;
+    private final CellHeap open = new CellHeap();
+    private boolean diagonal = true, jumpPoints;
+    private int search, expanded, lastCost = -1;
+
+    public GridPathfinder(CostGrid grid){
+        this.grid = grid;
+        int cells = grid.width * grid.height;
+        cost = new int[cells];
+        parent = new int[cells];
+        seen = new int[cells];
+        closed = new int[cells];
+    }
+
+    /** Sets whether paths can move diagonally. Defaults to true. */
+    public void setDiagonal(boolean diagonal){
+        this.diagonal = diagonal;
+    }
+
+    /** Sets whether jump point search is used, which ignores cell costs. Only used for diagonal paths. Defaults to false. */
+    public void setJumpPoints(boolean jumpPoints){
+        this.jumpPoints = jumpPoints;
+    }
+
+    /** @return the number of cells expanded by the last search. */
+    public int getExpanded(){
+        return expanded;
+    }
+
+    /**
+     * @return the cost of the last path found, or -1 if none was. Each move costs {@link CostGrid#straightCost} or
+     * {@link CostGrid#diagonalCost} times the cost of the cell moved into, or times 1 with jump points.
+     */
+    public int getCost(){
+        return lastCost;
+    }
+
+    /**
+     * Finds the cheapest path between two cells.
+     * @param out Cleared, then receives the indices of the cells of the path, including start and target.
+     * @return whether a path exists.
+     */
+    public boolean findPath(int startX, int startY, int targetX, int targetY, IntArray out){
+        out.clear();
+        expanded = 0;
+        lastCost = -1;
+        if(!grid.passable(startX, startY) || !grid.passable(targetX, targetY)) return false;
+
+        nextSearch();
+        int start = grid.index(startX, startY), target = grid.index(targetX, targetY);
+        boolean jump = jumpPoints && diagonal;
+
+        open.clear();
+        seen[start] = search;
+        cost[start] = 0;
+        parent[start] = -1;
+        open.add(heuristic(startX, startY, targetX, targetY), start);
+
+        while(!open.isEmpty()){
+            int cell = CellHeap.cell(open.poll());
+            if(closed[cell] == search) continue;
+            closed[cell] = search;
+            expanded++;
+
+            if(cell == target){
+                lastCost = cost[cell];
+                if(jump){
+                    expandJumps(target, out);
+                }else{
+                    trace(target, out);
+                }
+                return true;
+            }
+
+            if(jump){
+                expandJumpPoint(cell, targetX, targetY, target);
+            }else{
+                expand(cell, targetX, targetY);
+            }
+        }
+        return false;
+    }
+
+    private void expand(int cell, int targetX, int targetY){
+        int width = grid.width, x = cell % width, y = cell / width;
+        int[] costs = grid.costs;
+
+        for(int i = 0; i < 8; i += diagonal ? 1 : 2){
+            int nx = x + d8[i].x, ny = y + d8[i].y;
+            if(!grid.passable(nx, ny)) continue;
+            boolean corner = (i & 1) != 0;
+            if(corner && (!grid.passable(x + d8[i].x, y) || !grid.passable(x, y + d8[i].y))) continue;
+
+            int next = nx + ny * width;
+            if(closed[next] == search) continue;
+
+            int nextCost = cost[cell] + costs[next] * (corner ? diagonalCost : straightCost);
+            if(seen[next] != search || nextCost < cost[next]){
+                seen[next] = search;
+                cost[next] = nextCost;
+                parent[next] = cell;
+                open.add(nextCost + heuristic(nx, ny, targetX, targetY), next);
+            }
+        }
+    }
+
+    private void expandJumpPoint(int cell, int targetX, int targetY, int target){
+        int width = grid.width, x = cell % width, y = cell / width;
+        int from = parent[cell];
+
+        if(from == -1){
+            for(int i = 0; i < 8; i++){
+                Point2 d = d8[i];
+                if((i & 1) != 0 && (!grid.passable(x + d.x, y) || !grid.passable(x, y + d.y))) continue;
+                addJump(cell, x, y, d.x, d.y, targetX, targetY, target);
+            }
+            return;
+        }
+
+        int dx = Integer.signum(x - from % width), dy = Integer.signum(y - from / width);
+
+        //only neighbors that cannot be reached as cheaply without passing through this cell
+        if(dx != 0 && dy != 0){
+            boolean vertical = grid.passable(x, y + dy), horizontal = grid.passable(x + dx, y);
+            if(vertical) addJump(cell, x, y, 0, dy, targetX, targetY, target);
+            if(horizontal) addJump(cell, x, y, dx, 0, targetX, targetY, target);
+            if(vertical && horizontal) addJump(cell, x, y, dx, dy, targetX, targetY, target);
+        }else if(dx != 0){
+            boolean next = grid.passable(x + dx, y), up = grid.passable(x, y + 1), down = grid.passable(x, y - 1);
+            if(next){
+                addJump(cell, x, y, dx, 0, targetX, targetY, target);
+                if(up) addJump(cell, x, y, dx, 1, targetX, targetY, target);
+                if(down) addJump(cell, x, y, dx, -1, targetX, targetY, target);
+            }
+            if(up) addJump(cell, x, y, 0, 1, targetX, targetY, target);
+            if(down) addJump(cell, x, y, 0, -1, targetX, targetY, target);
+        }else{
+            boolean next = grid.passable(x, y + dy), right = grid.passable(x + 1, y), left = grid.passable(x - 1, y);
+            if(next){
+                addJump(cell, x, y, 0, dy, targetX, targetY, target);
+                if(right) addJump(cell, x, y, 1, dy, targetX, targetY, target);
+                if(left) addJump(cell, x, y, -1, dy, targetX, targetY, target);
+            }
+            if(right) addJump(cell, x, y, 1, 0, targetX, targetY, target);
+            if(left) addJump(cell, x, y, -1, 0, targetX, targetY, target);
+        }
+    }
+
+    private void addJump(int cell, int x, int y, int dx, int dy, int targetX, int targetY, int target){
+        int point = jump(x + dx, y + dy, dx, dy, target);
+        if(point == -1 || closed[point] == search) return;
+
+        int width = grid.width, px = point % width, py = point / width;
+        int nextCost = cost[cell] + heuristic(x, y, px, py);
+        if(seen[point] != search || nextCost < cost[point]){
+            seen[point] = search;
+            cost[point] = nextCost;
+            parent[point] = cell;
+            open.add(nextCost + heuristic(px, py, targetX, targetY), point);
+        }
+    }
+
+    /** @return the next jump point in a direction, or -1 if there is none. */
+    private int jump(int x, int y, int dx, int dy, int target){
+        CostGrid grid = this.grid;
+        while(true){
+            if(!grid.passable(x, y)) return -1;
+            int cell = x + y * grid.width;
+            if(cell == target) return cell;
+
+            if(dx != 0 && dy != 0){
+                if(jump(x + dx, y, dx, 0, target) != -1 || jump(x, y + dy, 0, dy, target) != -1) return cell;
+                if(!grid.passable(x + dx, y) || !grid.passable(x, y + dy)) return -1;
+            }else if(dx != 0){
+                if((grid.passable(x, y - 1) && !grid.passable(x - dx, y - 1)) || (grid.passable(x, y + 1) && !grid.passable(x - dx, y + 1))) return cell;
+            }else{
+                if((grid.passable(x - 1, y) && !grid.passable(x - 1, y - dy)) || (grid.passable(x + 1, y) && !grid.passable(x + 1, y - dy))) return cell;
+            }
+
+            x += dx;
+            y += dy;
+        }
+    }
+
+    /** Octile distance, which never overestimates as cells cost at least 1. */
+    private int heuristic(int x, int y, int targetX, int targetY){
+        int dx = Math.abs(x - targetX), dy = Math.abs(y - targetY);
+        if(!diagonal) return (dx + dy) * straightCost;
+        return straightCost * (dx + dy) + (diagonalCost - 2 * straightCost) * Math.min(dx, dy);
+    }
+
+    private void trace(int target, IntArray out){
+        for(int cell = target; cell != -1; cell = parent[cell]){
+            out.add(cell);
+        }
+        out.reverse();
+    }
+
+    /** Traces the jump points and fills in the straight and diagonal runs between them. */
+    private void expandJumps(int target, IntArray out){
+        int width = grid.width;
+        out.add(target);
+        for(int cell = target; parent[cell] != -1; cell = parent[cell]){
+            int from = parent[cell];
+            int x = cell % width, y = cell / width, fx = from % width, fy = from / width;
+            int dx = Integer.signum(fx - x), dy = Integer.signum(fy - y);
+            while(x != fx || y != fy){
+                x += dx;
+                y += dy;
+                out.add(x + y * width);
+            }
+        }
+        out.reverse();
+    }
+
+    private void nextSearch(){
+        if(++search == Integer.MAX_VALUE){
+            search = 1;
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+        }
+    }
+}
@@ -38,6 +38,8 @@ public class Element implements Layout{
     protected float parentAlpha = 1f;
     protected Vector2 translation = new Vector2(0, 0);
     Group parent;
+    /** Whether an ancestor is cached, so that changes to this element have to invalidate it. */
+    boolean insideCache;
     float originX, originY;
     float scaleX = 1, scaleY = 1;
     float rotation;
@@ -47,6 +49,9 @@ public class Element implements Layout{
     private boolean visible = true;
     private Object userObject;
     private boolean needsLayout = true;
+    /** Used by {@link LayoutScheduler}. */
+    boolean layoutQueued;
+    int layoutDepth;
     protected boolean fillParent;
     private boolean layoutEnabled = true;
     private Boolp visibility;
@@ -68,6 +73,7 @@ public class Element implements Layout{
         Array<Action> actions = this.actions;
         if(actions.size > 0){
             if(stage != null && stage.getActionsRequestRendering()) Core.graphics.requestRendering();
+            invalidateCache();
             for(int i = 0; i < actions.size; i++){
                 Action action = actions.get(i);
                 if(action.act(delta) && i < actions.size){
@@ -328,7 +334,9 @@ public class Element implements Layout{
      * @param stage May be null if the actor or any parent is no longer in a stage.
      */
     protected void setScene(Scene stage){
+        if(this.stage != null && this.stage != stage) this.stage.layouts.remove(this);
         this.stage = stage;
+        if(stage != null && needsLayout()) scheduleLayout();
     }
 
     /** Returns true if this actor is the same as or is the descendant of the specified actor. */
@@ -368,6 +376,12 @@ public class Element implements Layout{
      */
     protected void setParent(Group parent){
         this.parent = parent;
+        setInsideCache(parent != null && (parent.isCached() || parent.insideCache));
+    }
+
+    /** Called when this element enters or leaves a cached group, directly or through its ancestors. */
+    void setInsideCache(boolean insideCache){
+        this.insideCache = insideCache;
     }
 
     /** Returns true if input events are processed by this actor. */
@@ -390,7 +404,10 @@ public class Element implements Layout{
 
     /** If false, the actor will not be drawn and will not receive touch events. Default is true. */
     public void visible(boolean visible){
-        this.visible = visible;
+        if(this.visible != visible){
+            this.visible = visible;
+            invalidateCache();
+        }
     }
 
     /** Returns an application specific object for convenience, or null. */
@@ -412,6 +429,7 @@ public class Element implements Layout{
         if(this.x != x){
             this.x = x;
             positionChanged();
+            boundsChanged();
         }
     }
 
@@ -434,6 +452,7 @@ public class Element implements Layout{
         if(this.y != y){
             this.y = y;
             positionChanged();
+            boundsChanged();
         }
     }
 
@@ -453,6 +472,7 @@ public class Element implements Layout{
             this.x = x;
             this.y = y;
             positionChanged();
+            boundsChanged();
         }
     }
 
@@ -475,6 +495,7 @@ public class Element implements Layout{
             this.x = x;
             this.y = y;
             positionChanged();
+            boundsChanged();
         }
     }
 
@@ -484,6 +505,7 @@ public class Element implements Layout{
             this.x += x;
             this.y += y;
             positionChanged();
+            boundsChanged();
         }
     }
 
@@ -495,6 +517,7 @@ public class Element implements Layout{
         if(this.width != width){
             this.width = width;
             sizeChanged();
+            boundsChanged();
         }
     }
 
@@ -506,6 +529,7 @@ public class Element implements Layout{
         if(this.height != height){
             this.height = height;
             sizeChanged();
+            boundsChanged();
         }
     }
 
@@ -519,8 +543,14 @@ public class Element implements Layout{
         return x + width;
     }
 
+    /** Notifies the parent that the area in which this element can be hit has changed. */
+    private void boundsChanged(){
+        if(parent != null) parent.invalidateHitGrid();
+    }
+
     /** Called when the actor's position has been changed. */
     protected void positionChanged(){
+        invalidateCache();
     }
 
     /** Called when the actor's size has been changed. */
@@ -530,6 +560,7 @@ public class Element implements Layout{
 
     /** Called when the actor's rotation has been changed. */
     protected void rotationChanged(){
+        invalidateCache();
     }
 
     public void setSize(float size){
@@ -542,6 +573,7 @@ public class Element implements Layout{
             this.width = width;
             this.height = height;
             sizeChanged();
+            boundsChanged();
         }
     }
 
@@ -551,6 +583,7 @@ public class Element implements Layout{
             width += size;
             height += size;
             sizeChanged();
+            boundsChanged();
         }
     }
 
@@ -560,6 +593,7 @@ public class Element implements Layout{
             this.width += width;
             this.height += height;
             sizeChanged();
+            boundsChanged();
         }
     }
 
@@ -569,11 +603,13 @@ public class Element implements Layout{
             this.x = x;
             this.y = y;
             positionChanged();
+            boundsChanged();
         }
         if(this.width != width || this.height != height){
             this.width = width;
             this.height = height;
             sizeChanged();
+            boundsChanged();
         }
     }
 
@@ -622,6 +658,7 @@ public class Element implements Layout{
 
     public void setScaleX(float scaleX){
         this.scaleX = scaleX;
+        boundsChanged();
     }
 
     public float getScaleY(){
@@ -630,30 +667,35 @@ public class Element implements Layout{
 
     public void setScaleY(float scaleY){
         this.scaleY = scaleY;
+        boundsChanged();
     }
 
     /** Sets the scale for both X and Y */
     public void setScale(float scaleXY){
         this.scaleX = scaleXY;
         this.scaleY = scaleXY;
+        boundsChanged();
     }
 
     /** Sets the scale X and scale Y. */
     public void setScale(float scaleX, float scaleY){
         this.scaleX = scaleX;
         this.scaleY = scaleY;
+        boundsChanged();
     }
 
     /** Adds the specified scale to the current scale. */
     public void scaleBy(float scale){
         scaleX += scale;
         scaleY += scale;
+        boundsChanged();
     }
 
     /** Adds the specified scale to the current scale. */
     public void scaleBy(float scaleX, float scaleY){
         this.scaleX += scaleX;
         this.scaleY += scaleY;
+        boundsChanged();
     }
 
     public float getRotation(){
@@ -664,6 +706,7 @@ public class Element implements Layout{
         if(this.rotation != degrees){
             this.rotation = degrees;
             rotationChanged();
+            boundsChanged();
         }
     }
 
@@ -672,6 +715,7 @@ public class Element implements Layout{
         if(this.rotation != degrees){
             this.rotation = degrees;
             rotationChanged();
+            boundsChanged();
         }
     }
 
@@ -680,6 +724,7 @@ public class Element implements Layout{
         if(amountInDegrees != 0){
             rotation += amountInDegrees;
             rotationChanged();
+            boundsChanged();
         }
     }
 
@@ -747,6 +792,8 @@ public class Element implements Layout{
         if(children.get(index) == this) return;
         if(!children.removeValue(this, true)) return;
         children.insert(index, this);
+        invalidateCache();
+        parent.invalidateHitGrid();
     }
 
     /** Calls {@link #clipBegin(float, float, float, float)} to clip this actor's bounds. */
@@ -922,6 +969,7 @@ public class Element implements Layout{
 
         if(!needsLayout) return;
         needsLayout = false;
+        if(stage != null) stage.layouts.count();
         layout();
     }
 
@@ -932,13 +980,29 @@ public class Element implements Layout{
 
     public void invalidate(){
         needsLayout = true;
+        invalidateCache();
+        scheduleLayout();
+    }
+
+    /** Queues this element to be validated before the scene is next drawn. */
+    protected void scheduleLayout(){
+        if(stage != null) stage.layouts.queue(this);
+    }
+
+    /**
+     * Marks the recorded rendering of every cached ancestor as stale. This is called automatically on invalidation, but must
+     * be called manually when changing how this element looks in other ways, such as its color.
+     * @see Group#setCached(boolean)
+     */
+    public void invalidateCache(){
+        if(insideCache) parent.invalidateCache();
     }
 
     public void invalidateHierarchy(){
         if(!layoutEnabled) return;
         invalidate();
         Group parent = getParent();
-        if(parent != null) parent.invalidateHierarchy();
+        if(parent != null) parent.invalidateFromChild();
     }
 
 
@@ -956,6 +1020,7 @@ public class Element implements Layout{
     public void setTranslation(float x, float y){
         translation.x = x;
         translation.y = y;
+        boundsChanged();
     }
 
     public Vector2 getTranslation(){
@@ -4,12 +4,14 @@ import io.anuke.arc.collection.Array;
 import io.anuke.arc.collection.SnapshotArray;
 import io.anuke.arc.func.Cons;
 import io.anuke.arc.func.Boolf;
+import io.anuke.arc.graphics.g2d.BatchCapture;
 import io.anuke.arc.graphics.g2d.Draw;
 import io.anuke.arc.math.Affine2;
 import io.anuke.arc.math.Matrix3;
 import io.anuke.arc.math.geom.Rectangle;
 import io.anuke.arc.math.geom.Vector2;
-import io.anuke.arc.scene.event.Touchable;
+import io.anuke.arc.scene.event.*;
+import io.anuke.arc.scene.event.InputEvent.Type;
 import io.anuke.arc.scene.style.*;
 import io.anuke.arc.scene.ui.layout.Table;
 import io.anuke.arc.scene.ui.layout.Table.DrawRect;
@@ -25,6 +27,15 @@ import io.anuke.arc.scene.utils.Cullable;
  */
 public abstract class Group extends Element implements Cullable{
     static private final Vector2 tmp = new Vector2();
+    /** Invalidates the cache of the group it is attached to whenever an event passes through it. */
+    static private final EventListener cacheListener = event -> {
+        if(!(event instanceof InputEvent) || ((InputEvent)event).type != Type.mouseMoved){
+            ((Group)event.listenerActor).invalidateCache();
+        }
+        return false;
+    };
+    /** Incremented whenever a cached group records its children. */
+    static private int recordings;
 
     final SnapshotArray<Element> children = new SnapshotArray<>(true, 4, Element.class);
     private final Affine2 worldTransform = new Affine2();
@@ -32,6 +43,12 @@ public abstract class Group extends Element implements Cullable{
     private final Matrix3 oldTransform = new Matrix3();
     boolean transform = false;
     private Rectangle cullingArea;
+    private BatchCapture cache;
+    private boolean cacheDirty = true;
+    /** The value of {@link #recordings} when this group's cached ancestors were last invalidated. */
+    private int cacheDirtyRecording = -1;
+    private float cacheX, cacheY, cacheAlpha;
+    private HitGrid hitGrid;
 
     @Override
     public void act(float delta){
@@ -54,6 +71,12 @@ public abstract class Group extends Element implements Cullable{
     }
 
     protected void drawChildren(){
+        //record or replay, unless an ancestor is already recording this group
+        if(cache != null && Draw.capture() == null){
+            drawCached();
+            return;
+        }
+
         parentAlpha *= this.color.a;
         SnapshotArray<Element> children = this.children;
         Element[] actors = children.begin();
@@ -134,6 +157,25 @@ public abstract class Group extends Element implements Cullable{
         children.end();
     }
 
+    private void drawCached(){
+        float alpha = parentAlpha * color.a;
+        if(!cacheDirty && cacheX == x && cacheY == y && cacheAlpha == alpha && cache.valid()){
+            parentAlpha = alpha;
+            cache.replay();
+            return;
+        }
+
+        cacheX = x;
+        cacheY = y;
+        cacheAlpha = alpha;
+        recordings++;
+        cache.begin();
+        drawChildren();
+        cache.end();
+        //anything invalidated while drawing has already been laid out and recorded
+        cacheDirty = false;
+    }
+
     /** Returns the transform for this group's coordinate system. */
     protected Matrix3 computeTransform(){
         Affine2 worldTransform = this.worldTransform;
@@ -192,6 +234,11 @@ public abstract class Group extends Element implements Cullable{
     public Element hit(float x, float y, boolean touchable){
         if(touchable && getTouchable() == Touchable.disabled) return null;
         Vector2 point = tmp;
+        if(hitGrid != null){
+            if(hitGrid.dirty) hitGrid.rebuild(children);
+            Element hit = hitGrid.hit(children, x, y, touchable, point);
+            return hit != null ? hit : super.hit(x, y, touchable);
+        }
         Element[] childrenArray = children.items;
         for(int i = children.size - 1; i >= 0; i--){
             Element child = childrenArray[i];
@@ -203,6 +250,85 @@ public abstract class Group extends Element implements Cullable{
         return super.hit(x, y, touchable);
     }
 
+    /**
+     * When true, children are found by {@link #hit(float, float, boolean)} through a grid over their bounds, instead of
+     * checking every child. This is only worth it for groups with many children, such as large grids of buttons. The grid is
+     * rebuilt when children are added, removed, moved or resized. Children are assumed to only be hit inside their bounds;
+     * rotated, scaled or translated children are checked for every point.
+     */
+    public void setHitIndexed(boolean indexed){
+        hitGrid = indexed ? new HitGrid() : null;
+    }
+
+    public boolean isHitIndexed(){
+        return hitGrid != null;
+    }
+
+    /** Called when children are added, removed, reordered or have their bounds changed. */
+    void invalidateHitGrid(){
+        if(hitGrid != null) hitGrid.dirty = true;
+    }
+
+    /**
+     * When true, the vertices drawn by this group's children are recorded and replayed on later frames instead of
+     * drawing each child again. The recording is discarded when anything inside the group is invalidated, moved, shown
+     * or hidden, has actions, or receives events, and when the group itself is drawn at a different position, alpha,
+     * transform or clip. Changes that do none of these, such as setting a child's color, require a manual
+     * {@link #invalidateCache()}. Children must draw exclusively through {@link Draw}, as direct GL calls are not recorded.
+     * Cached groups inside other cached groups are recorded as part of their ancestor.
+     */
+    public void setCached(boolean cached){
+        if(cached == isCached()) return;
+
+        if(cached){
+            cache = new BatchCapture();
+            addCaptureListener(cacheListener);
+        }else{
+            cache = null;
+            removeCaptureListener(cacheListener);
+        }
+        boolean insideCache = cached || this.insideCache;
+        for(int i = 0; i < children.size; i++){
+            children.get(i).setInsideCache(insideCache);
+        }
+        cacheDirty = false;
+        invalidateCache();
+    }
+
+    public boolean isCached(){
+        return cache != null;
+    }
+
+    @Override
+    public void invalidateCache(){
+        if(cache != null){
+            //cached ancestors already know, unless one of them was recorded since
+            if(cacheDirty && cacheDirtyRecording == recordings) return;
+            cacheDirty = true;
+            cacheDirtyRecording = recordings;
+        }
+        super.invalidateCache();
+    }
+
+    @Override
+    void setInsideCache(boolean insideCache){
+        if(this.insideCache == insideCache) return;
+        super.setInsideCache(insideCache);
+        //children of a cached group report to it either way
+        if(cache != null) return;
+        for(int i = 0; i < children.size; i++){
+            children.get(i).setInsideCache(insideCache);
+        }
+    }
+
+    /**
+     * Called on the parent of an element whose layout was invalidated with {@link #invalidateHierarchy()}. By default this
+     * invalidates the hierarchy of this group as well.
+     */
+    public void invalidateFromChild(){
+        invalidateHierarchy();
+    }
+
     /** Called when actors are added to or removed from the group. */
     protected void childrenChanged(){
     }
@@ -255,6 +381,8 @@ public abstract class Group extends Element implements Cullable{
         actor.setParent(this);
         actor.setScene(getScene());
         childrenChanged();
+        invalidateCache();
+        invalidateHitGrid();
     }
 
     /**
@@ -274,6 +402,8 @@ public abstract class Group extends Element implements Cullable{
         actor.setParent(this);
         actor.setScene(getScene());
         childrenChanged();
+        invalidateCache();
+        invalidateHitGrid();
     }
 
     /**
@@ -290,6 +420,8 @@ public abstract class Group extends Element implements Cullable{
         actor.setParent(this);
         actor.setScene(getScene());
         childrenChanged();
+        invalidateCache();
+        invalidateHitGrid();
     }
 
     /**
@@ -309,6 +441,8 @@ public abstract class Group extends Element implements Cullable{
         actor.setParent(this);
         actor.setScene(getScene());
         childrenChanged();
+        invalidateCache();
+        invalidateHitGrid();
     }
 
     /** Removes an actor from this group and unfocuses it. Calls {@link #removeChild(Element, boolean)} with true. */
@@ -332,6 +466,8 @@ public abstract class Group extends Element implements Cullable{
         actor.setParent(null);
         actor.setScene(null);
         childrenChanged();
+        invalidateCache();
+        invalidateHitGrid();
         return true;
     }
 
@@ -346,6 +482,8 @@ public abstract class Group extends Element implements Cullable{
         children.end();
         children.clear();
         childrenChanged();
+        invalidateCache();
+        invalidateHitGrid();
     }
 
     /** Removes all children, actions, and listeners from this group. */
@@ -419,6 +557,8 @@ public abstract class Group extends Element implements Cullable{
         if(first < 0 || first >= maxIndex) return false;
         if(second < 0 || second >= maxIndex) return false;
         children.swap(first, second);
+        invalidateCache();
+        invalidateHitGrid();
         return true;
     }
 
@@ -428,6 +568,8 @@ public abstract class Group extends Element implements Cullable{
         int secondIndex = children.indexOf(second, true);
         if(firstIndex == -1 || secondIndex == -1) return false;
         children.swap(firstIndex, secondIndex);
+        invalidateCache();
+        invalidateHitGrid();
         return true;
     }
 
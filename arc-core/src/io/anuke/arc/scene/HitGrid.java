@@ -0,0 +1,117 @@
+package io.anuke.arc.scene;
+
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.collection.SnapshotArray;
+import io.anuke.arc.math.geom.Vector2;
+
+/**
+ * A uniform grid over the bounds of a group's children, used to find the children under a point without checking all of them.
+ * Children that are rotated, scaled or translated are not placed in cells, and are checked for every point.
+ * @see Group#setHitIndexed(boolean)
+ */
+class HitGrid{
+    /** Upper bound on the number of cells per child. */
+    private static final int maxCellsPerChild = 4;
+
+    boolean dirty = true;
+
+    private float minX, minY, cellSize;
+    private int cols, rows;
+    private IntArray[] cells = {};
+    /** Indices of children that are not in the grid. */
+    private final IntArray loose = new IntArray();
+
+    void rebuild(SnapshotArray<Element> children){
+        dirty = false;
+        loose.clear();
+        for(int i = 0; i < cols * rows; i++){
+            cells[i].clear();
+        }
+
+        Element[] items = children.items;
+        int n = children.size, indexed = 0;
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for(int i = 0; i < n; i++){
+            Element child = items[i];
+            if(!indexable(child)) continue;
+            minX = Math.min(minX, child.x);
+            minY = Math.min(minY, child.y);
+            maxX = Math.max(maxX, child.x + child.width);
+            maxY = Math.max(maxY, child.y + child.height);
+            indexed++;
+        }
+
+        if(indexed == 0){
+            cols = rows = 0;
+            for(int i = 0; i < n; i++) loose.add(i);
+            return;
+        }
+
+        float width = Math.max(maxX - minX, 1f), height = Math.max(maxY - minY, 1f);
+        //aim for about one cell per child
+        cellSize = Math.max((float)Math.sqrt(width * height / indexed), 1f);
+        cols = Math.min((int)(width / cellSize) + 1, indexed * maxCellsPerChild);
+        rows = Math.min((int)(height / cellSize) + 1, indexed * maxCellsPerChild);
+        cellSize = Math.max(width / cols, height / rows);
+        this.minX = minX;
+        this.minY = minY;
+
+        if(cells.length < cols * rows){
+            IntArray[] newCells = new IntArray[cols * rows];
+            System.arraycopy(cells, 0, newCells, 0, cells.length);
+            for(int i = cells.length; i < newCells.length; i++){
+                newCells[i] = new IntArray(4);
+            }
+            cells = newCells;
+        }
+
+        for(int i = 0; i < n; i++){
+            Element child = items[i];
+            if(!indexable(child)){
+                loose.add(i);
+                continue;
+            }
+
+            int x1 = cellX(child.x), y1 = cellY(child.y), x2 = cellX(child.x + child.width), y2 = cellY(child.y + child.height);
+            for(int cx = x1; cx <= x2; cx++){
+                for(int cy = y1; cy <= y2; cy++){
+                    cells[cx + cy * cols].add(i);
+                }
+            }
+        }
+    }
+
+    /** Hits the children that may contain the point, topmost first. */
+    Element hit(SnapshotArray<Element> children, float x, float y, boolean touchable, Vector2 point){
+        Element[] items = children.items;
+        IntArray cell = null;
+        if(cols > 0 && x >= minX && y >= minY && x <= minX + cols * cellSize && y <= minY + rows * cellSize){
+            cell = cells[cellX(x) + cellY(y) * cols];
+        }
+
+        //merge the cell and loose children, which are both in ascending order, from the top
+        int[] cellItems = cell == null ? null : cell.items, looseItems = loose.items;
+        int c = cell == null ? -1 : cell.size - 1, l = loose.size - 1;
+        while(c >= 0 || l >= 0){
+            int index = c < 0 ? looseItems[l--] : l < 0 ? cellItems[c--] : cellItems[c] > looseItems[l] ? cellItems[c--] : looseItems[l--];
+            Element child = items[index];
+            if(!child.isVisible()) continue;
+            child.parentToLocalCoordinates(point.set(x, y));
+            Element hit = child.hit(point.x, point.y, touchable);
+            if(hit != null) return hit;
+        }
+        return null;
+    }
+
+    private int cellX(float x){
+        return Math.max(Math.min((int)((x - minX) / cellSize), cols - 1), 0);
+    }
+
+    private int cellY(float y){
+        return Math.max(Math.min((int)((y - minY) / cellSize), rows - 1), 0);
+    }
+
+    private static boolean indexable(Element child){
+        return child.rotation == 0f && child.scaleX == 1f && child.scaleY == 1f && child.translation.isZero();
+    }
+}
@@ -0,0 +1,131 @@
+package io.anuke.arc.scene;
+
+import io.anuke.arc.collection.Array;
+
+/**
+ * Collects the elements of a {@link Scene} that were invalidated during a frame, and validates them in a single pass before
+ * the scene is drawn. Elements are validated from the root down, so that a parent that lays out its children does so before
+ * they are visited; children that were laid out by their parent, and subtrees that are not visible, are skipped.
+ * <p>
+ * Layouts that still happen while drawing, such as those caused by invalidation during drawing, are counted separately.
+ */
+public class LayoutScheduler{
+    /** Maximum number of times the queue is processed per frame, in case layouts keep invalidating other elements. */
+    private static final int maxIterations = 4;
+
+    private Array<Element> queue = new Array<>(false, 32, Element.class);
+    private Array<Element> processing = new Array<>(false, 32, Element.class);
+    private final Scene scene;
+    private boolean validating;
+
+    /** Whether invalidated elements are validated before drawing. If false, elements are validated as they are drawn. */
+    public boolean enabled = true;
+    /** Number of distinct elements invalidated since the last pass. */
+    public int invalidated;
+    /** Number of layouts performed in the last scheduled pass. */
+    public int passes;
+    /** Number of layouts performed outside of the scheduled pass since it last ran, e.g. while drawing. */
+    public int latePasses;
+    /** Number of queued elements the last pass did not need to lay out, because they were already valid or not visible. */
+    public int skipped;
+    /** Number of layouts skipped in the last pass and since, because no size they depend on had changed. */
+    public int unchanged;
+
+    public LayoutScheduler(Scene scene){
+        this.scene = scene;
+    }
+
+    /** Adds an invalidated element to the next pass. */
+    public void queue(Element element){
+        if(element.layoutQueued) return;
+        element.layoutQueued = true;
+        queue.add(element);
+        invalidated++;
+    }
+
+    /** Removes an element that left the scene from the next pass. */
+    void remove(Element element){
+        if(!element.layoutQueued) return;
+        element.layoutQueued = false;
+        queue.removeValue(element, true);
+        invalidated--;
+    }
+
+    /** Called by elements every time they lay out. */
+    public void count(){
+        if(validating){
+            passes++;
+        }else{
+            latePasses++;
+        }
+    }
+
+    /** Called by widget groups every time they skip a layout, see {@link io.anuke.arc.scene.ui.layout.WidgetGroup#invalidateFromChild()}. */
+    public void countUnchanged(){
+        unchanged++;
+    }
+
+    /** Validates all queued elements. Called by {@link Scene#draw()}; the counters are reset first. */
+    public void validate(){
+        passes = latePasses = skipped = unchanged = 0;
+
+        if(!enabled){
+            clear();
+            invalidated = 0;
+            return;
+        }
+
+        validating = true;
+        for(int i = 0; i < maxIterations && queue.size > 0; i++){
+            Array<Element> elements = queue;
+            queue = processing;
+            processing = elements;
+
+            Element[] items = elements.items;
+            for(int j = 0; j < elements.size; j++){
+                Element element = items[j];
+                element.layoutQueued = false;
+                element.layoutDepth = depth(element);
+            }
+
+            elements.sort(LayoutScheduler::compare);
+
+            for(int j = 0; j < elements.size; j++){
+                Element element = items[j];
+                if(element.layoutDepth >= 0 && element.needsLayout()){
+                    element.validate();
+                }else{
+                    skipped++;
+                }
+            }
+
+            elements.clear();
+        }
+        validating = false;
+        invalidated = 0;
+    }
+
+    /** Removes all queued elements. */
+    public void clear(){
+        Element[] items = queue.items;
+        for(int i = 0; i < queue.size; i++){
+            items[i].layoutQueued = false;
+        }
+        queue.clear();
+    }
+
+    /** @return the depth of this element in the scene, or -1 if it is not part of it or not visible. */
+    private int depth(Element element){
+        int depth = 0;
+        while(element != scene.root){
+            if(element == null || !element.isVisible()) return -1;
+            element = element.parent;
+            depth++;
+        }
+        return depth;
+    }
+
+    private static int compare(Element a, Element b){
+        return Integer.compare(a.layoutDepth, b.layoutDepth);
+    }
+}
@@ -26,6 +26,8 @@ import static io.anuke.arc.Core.graphics;
 public class Scene implements InputProcessor, Disposable{
     //public final Skin skin;
     public final Group root;
+    /** Validates invalidated elements once per frame, before drawing. */
+    public final LayoutScheduler layouts = new LayoutScheduler(this);
     private final ObjectMap<Class, Object> styleDefaults = new ObjectMap<>();
     private final Vector2 tempCoords = new Vector2();
     private final Element[] pointerOverActors = new Element[20];
@@ -95,6 +97,8 @@ public class Scene implements InputProcessor, Disposable{
 
         if(!root.isVisible()) return;
 
+        layouts.validate();
+
         Draw.proj(camera.projection());
 
         root.draw();
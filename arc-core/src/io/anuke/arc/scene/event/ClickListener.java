@@ -2,6 +2,7 @@ package io.anuke.arc.scene.event;
 
 import io.anuke.arc.Core;
 import io.anuke.arc.input.KeyCode;
+import io.anuke.arc.scene.Action;
 import io.anuke.arc.scene.Element;
 import io.anuke.arc.util.*;
 
@@ -28,6 +29,13 @@ public class ClickListener extends InputListener{
     protected int tapCount;
     protected long lastTapTime;
     protected boolean stop = false;
+    /** Runs on the element while it looks pressed after a release, which keeps its cached ancestors from replaying the press. */
+    private final Action visualRelease = new Action(){
+        @Override
+        public boolean act(float delta){
+            return !isVisualPressed();
+        }
+    };
 
     /** Create a listener where {@link #clicked(InputEvent, float, float)} is only called for left clicks. */
     public ClickListener(){}
@@ -81,6 +89,9 @@ public class ClickListener extends InputListener{
             pressedPointer = -1;
             pressedButton = null;
             cancelled = false;
+            if(visualPressedTime > Time.millis() && visualRelease.getActor() == null){
+                event.listenerActor.addAction(visualRelease);
+            }
         }
     }
 
@@ -100,6 +100,7 @@ public class Button extends Table implements Disableable{
         if(this.isChecked == isChecked) return;
         if(buttonGroup != null && !buttonGroup.canCheck(this, isChecked)) return;
         this.isChecked = isChecked;
+        invalidateCache();
 
         if(fireEvent){
             ChangeEvent changeEvent = Pools.obtain(ChangeEvent.class, ChangeEvent::new);
@@ -146,7 +147,10 @@ public class Button extends Table implements Disableable{
 
     /** When true, the button will not toggle {@link #isChecked()} when clicked and will not fire a {@link ChangeEvent}. */
     public void setDisabled(boolean isDisabled){
-        this.isDisabled = isDisabled;
+        if(this.isDisabled != isDisabled){
+            this.isDisabled = isDisabled;
+            invalidateCache();
+        }
     }
 
     public boolean childrenPressed(){
@@ -0,0 +1,297 @@
+package io.anuke.arc.scene.ui.layout;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.func.Prov;
+import io.anuke.arc.math.geom.Rectangle;
+import io.anuke.arc.scene.Element;
+import io.anuke.arc.scene.event.Touchable;
+import io.anuke.arc.scene.ui.ScrollPane;
+import io.anuke.arc.scene.utils.Cullable;
+import io.anuke.arc.util.pooling.Pool;
+
+/**
+ * A list or grid of items that only has elements for the rows that are visible, meant to be the widget of a {@link ScrollPane}.
+ * <p>
+ * Items are identified by index. Elements are created with the given provider, and are recycled through a pool as rows scroll
+ * in and out of view; the binder is called every time an element is assigned to an item. Only elements for the rows inside the
+ * culling area plus a {@link #setMargin(float) margin} are children of this group, so only those are laid out, acted and drawn.
+ * <p>
+ * Rows may have different heights. Row offsets are kept in a prefix sum, so finding the visible rows is a binary search;
+ * call {@link #invalidateRows()} when row heights change. Items are placed left to right in {@link #setColumns(int) columns}
+ * of equal width.
+ * <p>
+ * The preferred height is the sum of all row heights. The preferred width is the item width times the number of columns.
+ */
+public class VirtualList<T extends Element> extends WidgetGroup implements Cullable{
+    private final Pool<T> pool;
+    private ItemBinder<T> binder;
+    private RowHeights heights;
+
+    private int items, columns = 1;
+    private float rowHeight = 30f, itemWidth, margin = 60f;
+
+    private float[] offsets = {0f};
+    private int rows;
+    private boolean rowsInvalid = true;
+
+    private final Rectangle cullingArea = new Rectangle();
+    private boolean culled;
+
+    /** Active elements, in item order. Element i is bound to item {@link #first} + i. */
+    private Array<T> active = new Array<>();
+    private Array<T> swap = new Array<>();
+    private int first;
+
+    public VirtualList(Prov<T> creator, ItemBinder<T> binder){
+        this.binder = binder;
+        this.pool = new Pool<T>(){
+            @Override
+            protected T newObject(){
+                return creator.get();
+            }
+        };
+        touchable(Touchable.childrenOnly);
+    }
+
+    /** Sets the number of items and rebinds all visible elements. */
+    public void setItemCount(int items){
+        if(items < 0) throw new IllegalArgumentException("items cannot be < 0: " + items);
+        this.items = items;
+        invalidateRows();
+        rebind();
+    }
+
+    public int getItemCount(){
+        return items;
+    }
+
+    public void setBinder(ItemBinder<T> binder){
+        this.binder = binder;
+        rebind();
+    }
+
+    /** Sets the number of items per row. */
+    public void setColumns(int columns){
+        if(columns < 1) throw new IllegalArgumentException("columns must be > 0: " + columns);
+        this.columns = columns;
+        invalidateRows();
+        rebind();
+    }
+
+    public int getColumns(){
+        return columns;
+    }
+
+    /** Gives every row the same height. */
+    public void setRowHeight(float rowHeight){
+        this.rowHeight = rowHeight;
+        this.heights = null;
+        invalidateRows();
+    }
+
+    /** Gives each row its own height, queried for every row whenever the rows are {@link #invalidateRows() invalidated}. */
+    public void setRowHeights(RowHeights heights){
+        this.heights = heights;
+        invalidateRows();
+    }
+
+    /** Sets the preferred width of a single column. */
+    public void setItemWidth(float itemWidth){
+        this.itemWidth = itemWidth;
+        invalidateHierarchy();
+    }
+
+    /** Sets the distance above and below the culling area for which elements are kept, to avoid rebinding while scrolling back and forth. */
+    public void setMargin(float margin){
+        this.margin = margin;
+        invalidate();
+    }
+
+    /** Rebuilds the row height index. Must be called when the heights returned by the {@link RowHeights} change. */
+    public void invalidateRows(){
+        rowsInvalid = true;
+        invalidateHierarchy();
+    }
+
+    /** Calls the binder for all visible elements again, for when the underlying item data changed. */
+    public void rebind(){
+        for(int i = 0; i < active.size; i++){
+            if(first + i < items) binder.bind(active.get(i), first + i);
+        }
+        invalidate();
+    }
+
+    /** @return the element currently bound to the item, or null if the item is not in view. */
+    public T getElement(int item){
+        int index = item - first;
+        return index >= 0 && index < active.size ? active.get(index) : null;
+    }
+
+    /** @return the index of the first item with an element. */
+    public int getFirstActive(){
+        return first;
+    }
+
+    /** @return the number of items with an element. */
+    public int getActiveCount(){
+        return active.size;
+    }
+
+    /** @return the distance from the top of this list to the top of the row containing the item. */
+    public float getItemOffset(int item){
+        validateRows();
+        return offsets[Math.min(item / columns, rows)];
+    }
+
+    /** @return the height of the row containing the item. */
+    public float getItemHeight(int item){
+        validateRows();
+        int row = item / columns;
+        return row >= rows ? 0f : offsets[row + 1] - offsets[row];
+    }
+
+    /** @return the row at the given distance from the top of this list, clamped to the valid rows. */
+    public int rowAt(float offset){
+        validateRows();
+        int low = 0, high = rows - 1;
+        while(low < high){
+            int mid = (low + high + 1) >>> 1;
+            if(offsets[mid] <= offset){
+                low = mid;
+            }else{
+                high = mid - 1;
+            }
+        }
+        return Math.max(low, 0);
+    }
+
+    /** Scrolls the pane so that the item is visible. */
+    public void scrollTo(ScrollPane pane, int item){
+        float offset = getItemOffset(item);
+        pane.scrollTo(0, getHeight() - offset - getItemHeight(item), getWidth(), getItemHeight(item));
+    }
+
+    @Override
+    public void setCullingArea(Rectangle area){
+        culled = area != null;
+        if(area == null){
+            updateWindow();
+            return;
+        }
+
+        if(!area.equals(cullingArea)){
+            cullingArea.set(area);
+            updateWindow();
+        }
+    }
+
+    @Override
+    public float getPrefWidth(){
+        return itemWidth * columns;
+    }
+
+    @Override
+    public float getPrefHeight(){
+        validateRows();
+        return offsets[rows];
+    }
+
+    @Override
+    public void layout(){
+        validateRows();
+        updateWindow();
+
+        float height = getHeight(), width = getWidth() / columns;
+        for(int i = 0; i < active.size; i++){
+            int item = first + i, row = item / columns;
+            T element = active.get(i);
+            element.setBounds((item % columns) * width, height - offsets[row + 1], width, offsets[row + 1] - offsets[row]);
+            element.validate();
+        }
+    }
+
+    @Override
+    protected void childrenChanged(){
+        //elements only need to be positioned; the preferred size of this list does not depend on them
+        invalidate();
+    }
+
+    @Override
+    public void clearChildren(){
+        pool.freeAll(active);
+        active.clear();
+        first = 0;
+        super.clearChildren();
+    }
+
+    /** Assigns elements to the items in the rows in view, freeing those that left it. */
+    private void updateWindow(){
+        validateRows();
+
+        int start = 0, end = items;
+        if(culled){
+            float top = getHeight() - (cullingArea.y + cullingArea.height) - margin, bottom = getHeight() - cullingArea.y + margin;
+            start = Math.min(rowAt(top) * columns, items);
+            end = Math.min((rowAt(bottom) + 1) * columns, items);
+            if(offsets[rows] <= top || bottom < 0) end = start;
+        }
+
+        int last = first + active.size;
+        if(start == first && end == last) return;
+
+        //free elements that are no longer in view
+        for(int i = 0; i < active.size; i++){
+            int item = first + i;
+            if(item < start || item >= end){
+                T element = active.get(i);
+                removeChild(element, false);
+                element.clearActions();
+                pool.free(element);
+            }
+        }
+
+        swap.clear();
+        for(int item = start; item < end; item++){
+            T element;
+            if(item >= first && item < last){
+                element = active.get(item - first);
+            }else{
+                element = pool.obtain();
+                binder.bind(element, item);
+                addChild(element);
+            }
+            swap.add(element);
+        }
+
+        Array<T> tmp = active;
+        active = swap;
+        swap = tmp;
+        swap.clear();
+        first = start;
+    }
+
+    private void validateRows(){
+        if(!rowsInvalid) return;
+        rowsInvalid = false;
+
+        rows = (items + columns - 1) / columns;
+        if(offsets.length < rows + 1) offsets = new float[Math.max(rows + 1, offsets.length * 2)];
+
+        float total = 0f;
+        offsets[0] = 0f;
+        for(int i = 0; i < rows; i++){
+            total += heights == null ? rowHeight : heights.get(i);
+            offsets[i + 1] = total;
+        }
+    }
+
+    /** Assigns an item to an element. */
+    public interface ItemBinder<T>{
+        void bind(T element, int item);
+    }
+
+    /** Provides the height of a row. */
+    public interface RowHeights{
+        float get(int row);
+    }
+}
@@ -20,6 +20,11 @@ import io.anuke.arc.scene.utils.Layout;
  */
 public class WidgetGroup extends Group implements Layout{
     private boolean needsLayout = true;
+    /** Whether the pending layout was only requested by descendants, so it can be skipped if no child changed size. */
+    private boolean childrenInvalid;
+    /** The size of this group and the min, pref and max sizes of each child when it was last validated. */
+    private float[] layoutSizes = {};
+    private int layoutSizeCount = -1;
     private boolean fillParent;
     private boolean layoutEnabled = true;
 
@@ -88,9 +93,51 @@ public class WidgetGroup extends Group implements Layout{
 
         if(!needsLayout) return;
         needsLayout = false;
+        boolean changed = updateLayoutSizes();
+        if(childrenInvalid && !changed){
+            childrenInvalid = false;
+            if(getScene() != null) getScene().layouts.countUnchanged();
+            //the children may still need their own layout
+            SnapshotArray<Element> children = getChildren();
+            for(int i = 0, n = children.size; i < n; i++){
+                children.get(i).validate();
+            }
+            return;
+        }
+        childrenInvalid = false;
+        if(getScene() != null) getScene().layouts.count();
         layout();
     }
 
+    /** Stores the sizes the layout of this group depends on, and returns whether any differ from the stored ones. */
+    private boolean updateLayoutSizes(){
+        SnapshotArray<Element> children = getChildren();
+        int count = 2 + children.size * 6;
+        boolean changed = count != layoutSizeCount;
+        if(layoutSizes.length < count) layoutSizes = new float[count];
+        layoutSizeCount = count;
+
+        float[] sizes = layoutSizes;
+        changed |= store(sizes, 0, getWidth());
+        changed |= store(sizes, 1, getHeight());
+        for(int i = 0, n = children.size, j = 2; i < n; i++){
+            Element child = children.get(i);
+            changed |= store(sizes, j++, child.getMinWidth());
+            changed |= store(sizes, j++, child.getMinHeight());
+            changed |= store(sizes, j++, child.getPrefWidth());
+            changed |= store(sizes, j++, child.getPrefHeight());
+            changed |= store(sizes, j++, child.getMaxWidth());
+            changed |= store(sizes, j++, child.getMaxHeight());
+        }
+        return changed;
+    }
+
+    private static boolean store(float[] sizes, int index, float value){
+        if(sizes[index] == value) return false;
+        sizes[index] = value;
+        return true;
+    }
+
     /** Returns true if the widget's layout has been {@link #invalidate() invalidated}. */
     public boolean needsLayout(){
         return needsLayout;
@@ -98,12 +145,29 @@ public class WidgetGroup extends Group implements Layout{
 
     public void invalidate(){
         needsLayout = true;
+        childrenInvalid = false;
+        invalidateCache();
+        scheduleLayout();
     }
 
     public void invalidateHierarchy(){
         invalidate();
         Group parent = getParent();
-        if(parent != null) parent.invalidateHierarchy();
+        if(parent != null) parent.invalidateFromChild();
+    }
+
+    /**
+     * Invalidates this group without requiring a layout: when validated, it is only laid out if its size or the size of a
+     * child changed since it was last validated, or if it was also invalidated directly. Otherwise only its children are
+     * validated.
+     */
+    @Override
+    public void invalidateFromChild(){
+        boolean onlyChildren = !needsLayout || childrenInvalid;
+        invalidate();
+        childrenInvalid = onlyChildren;
+        Group parent = getParent();
+        if(parent != null) parent.invalidateFromChild();
     }
 
     protected void childrenChanged(){
@@ -0,0 +1,132 @@
+package io.anuke.arc.util;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.files.FileHandle;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The properties of an {@link I18NBundle} as written by {@link I18NBundleCompiler}, read straight from a memory mapped file.
+ * Nothing is decoded up front: lookups binary search the index by hash, and strings are decoded and kept the first time they
+ * are needed, so loading a bundle costs the same however many keys it has.
+ * <p>
+ * The file is big endian and laid out as follows:
+ * <ul>
+ * <li>header: magic, version, entry count, string count and the length of the segment section, all ints</li>
+ * <li>index: per entry, sorted by key hash, the hash, the key and value string indices and the offset of its format segments
+ * in the segment section, or -1 if the value must be formatted by {@link TextFormatter}</li>
+ * <li>string offsets: where each string of the table starts in the string data, plus where the last one ends</li>
+ * <li>segments: per pre-parsed value, the number of segments followed by them; a literal is a string index, and an argument
+ * -(index + 1)</li>
+ * <li>string data: every distinct key, value and literal once, in UTF-8</li>
+ * </ul>
+ */
+final class CompiledBundle{
+    static final int magic = 0x41493138, version = 1;
+    static final int headerSize = 20, entrySize = 16;
+
+    private final ByteBuffer buffer;
+    private final int count, offsets, segments, data;
+    private final String[] strings;
+
+    CompiledBundle(ByteBuffer buffer){
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        if(buffer.limit() < headerSize || buffer.getInt(0) != magic) throw new ArcRuntimeException("Not a compiled bundle.");
+        if(buffer.getInt(4) != version) throw new ArcRuntimeException("Unsupported compiled bundle version: " + buffer.getInt(4));
+
+        count = buffer.getInt(8);
+        strings = new String[buffer.getInt(12)];
+        offsets = headerSize + count * entrySize;
+        segments = offsets + (strings.length + 1) * 4;
+        data = segments + buffer.getInt(16);
+    }
+
+    /** Maps the file, or reads it if it cannot be mapped, such as when it is inside an archive or an Android asset. */
+    static CompiledBundle load(FileHandle file){
+        ByteBuffer buffer;
+        try{
+            buffer = file.map();
+        }catch(ArcRuntimeException e){
+            buffer = ByteBuffer.wrap(file.readBytes());
+        }
+        return new CompiledBundle(buffer);
+    }
+
+    int size(){
+        return count;
+    }
+
+    /** @return the entry of the key, or -1. */
+    int find(String key){
+        int hash = key.hashCode(), low = 0, high = count;
+        //lower bound of the hash, then every entry sharing it
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(buffer.getInt(headerSize + mid * entrySize) < hash){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        for(int i = low; i < count && buffer.getInt(headerSize + i * entrySize) == hash; i++){
+            if(key(i).equals(key)) return i;
+        }
+        return -1;
+    }
+
+    String get(String key){
+        int entry = find(key);
+        return entry == -1 ? null : value(entry);
+    }
+
+    String key(int entry){
+        return string(buffer.getInt(headerSize + entry * entrySize + 4));
+    }
+
+    String value(int entry){
+        return string(buffer.getInt(headerSize + entry * entrySize + 8));
+    }
+
+    Array<String> keys(){
+        Array<String> keys = new Array<>(count);
+        for(int i = 0; i < count; i++){
+            keys.add(key(i));
+        }
+        return keys;
+    }
+
+    /** Formats the value of an entry with its pre-parsed segments, or with the formatter if it has none. */
+    String format(int entry, TextFormatter formatter, Object[] args){
+        int offset = buffer.getInt(headerSize + entry * entrySize + 12);
+        if(offset == -1) return formatter.format(value(entry), args);
+
+        int position = segments + offset, length = buffer.getInt(position);
+        if(length == 1 && buffer.getInt(position + 4) >= 0) return string(buffer.getInt(position + 4));
+
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < length; i++){
+            int segment = buffer.getInt(position + 4 + i * 4);
+            if(segment >= 0){
+                builder.append(string(segment));
+            }else{
+                formatter.appendArgument(builder, -segment - 1, args);
+            }
+        }
+        return builder.toString();
+    }
+
+    String string(int index){
+        String string = strings[index];
+        if(string == null){
+            int start = buffer.getInt(offsets + index * 4), end = buffer.getInt(offsets + index * 4 + 4);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer view = buffer.duplicate();
+            view.position(data + start);
+            view.get(bytes);
+            strings[index] = string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return string;
+    }
+}
@@ -0,0 +1,134 @@
+package io.anuke.arc.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative long values, such as latencies, with a bounded relative error. Values up to 64 are counted
+ * exactly; above that, every power of two is split into 32 buckets, so reported values are within about 3% of the recorded
+ * ones, like an HDR histogram with two significant digits.
+ * <p>
+ * Recording is lock free and may be done from any number of threads. Values read while others are being recorded may not
+ * include the most recent ones, but reading never blocks the recording threads. The count, sum and maximum are striped, so
+ * threads that record into one shared histogram do not all contend on the same counters.
+ */
+public class Histogram{
+    private static final int subBits = 5, subCount = 1 << subBits, linear = subCount * 2;
+
+    private final long highest;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder(), sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /** @param highest The highest value that can be recorded. Larger values are recorded as this value. */
+    public Histogram(long highest){
+        if(highest < 1) throw new IllegalArgumentException("highest must be > 0: " + highest);
+        this.highest = highest;
+        this.counts = new AtomicLongArray(index(highest) + 1);
+    }
+
+    /** Records a value. Negative values are recorded as 0. */
+    public void record(long value){
+        value = Math.max(Math.min(value, highest), 0);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /** Adds all values recorded by another histogram to this one. */
+    public void add(Histogram other){
+        int n = Math.min(counts.length(), other.counts.length());
+        for(int i = 0; i < n; i++){
+            long c = other.counts.get(i);
+            if(c != 0) counts.addAndGet(i, c);
+        }
+        //values above the range of this histogram go in the last bucket
+        for(int i = n; i < other.counts.length(); i++){
+            long c = other.counts.get(i);
+            if(c != 0) counts.addAndGet(counts.length() - 1, c);
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulate(Math.min(other.max.get(), highest));
+    }
+
+    /** @return a copy of this histogram, for reading several values that are consistent with each other. */
+    public Histogram copy(){
+        Histogram copy = new Histogram(highest);
+        copy.add(this);
+        return copy;
+    }
+
+    /** Removes all recorded values. Values recorded at the same time may be partially kept. */
+    public void reset(){
+        for(int i = 0; i < counts.length(); i++){
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /** @return the number of recorded values. */
+    public long getCount(){
+        return count.sum();
+    }
+
+    public long getMax(){
+        return max.get();
+    }
+
+    public double getMean(){
+        long count = this.count.sum();
+        return count == 0 ? 0 : (double)sum.sum() / count;
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return the highest value that the given percentage of recorded values are at or below, or 0 if none were recorded.
+     */
+    public long getPercentile(double percentile){
+        long total = 0;
+        for(int i = 0; i < counts.length(); i++){
+            total += counts.get(i);
+        }
+        if(total == 0) return 0;
+
+        long target = Math.max((long)Math.ceil(Math.min(percentile, 100) / 100.0 * total), 1), seen = 0;
+        for(int i = 0; i < counts.length(); i++){
+            seen += counts.get(i);
+            if(seen >= target) return Math.min(upperBound(i), Math.max(max.get(), lowerBound(i)));
+        }
+        return max.get();
+    }
+
+    public long getMedian(){
+        return getPercentile(50);
+    }
+
+    private static int index(long value){
+        if(value < linear) return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return linear + (exponent - subBits - 1) * subCount + (int)((value >>> (exponent - subBits)) - subCount);
+    }
+
+    private static long lowerBound(int index){
+        if(index < linear) return index;
+        int i = index - linear, shift = i / subCount + 1;
+        return (long)(i % subCount + subCount) << shift;
+    }
+
+    private static long upperBound(int index){
+        if(index < linear) return index;
+        int shift = (index - linear) / subCount + 1;
+        return lowerBound(index) + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString(){
+        return "Histogram{count=" + getCount() + ", mean=" + (long)getMean() + ", p50=" + getMedian() + ", p99=" + getPercentile(99)
+        + ", max=" + getMax() + "}";
+    }
+}
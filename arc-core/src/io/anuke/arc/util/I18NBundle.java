@@ -45,6 +45,9 @@ import java.util.MissingResourceException;
  * It's also possible to create variants for languages or countries. This can be done by just skipping the country or language
  * abbreviation: BaseName_us__POSIX or BaseName__DE_PREEURO. But it's not allowed to circumvent both language and country:
  * BaseName___VARIANT is illegal.
+ * <p>
+ * Bundles compiled with {@link I18NBundleCompiler} are loaded instead of the properties files next to them. Their keys are
+ * looked up in the mapped file, and strings are only decoded when they are first requested.
  * @author davebaol
  * @see PropertiesUtils
  */
@@ -57,8 +60,10 @@ public class I18NBundle{
     private I18NBundle parent;
     /** The locale for this bundle. */
     private Locale locale;
-    /** The properties for this bundle. */
+    /** The properties for this bundle. Empty while the bundle is read from {@link #compiled}. */
     private ObjectMap<String, String> properties;
+    /** The compiled bundle this bundle reads from, until its properties are needed as a map. */
+    private CompiledBundle compiled;
     /** The formatter used for argument replacement. */
     private TextFormatter formatter;
 
@@ -299,8 +304,13 @@ public class I18NBundle{
         I18NBundle bundle = null;
         Reader reader = null;
         try{
-            FileHandle fileHandle = toFileHandle(baseFileHandle, targetLocale);
-            if(checkFileExistence(fileHandle)){
+            FileHandle compiledHandle = toFileHandle(baseFileHandle, targetLocale, I18NBundleCompiler.extension);
+            FileHandle fileHandle = toFileHandle(baseFileHandle, targetLocale, ".properties");
+            if(checkFileExistence(compiledHandle)){
+                bundle = new I18NBundle();
+                bundle.properties = new ObjectMap<>();
+                bundle.compiled = CompiledBundle.load(compiledHandle);
+            }else if(checkFileExistence(fileHandle)){
                 // Instantiate the bundle
                 bundle = new I18NBundle();
 
@@ -338,18 +348,19 @@ public class I18NBundle{
      * This implementation returns the <code>baseFileHandle</code>'s sibling with following value:
      *
      * <pre>
-     * baseFileHandle.name() + &quot;_&quot; + language + &quot;_&quot; + country + &quot;_&quot; + variant + &quot;.properties&quot;
+     * baseFileHandle.name() + &quot;_&quot; + language + &quot;_&quot; + country + &quot;_&quot; + variant + extension
      * </pre>
      * <p>
      * where <code>language</code>, <code>country</code> and <code>variant</code> are the language, country and variant values of
      * <code>locale</code>, respectively. Final component values that are empty Strings are omitted along with the preceding '_'.
-     * If all of the values are empty strings, then <code>baseFileHandle.name()</code> is returned with ".properties" appended.
+     * If all of the values are empty strings, then <code>baseFileHandle.name()</code> is returned with the extension appended.
      * @param baseFileHandle the file handle to the base of the bundle
      * @param locale the locale for which a resource bundle should be loaded
+     * @param extension the extension of the file, such as ".properties"
      * @return the file handle for the bundle
      * @throws NullPointerException if <code>baseFileHandle</code> or <code>locale</code> is <code>null</code>
      */
-    private static FileHandle toFileHandle(FileHandle baseFileHandle, Locale locale){
+    private static FileHandle toFileHandle(FileHandle baseFileHandle, Locale locale, String extension){
         StringBuilder sb = new StringBuilder(baseFileHandle.name());
         if(!locale.equals(ROOT_LOCALE)){
             String language = locale.getLanguage();
@@ -370,7 +381,7 @@ public class I18NBundle{
                 }
             }
         }
-        return baseFileHandle.sibling(sb.append(".properties").toString());
+        return baseFileHandle.sibling(sb.append(extension).toString());
     }
 
     /**
@@ -409,7 +420,7 @@ public class I18NBundle{
      * @throws NullPointerException if <code>key</code> is <code>null</code>
      */
     public final String get(String key){
-        String result = properties.get(key);
+        String result = compiled != null ? compiled.get(key) : properties.get(key);
         if(result == null){
             if(parent != null) result = parent.get(key);
             if(result == null){
@@ -438,17 +449,18 @@ public class I18NBundle{
 
     /**Returns all keys in this bundle. Does not check parent bundles.*/
     public Iterable<String> getKeys(){
-        return properties.keys();
+        return compiled != null ? compiled.keys() : properties.keys();
     }
 
-    /** @return the internal property map. Can be modified. */
+    /** @return the internal property map. Can be modified. For compiled bundles, this decodes every string. */
     public ObjectMap<String, String> getProperties(){
+        decompile();
         return properties;
     }
 
     /** Checks whether a specified key is present in this bundle. */
     public boolean has(String key){
-        if(properties.containsKey(key)){
+        if(compiled != null ? compiled.find(key) != -1 : properties.containsKey(key)){
             return true;
         }
 
@@ -468,6 +480,15 @@ public class I18NBundle{
      * @throws MissingResourceException if no string for the given key can be found
      */
     public String format(String key, Object... args){
+        //compiled messages are parsed already
+        for(I18NBundle bundle = this; bundle != null; bundle = bundle.parent){
+            if(bundle.compiled != null){
+                int entry = bundle.compiled.find(key);
+                if(entry != -1) return bundle.compiled.format(entry, formatter, args);
+            }else if(bundle.properties.containsKey(key)){
+                break;
+            }
+        }
         return formatter.format(get(key), args);
     }
 
@@ -481,6 +502,7 @@ public class I18NBundle{
      * The I18NBundle won't be able to reset values after calling debug and should only be using during testing.
      */
     public void debug(String placeholder){
+        decompile();
         ObjectMap.Keys<String> keys = properties.keys();
         if(keys == null) return;
 
@@ -489,6 +511,15 @@ public class I18NBundle{
         }
     }
 
+    /** Moves the properties of a compiled bundle into the map, as they are about to be modified. */
+    private void decompile(){
+        if(compiled == null) return;
+        for(int i = 0; i < compiled.size(); i++){
+            properties.put(compiled.key(i), compiled.value(i));
+        }
+        compiled = null;
+    }
+
     /** @return the parent bundle. */
     public I18NBundle getParent(){
         return parent;
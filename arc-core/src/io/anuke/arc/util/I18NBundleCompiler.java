@@ -0,0 +1,171 @@
+package io.anuke.arc.util;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.util.io.PropertiesUtils;
+import io.anuke.arc.util.io.Streams;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compiles the {@code .properties} files of an {@link I18NBundle} into binary {@code .bundle} files next to them, which
+ * {@link I18NBundle#createBundle(FileHandle)} loads in their place. Compiled bundles are memory mapped and decoded lazily, and
+ * their messages are parsed for formatting ahead of time, so that loading a locale with thousands of keys takes no time and only
+ * the strings that are used end up on the heap.
+ * <p>
+ * Meant to run as part of the build, for example with the base file handle as the only argument to {@link #main(String[])}.
+ * Compiled files take precedence over the properties files, so they must be compiled again whenever those change.
+ */
+public class I18NBundleCompiler{
+    /** The extension of compiled bundles, replacing {@code .properties}. */
+    public static final String extension = ".bundle";
+
+    /** Compiles every properties file of a bundle, such as bundle.properties and bundle_de.properties for the base "bundle". */
+    public static void main(String[] args){
+        if(args.length < 1 || args.length > 2){
+            System.out.println("Usage: I18NBundleCompiler <base file> [encoding]");
+            return;
+        }
+        FileHandle base = new FileHandle(args[0]);
+        Array<FileHandle> compiled = compileAll(base, args.length > 1 ? args[1] : "UTF-8");
+        System.out.println("Compiled " + compiled.size + " bundles for " + base.path());
+    }
+
+    /**
+     * Compiles all properties files of the bundle with the given base file handle.
+     * @return the compiled files.
+     * @throws ArcRuntimeException if a file cannot be read or written.
+     */
+    public static Array<FileHandle> compileAll(FileHandle baseFileHandle, String encoding){
+        Array<FileHandle> compiled = new Array<>();
+        String name = baseFileHandle.name();
+        for(FileHandle file : baseFileHandle.parent().list(".properties")){
+            String prefix = file.nameWithoutExtension();
+            if(prefix.equals(name) || prefix.startsWith(name + "_")){
+                FileHandle output = file.sibling(prefix + extension);
+                compile(file, output, encoding);
+                compiled.add(output);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles a properties file into a bundle file.
+     * @throws ArcRuntimeException if a file cannot be read or written.
+     */
+    public static void compile(FileHandle properties, FileHandle output, String encoding){
+        ObjectMap<String, String> map = new ObjectMap<>();
+        Reader reader = null;
+        OutputStream stream = null;
+        try{
+            reader = properties.reader(encoding);
+            PropertiesUtils.load(map, reader);
+            stream = output.write(false, 8192);
+            compile(map, stream);
+        }catch(IOException e){
+            throw new ArcRuntimeException("Error compiling bundle: " + properties, e);
+        }finally{
+            Streams.closeQuietly(reader);
+            Streams.closeQuietly(stream);
+        }
+    }
+
+    /** Writes a compiled bundle holding the given properties. */
+    public static void compile(ObjectMap<String, String> properties, OutputStream output) throws IOException{
+        Array<String> keys = properties.keys().toArray();
+        keys.sort((a, b) -> a.hashCode() != b.hashCode() ? Integer.compare(a.hashCode(), b.hashCode()) : a.compareTo(b));
+
+        ObjectIntMap<String> indices = new ObjectIntMap<>();
+        Array<String> strings = new Array<>();
+        IntArray entries = new IntArray(), segments = new IntArray();
+
+        for(String key : keys){
+            String value = properties.get(key);
+            Array<Object> parsed = parse(value);
+            entries.add(key.hashCode(), intern(key, indices, strings), intern(value, indices, strings));
+            if(parsed == null){
+                entries.add(-1);
+            }else{
+                entries.add(segments.size * 4);
+                segments.add(parsed.size);
+                for(Object segment : parsed){
+                    segments.add(segment instanceof String ? intern((String)segment, indices, strings) : -(Integer)segment - 1);
+                }
+            }
+        }
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] offsets = new int[strings.size + 1];
+        for(int i = 0; i < strings.size; i++){
+            byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            data.write(bytes);
+            offsets[i + 1] = offsets[i] + bytes.length;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(CompiledBundle.magic);
+        out.writeInt(CompiledBundle.version);
+        out.writeInt(keys.size);
+        out.writeInt(strings.size);
+        out.writeInt(segments.size * 4);
+        for(int i = 0; i < entries.size; i++){
+            out.writeInt(entries.get(i));
+        }
+        for(int offset : offsets){
+            out.writeInt(offset);
+        }
+        for(int i = 0; i < segments.size; i++){
+            out.writeInt(segments.get(i));
+        }
+        data.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Splits a message into literal strings, with escaped braces resolved, and argument indices, the way {@link TextFormatter}
+     * reads it.
+     * @return the segments, or null if the message uses anything but plain argument indices, which only
+     * {@link java.text.MessageFormat} can format.
+     */
+    static Array<Object> parse(String message){
+        Array<Object> segments = new Array<>();
+        StringBuilder literal = new StringBuilder();
+        int length = message.length();
+        for(int i = 0; i < length; i++){
+            char c = message.charAt(i);
+            if(c != '{'){
+                literal.append(c);
+            }else if(i + 1 < length && message.charAt(i + 1) == '{'){
+                literal.append(c);
+                i++;
+            }else{
+                int end = message.indexOf('}', i + 1);
+                if(end == -1 || end == i + 1 || end - i > 9) return null;
+                for(int j = i + 1; j < end; j++){
+                    char d = message.charAt(j);
+                    if(d < '0' || d > '9') return null;
+                }
+                if(literal.length() > 0){
+                    segments.add(literal.toString());
+                    literal.setLength(0);
+                }
+                segments.add(Integer.parseInt(message.substring(i + 1, end)));
+                i = end;
+            }
+        }
+        if(literal.length() > 0) segments.add(literal.toString());
+        return segments;
+    }
+
+    private static int intern(String string, ObjectIntMap<String> indices, Array<String> strings){
+        int index = indices.get(string, -1);
+        if(index == -1){
+            index = strings.size;
+            indices.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+}
@@ -1,6 +1,9 @@
 package io.anuke.arc.util;
 
+import java.text.DateFormat;
 import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.Date;
 import java.util.Locale;
 
 /**
@@ -11,9 +14,13 @@ class TextFormatter{
 
     private MessageFormat messageFormat;
     private StringBuilder buffer;
+    private Locale locale;
+    private NumberFormat numberFormat;
+    private DateFormat dateFormat;
 
     public TextFormatter(Locale locale, boolean useMessageFormat){
         buffer = new StringBuilder();
+        this.locale = locale;
         if(useMessageFormat) messageFormat = new MessageFormat("", locale);
     }
 
@@ -50,6 +57,31 @@ class TextFormatter{
         return simpleFormat(pattern, args);
     }
 
+    /**
+     * Appends an argument the way {@link #format(String, Object...)} replaces a placeholder made up of only its index, for
+     * patterns that were parsed ahead of time.
+     * @throws IllegalArgumentException if the index is out of bounds when not using {@link MessageFormat}
+     */
+    void appendArgument(StringBuilder builder, int index, Object[] args){
+        if(index >= args.length){
+            if(messageFormat == null) throw new IllegalArgumentException("Argument index out of bounds: " + index);
+            //MessageFormat leaves the placeholder as it is
+            builder.append('{').append(index).append('}');
+            return;
+        }
+
+        Object arg = args[index];
+        if(messageFormat != null && arg instanceof Number){
+            if(numberFormat == null) numberFormat = NumberFormat.getInstance(locale);
+            builder.append(numberFormat.format(arg));
+        }else if(messageFormat != null && arg instanceof Date){
+            if(dateFormat == null) dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale);
+            builder.append(dateFormat.format(arg));
+        }else{
+            builder.append(arg);
+        }
+    }
+
     // This code is needed because a simple replacement like
     // pattern.replace("'", "''").replace("{{", "'{'");
     // can't properly manage some special cases.
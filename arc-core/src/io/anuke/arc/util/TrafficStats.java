@@ -0,0 +1,174 @@
+package io.anuke.arc.util;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traffic of a network connection: messages and bytes sent and received, in total and by message class, round trip times
+ * and the time sent data spent queued. Counting is lock free, so network threads can record while other threads sample the
+ * values at any time.
+ * <p>
+ * Everything counted by stats with a parent is also counted by the parent, so a server can aggregate all of its
+ * connections, including those that were closed. The counts of a message class are linked to the parent's counts of the same
+ * class, and are found through a small cache by class before the map of all classes, so counting a message does not look up
+ * its class in a map once per level. Counts are striped, so the connections of a server do not contend on its totals.
+ */
+public class TrafficStats{
+    /** Highest latency the histograms can hold, in microseconds. */
+    public static final long maxLatency = 60 * 1000 * 1000;
+
+    /** Stats that everything is also counted in. May be null. */
+    public final TrafficStats parent;
+    /** Round trip times, in microseconds. */
+    public final Histogram roundTrip = new Histogram(maxLatency);
+    /** Time from sending until sent data left its queue, in microseconds. What the queue is depends on the transport. */
+    public final Histogram queueLatency = new Histogram(maxLatency);
+
+    private static final int cacheSize = 16;
+
+    private final TypeStats total;
+    private final ConcurrentHashMap<Class<?>, TypeStats> types = new ConcurrentHashMap<>();
+    /** Stats of recently counted classes, by identity hash. Entries are replaced without locking. */
+    private final TypeStats[] cache = new TypeStats[cacheSize];
+
+    public TrafficStats(){
+        this(null);
+    }
+
+    public TrafficStats(TrafficStats parent){
+        this.parent = parent;
+        this.total = new TypeStats(Object.class, parent == null ? null : parent.total);
+    }
+
+    /** Counts a sent message, serialized to the specified number of bytes. */
+    public void sent(Object message, int bytes){
+        sent(message.getClass(), bytes);
+    }
+
+    public void sent(Class<?> type, int bytes){
+        total.sent(bytes);
+        get(type).sent(bytes);
+    }
+
+    /** Counts a received message, which was read from the specified number of bytes. */
+    public void received(Object message, int bytes){
+        received(message.getClass(), bytes);
+    }
+
+    public void received(Class<?> type, int bytes){
+        total.received(bytes);
+        get(type).received(bytes);
+    }
+
+    public void recordRoundTrip(long micros){
+        roundTrip.record(micros);
+        if(parent != null) parent.recordRoundTrip(micros);
+    }
+
+    public void recordQueueLatency(long micros){
+        queueLatency.record(micros);
+        if(parent != null) parent.recordQueueLatency(micros);
+    }
+
+    /** @return the counts of all messages. */
+    public TypeStats getTotal(){
+        return total;
+    }
+
+    /** @return the counts of messages of exactly this class. */
+    public TypeStats get(Class<?> type){
+        int index = System.identityHashCode(type) & (cacheSize - 1);
+        TypeStats stats = cache[index];
+        if(stats != null && stats.type == type) return stats;
+
+        stats = types.get(type);
+        if(stats == null){
+            TypeStats created = new TypeStats(type, parent == null ? null : parent.get(type));
+            stats = types.putIfAbsent(type, created);
+            if(stats == null) stats = created;
+        }
+        cache[index] = stats;
+        return stats;
+    }
+
+    /**
+     * @return the counts of every message class that was sent or received since these stats were created. Safe to iterate
+     * while messages are counted.
+     */
+    public Collection<TypeStats> getTypes(){
+        return types.values();
+    }
+
+    /** Clears all counts of these stats, but not of the parent. */
+    public void reset(){
+        total.reset();
+        for(TypeStats stats : types.values()){
+            stats.reset();
+        }
+        roundTrip.reset();
+        queueLatency.reset();
+    }
+
+    @Override
+    public String toString(){
+        return "TrafficStats{" + total + ", roundTrip=" + roundTrip + ", queueLatency=" + queueLatency + "}";
+    }
+
+    /** Message and byte counts of one message class. */
+    public static class TypeStats{
+        public final Class<?> type;
+        /** The parent's counts of the same class, which everything counted here is also counted in. May be null. */
+        private final TypeStats parent;
+        private final LongAdder messagesSent = new LongAdder(), bytesSent = new LongAdder();
+        private final LongAdder messagesReceived = new LongAdder(), bytesReceived = new LongAdder();
+
+        TypeStats(Class<?> type, TypeStats parent){
+            this.type = type;
+            this.parent = parent;
+        }
+
+        void sent(int bytes){
+            for(TypeStats stats = this; stats != null; stats = stats.parent){
+                stats.messagesSent.increment();
+                stats.bytesSent.add(bytes);
+            }
+        }
+
+        void received(int bytes){
+            for(TypeStats stats = this; stats != null; stats = stats.parent){
+                stats.messagesReceived.increment();
+                stats.bytesReceived.add(bytes);
+            }
+        }
+
+        void reset(){
+            messagesSent.reset();
+            bytesSent.reset();
+            messagesReceived.reset();
+            bytesReceived.reset();
+        }
+
+        public long getMessagesSent(){
+            return messagesSent.sum();
+        }
+
+        public long getBytesSent(){
+            return bytesSent.sum();
+        }
+
+        public long getMessagesReceived(){
+            return messagesReceived.sum();
+        }
+
+        public long getBytesReceived(){
+            return bytesReceived.sum();
+        }
+
+        @Override
+        public String toString(){
+            return type.getSimpleName() + ": sent " + getMessagesSent() + " (" + getBytesSent() + "B), received "
+            + getMessagesReceived() + " (" + getBytesReceived() + "B)";
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.anuke.arc.util.io;
+
+import io.anuke.arc.util.ArcRuntimeException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import static io.anuke.arc.util.io.TrafficRecorder.*;
+
+/**
+ * Reads the messages of a file written by a {@link TrafficRecorder}, in the order they were recorded. The file is read
+ * through memory mappings, so the bytes of a message are not copied until they are used.
+ * <pre>
+ * TrafficLog log = new TrafficLog(file);
+ * while(log.next()){
+ *     handle(log.getTime(), log.getStream(), log.getData());
+ * }
+ * </pre>
+ */
+public class TrafficLog implements Closeable{
+    private final FileChannel channel;
+    private final long size, startTime;
+    private final int mapSize;
+    private MappedByteBuffer map;
+    private long mapStart;
+    private long time;
+    private int stream, flags;
+    private ByteBuffer data;
+
+    public TrafficLog(File file) throws IOException{
+        this(file, 64 * 1024 * 1024);
+    }
+
+    /** @param mapSize The size of each mapped region of the file. */
+    public TrafficLog(File file, int mapSize) throws IOException{
+        this.mapSize = mapSize;
+        channel = new RandomAccessFile(file, "r").getChannel();
+        size = channel.size();
+        if(size < headerSize) throw new ArcRuntimeException("Not a traffic log: " + file);
+
+        map(0, headerSize);
+        if(map.getInt() != magic) throw new ArcRuntimeException("Not a traffic log: " + file);
+        int fileVersion = map.getInt();
+        if(fileVersion != version) throw new ArcRuntimeException("Unsupported traffic log version: " + fileVersion);
+        startTime = map.getLong();
+    }
+
+    /**
+     * Moves to the next message.
+     * @return false if there are no more messages.
+     */
+    public boolean next() throws IOException{
+        long position = mapStart + map.position();
+        if(position >= size) return false;
+
+        if(map.remaining() < frameHeaderSize){
+            map(position, frameHeaderSize);
+        }
+        //the end marker, or a truncated message of a recorder that was not closed
+        if(map.remaining() < frameHeaderSize || (map.get(map.position() + 12) & present) == 0) return false;
+
+        time = map.getLong();
+        stream = map.getInt();
+        flags = map.get() & ~present;
+        int length = map.getInt();
+        if(length < 0 || position + frameHeaderSize + length > size) return false;
+
+        if(map.remaining() < length){
+            map(position + frameHeaderSize, length);
+        }
+        data = map.slice();
+        data.limit(length);
+        map.position(map.position() + length);
+        return true;
+    }
+
+    /** Moves back to before the first message. */
+    public void rewind() throws IOException{
+        map(headerSize, 0);
+    }
+
+    /** @return when recording started, in milliseconds since the epoch. */
+    public long getStartTime(){
+        return startTime;
+    }
+
+    /** @return when the current message was recorded, in nanoseconds since recording started. */
+    public long getTime(){
+        return time;
+    }
+
+    /** @return the stream of the current message, which identifies its connection. */
+    public int getStream(){
+        return stream;
+    }
+
+    /** @return the flags of the current message, see {@link TrafficRecorder}. */
+    public int getFlags(){
+        return flags;
+    }
+
+    public boolean isInbound(){
+        return (flags & inbound) != 0;
+    }
+
+    public boolean isUnreliable(){
+        return (flags & unreliable) != 0;
+    }
+
+    /** @return whether the current message was sent from a client to a server, regardless of which end recorded it. */
+    public boolean isToServer(){
+        return ((flags & clientSide) != 0) != ((flags & inbound) != 0);
+    }
+
+    /** @return the bytes of the current message. Valid until the next message. */
+    public ByteBuffer getData(){
+        return data;
+    }
+
+    /** @return the size of the file in bytes. */
+    public long getSize(){
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException{
+        channel.close();
+    }
+
+    /** Maps a region starting at the position, large enough for the required bytes if the file has them. */
+    private void map(long position, int required) throws IOException{
+        long length = Math.min(Math.max(mapSize, required), size - position);
+        map = channel.map(MapMode.READ_ONLY, position, length);
+        mapStart = position;
+    }
+}
@@ -0,0 +1,126 @@
+package io.anuke.arc.util.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Appends serialized network messages to a file, with the time they were sent or received, so that the traffic can be
+ * replayed later with {@link TrafficLog}. The file is written through a memory mapping, so recording a message is a
+ * copy into memory; the operating system writes it out in the background.
+ * <p>
+ * The file starts with a 16 byte header: the magic number, the version and the time recording started, in milliseconds
+ * since the epoch. Each message is then stored as its time in nanoseconds since recording started (8 bytes), its stream
+ * (4 bytes), its flags with the highest bit set (1 byte), its length (4 bytes) and its bytes. A zero byte where flags
+ * are expected marks the end, so logs of processes that did not close their recorder can still be read.
+ * <p>
+ * Recording is thread safe. If the file cannot be written, recording stops and the error is kept, see {@link #getError()}.
+ */
+public class TrafficRecorder implements Closeable{
+    /** Flag of messages received by the recording end, rather than sent. */
+    public static final int inbound = 1;
+    /** Flag of messages sent over an unreliable transport, such as UDP. */
+    public static final int unreliable = 2;
+    /** Flag of messages recorded by a client, rather than a server. */
+    public static final int clientSide = 4;
+
+    static final int magic = 0x41524E52, version = 1;
+    static final int headerSize = 16, frameHeaderSize = 17;
+    static final int present = 0x80;
+
+    private final FileChannel channel;
+    private final int mapSize;
+    private final long startNanos;
+    private MappedByteBuffer map;
+    private long mapStart, messages;
+    private IOException error;
+    private boolean closed;
+
+    /** Records into the file, replacing it, in mappings of 16 MB. */
+    public TrafficRecorder(File file) throws IOException{
+        this(file, 16 * 1024 * 1024);
+    }
+
+    /** @param mapSize The size of each mapped region of the file. Larger regions need fewer remappings. */
+    public TrafficRecorder(File file, int mapSize) throws IOException{
+        this.mapSize = Math.max(mapSize, 4096);
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.truncate(0);
+        map = channel.map(MapMode.READ_WRITE, 0, this.mapSize);
+        map.putInt(magic);
+        map.putInt(version);
+        map.putLong(System.currentTimeMillis());
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the bytes between the offset and length of the buffer, without changing its position.
+     * @param stream Identifies the connection the message belongs to.
+     * @param flags Any of {@link #inbound}, {@link #unreliable} and {@link #clientSide}.
+     */
+    public synchronized void record(int stream, int flags, ByteBuffer buffer, int offset, int length){
+        if(!begin(stream, flags, length)) return;
+        ByteBuffer data = buffer.duplicate();
+        data.limit(offset + length).position(offset);
+        map.put(data);
+    }
+
+    /** Records the bytes of the array between offset and length. */
+    public synchronized void record(int stream, int flags, byte[] bytes, int offset, int length){
+        if(!begin(stream, flags, length)) return;
+        map.put(bytes, offset, length);
+    }
+
+    private boolean begin(int stream, int flags, int length){
+        if(closed || error != null) return false;
+        try{
+            if(map.remaining() < frameHeaderSize + length + 1){
+                //continue in a new mapping, which also grows the file
+                long position = mapStart + map.position();
+                map = channel.map(MapMode.READ_WRITE, position, Math.max(mapSize, frameHeaderSize + length + 1));
+                mapStart = position;
+            }
+        }catch(IOException e){
+            error = e;
+            return false;
+        }
+        map.putLong(System.nanoTime() - startNanos);
+        map.putInt(stream);
+        map.put((byte)(flags | present));
+        map.putInt(length);
+        messages++;
+        return true;
+    }
+
+    /** @return the number of bytes recorded, including the header. */
+    public synchronized long getSize(){
+        return mapStart + map.position();
+    }
+
+    /** @return the number of messages recorded. */
+    public synchronized long getMessages(){
+        return messages;
+    }
+
+    /** @return the error that stopped recording, or null. */
+    public synchronized IOException getError(){
+        return error;
+    }
+
+    /** Stops recording, and truncates the file to the recorded size. */
+    @Override
+    public synchronized void close() throws IOException{
+        if(closed) return;
+        closed = true;
+        long size = getSize();
+        map.force();
+        try{
+            channel.truncate(size);
+        }catch(IOException ignored){
+            //some platforms cannot truncate mapped files; the end marker is still there
+        }
+        channel.close();
+    }
+}
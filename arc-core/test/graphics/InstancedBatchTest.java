@@ -0,0 +1,210 @@
+package graphics;
+
+import io.anuke.arc.Core;
+import io.anuke.arc.collection.FloatArray;
+import io.anuke.arc.graphics.Color;
+import io.anuke.arc.graphics.Texture;
+import io.anuke.arc.graphics.g2d.Draw;
+import io.anuke.arc.graphics.g2d.InstancedBatch;
+import io.anuke.arc.graphics.g2d.SpriteBatch;
+import io.anuke.arc.graphics.g2d.TextureRegion;
+import io.anuke.arc.graphics.glutils.GLOnlyTextureData;
+import io.anuke.arc.math.Mathf;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.*;
+
+/**
+ * Validates instance buffers without a GL context, by comparing the vertices they expand to with those SpriteBatch writes for the
+ * same sprites and with the vertex shader evaluated on the CPU.
+ */
+public class InstancedBatchTest{
+    private SpriteBatch lastBatch;
+    private RecordingBatch batch;
+    private Texture texture;
+
+    @Before
+    public void setup(){
+        lastBatch = Core.batch;
+        Core.batch = batch = new RecordingBatch();
+        texture = Texture.createEmpty(new GLOnlyTextureData(256, 128, 0, 0, 0, 0));
+    }
+
+    @After
+    public void teardown(){
+        Core.batch = lastBatch;
+    }
+
+    @Test
+    public void regionsAreShared(){
+        InstancedBatch instances = new InstancedBatch(16, false);
+        TextureRegion a = new TextureRegion(texture, 0, 0, 32, 32), b = new TextureRegion(texture, 32, 0, 16, 64);
+
+        assertEquals(0, instances.region(a));
+        assertEquals(1, instances.region(b));
+        assertEquals(0, instances.region(a));
+
+        try{
+            instances.region(new TextureRegion(Texture.createEmpty(new GLOnlyTextureData(16, 16, 0, 0, 0, 0))));
+            fail("Regions from different textures must be rejected");
+        }catch(IllegalArgumentException ignored){
+        }
+    }
+
+    @Test
+    public void instanceLayout(){
+        InstancedBatch instances = new InstancedBatch(16, false);
+        int region = instances.region(new TextureRegion(texture, 0, 0, 32, 32));
+        instances.setColor(Color.red);
+        instances.draw(region, 10f, 20f, 30f, 40f, 45f);
+
+        assertEquals(1, instances.getCount());
+        float[] data = instances.getInstances();
+        assertEquals(10f, data[0], 0f);
+        assertEquals(20f, data[1], 0f);
+        assertEquals(30f, data[2], 0f);
+        assertEquals(40f, data[3], 0f);
+        assertEquals(45f, data[4], 0f);
+        assertEquals(region, data[5], 0f);
+        assertEquals(Color.red.toFloatBits(), data[6], 0f);
+        assertEquals(Color.clearFloatBits, data[7], 0f);
+    }
+
+    @Test
+    public void matchesSpriteBatch(){
+        InstancedBatch instances = new InstancedBatch(32, false);
+        TextureRegion[] regions = {new TextureRegion(texture, 0, 0, 32, 32), new TextureRegion(texture, 64, 32, 16, 48)};
+        int[] indices = {instances.region(regions[0]), instances.region(regions[1])};
+
+        int sprites = 21;
+        for(int i = 0; i < sprites; i++){
+            float x = i * 13.5f - 40f, y = i * -7.25f, w = 8f + i, h = 20f - i / 2f, rotation = i % 3 == 0 ? 0f : i * 37f;
+            Color color = new Color(i / 21f, 1f - i / 21f, 0.5f, 1f);
+
+            instances.setColor(color);
+            instances.setPackedMixColor(i % 2 == 0 ? Color.clearFloatBits : Color.blue.toFloatBits());
+            instances.draw(indices[i % 2], x, y, w, h, rotation);
+
+            Draw.color(color);
+            if(i % 2 == 0){
+                Draw.mixcol();
+            }else{
+                Draw.mixcol(Color.blue, 1f);
+            }
+            Draw.rect(regions[i % 2], x, y, w, h, rotation);
+        }
+        batch.flush();
+
+        float[] vertices = new float[24];
+        for(int i = 0; i < sprites; i++){
+            instances.expand(i, vertices, 0);
+            for(int j = 0; j < 24; j++){
+                //SpriteBatch rotates with a lookup table, the shader and expand do not
+                float tolerance = j % 6 < 2 ? 0.01f : 0f;
+                assertEquals("Vertex component " + (i * 24 + j) + " differs from SpriteBatch", batch.vertices.get(i * 24 + j), vertices[j], tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void matchesShader(){
+        ShaderInputs instances = new ShaderInputs(8);
+        int[] indices = {instances.region(new TextureRegion(texture, 0, 0, 32, 32)), instances.region(new TextureRegion(texture, 64, 32, 16, 48))};
+
+        float[] vertices = new float[24];
+        for(int i = 0; i < 8; i++){
+            instances.setColor(new Color(i / 8f, 0.25f, 1f - i / 8f, 1f));
+            instances.draw(indices[i % 2], i * 21f - 50f, i * 3.5f, 10f + i, 30f - i, i * 47.5f - 100f);
+        }
+        for(int i = 0; i < 8; i++){
+            instances.expand(i, vertices, 0);
+            float[] shaded = instances.shade(i);
+            for(int j = 0; j < 24; j++){
+                assertEquals("Vertex component " + (i * 24 + j) + " differs from the shader", shaded[j], vertices[j], 0.0001f);
+            }
+        }
+    }
+
+    @Test
+    public void fallbackDrawsExpandedInstances(){
+        InstancedBatch instances = new InstancedBatch(8, false);
+        int region = instances.region(new TextureRegion(texture, 0, 0, 32, 32));
+
+        //more sprites than the buffer holds, to cover implicit flushing
+        int sprites = 21;
+        float[] expected = new float[sprites * 24];
+        for(int i = 0; i < sprites; i++){
+            instances.setColor(new Color(i / 21f, 1f - i / 21f, 0.5f, 1f));
+            instances.draw(region, i * 13.5f - 40f, i * -7.25f, 8f + i, 20f - i / 2f, i * 37f);
+            instances.expand(instances.getCount() - 1, expected, i * 24);
+        }
+        instances.flush();
+        batch.flush();
+
+        assertEquals(0, instances.getCount());
+        assertEquals(sprites * 24, batch.vertices.size);
+        for(int i = 0; i < expected.length; i++){
+            assertEquals(expected[i], batch.vertices.get(i), 0f);
+        }
+    }
+
+    /**
+     * Evaluates the vertex shader on the CPU, with the inputs {@link InstancedBatch} uploads: the instance records, the
+     * corners of the quad in the order they are drawn, and the region uniforms.
+     */
+    static class ShaderInputs extends InstancedBatch{
+        static final float[] corners = {0, 0, 0, 1, 1, 1, 1, 0};
+
+        ShaderInputs(int size){
+            super(size, false);
+        }
+
+        float[] shade(int instance){
+            float[] record = getInstances(), out = new float[24];
+            int i = instance * INSTANCE_SIZE, region = (int)record[i + 5] * 4;
+            double rad = Math.toRadians(record[i + 4]), c = Math.cos(rad), s = Math.sin(rad);
+
+            for(int corner = 0; corner < 4; corner++){
+                float cx = corners[corner * 2], cy = corners[corner * 2 + 1];
+                double localX = (cx - 0.5) * record[i + 2], localY = (cy - 0.5) * record[i + 3];
+                int o = corner * 6;
+                out[o] = (float)(record[i] + c * localX - s * localY);
+                out[o + 1] = (float)(record[i + 1] + s * localX + c * localY);
+                out[o + 2] = record[i + 6];
+                out[o + 3] = Mathf.lerp(regionUVs[region], regionUVs[region + 2], cx);
+                out[o + 4] = Mathf.lerp(regionUVs[region + 1], regionUVs[region + 3], cy);
+                out[o + 5] = record[i + 7];
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Records the vertices the unmodified SpriteBatch draw methods write, by taking them out of its vertex array on flush instead
+     * of uploading them. The vertex array is normally created along with the mesh, which needs a GL context.
+     */
+    static class RecordingBatch extends SpriteBatch{
+        FloatArray vertices = new FloatArray();
+
+        RecordingBatch(){
+            super((Object)null);
+            try{
+                Field field = SpriteBatch.class.getDeclaredField("vertices");
+                field.setAccessible(true);
+                field.set(this, new float[4 * 24]);
+            }catch(ReflectiveOperationException e){
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        protected void flush(){
+            vertices.addAll(super.vertices, 0, idx);
+            idx = 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package graphics;
+
+import io.anuke.arc.Core;
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.collection.IntMap;
+import io.anuke.arc.graphics.GL20;
+import io.anuke.arc.graphics.GL30;
+import io.anuke.arc.graphics.GL30Readback;
+import io.anuke.arc.graphics.glutils.PixelReadback;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/** Runs readbacks against a fake GL that fills the framebuffer with the number of the current frame. */
+public class PixelReadbackTest{
+    FakeGL fake = new FakeGL();
+
+    @After
+    public void reset(){
+        Core.gl = Core.gl20 = null;
+        Core.gl30 = null;
+    }
+
+    @Test
+    public void deliversAfterLatency(){
+        install(true);
+        PixelReadback readback = new PixelReadback(3);
+        assertTrue(readback.isAsync());
+        Array<byte[]> received = new Array<>();
+
+        for(int frame = 0; frame < 10; frame++){
+            fake.frame = frame;
+            readback.read(0, 0, 4, 3, false, received::add);
+            readback.update();
+            //the read of each frame is delivered at the end of the next one
+            assertEquals(frame, received.size);
+        }
+        readback.flush();
+        assertEquals(10, received.size);
+        for(int i = 0; i < received.size; i++){
+            assertEquals(4 * 3 * 4, received.get(i).length);
+            assertEquals(i, received.get(i)[0]);
+        }
+        //every read after the first few reuses a buffer
+        assertEquals(3, fake.buffers.size);
+        readback.dispose();
+        assertEquals(0, fake.buffers.size);
+    }
+
+    @Test
+    public void completesOldestWhenFull(){
+        install(true);
+        PixelReadback readback = new PixelReadback(2);
+        Array<byte[]> received = new Array<>();
+        for(int frame = 0; frame < 5; frame++){
+            fake.frame = frame;
+            readback.read(0, 0, 2, 2, false, received::add);
+        }
+        //no updates, so each read past the second completes the oldest one
+        assertEquals(3, received.size);
+        assertEquals(2, readback.getPending());
+        for(int i = 0; i < received.size; i++){
+            assertEquals(i, received.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void flipsAndPools(){
+        install(true);
+        PixelReadback readback = new PixelReadback();
+        byte[][] result = new byte[1][];
+        readback.read(0, 0, 2, 3, true, pixels -> result[0] = pixels);
+        readback.flush();
+        //the fake writes the row number into the green channel, bottom row first
+        assertEquals(2, result[0][1]);
+        assertEquals(0, result[0][2 * 2 * 4 + 1]);
+
+        readback.free(result[0]);
+        byte[] freed = result[0];
+        readback.read(0, 0, 2, 3, true, pixels -> result[0] = pixels);
+        readback.flush();
+        assertSame(freed, result[0]);
+    }
+
+    @Test
+    public void fallsBackOnGL20(){
+        install(false);
+        PixelReadback readback = new PixelReadback();
+        assertFalse(readback.isAsync());
+        assertEquals(0, readback.getLatency());
+        fake.frame = 7;
+        byte[][] result = new byte[1][];
+        readback.read(0, 0, 5, 5, false, pixels -> result[0] = pixels);
+        assertNotNull(result[0]);
+        assertEquals(7, result[0][0]);
+        readback.dispose();
+    }
+
+    @Test
+    public void fallsBackWithoutReadback(){
+        //a GL30 that cannot read into pixel buffer objects, as on iOS
+        install(GL30.class);
+        PixelReadback readback = new PixelReadback();
+        assertFalse(readback.isAsync());
+        fake.frame = 3;
+        byte[][] result = new byte[1][];
+        readback.read(0, 0, 2, 2, false, pixels -> result[0] = pixels);
+        assertEquals(3, result[0][0]);
+        assertEquals(0, fake.buffers.size);
+        readback.dispose();
+    }
+
+    void install(boolean readback){
+        install(readback ? GL30Readback.class : GL20.class);
+    }
+
+    void install(Class<?> type){
+        Object gl = Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> fake.call(method.getName(), args));
+        Core.gl = Core.gl20 = (GL20)gl;
+        Core.gl30 = gl instanceof GL30 ? (GL30)gl : null;
+    }
+
+    static class FakeGL{
+        IntMap<ByteBuffer> buffers = new IntMap<>();
+        int lastHandle, bound, frame;
+
+        Object call(String name, Object[] args){
+            switch(name){
+                case "glGenBuffer":
+                    buffers.put(++lastHandle, ByteBuffer.allocate(0));
+                    return lastHandle;
+                case "glDeleteBuffer":
+                    buffers.remove((Integer)args[0]);
+                    return null;
+                case "glBindBuffer":
+                    bound = (Integer)args[1];
+                    return null;
+                case "glBufferData":
+                    buffers.put(bound, ByteBuffer.allocate((Integer)args[1]));
+                    return null;
+                case "glReadPixels":
+                    ByteBuffer target = args[6] instanceof ByteBuffer ? (ByteBuffer)args[6] : buffers.get(bound);
+                    int width = (Integer)args[2], height = (Integer)args[3];
+                    for(int y = 0; y < height; y++){
+                        for(int x = 0; x < width; x++){
+                            target.put((x + y * width) * 4, (byte)frame);
+                            target.put((x + y * width) * 4 + 1, (byte)y);
+                        }
+                    }
+                    return null;
+                case "glMapBufferRange":
+                    return buffers.get(bound).duplicate();
+                case "glUnmapBuffer":
+                    return true;
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package graphics;
+
+import io.anuke.arc.graphics.Pixels;
+
+import java.util.Random;
+
+/**
+ * Compares outlining a sprite by searching around every pixel and with {@link Pixels#outline(int[], int[], int, int, int, int)}.
+ * <p>
+ * Arguments: size, thickness. Defaults to a 512x512 sprite and a thickness of 4.
+ */
+public class PixelsBenchmark{
+
+    public static void main(String[] args){
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int thickness = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int rounds = 5;
+        int[] sprite = PixelsTest.sprite(new Random(5), size, size), out = new int[sprite.length];
+
+        long perPixel = 0, bulk = 0;
+        for(int i = 0; i < rounds; i++){
+            long start = System.nanoTime();
+            PixelsTest.outlinePerPixel(sprite, size, size, 0xff, thickness);
+            perPixel += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Pixels.outline(sprite, out, size, size, 0xff, thickness);
+            bulk += System.nanoTime() - start;
+        }
+
+        System.out.println("Outline of " + size + "x" + size + " with thickness " + thickness + ": per pixel "
+            + perPixel / rounds / 1000000f + "ms, distance transform " + bulk / rounds / 1000000f + "ms");
+    }
+}
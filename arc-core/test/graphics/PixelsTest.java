@@ -0,0 +1,185 @@
+package graphics;
+
+import io.anuke.arc.collection.IntIntMap;
+import io.anuke.arc.graphics.Pixels;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** Compares the bulk pixel operations to per-pixel versions, which work like Pixmaps did with getPixel and draw. */
+public class PixelsTest{
+
+    @Test
+    public void outlineMatchesPerPixel(){
+        Random random = new Random(1);
+        for(int thickness = 1; thickness <= 6; thickness++){
+            int width = 20 + random.nextInt(60), height = 20 + random.nextInt(60);
+            int[] sprite = sprite(random, width, height);
+            int color = 0xff0000ff;
+
+            int[] bulk = new int[sprite.length];
+            Pixels.outline(sprite, bulk, width, height, color, thickness);
+            assertArrayEquals("thickness " + thickness, outlinePerPixel(sprite, width, height, color, thickness), bulk);
+        }
+    }
+
+    @Test
+    public void outlineInPlace(){
+        int[] pixels = new int[5 * 5];
+        pixels[12] = 0xffffffff;
+        Pixels.outline(pixels, pixels, 5, 5, 0x000000ff, 1);
+        assertEquals(0xffffffff, pixels[12]);
+        assertEquals(0x000000ff, pixels[7]);
+        assertEquals(0x000000ff, pixels[11]);
+        assertEquals(0, pixels[6]);
+        assertEquals(5, count(pixels, 0x000000ff) + count(pixels, 0xffffffff));
+    }
+
+    @Test
+    public void recolorSwapsPalette(){
+        int[] pixels = {1, 1, 2, 3, 3, 3, 2, 1, 4};
+        IntIntMap palette = new IntIntMap();
+        palette.put(1, 10);
+        palette.put(3, 30);
+        Pixels.recolor(pixels, pixels, 3, 3, palette);
+        assertArrayEquals(new int[]{10, 10, 2, 30, 30, 30, 2, 10, 4}, pixels);
+    }
+
+    @Test
+    public void bleedMatchesPerPixel(){
+        Random random = new Random(2);
+        int width = 64, height = 48;
+        int[] sprite = sprite(random, width, height);
+        int[] expected = sprite.clone();
+        bleedPerPixel(expected, width, height, 4);
+        Pixels.bleed(sprite, width, height, 4);
+        assertArrayEquals(expected, sprite);
+
+        for(int pixel : sprite){
+            assertTrue((pixel & 0xff) == 0 || (pixel & 0xff) == 0xff);
+        }
+    }
+
+    @Test
+    public void scaleMatchesPerPixel(){
+        Random random = new Random(3);
+        int width = 37, height = 23;
+        int[] sprite = sprite(random, width, height);
+        for(float scale : new float[]{0.5f, 1f, 2f, 3.3f}){
+            int dstWidth = (int)(width * scale), dstHeight = (int)(height * scale * 0.75f);
+            int[] bulk = new int[dstWidth * dstHeight], expected = new int[dstWidth * dstHeight];
+            Pixels.scale(sprite, width, height, bulk, dstWidth, dstHeight, scale, scale * 0.75f);
+            for(int y = 0; y < dstHeight; y++){
+                for(int x = 0; x < dstWidth; x++){
+                    expected[x + y * dstWidth] = get(sprite, width, height, (int)(x / scale), (int)(y / (scale * 0.75f)));
+                }
+            }
+            assertArrayEquals(expected, bulk);
+        }
+    }
+
+    @Test
+    public void parallelMatchesSerial(){
+        int threshold = Pixels.parallelThreshold;
+        Random random = new Random(4);
+        int width = 300, height = 200;
+        int[] sprite = sprite(random, width, height), serial = new int[sprite.length], parallel = new int[sprite.length];
+        try{
+            Pixels.parallelThreshold = Integer.MAX_VALUE;
+            Pixels.outline(sprite, serial, width, height, 0xff, 3);
+            Pixels.parallelThreshold = 1;
+            Pixels.outline(sprite, parallel, width, height, 0xff, 3);
+        }finally{
+            Pixels.parallelThreshold = threshold;
+        }
+        assertArrayEquals(serial, parallel);
+    }
+
+    /** Random blobs of opaque pixels on a transparent background. */
+    static int[] sprite(Random random, int width, int height){
+        int[] pixels = new int[width * height];
+        for(int i = 0; i < Math.max(1, width * height / 300); i++){
+            int cx = random.nextInt(width), cy = random.nextInt(height), radius = 1 + random.nextInt(6);
+            int color = (random.nextInt() & 0xffffff00) | 0xff;
+            for(int y = cy - radius; y <= cy + radius; y++){
+                for(int x = cx - radius; x <= cx + radius; x++){
+                    if(x >= 0 && y >= 0 && x < width && y < height && (x - cx) * (x - cx) + (y - cy) * (y - cy) <= radius * radius){
+                        pixels[x + y * width] = color;
+                    }
+                }
+            }
+        }
+        return pixels;
+    }
+
+    static int[] outlinePerPixel(int[] input, int width, int height, int color, int thickness){
+        int[] out = input.clone();
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                if(!empty(get(input, width, height, x, y))) continue;
+                outer:
+                for(int dx = -thickness; dx <= thickness; dx++){
+                    for(int dy = -thickness; dy <= thickness; dy++){
+                        if(dx * dx + dy * dy <= thickness * thickness && !empty(get(input, width, height, x + dx, y + dy))){
+                            out[x + y * width] = color;
+                            break outer;
+                        }
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    static void bleedPerPixel(int[] pixels, int width, int height, int iterations){
+        boolean[] colored = new boolean[pixels.length];
+        for(int i = 0; i < pixels.length; i++){
+            colored[i] = !empty(pixels[i]);
+        }
+        for(int iteration = 0; iteration < iterations; iteration++){
+            boolean[] next = colored.clone();
+            int[] result = pixels.clone();
+            for(int y = 0; y < height; y++){
+                for(int x = 0; x < width; x++){
+                    if(colored[x + y * width]) continue;
+                    int r = 0, g = 0, b = 0, count = 0;
+                    for(int dy = -1; dy <= 1; dy++){
+                        for(int dx = -1; dx <= 1; dx++){
+                            int nx = x + dx, ny = y + dy;
+                            if(nx < 0 || ny < 0 || nx >= width || ny >= height || !colored[nx + ny * width]) continue;
+                            int pixel = pixels[nx + ny * width];
+                            r += pixel >>> 24;
+                            g += (pixel >>> 16) & 0xff;
+                            b += (pixel >>> 8) & 0xff;
+                            count++;
+                        }
+                    }
+                    if(count > 0){
+                        result[x + y * width] = ((r / count) << 24) | ((g / count) << 16) | ((b / count) << 8);
+                        next[x + y * width] = true;
+                    }
+                }
+            }
+            System.arraycopy(result, 0, pixels, 0, pixels.length);
+            colored = next;
+        }
+    }
+
+    static int get(int[] pixels, int width, int height, int x, int y){
+        return x < 0 || y < 0 || x >= width || y >= height ? 0 : pixels[x + y * width];
+    }
+
+    static boolean empty(int pixel){
+        return (pixel & 0xff) == 0;
+    }
+
+    static int count(int[] pixels, int value){
+        int count = 0;
+        for(int pixel : pixels){
+            if(pixel == value) count++;
+        }
+        return count;
+    }
+}
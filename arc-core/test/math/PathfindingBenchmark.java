@@ -0,0 +1,63 @@
+package math;
+
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.math.pathfinding.CostGrid;
+import io.anuke.arc.math.pathfinding.FlowField;
+import io.anuke.arc.math.pathfinding.GridPathfinder;
+
+import java.util.Random;
+
+/**
+ * Times paths found with A* and with jump points, and a flow field built and repaired, on a large grid with random walls.
+ * <p>
+ * Arguments: grid size. Defaults to 500.
+ */
+public class PathfindingBenchmark{
+
+    public static void main(String[] args){
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        Random random = new Random(1);
+        CostGrid grid = PathfindingTest.randomGrid(random, size, size, 0.2f, 1);
+        GridPathfinder astar = new GridPathfinder(grid), jps = new GridPathfinder(grid);
+        jps.setJumpPoints(true);
+        IntArray path = new IntArray();
+
+        int[] queries = new int[400];
+        for(int i = 0; i < queries.length; i++){
+            queries[i] = random.nextInt(size);
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < queries.length; i += 4){
+            astar.findPath(queries[i], queries[i + 1], queries[i + 2], queries[i + 3], path);
+        }
+        long astarTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int i = 0; i < queries.length; i += 4){
+            jps.findPath(queries[i], queries[i + 1], queries[i + 2], queries[i + 3], path);
+        }
+        long jpsTime = System.nanoTime() - start;
+
+        FlowField field = new FlowField(grid);
+        for(int i = 0; i < 8; i++){
+            field.addTarget(random.nextInt(size), random.nextInt(size));
+        }
+        start = System.nanoTime();
+        field.update();
+        long fieldTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int i = 0; i < 100; i++){
+            int x = random.nextInt(size), y = random.nextInt(size);
+            grid.set(x, y, grid.get(x, y) == CostGrid.solid ? 1 : CostGrid.solid);
+            field.repair(x, y);
+            field.update();
+        }
+        long repairTime = System.nanoTime() - start;
+
+        System.out.println("Pathfinding on " + size + "x" + size + ": A* " + astarTime / 100 / 1000000f + "ms, jump points "
+            + jpsTime / 100 / 1000000f + "ms per path; flow field " + fieldTime / 1000000f + "ms, repair "
+            + repairTime / 100 / 1000000f + "ms per cell");
+    }
+}
@@ -0,0 +1,187 @@
+package math;
+
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.math.pathfinding.CostGrid;
+import io.anuke.arc.math.pathfinding.FlowField;
+import io.anuke.arc.math.pathfinding.GridPathfinder;
+import io.anuke.arc.util.async.AsyncExecutor;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PathfindingTest{
+
+    @Test
+    public void findsPathAroundWall(){
+        CostGrid grid = new CostGrid(10, 10);
+        for(int y = 0; y < 9; y++){
+            grid.set(5, y, CostGrid.solid);
+        }
+
+        GridPathfinder finder = new GridPathfinder(grid);
+        IntArray path = new IntArray();
+        assertTrue(finder.findPath(0, 0, 9, 0, path));
+        assertValid(grid, path, 0, 0, 9, 0);
+        //up to the gap, straight through it without cutting its corners, and back down
+        assertEquals(7 * CostGrid.diagonalCost + 13 * CostGrid.straightCost, finder.getCost());
+
+        grid.set(5, 9, CostGrid.solid);
+        assertFalse(finder.findPath(0, 0, 9, 0, path));
+        assertEquals(0, path.size);
+    }
+
+    @Test
+    public void avoidsExpensiveCells(){
+        CostGrid grid = new CostGrid(10, 3);
+        for(int x = 1; x < 9; x++){
+            grid.set(x, 1, 10);
+        }
+
+        GridPathfinder finder = new GridPathfinder(grid);
+        finder.setDiagonal(false);
+        IntArray path = new IntArray();
+        assertTrue(finder.findPath(0, 1, 9, 1, path));
+        assertEquals(11 * CostGrid.straightCost, finder.getCost());
+    }
+
+    @Test
+    public void jumpPointsMatchAStar(){
+        Random random = new Random(7);
+        CostGrid grid = randomGrid(random, 120, 120, 0.3f, 1);
+        GridPathfinder astar = new GridPathfinder(grid), jps = new GridPathfinder(grid);
+        jps.setJumpPoints(true);
+        IntArray path = new IntArray(), jumpPath = new IntArray();
+
+        for(int i = 0; i < 200; i++){
+            int sx = random.nextInt(120), sy = random.nextInt(120), tx = random.nextInt(120), ty = random.nextInt(120);
+            boolean found = astar.findPath(sx, sy, tx, ty, path);
+            assertEquals(found, jps.findPath(sx, sy, tx, ty, jumpPath));
+            if(!found) continue;
+
+            assertEquals(astar.getCost(), jps.getCost());
+            assertValid(grid, path, sx, sy, tx, ty);
+            assertValid(grid, jumpPath, sx, sy, tx, ty);
+        }
+    }
+
+    @Test
+    public void flowFieldMatchesAStar(){
+        Random random = new Random(3);
+        CostGrid grid = randomGrid(random, 80, 80, 0.25f, 5);
+        grid.set(40, 40, 1);
+        FlowField field = new FlowField(grid);
+        field.addTarget(40, 40);
+        field.update();
+
+        GridPathfinder finder = new GridPathfinder(grid);
+        IntArray path = new IntArray();
+        for(int i = 0; i < 100; i++){
+            int x = random.nextInt(80), y = random.nextInt(80);
+            if(finder.findPath(x, y, 40, 40, path)){
+                assertEquals(finder.getCost(), field.getDistance(x, y));
+                assertDescends(grid, field, x, y);
+            }else{
+                assertEquals(FlowField.unreachable, field.getDistance(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void repairMatchesRecalculation(){
+        Random random = new Random(11);
+        CostGrid grid = randomGrid(random, 60, 60, 0.2f, 4);
+        FlowField repaired = new FlowField(grid), expected = new FlowField(grid);
+        for(int i = 0; i < 3; i++){
+            int x = random.nextInt(60), y = random.nextInt(60);
+            repaired.addTarget(x, y);
+            expected.addTarget(x, y);
+        }
+        repaired.update();
+
+        for(int round = 0; round < 100; round++){
+            int changes = 1 + random.nextInt(6);
+            for(int i = 0; i < changes; i++){
+                int x = random.nextInt(60), y = random.nextInt(60);
+                grid.set(x, y, random.nextFloat() < 0.4f ? CostGrid.solid : 1 + random.nextInt(4));
+                repaired.repair(x, y);
+            }
+            repaired.update();
+            expected.calculate();
+
+            for(int y = 0; y < 60; y++){
+                for(int x = 0; x < 60; x++){
+                    assertEquals("cell " + x + ", " + y + " in round " + round, expected.getDistance(x, y), repaired.getDistance(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parallelUpdate(){
+        Random random = new Random(5);
+        CostGrid grid = randomGrid(random, 100, 100, 0.2f, 3);
+        FlowField[] fields = new FlowField[4];
+        for(int i = 0; i < fields.length; i++){
+            fields[i] = new FlowField(grid);
+            fields[i].addTarget(random.nextInt(100), random.nextInt(100));
+        }
+
+        AsyncExecutor executor = new AsyncExecutor(3);
+        FlowField.updateAll(executor, fields);
+        executor.dispose();
+
+        for(FlowField field : fields){
+            FlowField copy = new FlowField(grid);
+            for(int y = 0; y < 100; y++){
+                for(int x = 0; x < 100; x++){
+                    if(field.getDistance(x, y) == 0) copy.addTarget(x, y);
+                }
+            }
+            copy.update();
+            for(int y = 0; y < 100; y += 7){
+                for(int x = 0; x < 100; x += 7){
+                    assertEquals(copy.getDistance(x, y), field.getDistance(x, y));
+                }
+            }
+        }
+    }
+
+    static CostGrid randomGrid(Random random, int width, int height, float walls, int maxCost){
+        CostGrid grid = new CostGrid(width, height);
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                grid.set(x, y, random.nextFloat() < walls ? CostGrid.solid : 1 + random.nextInt(maxCost));
+            }
+        }
+        return grid;
+    }
+
+    static void assertValid(CostGrid grid, IntArray path, int sx, int sy, int tx, int ty){
+        assertEquals(grid.index(sx, sy), path.first());
+        assertEquals(grid.index(tx, ty), path.peek());
+        for(int i = 1; i < path.size; i++){
+            int x = path.get(i) % grid.width, y = path.get(i) / grid.width;
+            int px = path.get(i - 1) % grid.width, py = path.get(i - 1) / grid.width;
+            assertTrue(grid.passable(x, y));
+            assertTrue(Math.abs(x - px) <= 1 && Math.abs(y - py) <= 1 && path.get(i) != path.get(i - 1));
+            if(x != px && y != py){
+                assertTrue("cut corner", grid.passable(px, y) && grid.passable(x, py));
+            }
+        }
+    }
+
+    static void assertDescends(CostGrid grid, FlowField field, int x, int y){
+        int steps = 0;
+        while(field.getDistance(x, y) != 0){
+            int next = field.getNext(x, y);
+            assertNotEquals(-1, next);
+            int nx = next % grid.width, ny = next / grid.width;
+            assertTrue(field.getDistance(nx, ny) < field.getDistance(x, y));
+            x = nx;
+            y = ny;
+            assertTrue(steps++ < grid.width * grid.height);
+        }
+    }
+}
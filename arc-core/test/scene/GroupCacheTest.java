@@ -0,0 +1,231 @@
+package scene;
+
+import io.anuke.arc.Core;
+import io.anuke.arc.graphics.g2d.SpriteBatch;
+import io.anuke.arc.input.KeyCode;
+import io.anuke.arc.scene.Element;
+import io.anuke.arc.scene.Group;
+import io.anuke.arc.scene.event.ClickListener;
+import io.anuke.arc.scene.event.InputEvent;
+import io.anuke.arc.scene.event.InputEvent.Type;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GroupCacheTest{
+    private SpriteBatch lastBatch;
+
+    @Before
+    public void setup(){
+        lastBatch = Core.batch;
+        //records nothing, as the test elements draw nothing; replaying only needs the batch state
+        Core.batch = new SpriteBatch((Object)null){
+            @Override
+            protected void flush(){
+            }
+        };
+    }
+
+    @After
+    public void teardown(){
+        Core.batch = lastBatch;
+    }
+
+    @Test
+    public void uncachedTreesDoNotPropagate(){
+        CountingGroup root = new CountingGroup(), middle = new CountingGroup();
+        Element child = new Element();
+        root.addChild(middle);
+        middle.addChild(child);
+        root.invalidations = middle.invalidations = 0;
+
+        child.moveBy(1f, 1f);
+        child.setRotation(10f);
+        child.invalidate();
+        child.visible(false);
+        assertEquals(0, middle.invalidations);
+        assertEquals(0, root.invalidations);
+
+        //caching the root makes changes below it reach it, and uncaching stops them again
+        root.setCached(true);
+        root.invalidations = middle.invalidations = 0;
+        child.moveBy(1f, 1f);
+        assertEquals(1, middle.invalidations);
+        assertEquals(1, root.invalidations);
+
+        root.setCached(false);
+        child.moveBy(1f, 1f);
+        assertEquals(1, middle.invalidations);
+    }
+
+    @Test
+    public void stopsAtDirtyGroups(){
+        CountingGroup outer = new CountingGroup();
+        Group cached = new Group(){};
+        CountingElement child = new CountingElement();
+        outer.addChild(cached);
+        cached.addChild(child);
+        outer.setCached(true);
+        cached.setCached(true);
+
+        outer.draw();
+        outer.invalidations = 0;
+
+        //the first change dirties both groups, later ones stop at the inner group until something is recorded again
+        for(int i = 0; i < 10; i++){
+            child.moveBy(1f, 0f);
+            child.invalidate();
+        }
+        assertEquals(1, outer.invalidations);
+
+        outer.draw();
+        child.moveBy(1f, 0f);
+        assertEquals(2, outer.invalidations);
+    }
+
+    @Test
+    public void replaysUntilChanged(){
+        Group group = new Group(){};
+        CountingElement child = new CountingElement();
+        group.addChild(child);
+        group.setCached(true);
+
+        group.draw();
+        group.draw();
+        assertEquals(1, child.draws);
+
+        child.moveBy(5f, 0f);
+        group.draw();
+        group.draw();
+        assertEquals(2, child.draws);
+
+        //moving the group itself is detected when drawing
+        group.moveBy(5f, 0f);
+        group.draw();
+        assertEquals(3, child.draws);
+    }
+
+    @Test
+    public void nestedGroupsRecordWithTheirAncestor(){
+        Group outer = new Group(){}, inner = new Group(){};
+        CountingElement child = new CountingElement();
+        outer.addChild(inner);
+        inner.addChild(child);
+        inner.setCached(true);
+        outer.setCached(true);
+
+        outer.draw();
+        outer.draw();
+        assertEquals(1, child.draws);
+
+        //a change deep inside re-records the outer group, even after the inner one was recorded as part of it
+        child.moveBy(1f, 0f);
+        outer.draw();
+        child.moveBy(1f, 0f);
+        outer.draw();
+        assertEquals(3, child.draws);
+
+        //drawn on its own, the inner group records for itself
+        outer.removeChild(inner);
+        inner.draw();
+        inner.draw();
+        assertEquals(4, child.draws);
+    }
+
+    @Test
+    public void detachedChangesAreTracked(){
+        Group outer = new Group(){};
+        Group moved = new Group(){};
+        CountingElement child = new CountingElement();
+        moved.addChild(child);
+        outer.setCached(true);
+
+        outer.addChild(moved);
+        outer.draw();
+        assertEquals(1, child.draws);
+
+        outer.removeChild(moved);
+        child.moveBy(1f, 0f);
+        outer.draw();
+        outer.addChild(moved);
+        outer.draw();
+        outer.draw();
+        assertEquals(2, child.draws);
+
+        //elements that left the cached group no longer reach it
+        CountingGroup removed = new CountingGroup();
+        outer.addChild(removed);
+        outer.removeChild(removed);
+        Element inside = new Element();
+        removed.addChild(inside);
+        removed.invalidations = 0;
+        inside.moveBy(1f, 1f);
+        assertEquals(0, removed.invalidations);
+    }
+
+    @Test
+    public void rerecordsUntilReleaseIsVisible() throws InterruptedException{
+        float lastDuration = ClickListener.visualPressedDuration;
+        ClickListener.visualPressedDuration = 0.05f;
+        try{
+            Group group = new Group(){};
+            CountingElement button = new CountingElement();
+            ClickListener listener = new ClickListener();
+            button.addListener(listener);
+            group.addChild(button);
+            group.setCached(true);
+
+            InputEvent event = new InputEvent();
+            event.listenerActor = button;
+            event.type = Type.touchDown;
+            listener.touchDown(event, 0f, 0f, 0, KeyCode.MOUSE_LEFT);
+            //cancelled, as a release over the button would look it up in Core.scene
+            listener.cancel();
+            event.type = Type.touchUp;
+            listener.touchUp(event, 0f, 0f, 0, KeyCode.MOUSE_LEFT);
+            assertTrue(listener.isVisualPressed());
+
+            //every frame is recorded again while the button looks pressed
+            group.act(0f);
+            group.draw();
+            group.act(0f);
+            group.draw();
+            assertEquals(2, button.draws);
+
+            Thread.sleep(100);
+            group.act(0f);
+            group.draw();
+            assertFalse(listener.isVisualPressed());
+            assertEquals(3, button.draws);
+
+            //then replayed once it is released
+            group.act(0f);
+            group.draw();
+            assertEquals(3, button.draws);
+        }finally{
+            ClickListener.visualPressedDuration = lastDuration;
+        }
+    }
+
+    static class CountingGroup extends Group{
+        int invalidations;
+
+        @Override
+        public void invalidateCache(){
+            invalidations++;
+            super.invalidateCache();
+        }
+    }
+
+    static class CountingElement extends Element{
+        int draws;
+
+        @Override
+        public void draw(){
+            super.draw();
+            draws++;
+        }
+    }
+}
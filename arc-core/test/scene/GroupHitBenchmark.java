@@ -0,0 +1,43 @@
+package scene;
+
+import io.anuke.arc.scene.Group;
+
+import java.util.Random;
+
+import static scene.GroupHitTest.*;
+
+/**
+ * Compares hit testing a grid of buttons by searching every child and through the hit index.
+ * <p>
+ * Arguments: points. Defaults to 10000.
+ */
+public class GroupHitBenchmark{
+
+    public static void main(String[] args){
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        Group linear = grid(false), indexed = grid(true);
+        Random random = new Random(1);
+        float[] points = new float[count * 2];
+        for(int i = 0; i < points.length; i++) points[i] = random.nextFloat() * size * cell;
+
+        //warm up both paths before measuring
+        long linearTime = 0, indexedTime = 0;
+        for(int round = 0; round < 3; round++){
+            linearTime = time(linear, points);
+            indexedTime = time(indexed, points);
+        }
+        System.out.println("Hit test of " + count + " points over " + size * size + " children: linear " +
+            linearTime / 1000000f + "ms, indexed " + indexedTime / 1000000f + "ms");
+    }
+
+    static long time(Group group, float[] points){
+        long start = System.nanoTime();
+        int hits = 0;
+        for(int i = 0; i < points.length; i += 2){
+            if(group.hit(points[i], points[i + 1], true) != group) hits++;
+        }
+        long elapsed = System.nanoTime() - start;
+        if(hits == 0) throw new IllegalStateException("No buttons hit.");
+        return elapsed;
+    }
+}
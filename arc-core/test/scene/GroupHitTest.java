@@ -0,0 +1,79 @@
+package scene;
+
+import io.anuke.arc.scene.Element;
+import io.anuke.arc.scene.Group;
+import io.anuke.arc.scene.event.Touchable;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GroupHitTest{
+    static final int size = 100;
+    static final float cell = 20f;
+
+    /** @return a group of size * size buttons in a grid. */
+    static Group grid(boolean indexed){
+        Group group = new Group(){};
+        group.setHitIndexed(indexed);
+        group.setSize(size * cell, size * cell);
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                Element button = new Element();
+                button.setName(x + "," + y);
+                //leave a gap between buttons, so that some points hit nothing
+                button.setBounds(x * cell, y * cell, cell - 2f, cell - 2f);
+                group.addChild(button);
+            }
+        }
+        return group;
+    }
+
+    @Test
+    public void matchesLinearSearch(){
+        Group linear = grid(false), indexed = grid(true);
+
+        //overlapping, transformed and hidden children
+        for(Group group : new Group[]{linear, indexed}){
+            Element overlay = new Element();
+            overlay.setName("overlay");
+            overlay.setBounds(500f, 500f, 300f, 300f);
+            group.addChild(overlay);
+
+            Element rotated = new Element();
+            rotated.setName("rotated");
+            rotated.setBounds(1000f, 1000f, 200f, 50f);
+            rotated.setRotation(45f);
+            group.addChild(rotated);
+
+            group.getChildren().get(0).visible(false);
+            group.getChildren().get(5).touchable(Touchable.disabled);
+            group.getChildren().get(7).moveBy(400f, 400f);
+        }
+
+        Random random = new Random(0);
+        for(int i = 0; i < 20000; i++){
+            float x = random.nextFloat() * (size * cell + 40f) - 20f, y = random.nextFloat() * (size * cell + 40f) - 20f;
+            assertEquals("Point " + x + ", " + y, name(linear, linear.hit(x, y, true)), name(indexed, indexed.hit(x, y, true)));
+        }
+    }
+
+    private String name(Group group, Element hit){
+        return hit == null ? null : hit == group ? "group" : hit.getName();
+    }
+
+    @Test
+    public void rebuildsOnChange(){
+        Group group = grid(true);
+        Element first = group.getChildren().first();
+        assertSame(first, group.hit(5f, 5f, true));
+
+        first.setPosition(-100f, -100f);
+        assertNotSame(first, group.hit(5f, 5f, true));
+        assertSame(first, group.hit(-95f, -95f, true));
+
+        first.remove();
+        assertNull(group.hit(-95f, -95f, true));
+    }
+}
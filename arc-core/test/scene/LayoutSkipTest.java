@@ -0,0 +1,160 @@
+package scene;
+
+import io.anuke.arc.scene.Element;
+import io.anuke.arc.scene.ui.layout.WidgetGroup;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LayoutSkipTest{
+
+    @Test
+    public void unchangedSizesSkipAncestors(){
+        Row root = new Row(), row = new Row();
+        SizedElement[] labels = new SizedElement[10];
+        for(int i = 0; i < labels.length; i++){
+            labels[i] = new SizedElement(20f, 10f);
+            row.addChild(labels[i]);
+        }
+        root.addChild(row);
+        root.setSize(400f, 100f);
+        root.validate();
+        assertEquals(1, root.layouts);
+        assertEquals(1, row.layouts);
+
+        //text that changes without changing its size, as a counter in a monospaced font does
+        for(SizedElement label : labels){
+            label.invalidateHierarchy();
+        }
+        root.validate();
+        assertEquals(1, root.layouts);
+        assertEquals(1, row.layouts);
+        for(SizedElement label : labels){
+            assertEquals(2, label.layouts);
+            assertFalse(label.needsLayout());
+        }
+        assertFalse(root.needsLayout());
+        assertFalse(row.needsLayout());
+    }
+
+    @Test
+    public void changedSizesLayOutOnlyAffectedGroups(){
+        Row root = new Row(), row = new Row();
+        SizedElement label = new SizedElement(20f, 10f);
+        row.addChild(label);
+        root.addChild(row);
+        root.setSize(400f, 100f);
+        root.validate();
+
+        label.setPrefSize(30f, 10f);
+        label.invalidateHierarchy();
+        root.validate();
+        assertEquals(2, row.layouts);
+        assertEquals(2, root.layouts);
+        assertEquals(30f, label.getWidth(), 0f);
+
+        //a label in another group that keeps its size does not lay out the root again
+        Row other = new Row();
+        SizedElement fixed = new SizedElement(10f, 10f);
+        other.addChild(fixed);
+        root.addChild(other);
+        root.validate();
+        int rootLayouts = root.layouts;
+
+        fixed.invalidateHierarchy();
+        root.validate();
+        assertEquals(rootLayouts, root.layouts);
+        assertEquals(1, other.layouts);
+        assertEquals(2, fixed.layouts);
+    }
+
+    @Test
+    public void directInvalidationIsNotSkipped(){
+        Row root = new Row();
+        SizedElement label = new SizedElement(20f, 10f);
+        root.addChild(label);
+        root.setSize(100f, 100f);
+        root.validate();
+
+        //changed settings are only known to the group, which is invalidated directly
+        root.spacing = 10f;
+        root.invalidate();
+        label.invalidateHierarchy();
+        root.validate();
+        assertEquals(2, root.layouts);
+
+        root.setSize(200f, 100f);
+        root.validate();
+        assertEquals(3, root.layouts);
+
+        //so are added children, even when sizes stay the same
+        root.addChild(new SizedElement(0f, 0f));
+        label.invalidateHierarchy();
+        root.validate();
+        assertEquals(4, root.layouts);
+    }
+
+    /** Lays out its children left to right at their preferred sizes. */
+    static class Row extends WidgetGroup{
+        float spacing;
+        int layouts;
+
+        @Override
+        public float getPrefWidth(){
+            float width = 0f;
+            for(Element child : getChildren()){
+                width += child.getPrefWidth() + spacing;
+            }
+            return width;
+        }
+
+        @Override
+        public float getPrefHeight(){
+            float height = 0f;
+            for(Element child : getChildren()){
+                height = Math.max(height, child.getPrefHeight());
+            }
+            return height;
+        }
+
+        @Override
+        public void layout(){
+            layouts++;
+            float x = 0f;
+            for(Element child : getChildren()){
+                child.setBounds(x, 0f, child.getPrefWidth(), child.getPrefHeight());
+                child.validate();
+                x += child.getWidth() + spacing;
+            }
+        }
+    }
+
+    static class SizedElement extends Element{
+        float prefWidth, prefHeight;
+        int layouts;
+
+        SizedElement(float prefWidth, float prefHeight){
+            setPrefSize(prefWidth, prefHeight);
+        }
+
+        void setPrefSize(float prefWidth, float prefHeight){
+            this.prefWidth = prefWidth;
+            this.prefHeight = prefHeight;
+        }
+
+        @Override
+        public float getPrefWidth(){
+            return prefWidth;
+        }
+
+        @Override
+        public float getPrefHeight(){
+            return prefHeight;
+        }
+
+        @Override
+        public void layout(){
+            layouts++;
+        }
+    }
+}
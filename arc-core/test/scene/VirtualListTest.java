@@ -0,0 +1,83 @@
+package scene;
+
+import io.anuke.arc.math.geom.Rectangle;
+import io.anuke.arc.scene.Element;
+import io.anuke.arc.scene.ui.layout.VirtualList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VirtualListTest{
+    private int created;
+
+    private VirtualList<Element> list(int items){
+        VirtualList<Element> list = new VirtualList<>(() -> {
+            created++;
+            return new Element();
+        }, (element, item) -> element.setName(String.valueOf(item)));
+        list.setMargin(0f);
+        list.setItemCount(items);
+        return list;
+    }
+
+    @Test
+    public void onlyVisibleRows(){
+        VirtualList<Element> list = list(10000);
+        list.setRowHeight(10f);
+        list.setSize(100f, list.getPrefHeight());
+        assertEquals(100000f, list.getHeight(), 0f);
+
+        //view of the top 50 units: rows 0 through 5, since the bottom edge touches row 5
+        list.setCullingArea(new Rectangle(0f, list.getHeight() - 50f, 100f, 50f));
+        list.layout();
+        assertEquals(0, list.getFirstActive());
+        assertEquals(6, list.getActiveCount());
+        assertEquals(6, list.getChildren().size);
+        assertEquals("3", list.getElement(3).getName());
+        assertEquals(list.getHeight() - 40f, list.getElement(3).getY(), 0f);
+
+        //scroll to the middle; elements are recycled rather than created
+        list.setCullingArea(new Rectangle(0f, 49950f, 100f, 50f));
+        list.layout();
+        assertEquals(5000, list.getFirstActive());
+        assertEquals(6, list.getChildren().size);
+        assertEquals(6, created);
+        assertEquals("5002", list.getElement(5002).getName());
+        assertNull(list.getElement(3));
+    }
+
+    @Test
+    public void variableHeights(){
+        VirtualList<Element> list = list(100);
+        //row i has height i + 1, so row i starts at i * (i + 1) / 2 from the top
+        list.setRowHeights(row -> row + 1);
+        assertEquals(100 * 101 / 2f, list.getPrefHeight(), 0f);
+        assertEquals(45f, list.getItemOffset(9), 0f);
+        assertEquals(10f, list.getItemHeight(9), 0f);
+        assertEquals(9, list.rowAt(45f));
+        assertEquals(9, list.rowAt(54.9f));
+        assertEquals(10, list.rowAt(55f));
+        assertEquals(99, list.rowAt(100000f));
+    }
+
+    @Test
+    public void grid(){
+        VirtualList<Element> list = list(25);
+        list.setColumns(4);
+        list.setRowHeight(20f);
+        assertEquals(7 * 20f, list.getPrefHeight(), 0f);
+        list.setSize(80f, list.getPrefHeight());
+
+        list.setCullingArea(new Rectangle(0f, 0f, 80f, 30f));
+        list.layout();
+        //the bottom row only has the last item, the one above it is full
+        assertEquals(20, list.getFirstActive());
+        assertEquals(5, list.getActiveCount());
+        assertEquals(20f, list.getElement(21).getX(), 0f);
+        assertEquals(0f, list.getElement(24).getY(), 0f);
+
+        list.setItemCount(8);
+        list.layout();
+        assertEquals(0, list.getActiveCount());
+    }
+}
@@ -0,0 +1,137 @@
+package utils;
+
+import io.anuke.arc.util.Histogram;
+import io.anuke.arc.util.TrafficStats;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest{
+
+    @Test
+    public void percentiles(){
+        Histogram histogram = new Histogram(1000000);
+        for(int i = 1; i <= 100000; i++){
+            histogram.record(i);
+        }
+
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000.5, histogram.getMean(), 0.001);
+        assertClose(50000, histogram.getMedian());
+        assertClose(90000, histogram.getPercentile(90));
+        assertClose(99000, histogram.getPercentile(99));
+        assertEquals(100000, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void smallValuesAreExact(){
+        Histogram histogram = new Histogram(100);
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(-5);
+        histogram.record(500);
+
+        assertEquals(0, histogram.getPercentile(20));
+        assertEquals(3, histogram.getPercentile(60));
+        assertEquals(7, histogram.getPercentile(80));
+        assertEquals(100, histogram.getMax());
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException{
+        Histogram histogram = new Histogram(1 << 20);
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++){
+            threads[t] = new Thread(() -> {
+                for(int i = 0; i < 100000; i++){
+                    histogram.record(i % 1000);
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+
+        assertEquals(400000, histogram.getCount());
+        assertEquals(999, histogram.getMax());
+        assertClose(500, histogram.getMedian());
+    }
+
+    @Test
+    public void addAndCopy(){
+        Histogram a = new Histogram(10000), b = new Histogram(1000000);
+        a.record(10);
+        b.record(20);
+        b.record(500000);
+
+        Histogram copy = a.copy();
+        copy.add(b);
+        assertEquals(1, a.getCount());
+        assertEquals(3, copy.getCount());
+        assertEquals(10000, copy.getMax());
+        assertEquals(10000, copy.getPercentile(100));
+
+        copy.reset();
+        assertEquals(0, copy.getCount());
+        assertEquals(0, copy.getPercentile(50));
+    }
+
+    @Test
+    public void trafficStatsAggregate(){
+        TrafficStats server = new TrafficStats();
+        TrafficStats first = new TrafficStats(server), second = new TrafficStats(server);
+
+        first.sent("message", 10);
+        first.sent(1, 4);
+        second.received("other", 20);
+        second.recordRoundTrip(1500);
+
+        assertEquals(2, first.getTotal().getMessagesSent());
+        assertEquals(1, first.get(String.class).getMessagesSent());
+        assertEquals(10, first.get(String.class).getBytesSent());
+        assertEquals(2, first.getTypes().size());
+
+        assertEquals(2, server.getTotal().getMessagesSent());
+        assertEquals(14, server.getTotal().getBytesSent());
+        assertEquals(1, server.get(String.class).getMessagesReceived());
+        assertEquals(20, server.get(String.class).getBytesReceived());
+        assertEquals(1, server.roundTrip.getCount());
+
+        first.reset();
+        assertEquals(0, first.getTotal().getMessagesSent());
+        assertEquals(2, server.getTotal().getMessagesSent());
+
+        //connections keep counting into a server that was reset
+        server.reset();
+        first.sent("message", 10);
+        assertEquals(1, server.getTotal().getMessagesSent());
+        assertEquals(1, server.get(String.class).getMessagesSent());
+    }
+
+    @Test
+    public void trafficStatsManyTypes(){
+        TrafficStats server = new TrafficStats(), connection = new TrafficStats(server);
+        //more classes than the cache has entries, so some share them
+        Object[] messages = {"a", 1, 2L, 3f, 4.0, 'c', (byte)5, (short)6, true, new int[0], new long[0], new float[0],
+            new double[0], new byte[0], new char[0], new short[0], new boolean[0], new Object(), new StringBuilder(), new Object[0]};
+        for(int round = 0; round < 3; round++){
+            for(Object message : messages){
+                connection.sent(message, 2);
+            }
+        }
+        for(Object message : messages){
+            assertEquals(3, connection.get(message.getClass()).getMessagesSent());
+            assertEquals(6, server.get(message.getClass()).getBytesSent());
+        }
+        assertEquals(messages.length, server.getTypes().size());
+        assertEquals(messages.length * 3, server.getTotal().getMessagesSent());
+    }
+
+    private static void assertClose(long expected, long actual){
+        assertEquals(expected, actual, expected * 0.04);
+    }
+}
@@ -0,0 +1,53 @@
+package utils;
+
+import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.util.I18NBundle;
+import io.anuke.arc.util.I18NBundleCompiler;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares loading a large bundle from its properties file and from its compiled form.
+ * <p>
+ * Arguments: keys. Defaults to 5000.
+ */
+public class I18NBundleBenchmark{
+
+    public static void main(String[] args){
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        FileHandle dir = FileHandle.tempDirectory("arc-bundle");
+        Random random = new Random(0);
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < keys; i++){
+            builder.append("category.item").append(i).append(".description = ");
+            for(int j = 0; j < 8; j++){
+                builder.append("word").append(random.nextInt(500)).append(' ');
+            }
+            builder.append("{0}\n");
+        }
+        dir.child("bundle.properties").writeString(builder.toString(), false, "UTF-8");
+        FileHandle compiledDir = dir.child("compiled");
+        compiledDir.mkdirs();
+        dir.child("bundle.properties").copyTo(compiledDir);
+
+        try{
+            I18NBundleCompiler.compileAll(compiledDir.child("bundle"), "UTF-8");
+            int rounds = 10;
+            long text = 0, compiled = 0;
+            for(int i = 0; i < rounds; i++){
+                long start = System.nanoTime();
+                I18NBundle.createBundle(dir.child("bundle"), Locale.ROOT).get("category.item0.description");
+                text += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                I18NBundle.createBundle(compiledDir.child("bundle"), Locale.ROOT).get("category.item0.description");
+                compiled += System.nanoTime() - start;
+            }
+            System.out.println("Loading a bundle of " + keys + " keys: properties " + text / rounds / 1000000f + "ms, compiled "
+                + compiled / rounds / 1000000f + "ms");
+        }finally{
+            dir.deleteDirectory();
+        }
+    }
+}
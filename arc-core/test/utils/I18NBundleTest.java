@@ -0,0 +1,94 @@
+package utils;
+
+import io.anuke.arc.collection.ObjectSet;
+import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.util.I18NBundle;
+import io.anuke.arc.util.I18NBundleCompiler;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/** Checks that compiled bundles behave like the properties files they were compiled from. */
+public class I18NBundleTest{
+    static final String[] patterns = {
+        "plain text", "", "{0}", "Hello {0}, you have {1} messages", "{{escaped}} {0}", "{{{0}}}", "it's {0}'s",
+        "unmatched } brace {1}", "{0,number,#.##} typed", "{ 0 }", "trailing {", "{0}{1}{0}", "{{", "'{0}'", "ünïcødé {0} 日本語"
+    };
+
+    @Test
+    public void compiledMatchesProperties(){
+        FileHandle text = FileHandle.tempDirectory("arc-bundle"), binary = FileHandle.tempDirectory("arc-bundle");
+        write(text.child("bundle.properties"), "base", 100);
+        write(text.child("bundle_de.properties"), "de", 60);
+        write(text.child("bundle_de_CH.properties"), "ch", 10);
+        for(FileHandle file : text.list()){
+            file.copyTo(binary);
+        }
+
+        try{
+            assertEquals(3, I18NBundleCompiler.compileAll(binary.child("bundle"), "UTF-8").size);
+            //only the compiled files should be read
+            for(FileHandle file : binary.list(".properties")){
+                file.writeString("broken = {", false);
+            }
+
+            for(boolean simple : new boolean[]{false, true}){
+                I18NBundle.setSimpleFormatter(simple);
+                Locale locale = new Locale("de", "CH");
+                I18NBundle expected = I18NBundle.createBundle(text.child("bundle"), locale);
+                I18NBundle actual = I18NBundle.createBundle(binary.child("bundle"), locale);
+                assertEquals(expected.getLocale(), actual.getLocale());
+
+                ObjectSet<String> keys = new ObjectSet<>();
+                for(String key : expected.getKeys()) keys.add(key);
+                for(String key : actual.getKeys()) assertTrue(keys.remove(key));
+                assertEquals(0, keys.size);
+
+                Object[][] arguments = {{}, {"a"}, {"a", 12345}, {1234.5f, null}, {new Date(0), "b"}};
+                for(int i = 0; i < 110; i++){
+                    String key = "key" + i;
+                    assertEquals(expected.has(key), actual.has(key));
+                    assertEquals(expected.get(key), actual.get(key));
+                    for(Object[] args : arguments){
+                        assertEquals(format(expected, key, args), format(actual, key, args));
+                    }
+                }
+                assertEquals("???missing???", actual.get("missing"));
+                assertEquals(expected.format("missing"), actual.format("missing"));
+            }
+
+            I18NBundle bundle = I18NBundle.createBundle(binary.child("bundle"), Locale.GERMAN);
+            bundle.getProperties().put("key0", "changed");
+            assertEquals("changed", bundle.get("key0"));
+            assertEquals(expected("de", 1), bundle.get("key1"));
+        }finally{
+            I18NBundle.setSimpleFormatter(false);
+            text.deleteDirectory();
+            binary.deleteDirectory();
+        }
+    }
+
+    static String format(I18NBundle bundle, String key, Object[] args){
+        try{
+            return bundle.format(key, args);
+        }catch(IllegalArgumentException e){
+            return "error";
+        }
+    }
+
+    static String expected(String prefix, int index){
+        return prefix + " " + patterns[index % patterns.length] + " " + index;
+    }
+
+    static void write(FileHandle file, String prefix, int count){
+        StringBuilder builder = new StringBuilder("# " + prefix + "\n");
+        for(int i = 0; i < count; i++){
+            builder.append("key").append(i).append(" = ").append(prefix).append(' ')
+                .append(patterns[i % patterns.length].replace("\\", "\\\\")).append(' ').append(i).append('\n');
+        }
+        file.writeString(builder.toString(), false, "UTF-8");
+    }
+}
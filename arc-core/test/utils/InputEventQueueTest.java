@@ -0,0 +1,149 @@
+package utils;
+
+import io.anuke.arc.collection.IntArray;
+import io.anuke.arc.collection.LongArray;
+import io.anuke.arc.input.InputEventQueue;
+import io.anuke.arc.input.InputProcessor;
+import io.anuke.arc.input.KeyCode;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InputEventQueueTest{
+
+    @Test
+    public void coalescesConsecutiveMoves(){
+        InputEventQueue queue = new InputEventQueue(4);
+        Recorder recorder = new Recorder(queue);
+        queue.setProcessor(recorder);
+
+        queue.mouseMoved(1, -1);
+        queue.mouseMoved(2, -2);
+        queue.mouseMoved(3, -3);
+        queue.keyDown(KeyCode.A);
+        queue.mouseMoved(4, -4);
+        queue.touchDragged(5, 5, 0);
+        queue.touchDragged(6, 6, 0);
+        queue.touchDragged(7, 7, 1);
+        queue.touchDragged(8, 8, 1);
+        queue.scrolled(0.5f, -1.25f);
+        //growing keeps the order
+        assertTrue(queue.getCapacity() > 4);
+        assertEquals(10, queue.size());
+
+        queue.drain();
+        assertArrayEquals(new int[]{'m', 3, 'k', KeyCode.A.ordinal(), 'm', 4, 'd', 6, 'd', 8, 's', 50}, recorder.events.toArray());
+        assertEquals(0, queue.size());
+
+        for(int i = 1; i < recorder.times.size; i++){
+            assertTrue(recorder.times.get(i) >= recorder.times.get(i - 1));
+        }
+    }
+
+    @Test
+    public void discardsWithoutProcessor(){
+        InputEventQueue queue = new InputEventQueue();
+        queue.keyTyped('a');
+        queue.drain();
+        assertEquals(0, queue.size());
+
+        Recorder recorder = new Recorder(queue);
+        queue.setProcessor(recorder);
+        queue.keyTyped('b');
+        queue.drain();
+        assertArrayEquals(new int[]{'t', 'b'}, recorder.events.toArray());
+    }
+
+    /** Queues events from a simulated input thread while the main thread drains them, like a fast mouse and a slow frame. */
+    @Test
+    public void stress(){
+        int count = 2_000_000;
+        InputEventQueue queue = new InputEventQueue(64);
+        Recorder recorder = new Recorder(queue);
+        queue.setProcessor(recorder);
+
+        Thread input = new Thread(() -> {
+            for(int i = 0; i < count; i++){
+                if(i % 16 == 0){
+                    queue.keyTyped((char)(i / 16 % 60000));
+                }else{
+                    queue.mouseMoved(i, -i);
+                }
+            }
+        }, "Input");
+
+        input.start();
+        while(input.isAlive()){
+            queue.drain();
+            Thread.yield();
+        }
+        queue.drain();
+
+        //every typed character arrives in order, and each run of moves ends with the move before the next character
+        int typed = 0, moves = 0;
+        for(int i = 0; i < recorder.events.size; i += 2){
+            int type = recorder.events.get(i), value = recorder.events.get(i + 1);
+            if(type == 't'){
+                assertEquals(typed % 60000, value);
+                if(typed > 0) assertEquals(typed * 16 - 1, recorder.events.get(i - 1));
+                typed++;
+            }else{
+                assertEquals('m', type);
+                moves++;
+            }
+        }
+        assertEquals(count / 16, typed);
+        assertTrue(moves <= count - count / 16);
+        assertEquals(count - 1, recorder.events.get(recorder.events.size - 1));
+        for(int i = 1; i < recorder.times.size; i++){
+            assertTrue(recorder.times.get(i) >= recorder.times.get(i - 1));
+        }
+    }
+
+    static class Recorder implements InputProcessor{
+        final InputEventQueue queue;
+        IntArray events = new IntArray();
+        LongArray times = new LongArray();
+
+        Recorder(InputEventQueue queue){
+            this.queue = queue;
+        }
+
+        void add(int type, int value){
+            events.add(type, value);
+            times.add(queue.getCurrentEventTime());
+        }
+
+        @Override
+        public boolean keyDown(KeyCode keycode){
+            add('k', keycode.ordinal());
+            return false;
+        }
+
+        @Override
+        public boolean keyTyped(char character){
+            add('t', character);
+            return false;
+        }
+
+        @Override
+        public boolean touchDragged(int screenX, int screenY, int pointer){
+            add('d', screenX);
+            return false;
+        }
+
+        @Override
+        public boolean mouseMoved(int screenX, int screenY){
+            assertEquals(screenX, -screenY);
+            add('m', screenX);
+            return false;
+        }
+
+        @Override
+        public boolean scrolled(float amountX, float amountY){
+            add('s', (int)(amountX * 100));
+            assertEquals(-1.25f, amountY, 0f);
+            return false;
+        }
+    }
+}
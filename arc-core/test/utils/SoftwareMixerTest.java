@@ -0,0 +1,122 @@
+package utils;
+
+import io.anuke.arc.audio.DecodedSound;
+import io.anuke.arc.audio.SoftwareMixer;
+import io.anuke.arc.collection.IntArray;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SoftwareMixerTest{
+
+    @Test
+    public void mixesAndEnds(){
+        SoftwareMixer mixer = new SoftwareMixer(4, 100);
+        IntArray ended = new IntArray();
+        mixer.setEndListener(ended::add);
+
+        DecodedSound constant = mono(100, 10000, 1000);
+        mixer.play(0, constant, 1f, 1f, -1f, false);
+        mixer.play(2, constant, 0.5f, 1f, 1f, false);
+        assertEquals(2, mixer.getPlaying());
+
+        short[] out = new short[120 * 2];
+        mixer.mix(out, 0, 120);
+        //fully panned to opposite sides
+        assertEquals(10000, out[0], 1);
+        assertEquals(5000, out[1], 1);
+        assertEquals(10000, out[99 * 2], 1);
+        //silent after the end
+        assertEquals(0, out[100 * 2]);
+        assertEquals(0, out[119 * 2 + 1]);
+        assertArrayEquals(new int[]{0, 2}, ended.toArray());
+        assertEquals(0, mixer.getPlaying());
+    }
+
+    @Test
+    public void centersWithConstantPower(){
+        SoftwareMixer mixer = new SoftwareMixer(1, 100);
+        mixer.play(0, mono(10, 10000, 1000), 1f, 1f, 0f, true);
+        short[] out = new short[2];
+        mixer.mix(out, 0, 1);
+        assertEquals(7071, out[0], 1);
+        assertEquals(7071, out[1], 1);
+    }
+
+    @Test
+    public void resamplesAndLoops(){
+        SoftwareMixer mixer = new SoftwareMixer(1, 200);
+        DecodedSound ramp = new DecodedSound(new byte[8 * 2], 1, 100);
+        for(int i = 0; i < 8; i++){
+            write(ramp.pcm, i, i * 1000);
+        }
+
+        //half the output rate: every frame is played twice, the second interpolated halfway to the next
+        mixer.play(0, ramp, 1f, 1f, -1f, true);
+        short[] out = new short[20 * 2];
+        mixer.mix(out, 0, 20);
+        for(int i = 0; i < 20; i++){
+            int frame = i / 2 % 8;
+            int next = (frame + 1) % 8;
+            int expected = i % 2 == 0 ? frame * 1000 : (frame * 1000 + next * 1000) / 2;
+            assertEquals("frame " + i, expected, out[i * 2], 1);
+        }
+        assertTrue(mixer.isPlaying(0));
+
+        //twice the pitch plays through in half the time
+        mixer.play(0, ramp, 1f, 2f, -1f, false);
+        mixer.mix(out, 0, 20);
+        assertEquals(7000, out[7 * 2], 1);
+        assertEquals(0, out[8 * 2]);
+        assertFalse(mixer.isPlaying(0));
+    }
+
+    @Test
+    public void clipsAndPauses(){
+        SoftwareMixer mixer = new SoftwareMixer(3, 100);
+        DecodedSound loud = mono(10, 30000, 100);
+        for(int i = 0; i < 3; i++){
+            mixer.play(i, loud, 1f, 1f, -1f, true);
+        }
+        short[] out = new short[4];
+        mixer.mix(out, 0, 2);
+        assertEquals(32767, out[0]);
+        assertEquals(0, out[1]);
+
+        mixer.setPaused(0, true);
+        mixer.setPaused(1, true);
+        mixer.volume = 0.5f;
+        mixer.mix(out, 0, 2);
+        assertEquals(15000, out[0], 1);
+        assertEquals(3, mixer.getPlaying());
+    }
+
+    @Test
+    public void stereoBalance(){
+        SoftwareMixer mixer = new SoftwareMixer(1, 100);
+        DecodedSound stereo = new DecodedSound(new byte[4 * 4], 2, 100);
+        for(int i = 0; i < 4; i++){
+            write(stereo.pcm, i * 2, 1000);
+            write(stereo.pcm, i * 2 + 1, -2000);
+        }
+        mixer.play(0, stereo, 1f, 1f, 0.5f, false);
+        short[] out = new short[2];
+        mixer.mix(out, 0, 1);
+        assertEquals(500, out[0], 1);
+        assertEquals(-2000, out[1], 1);
+    }
+
+    /** @return a mono sound at the given value, or a square wave of that amplitude if period is shorter than the sound. */
+    static DecodedSound mono(int frames, int value, int period){
+        DecodedSound sound = new DecodedSound(new byte[frames * 2], 1, period >= frames ? 100 : 44100);
+        for(int i = 0; i < frames; i++){
+            write(sound.pcm, i, period >= frames || i % period < period / 2 ? value : -value);
+        }
+        return sound;
+    }
+
+    static void write(byte[] pcm, int sample, int value){
+        pcm[sample * 2] = (byte)value;
+        pcm[sample * 2 + 1] = (byte)(value >> 8);
+    }
+}
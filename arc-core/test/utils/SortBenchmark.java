@@ -0,0 +1,45 @@
+package utils;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.collection.Sort;
+
+import java.util.Random;
+
+/**
+ * Compares sorting objects with a comparator, by a float key and by a float key in parallel.
+ * <p>
+ * Arguments: objects, rounds. Defaults to 50000 objects for 20 rounds.
+ */
+public class SortBenchmark{
+
+    public static void main(String[] args){
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Random random = new Random(5);
+        Array<float[]> array = new Array<>();
+        for(int i = 0; i < size; i++){
+            array.add(new float[]{random.nextFloat() * 1000f});
+        }
+
+        long comparator = 0, key = 0, parallel = 0;
+        for(int round = 0; round < rounds; round++){
+            array.shuffle();
+            long start = System.nanoTime();
+            array.sort((a, b) -> Float.compare(a[0], b[0]));
+            comparator += System.nanoTime() - start;
+
+            array.shuffle();
+            start = System.nanoTime();
+            array.sort(e -> e[0]);
+            key += System.nanoTime() - start;
+
+            array.shuffle();
+            start = System.nanoTime();
+            Sort.instance().parallelSort(array, e -> e[0]);
+            parallel += System.nanoTime() - start;
+        }
+
+        System.out.println("Sorting " + size + " objects: comparator " + comparator / rounds / 1000000f + "ms, key "
+            + key / rounds / 1000000f + "ms, parallel key " + parallel / rounds / 1000000f + "ms");
+    }
+}
@@ -0,0 +1,108 @@
+package utils;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.collection.Sort;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SortTest{
+
+    @Test
+    public void radixSortsInts(){
+        Random random = new Random(1);
+        for(int size : new int[]{0, 1, 10, 255, 1000, 20000}){
+            int[] values = new int[size];
+            for(int i = 0; i < size; i++){
+                values[i] = i % 3 == 0 ? random.nextInt(100) - 50 : random.nextInt();
+            }
+            int[] expected = values.clone();
+            Arrays.sort(expected);
+
+            Sort.instance().sort(values, 0, size);
+            assertArrayEquals(expected, values);
+        }
+    }
+
+    @Test
+    public void radixSortsFloats(){
+        Random random = new Random(2);
+        float[] values = new float[5000];
+        for(int i = 0; i < values.length; i++){
+            values[i] = (random.nextFloat() - 0.5f) * 1000f;
+        }
+        values[0] = -0f;
+        values[1] = 0f;
+        values[2] = Float.NaN;
+        values[3] = Float.NEGATIVE_INFINITY;
+        values[4] = Float.POSITIVE_INFINITY;
+        values[5] = -Float.MIN_VALUE;
+        float[] expected = values.clone();
+        Arrays.sort(expected);
+
+        Sort.instance().sort(values, 0, values.length);
+        assertArrayEquals(expected, values, 0f);
+        assertEquals(Float.floatToIntBits(-0f), Float.floatToIntBits(values[Arrays.binarySearch(values, -0f)]));
+    }
+
+    @Test
+    public void keySortIsStable(){
+        Random random = new Random(3);
+        for(int size : new int[]{5, 100, 10000}){
+            Array<float[]> array = new Array<>();
+            for(int i = 0; i < size; i++){
+                array.add(new float[]{random.nextInt(50) - 25, i});
+            }
+            Array<float[]> expected = new Array<>(array);
+            expected.sort((a, b) -> Float.compare(a[0], b[0]));
+
+            array.sort(e -> e[0]);
+            for(int i = 0; i < size; i++){
+                assertSame(expected.get(i), array.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void parallelKeySort(){
+        int threshold = Sort.parallelThreshold;
+        Sort.parallelThreshold = 1000;
+        try{
+            Random random = new Random(4);
+            Array<float[]> array = new Array<>();
+            for(int i = 0; i < 50000; i++){
+                array.add(new float[]{random.nextFloat() * 100f - 10f, i});
+            }
+            Array<float[]> expected = new Array<>(array);
+            expected.sort((a, b) -> Float.compare(a[0], b[0]));
+
+            Sort.instance().parallelSort(array, e -> e[0]);
+            for(int i = 0; i < array.size; i++){
+                assertSame(expected.get(i), array.get(i));
+            }
+
+            Sort.instance().parallelSort(array, (a, b) -> Float.compare(b[1], a[1]));
+            for(int i = 0; i < array.size; i++){
+                assertEquals(array.size - 1 - i, array.get(i)[1], 0f);
+            }
+        }finally{
+            Sort.parallelThreshold = threshold;
+        }
+    }
+
+    @Test
+    public void instancePerThread() throws InterruptedException{
+        AtomicReference<Sort> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> other.set(Sort.instance()));
+        thread.start();
+        thread.join();
+
+        assertSame(Sort.instance(), Sort.instance());
+        assertNotNull(other.get());
+        assertNotSame(Sort.instance(), other.get());
+    }
+}
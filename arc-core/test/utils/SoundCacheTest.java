@@ -0,0 +1,100 @@
+package utils;
+
+import io.anuke.arc.audio.DecodedSound;
+import io.anuke.arc.audio.SoundCache;
+import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.util.ArcRuntimeException;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SoundCacheTest{
+
+    @Test
+    public void evictsLeastRecentlyUsed(){
+        SoundCache cache = new SoundCache(1000, 500);
+        FileHandle a = new FileHandle("a.ogg"), b = new FileHandle("b.ogg"), c = new FileHandle("c.ogg");
+        AtomicInteger decoded = new AtomicInteger();
+
+        cache.get(a, file -> sound(400, decoded));
+        cache.get(b, file -> sound(400, decoded));
+        cache.get(a, file -> sound(400, decoded));
+        assertEquals(2, decoded.get());
+        assertEquals(800, cache.getSize());
+
+        //b was used least recently
+        cache.put(c, sound(400, decoded));
+        assertTrue(cache.contains(a));
+        assertFalse(cache.contains(b));
+        assertTrue(cache.contains(c));
+        assertEquals(1, cache.getEvictions());
+
+        //too long for the cache, but still decoded
+        FileHandle music = new FileHandle("long.ogg");
+        assertEquals(600, cache.get(music, file -> sound(600, decoded)).pcm.length);
+        assertFalse(cache.contains(music));
+        assertEquals(800, cache.getSize());
+    }
+
+    @Test
+    public void decodesAll(){
+        FileHandle[] files = new FileHandle[32];
+        for(int i = 0; i < files.length; i++){
+            files[i] = new FileHandle("sound" + i + ".ogg");
+        }
+        DecodedSound[] sounds = DecodedSound.decodeAll(files, file -> new DecodedSound(file.name().getBytes(), 1, 44100));
+        for(int i = 0; i < files.length; i++){
+            assertEquals(files[i].name(), new String(sounds[i].pcm));
+        }
+
+        //the decoder's own exception for the first file that failed, not a copy made by the pool
+        ArcRuntimeException[] thrown = new ArcRuntimeException[files.length];
+        try{
+            DecodedSound.decodeAll(files, file -> {
+                int index = Integer.parseInt(file.nameWithoutExtension().substring(5));
+                if(index == 7 || index == 20) throw thrown[index] = new ArcRuntimeException("broken");
+                return new DecodedSound(new byte[0], 1, 44100);
+            });
+            fail();
+        }catch(ArcRuntimeException e){
+            assertSame(thrown[7], e);
+            assertEquals("broken", e.getMessage());
+        }
+    }
+
+    @Test
+    public void decodeAllMatchesSequential(){
+        FileHandle[] files = new FileHandle[16];
+        for(int i = 0; i < files.length; i++){
+            files[i] = new FileHandle("sound" + i + ".ogg");
+        }
+        //stands in for a decoder: synthesizes and filters a second of stereo samples
+        DecodedSound[] parallel = DecodedSound.decodeAll(files, SoundCacheTest::synthesize);
+        for(int i = 0; i < files.length; i++){
+            assertArrayEquals(synthesize(files[i]).pcm, parallel[i].pcm);
+        }
+    }
+
+    static DecodedSound synthesize(FileHandle file){
+        int rate = 44100;
+        byte[] pcm = new byte[rate * 4];
+        float phase = 0f, step = (file.name().hashCode() & 0xff) / 2000f + 0.01f, filtered = 0f;
+        for(int i = 0; i < rate; i++){
+            phase += step;
+            filtered += ((float)Math.sin(phase) - filtered) * 0.3f;
+            short sample = (short)(filtered * 20000);
+            for(int c = 0; c < 2; c++){
+                pcm[i * 4 + c * 2] = (byte)sample;
+                pcm[i * 4 + c * 2 + 1] = (byte)(sample >> 8);
+            }
+        }
+        return new DecodedSound(pcm, 2, rate);
+    }
+
+    static DecodedSound sound(int bytes, AtomicInteger decoded){
+        decoded.incrementAndGet();
+        return new DecodedSound(new byte[bytes], 1, 44100);
+    }
+}
@@ -0,0 +1,171 @@
+package utils;
+
+import io.anuke.arc.audio.StreamDecoder;
+import io.anuke.arc.audio.StreamDecoder.Chunk;
+import io.anuke.arc.audio.StreamDecoder.Stream;
+import io.anuke.arc.util.ArcRuntimeException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StreamDecoderTest{
+
+    @Test
+    public void decodesAheadInOrder(){
+        StreamDecoder decoder = new StreamDecoder("Decoder");
+        try{
+            CountingSource source = new CountingSource(10_000);
+            Stream stream = decoder.open(source, 256, 4);
+            int expected = 0;
+            Chunk chunk;
+            while((chunk = stream.take()) != null){
+                for(int i = 0; i < chunk.length; i++){
+                    assertEquals((byte)expected++, chunk.data[i]);
+                }
+                stream.recycle(chunk);
+            }
+            assertEquals(10_000, expected);
+            assertTrue(stream.isDrained());
+            stream.close();
+            assertEquals(0, decoder.getStreams());
+        }finally{
+            decoder.dispose();
+        }
+    }
+
+    @Test
+    public void fillsWithoutBeingAsked() throws InterruptedException{
+        StreamDecoder decoder = new StreamDecoder("Decoder");
+        try{
+            CountingSource source = new CountingSource(100_000);
+            Stream stream = decoder.open(source, 256, 4);
+            long end = System.currentTimeMillis() + 5000;
+            while(stream.getDecodedBytes() < 4 * 256 && System.currentTimeMillis() < end){
+                Thread.sleep(1);
+            }
+            //every chunk is full, so nothing more is read until one is taken
+            Thread.sleep(20);
+            assertEquals(4 * 256, stream.getDecodedBytes());
+
+            Chunk chunk = stream.poll();
+            assertNotNull(chunk);
+            assertEquals(0, chunk.data[0]);
+            stream.recycle(chunk);
+            while(stream.getDecodedBytes() < 5 * 256 && System.currentTimeMillis() < end){
+                Thread.sleep(1);
+            }
+            assertEquals(5 * 256, stream.getDecodedBytes());
+            stream.close();
+        }finally{
+            decoder.dispose();
+        }
+    }
+
+    @Test
+    public void loopsAndSeeks(){
+        StreamDecoder decoder = new StreamDecoder("Decoder");
+        try{
+            CountingSource source = new CountingSource(1000);
+            source.looping = true;
+            Stream stream = decoder.open(source, 300, 3);
+
+            int loops = 0;
+            long total = 0;
+            while(loops < 3){
+                Chunk chunk = stream.take();
+                if(chunk.looped){
+                    loops++;
+                    assertEquals(0, chunk.data[0]);
+                }
+                total += chunk.length;
+                stream.recycle(chunk);
+            }
+            assertEquals(3000 + 300, total);
+
+            //seek to byte 600 and stop looping: whatever was decoded ahead is dropped
+            byte[] scratch = new byte[300];
+            long[] seeked = new long[1];
+            stream.flush(() -> {
+                stream.reset();
+                stream.skip(scratch);
+                stream.skip(scratch);
+                source.looping = false;
+                //the decoder thread cannot resume until the flush is done
+                seeked[0] = stream.getDecodedBytes();
+            });
+            assertEquals(600, seeked[0]);
+            Chunk chunk = stream.take();
+            assertFalse(chunk.looped);
+            assertEquals((byte)600, chunk.data[0]);
+            total = chunk.length;
+            stream.recycle(chunk);
+            while((chunk = stream.take()) != null){
+                total += chunk.length;
+                stream.recycle(chunk);
+            }
+            assertEquals(400, total);
+            assertEquals(1000, stream.getDecodedBytes());
+            stream.close();
+        }finally{
+            decoder.dispose();
+        }
+    }
+
+    @Test
+    public void reportsErrors(){
+        StreamDecoder decoder = new StreamDecoder("Decoder");
+        try{
+            CountingSource source = new CountingSource(1000);
+            source.failAt = 500;
+            Stream stream = decoder.open(source, 100, 2);
+            try{
+                for(int i = 0; i < 100; i++){
+                    Chunk chunk = stream.take();
+                    assertNotNull(chunk);
+                    stream.recycle(chunk);
+                }
+                fail();
+            }catch(ArcRuntimeException e){
+                assertEquals("failed", e.getMessage());
+            }
+            stream.close();
+        }finally{
+            decoder.dispose();
+        }
+    }
+
+    static class CountingSource implements StreamDecoder.Source{
+        final int length;
+        int position, failAt = -1;
+        volatile boolean looping;
+
+        CountingSource(int length){
+            this.length = length;
+        }
+
+        @Override
+        public int read(byte[] buffer){
+            if(failAt != -1 && position >= failAt) throw new ArcRuntimeException("failed");
+            int count = Math.min(buffer.length, length - position);
+            for(int i = 0; i < count; i++){
+                buffer[i] = (byte)position++;
+            }
+            return count;
+        }
+
+        @Override
+        public void loop(){
+            position = 0;
+        }
+
+        @Override
+        public void reset(){
+            position = 0;
+        }
+
+        @Override
+        public boolean isLooping(){
+            return looping;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package utils;
+
+import io.anuke.arc.files.*;
+import io.anuke.arc.util.async.AsyncExecutor;
+import io.anuke.arc.util.async.AsyncResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class VirtualFilesTest{
+
+    @Test
+    public void layersOverrideLowerLayers() throws IOException{
+        FileHandle base = FileHandle.tempDirectory("arc-vfs");
+        base.child("sprites/a.txt").writeString("base a");
+        base.child("sprites/b.txt").writeString("base b");
+        base.child("bundle.properties").writeString("base");
+
+        File zip = File.createTempFile("arc-vfs", ".zip");
+        zip.deleteOnExit();
+        try(ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))){
+            out.putNextEntry(new ZipEntry("sprites/b.txt"));
+            out.write("mod b".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("sprites/c.txt"));
+            out.write("mod c".getBytes(StandardCharsets.UTF_8));
+        }
+
+        VirtualFiles files = new VirtualFiles(1024 * 1024);
+        files.addLayer(base);
+        ZipFileHandle mod = new ZipFileHandle(new FileHandle(zip));
+        files.addLayer(mod);
+
+        assertEquals("base a", files.resolve("sprites/a.txt").readString());
+        assertEquals("mod b", files.resolve("sprites/b.txt").readString());
+        assertEquals("mod c", files.resolve("/sprites\\c.txt").readString());
+        assertFalse(files.resolve("sprites/d.txt").exists());
+
+        FileHandle sprites = files.root().child("sprites");
+        assertTrue(sprites.isDirectory());
+        assertEquals(3, sprites.list().length);
+        assertEquals(1, sprites.list("c.txt").length);
+        assertEquals("bundle.properties", sprites.sibling("bundle.properties").path());
+        assertEquals(files.root(), sprites.parent());
+
+        files.removeLayer(mod);
+        assertEquals("base b", files.resolve("sprites/b.txt").readString());
+        mod.delete();
+        base.deleteDirectory();
+    }
+
+    @Test
+    public void cachesContents(){
+        FileHandle base = FileHandle.tempDirectory("arc-vfs");
+        for(int i = 0; i < 10; i++){
+            base.child("file" + i).writeBytes(new byte[100], false);
+        }
+
+        VirtualFiles files = new VirtualFiles(500);
+        files.addLayer(base);
+        FileCache cache = files.getCache();
+
+        FileHandle file = files.resolve("file0");
+        file.readBytes();
+        file.readBytes();
+        files.resolve("file0").read();
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        //writing to the layer is not seen until a refresh
+        base.child("file0").writeBytes(new byte[50], false);
+        assertEquals(100, file.readBytes().length);
+        files.refresh();
+        assertEquals(50, file.readBytes().length);
+
+        for(int i = 0; i < 10; i++){
+            files.resolve("file" + i).readBytes();
+        }
+        assertTrue(cache.getSize() <= 500);
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.contains("file9"));
+        assertFalse(cache.contains("file1"));
+        base.deleteDirectory();
+    }
+
+    @Test
+    public void prefetchesManifest(){
+        FileHandle base = FileHandle.tempDirectory("arc-vfs");
+        StringBuilder manifest = new StringBuilder("# files to prefetch\n");
+        for(int i = 0; i < 200; i++){
+            base.child("data/" + i + ".bin").writeBytes(new byte[1000 + i], false);
+            manifest.append("data/").append(i).append(".bin\n");
+        }
+        manifest.append("data/missing.bin\n");
+        base.child("manifest.txt").writeString(manifest.toString());
+
+        VirtualFiles files = new VirtualFiles(10 * 1024 * 1024);
+        files.addLayer(base);
+        AsyncExecutor executor = new AsyncExecutor(4);
+        for(AsyncResult<Void> result : files.prefetch(executor, 4, files.resolve("manifest.txt"))){
+            result.get();
+        }
+        executor.dispose();
+
+        FileCache cache = files.getCache();
+        cache.resetStats();
+        for(int i = 0; i < 200; i++){
+            assertEquals(1000 + i, files.resolve("data/" + i + ".bin").readBytes().length);
+        }
+        assertEquals(200, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        base.deleteDirectory();
+    }
+
+    @Test
+    public void skipsLargeFiles(){
+        FileHandle base = FileHandle.tempDirectory("arc-vfs");
+        base.child("large").writeBytes(new byte[1000], false);
+
+        VirtualFiles files = new VirtualFiles(2000);
+        files.addLayer(base);
+        assertEquals(1000, files.resolve("large").readBytes().length);
+        assertEquals(0, files.getCache().getCount());
+
+        files.setMaxCachedLength(1000);
+        files.resolve("large").readBytes();
+        assertEquals(1, files.getCache().getCount());
+        base.deleteDirectory();
+    }
+}
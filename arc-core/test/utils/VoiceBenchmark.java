@@ -0,0 +1,56 @@
+package utils;
+
+import io.anuke.arc.audio.DecodedSound;
+import io.anuke.arc.audio.SoftwareMixer;
+import io.anuke.arc.audio.VoiceGroup;
+import io.anuke.arc.audio.VoicePool;
+
+import java.util.Random;
+
+/**
+ * Times starting voices as a large battle would, with random priorities and distances, and mixing a minute of software voices
+ * at 44.1kHz.
+ * <p>
+ * Arguments: plays, mixed voices. Defaults to 2000000 plays and 64 voices.
+ */
+public class VoiceBenchmark{
+
+    public static void main(String[] args){
+        int plays = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int voices = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        VoicePool pool = new VoicePool(32, 64);
+        pool.softwarePriority = 0f;
+        Random random = new Random(0);
+        VoiceGroup[] groups = new VoiceGroup[40];
+        for(int i = 0; i < groups.length; i++){
+            groups[i] = VoicePoolTest.group(random.nextInt(5) - 2, i % 4 == 0 ? 4 : 0);
+        }
+
+        int started = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < plays; i++){
+            VoiceGroup group = groups[random.nextInt(groups.length)];
+            if(pool.obtain(group, random.nextFloat()) != -1) started++;
+            int slot = random.nextInt(96);
+            if(pool.isActive(slot) && !pool.isReserved(slot) && random.nextInt(4) == 0) pool.free(slot);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Started " + started + " of " + plays + " voices in " + elapsed / 1000000f + "ms, " + elapsed / plays
+            + "ns each; " + pool.getStolen() + " stolen, " + pool.getRejected() + " rejected");
+
+        int rate = 44100;
+        SoftwareMixer mixer = new SoftwareMixer(voices, rate);
+        DecodedSound sound = SoftwareMixerTest.mono(rate / 2, 3000, 22050);
+        for(int i = 0; i < voices; i++){
+            mixer.play(i, sound, 0.2f, 0.5f + i / (float)voices, i / (float)voices * 2f - 1f, true);
+        }
+        short[] out = new short[1024 * 2];
+        start = System.nanoTime();
+        for(int i = 0; i < rate * 60 / 1024; i++){
+            mixer.mix(out, 0, 1024);
+        }
+        elapsed = System.nanoTime() - start;
+        System.out.println("Mixed a minute of " + voices + " voices in " + elapsed / 1000000f + "ms");
+    }
+}
@@ -0,0 +1,210 @@
+package utils;
+
+import io.anuke.arc.audio.VoiceGroup;
+import io.anuke.arc.audio.VoicePool;
+import io.anuke.arc.collection.IntArray;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class VoicePoolTest{
+
+    @Test
+    public void stealsWeakestVoice(){
+        VoicePool pool = new VoicePool(3, 0);
+        IntArray stopped = new IntArray();
+        pool.setStopListener(stopped::add);
+        VoiceGroup quiet = group(0f, 0), loud = group(1f, 0);
+
+        int a = pool.obtain(quiet, 0.5f);
+        int b = pool.obtain(quiet, 0.2f);
+        int c = pool.obtain(loud, 0.1f);
+        assertEquals(0, pool.getFreeHardware());
+
+        //the quietest voice of the lowest priority makes room
+        int d = pool.obtain(quiet, 0.3f);
+        assertNotEquals(-1, d);
+        assertEquals(-1, pool.slot(b));
+        assertArrayEquals(new int[]{b & 0xfff}, stopped.toArray());
+        assertEquals(b & 0xfff, pool.slot(d));
+
+        //too quiet to replace anything
+        assertEquals(-1, pool.obtain(quiet, 0.1f));
+        assertEquals(1, pool.getRejected());
+
+        //a lower volume still wins with a higher priority
+        int e = pool.obtain(loud, 0.01f);
+        assertEquals(-1, pool.slot(d));
+        assertNotEquals(-1, pool.slot(a));
+        assertNotEquals(-1, pool.slot(c));
+        assertNotEquals(-1, pool.slot(e));
+
+        //louder voices are compared by their current volume
+        pool.setVolume(pool.slot(a), 0f);
+        pool.obtain(quiet, 0.05f);
+        assertEquals(-1, pool.slot(a));
+        assertEquals(3, pool.getStolen());
+    }
+
+    @Test
+    public void equalVoicesReplaceTheOldest(){
+        VoicePool pool = new VoicePool(4, 0);
+        VoiceGroup group = group(0f, 0);
+        int[] ids = new int[8];
+        for(int i = 0; i < ids.length; i++){
+            ids[i] = pool.obtain(group, 1f);
+        }
+        for(int i = 0; i < ids.length; i++){
+            assertEquals(i >= 4, pool.slot(ids[i]) != -1);
+        }
+        assertEquals(4, group.getCount());
+    }
+
+    @Test
+    public void limitsInstances(){
+        VoicePool pool = new VoicePool(8, 0);
+        VoiceGroup limited = group(0f, 2), other = group(0f, 0);
+        int first = pool.obtain(limited, 1f);
+        int second = pool.obtain(limited, 1f);
+        pool.obtain(other, 1f);
+        int third = pool.obtain(limited, 0.1f);
+
+        assertEquals(-1, pool.slot(first));
+        assertNotEquals(-1, pool.slot(second));
+        assertNotEquals(-1, pool.slot(third));
+        assertEquals(2, limited.getCount());
+        assertEquals(0, pool.getStolen());
+
+        IntArray slots = new IntArray();
+        pool.each(limited, slots::add);
+        assertArrayEquals(new int[]{pool.slot(second), pool.slot(third)}, slots.toArray());
+
+        pool.stopAll(limited);
+        assertEquals(0, limited.getCount());
+        assertEquals(7, pool.getFreeHardware());
+    }
+
+    @Test
+    public void routesToSoftware(){
+        VoicePool pool = new VoicePool(2, 4);
+        pool.softwarePriority = 0f;
+        VoiceGroup ambient = group(-1f, 0), important = group(1f, 0);
+
+        int id = pool.obtain(ambient, 1f);
+        assertFalse(pool.isHardware(pool.slot(id)));
+        assertEquals(2, pool.getFreeHardware());
+
+        //important voices spill over into software once the hardware is taken by equally important ones
+        pool.obtain(important, 1f);
+        pool.obtain(important, 1f);
+        int spilled = pool.obtain(important, 0.5f);
+        assertFalse(pool.isHardware(pool.slot(spilled)));
+        assertEquals(2, pool.getFreeSoftware());
+    }
+
+    @Test
+    public void reservedVoicesStay(){
+        VoicePool pool = new VoicePool(2, 0);
+        VoiceGroup group = group(100f, 0);
+        int music = pool.reserve();
+        for(int i = 0; i < 10; i++){
+            pool.obtain(group, 1f);
+        }
+        assertTrue(pool.isReserved(pool.slot(music)));
+        assertEquals(1, group.getCount());
+
+        pool.free(pool.slot(music));
+        assertEquals(-1, pool.slot(music));
+        assertEquals(1, pool.getFreeHardware());
+    }
+
+    @Test
+    public void staleIds(){
+        VoicePool pool = new VoicePool(1, 0);
+        VoiceGroup group = group(0f, 0);
+        int id = pool.obtain(group, 1f);
+        pool.free(pool.slot(id));
+        int reused = pool.obtain(group, 1f);
+        assertEquals(pool.slot(reused), id & 0xfff);
+        assertEquals(-1, pool.slot(id));
+        assertNotEquals(id, reused);
+        assertEquals(-1, pool.slot(-1));
+    }
+
+    @Test
+    public void offersFinishedVoices(){
+        VoicePool pool = new VoicePool(4, 0);
+        VoiceGroup group = group(0f, 0);
+        int a = pool.slot(pool.obtain(group, 1f)), b = pool.slot(pool.obtain(group, 1f)), c = pool.slot(pool.obtain(group, 1f));
+        int reserved = pool.slot(pool.reserve());
+        pool.setEndTime(a, 100);
+        pool.setEndTime(b, 200);
+        pool.setEndTime(reserved, 0);
+        assertEquals(Long.MAX_VALUE, pool.getEndTime(c));
+
+        //voices past their end, then one other in turn
+        IntArray offered = new IntArray();
+        pool.eachFinished(150, offered::add);
+        assertArrayEquals(new int[]{a}, offered.toArray());
+        offered.clear();
+        pool.eachFinished(150, offered::add);
+        assertArrayEquals(new int[]{a, b}, offered.toArray());
+        pool.free(a);
+        offered.clear();
+        pool.eachFinished(150, offered::add);
+        assertArrayEquals(new int[]{c}, offered.toArray());
+
+        //reserved voices are never offered, and every playing one is within as many calls as there are voices
+        offered.clear();
+        for(int i = 0; i < 4; i++){
+            pool.eachFinished(150, offered::add);
+        }
+        assertFalse(offered.contains(reserved));
+        assertTrue(offered.contains(b));
+        assertTrue(offered.contains(c));
+
+        //a new voice in a slot does not keep the old end time
+        int d = pool.slot(pool.obtain(group, 1f));
+        assertEquals(a, d);
+        assertEquals(Long.MAX_VALUE, pool.getEndTime(d));
+    }
+
+    /** Plays as many sounds as a large battle, with random priorities and distances, some ending by themselves. */
+    @Test
+    public void battle(){
+        VoicePool pool = new VoicePool(32, 64);
+        pool.softwarePriority = 0f;
+        Random random = new Random(0);
+        VoiceGroup[] groups = new VoiceGroup[40];
+        for(int i = 0; i < groups.length; i++){
+            groups[i] = group(random.nextInt(5) - 2, i % 4 == 0 ? 4 : 0);
+        }
+        pool.setStopListener(slot -> {});
+
+        int plays = 200_000, started = 0;
+        for(int i = 0; i < plays; i++){
+            VoiceGroup group = groups[random.nextInt(groups.length)];
+            if(pool.obtain(group, random.nextFloat()) != -1) started++;
+            //some voices end by themselves
+            int slot = random.nextInt(96);
+            if(pool.isActive(slot) && !pool.isReserved(slot) && random.nextInt(4) == 0) pool.free(slot);
+        }
+
+        int active = 0;
+        for(VoiceGroup group : groups){
+            if(group.limit > 0) assertTrue(group.getCount() <= group.limit);
+            active += group.getCount();
+        }
+        assertEquals(96 - pool.getFreeHardware() - pool.getFreeSoftware(), active);
+        assertEquals(plays, started + pool.getRejected());
+    }
+
+    static VoiceGroup group(float priority, int limit){
+        VoiceGroup group = new VoiceGroup();
+        group.priority = priority;
+        group.limit = limit;
+        return group;
+    }
+}
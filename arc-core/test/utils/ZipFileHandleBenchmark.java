@@ -0,0 +1,41 @@
+package utils;
+
+import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.files.ZipFileHandle;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Times mounting a large archive, then looking up and reading every file in it.
+ * <p>
+ * Arguments: directories, files per directory. Defaults to 200 directories of 100 files.
+ */
+public class ZipFileHandleBenchmark{
+
+    public static void main(String[] args) throws IOException{
+        int directories = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int perDirectory = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        File file = ZipFileHandleTest.largeArchive(directories, perDirectory);
+
+        long start = System.nanoTime();
+        ZipFileHandle root = new ZipFileHandle(new FileHandle(file));
+        long mount = System.nanoTime() - start;
+
+        FileHandle assets = root.child("assets");
+        start = System.nanoTime();
+        int bytes = 0;
+        for(int d = 0; d < directories; d++){
+            FileHandle directory = assets.child("dir" + d);
+            directory.list();
+            for(int f = 0; f < perDirectory; f++){
+                bytes += directory.child("file" + f + ".txt").readBytes().length;
+            }
+        }
+        long read = System.nanoTime() - start;
+        root.delete();
+
+        System.out.println("Zip of " + directories * perDirectory + " entries: mounted in " + mount / 1000000f
+            + "ms, looked up and read " + bytes + " bytes in " + read / 1000000f + "ms");
+    }
+}
@@ -0,0 +1,127 @@
+package utils;
+
+import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.files.ZipFileHandle;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ZipFileHandleTest{
+
+    @Test
+    public void buildsTree() throws IOException{
+        File file = File.createTempFile("arc-zip", ".zip");
+        file.deleteOnExit();
+        try(ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))){
+            out.putNextEntry(new ZipEntry("mod.json"));
+            out.write("{}".getBytes(StandardCharsets.UTF_8));
+            //no entry for sprites/ or sprites/units/
+            out.putNextEntry(new ZipEntry("sprites/units/dagger.png"));
+            out.write(new byte[100]);
+            stored(out, "sprites/units/raw.bin", "stored data".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new ZipEntry("scripts/"));
+            out.putNextEntry(new ZipEntry("scripts/main.js"));
+            out.write("print('hi')".getBytes(StandardCharsets.UTF_8));
+        }
+
+        ZipFileHandle root = new ZipFileHandle(new FileHandle(file));
+        assertEquals(3, root.list().length);
+        assertEquals("{}", root.child("mod.json").readString());
+        assertFalse(root.child("mod.json").isDirectory());
+        assertFalse(root.child("missing").exists());
+
+        FileHandle units = root.child("sprites").child("units");
+        assertTrue(units.isDirectory());
+        assertEquals(2, units.list().length);
+        assertSame(root, units.parent().parent());
+        assertEquals("sprites/units/dagger.png", units.child("dagger.png").path());
+        assertEquals(100, units.child("dagger.png").readBytes().length);
+        assertEquals(100, units.child("dagger.png").length());
+
+        FileHandle raw = units.child("raw.bin");
+        assertEquals("stored data", raw.readString());
+        assertEquals("stored data", new String(raw.readBytes(), StandardCharsets.UTF_8));
+        ByteBuffer mapped = raw.map();
+        assertEquals(11, mapped.remaining());
+        assertEquals('s', mapped.get(0));
+        try(InputStream in = raw.read()){
+            assertEquals('s', in.read());
+            assertEquals(5, in.skip(5));
+            byte[] rest = new byte[16];
+            assertEquals(5, in.read(rest));
+            assertEquals("data", new String(rest, 1, 4, StandardCharsets.UTF_8));
+            assertEquals(-1, in.read());
+        }
+
+        assertEquals("print('hi')", root.child("scripts").child("main.js").readString());
+        assertEquals(1, root.child("scripts").list().length);
+
+        //deleting closes the archive, so no entry can be read afterwards
+        root.delete();
+        try{
+            raw.readBytes();
+            fail();
+        }catch(RuntimeException expected){
+        }
+    }
+
+    @Test
+    public void largeArchive() throws IOException{
+        int directories = 200, perDirectory = 100;
+        File file = largeArchive(directories, perDirectory);
+        ZipFileHandle root = new ZipFileHandle(new FileHandle(file));
+
+        FileHandle assets = root.child("assets");
+        assertEquals(directories, assets.list().length);
+        for(int d = 0; d < directories; d++){
+            FileHandle directory = assets.child("dir" + d);
+            assertEquals(perDirectory, directory.list().length);
+            for(int f = 0; f < perDirectory; f++){
+                FileHandle child = directory.child("file" + f + ".txt");
+                assertTrue(child.exists());
+                assertEquals("file " + d + "/" + f, child.readString());
+            }
+        }
+        root.delete();
+    }
+
+    /** @return a temporary archive of small files in assets/dir[d]/file[f].txt, half of them stored and half deflated. */
+    static File largeArchive(int directories, int perDirectory) throws IOException{
+        File file = File.createTempFile("arc-zip", ".zip");
+        file.deleteOnExit();
+        try(ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+            for(int d = 0; d < directories; d++){
+                for(int f = 0; f < perDirectory; f++){
+                    byte[] data = ("file " + d + "/" + f).getBytes(StandardCharsets.UTF_8);
+                    String name = "assets/dir" + d + "/file" + f + ".txt";
+                    if(f % 2 == 0){
+                        stored(out, name, data);
+                    }else{
+                        out.putNextEntry(new ZipEntry(name));
+                        out.write(data);
+                    }
+                }
+            }
+        }
+        return file;
+    }
+
+    static void stored(ZipOutputStream out, String name, byte[] data) throws IOException{
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(data);
+    }
+}
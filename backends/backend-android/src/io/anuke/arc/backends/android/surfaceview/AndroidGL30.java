@@ -17,14 +17,19 @@
 package io.anuke.arc.backends.android.surfaceview;
 
 import android.opengl.GLES30;
-import io.anuke.arc.graphics.GL30;
+import io.anuke.arc.graphics.GL30Readback;
 
-public class AndroidGL30 extends AndroidGL20 implements GL30{
+public class AndroidGL30 extends AndroidGL20 implements GL30Readback{
     @Override
     public void glReadBuffer(int mode){
         GLES30.glReadBuffer(mode);
     }
 
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, int offset){
+        GLES30.glReadPixels(x, y, width, height, format, type, offset);
+    }
+
     @Override
     public void glDrawRangeElements(int mode, int start, int end, int count, int type, java.nio.Buffer indices){
         GLES30.glDrawRangeElements(mode, start, end, count, type, indices);
@@ -243,10 +248,10 @@ public class AndroidGL30 extends AndroidGL20 implements GL30{
         GLES30.glFramebufferTextureLayer(target, attachment, texture, level, layer);
     }
 
-// @Override
-// public java.nio.Buffer glMapBufferRange(int target, int offset, int length, int access) {
-// return GLES30.glMapBufferRange(target, offset, length, access);
-// }
+    @Override
+    public java.nio.Buffer glMapBufferRange(int target, int offset, int length, int access){
+        return GLES30.glMapBufferRange(target, offset, length, access);
+    }
 
     @Override
     public void glFlushMappedBufferRange(int target, int offset, int length){
@@ -7,6 +7,8 @@ import io.anuke.arc.collection.Array;
 import io.anuke.arc.func.Cons;
 import io.anuke.arc.util.*;
 
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * a headless implementation of a GDX Application primarily intended to be used in servers
  * @author Jon Renner
@@ -21,7 +23,10 @@ public class HeadlessApplication implements Application{
     protected final Array<Runnable> runnables = new Array<>();
     protected final Array<Runnable> executedRunnables = new Array<>();
     protected final Cons<Throwable> exceptionHandler;
-    private final long renderInterval;
+    protected final TickStats tickStats = new TickStats();
+    private final long renderInterval, spinTime;
+    private final int maxCatchUpTicks;
+    private final boolean profileTicks;
     protected Thread mainLoopThread;
     protected boolean running = true;
 
@@ -51,7 +56,10 @@ public class HeadlessApplication implements Application{
         Core.graphics = graphics;
         Core.input = input;
 
-        renderInterval = config.renderInterval > 0 ? (long)(config.renderInterval * 1000000000f) : (config.renderInterval < 0 ? -1 : 0);
+        renderInterval = config.renderInterval > 0 ? (long)(config.renderInterval * 1000000000.0) : (config.renderInterval < 0 ? -1 : 0);
+        spinTime = (long)(config.spinTime * 1000000000.0);
+        maxCatchUpTicks = config.maxCatchUpTicks;
+        profileTicks = config.profileTicks;
 
         initialize();
     }
@@ -77,29 +85,24 @@ public class HeadlessApplication implements Application{
             }
         }
 
-        // unlike LwjglApplication, a headless application will eat up CPU in this while loop
-        // it is up to the implementation to call Thread.sleep as necessary
-        long t = Time.nanos() + renderInterval;
-        if(renderInterval >= 0f){
+        // ticks are scheduled at fixed times from the start, so the time they take does not add up
+        long next = Time.nanos();
+        if(renderInterval >= 0){
             while(running){
-                final long n = Time.nanos();
-                if(t > n){
-                    try{
-                        Thread.sleep((t - n) / 1000000);
-                    }catch(InterruptedException e){
-                    }
-                    t = Time.nanos() + renderInterval;
-                }else
-                    t = n + renderInterval;
-
-                executeRunnables();
-                graphics.incrementFrameId();
-                synchronized(listeners){
-                    for(ApplicationListener listener : listeners){
-                        listener.update();
-                    }
+                long now = renderInterval == 0 ? Time.nanos() : waitUntil(next);
+                long behind = renderInterval == 0 ? 0 : (now - next) / renderInterval;
+                if(behind > maxCatchUpTicks){
+                    tickStats.skip(behind);
+                    next += behind * renderInterval;
+                    behind = 0;
                 }
-                graphics.updateTime();
+                // without an interval, ticks have no schedule to be late for
+                if(profileTicks && renderInterval > 0) tickStats.lateness.record(now - next);
+                next += renderInterval;
+
+                tick();
+                tickStats.tick(behind > 0);
+                if(profileTicks) tickStats.tickTime.record(Time.nanos() - now);
 
                 // If one of the runnables set running to false, for example after an exit().
                 if(!running) break;
@@ -115,6 +118,41 @@ public class HeadlessApplication implements Application{
         }
     }
 
+    private void tick(){
+        executeRunnables();
+        graphics.incrementFrameId();
+        synchronized(listeners){
+            for(ApplicationListener listener : listeners){
+                if(profileTicks){
+                    long start = Time.nanos();
+                    listener.update();
+                    tickStats.recordListener(listener, Time.nanos() - start);
+                }else{
+                    listener.update();
+                }
+            }
+        }
+        graphics.updateTime();
+    }
+
+    /** Parks the thread until shortly before the deadline, then spins until it passes. */
+    private long waitUntil(long deadline){
+        while(true){
+            long now = Time.nanos(), remaining = deadline - now;
+            if(remaining <= 0) return now;
+            if(remaining > spinTime){
+                LockSupport.parkNanos(remaining - spinTime);
+            }else{
+                Thread.yield();
+            }
+        }
+    }
+
+    /** @return tick counts, and with {@link HeadlessApplicationConfiguration#profileTicks} tick and listener times. */
+    public TickStats getTickStats(){
+        return tickStats;
+    }
+
     public boolean executeRunnables(){
         synchronized(runnables){
             for(int i = runnables.size - 1; i >= 0; i--)
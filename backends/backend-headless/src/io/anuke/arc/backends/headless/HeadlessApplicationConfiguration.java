@@ -1,6 +1,22 @@
 package io.anuke.arc.backends.headless;
 
 public class HeadlessApplicationConfiguration{
-    /** The minimum time (in seconds) between each call to the render method or negative to not call the render method at all. */
+    /**
+     * The time (in seconds) from the start of one call to the render method to the start of the next, 0 to call it as often as
+     * possible, or negative to not call the render method at all. Calls are scheduled at a fixed rate, so a slow call does not
+     * delay the ones after it.
+     */
     public float renderInterval = 1f / 60f;
+    /**
+     * How many calls may run back to back to catch up after the application fell behind schedule. When it is further behind,
+     * the missed calls are skipped instead, keeping later calls on schedule. 0 always skips.
+     */
+    public int maxCatchUpTicks = 5;
+    /**
+     * How long before each call (in seconds) the main thread stops sleeping and spins instead, as sleeping can overshoot by
+     * a millisecond or more. Longer times make calls more punctual and cost more CPU.
+     */
+    public float spinTime = 0.0005f;
+    /** Whether to record the time taken by each call and each listener in {@link HeadlessApplication#getTickStats()}. */
+    public boolean profileTicks = false;
 }
@@ -0,0 +1,94 @@
+package io.anuke.arc.backends.headless;
+
+import io.anuke.arc.ApplicationListener;
+import io.anuke.arc.collection.ObjectMap;
+import io.anuke.arc.util.Histogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tick counts and timings of a {@link HeadlessApplication}. Counts are always kept; times are only recorded with
+ * {@link HeadlessApplicationConfiguration#profileTicks}. All values are in nanoseconds and may be read from any thread while
+ * the application runs.
+ */
+public class TickStats{
+    /** The highest time recorded; longer ticks are recorded as this. */
+    private static final long highest = 60_000_000_000L;
+
+    /** Time each tick took, from running the posted runnables to the last listener. */
+    public final Histogram tickTime = new Histogram(highest);
+    /** How long after its scheduled time each tick started. Empty when ticks run as often as possible. */
+    public final Histogram lateness = new Histogram(highest);
+
+    private final AtomicLong ticks = new AtomicLong(), skipped = new AtomicLong(), caughtUp = new AtomicLong();
+    private final ObjectMap<ApplicationListener, Histogram> listenerTimes = new ObjectMap<>();
+
+    /** @return the number of ticks run. */
+    public long getTicks(){
+        return ticks.get();
+    }
+
+    /** @return the number of ticks that were dropped because the application fell too far behind schedule. */
+    public long getSkipped(){
+        return skipped.get();
+    }
+
+    /** @return the number of ticks that were run late, right after the one before them, to catch up with the schedule. */
+    public long getCaughtUp(){
+        return caughtUp.get();
+    }
+
+    /** @return the times a listener took to update, or null if it has not been timed. */
+    public Histogram getListenerTime(ApplicationListener listener){
+        synchronized(listenerTimes){
+            return listenerTimes.get(listener);
+        }
+    }
+
+    /** @return a copy of the update times of every listener that has been timed. */
+    public ObjectMap<ApplicationListener, Histogram> getListenerTimes(){
+        synchronized(listenerTimes){
+            ObjectMap<ApplicationListener, Histogram> copy = new ObjectMap<>();
+            for(ObjectMap.Entry<ApplicationListener, Histogram> entry : listenerTimes){
+                copy.put(entry.key, entry.value.copy());
+            }
+            return copy;
+        }
+    }
+
+    /** Clears all counts and times. */
+    public void reset(){
+        ticks.set(0);
+        skipped.set(0);
+        caughtUp.set(0);
+        tickTime.reset();
+        lateness.reset();
+        synchronized(listenerTimes){
+            listenerTimes.clear();
+        }
+    }
+
+    void tick(boolean caughtUp){
+        ticks.incrementAndGet();
+        if(caughtUp) this.caughtUp.incrementAndGet();
+    }
+
+    void skip(long count){
+        skipped.addAndGet(count);
+    }
+
+    void recordListener(ApplicationListener listener, long time){
+        Histogram histogram;
+        synchronized(listenerTimes){
+            histogram = listenerTimes.get(listener);
+            if(histogram == null) listenerTimes.put(listener, histogram = new Histogram(highest));
+        }
+        histogram.record(time);
+    }
+
+    @Override
+    public String toString(){
+        return "TickStats{ticks=" + getTicks() + ", skipped=" + getSkipped() + ", caughtUp=" + getCaughtUp() + ", tickTime=" + tickTime
+        + ", lateness=" + lateness + "}";
+    }
+}
@@ -0,0 +1,76 @@
+package headless;
+
+import io.anuke.arc.*;
+import io.anuke.arc.backends.headless.*;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/** Runs a headless application with a listener that stalls on some ticks. */
+public class TickStatsTest{
+
+    @Test
+    public void skipsAfterLongStalls() throws InterruptedException{
+        //20 ticks behind, more than may be caught up
+        TickStats stats = run(0.02f, 3, 400);
+        assertTrue(stats.toString(), stats.getSkipped() >= 15 && stats.getSkipped() <= 25);
+        assertEquals(stats.toString(), 0, stats.getCaughtUp());
+    }
+
+    @Test
+    public void catchesUpAfterShortStalls() throws InterruptedException{
+        //2 ticks behind, which are run back to back
+        TickStats stats = run(0.02f, 5, 50);
+        assertEquals(stats.toString(), 0, stats.getSkipped());
+        assertTrue(stats.toString(), stats.getCaughtUp() >= 1 && stats.getCaughtUp() <= 4);
+    }
+
+    @Test
+    public void recordsNoLatenessWithoutInterval() throws InterruptedException{
+        TickStats stats = run(0f, 3, 50);
+        assertEquals(0, stats.getSkipped());
+        assertEquals(0, stats.getCaughtUp());
+        assertEquals(0, stats.lateness.getCount());
+        assertTrue(stats.getTicks() >= 20);
+        assertEquals(stats.getTicks(), stats.tickTime.getCount());
+    }
+
+    /** Stalls for the given time on the tenth tick, and exits ten ticks later. */
+    private static TickStats run(float interval, int maxCatchUpTicks, long stall) throws InterruptedException{
+        HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = interval;
+        config.maxCatchUpTicks = maxCatchUpTicks;
+        config.profileTicks = true;
+        CountDownLatch disposed = new CountDownLatch(1);
+        Throwable[] error = new Throwable[1];
+
+        HeadlessApplication app = new HeadlessApplication(new ApplicationListener(){
+            int ticks;
+
+            @Override
+            public void update(){
+                if(++ticks == 10){
+                    try{
+                        Thread.sleep(stall);
+                    }catch(InterruptedException e){
+                        throw new RuntimeException(e);
+                    }
+                }else if(ticks == 20){
+                    Core.app.exit();
+                }
+            }
+
+            @Override
+            public void dispose(){
+                disposed.countDown();
+            }
+        }, config, t -> error[0] = t);
+
+        assertTrue("timed out", disposed.await(10, TimeUnit.SECONDS));
+        assertNull(error[0]);
+        return app.getTickStats();
+    }
+}
@@ -34,7 +34,7 @@ public class Lwjgl3Application implements Application{
         if(!config.disableAudio){
             try{
                 this.audio = Core.audio = new OpenALAudio(config.audioDeviceSimultaneousSources,
-                config.audioDeviceBufferCount, config.audioDeviceBufferSize);
+                config.audioSoftwareVoices, config.audioDeviceBufferCount, config.audioDeviceBufferSize);
             }catch(Throwable t){
                 Log.err("[Lwjgl3Application] Couldn't initialize audio, disabling audio", t);
                 this.audio = Core.audio = new MockAudio();
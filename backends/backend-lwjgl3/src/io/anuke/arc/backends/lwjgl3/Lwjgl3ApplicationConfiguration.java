@@ -22,6 +22,7 @@ public class Lwjgl3ApplicationConfiguration extends Lwjgl3WindowConfiguration{
     int audioDeviceSimultaneousSources = 16;
     int audioDeviceBufferSize = 512;
     int audioDeviceBufferCount = 9;
+    int audioSoftwareVoices = 0;
 
     boolean useGL30 = false;
     int gles30ContextMajorVersion = 3;
@@ -132,6 +133,7 @@ public class Lwjgl3ApplicationConfiguration extends Lwjgl3WindowConfiguration{
         audioDeviceSimultaneousSources = config.audioDeviceSimultaneousSources;
         audioDeviceBufferSize = config.audioDeviceBufferSize;
         audioDeviceBufferCount = config.audioDeviceBufferCount;
+        audioSoftwareVoices = config.audioSoftwareVoices;
         useGL30 = config.useGL30;
         gles30ContextMajorVersion = config.gles30ContextMajorVersion;
         gles30ContextMinorVersion = config.gles30ContextMinorVersion;
@@ -178,6 +180,15 @@ public class Lwjgl3ApplicationConfiguration extends Lwjgl3WindowConfiguration{
         this.audioDeviceBufferCount = bufferCount;
     }
 
+    /**
+     * Sets the number of sounds mixed in software into a single source once
+     * the other sources are taken, so that many sounds can play at once.
+     * Takes one of the simultaneous sources. (default 0, disabled)
+     */
+    public void setAudioSoftwareVoices(int softwareVoices){
+        this.audioSoftwareVoices = softwareVoices;
+    }
+
     /**
      * Sets whether to use OpenGL ES 3.0 emulation. If the given major/minor
      * version is not supported, the backend falls back to OpenGL ES 2.0
@@ -5,12 +5,17 @@ import org.lwjgl.opengl.*;
 
 import java.nio.*;
 
-class Lwjgl3GL30 extends Lwjgl3GL20 implements io.anuke.arc.graphics.GL30{
+class Lwjgl3GL30 extends Lwjgl3GL20 implements io.anuke.arc.graphics.GL30Readback{
     @Override
     public void glReadBuffer(int mode){
         GL11.glReadBuffer(mode);
     }
 
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, int offset){
+        GL11.glReadPixels(x, y, width, height, format, type, offset);
+    }
+
     @Override
     public void glDrawRangeElements(int mode, int start, int end, int count, int type, Buffer indices){
         if(indices instanceof ByteBuffer) GL12.glDrawRangeElements(mode, start, end, (ByteBuffer)indices);
@@ -267,6 +272,11 @@ class Lwjgl3GL30 extends Lwjgl3GL20 implements io.anuke.arc.graphics.GL30{
         GL30.glFramebufferTextureLayer(target, attachment, texture, level, layer);
     }
 
+    @Override
+    public Buffer glMapBufferRange(int target, int offset, int length, int access){
+        return GL30.glMapBufferRange(target, offset, length, access);
+    }
+
     @Override
     public void glFlushMappedBufferRange(int target, int offset, int length){
         GL30.glFlushMappedBufferRange(target, offset, length);
@@ -3,46 +3,80 @@ package io.anuke.arc.backends.lwjgl3.audio;
 import io.anuke.arc.Audio;
 import io.anuke.arc.audio.AudioDevice;
 import io.anuke.arc.audio.AudioRecorder;
+import io.anuke.arc.audio.DecodedSound;
+import io.anuke.arc.audio.SoftwareMixer;
+import io.anuke.arc.audio.SoundCache;
+import io.anuke.arc.audio.StreamDecoder;
+import io.anuke.arc.audio.VoicePool;
 import io.anuke.arc.audio.mock.*;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.func.Func;
 import io.anuke.arc.math.Mathf;
 import io.anuke.arc.util.ArcRuntimeException;
+import io.anuke.arc.util.Time;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.openal.AL;
 import org.lwjgl.openal.AL10;
+import org.lwjgl.openal.AL11;
 import org.lwjgl.openal.ALC;
 import org.lwjgl.openal.ALCCapabilities;
 
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 import static org.lwjgl.openal.AL10.*;
 import static org.lwjgl.openal.ALC10.*;
 
 /** @author Nathan Sweet */
 public class OpenALAudio extends Audio{
+    private static final int mixerSampleRate = 44100, mixerBufferFrames = 1024, mixerBufferCount = 3;
+    /** How long to wait before checking again on a source that is still playing when expected to have finished. */
+    private static final long recheckNanos = 5000000;
+
     private final int deviceBufferSize;
     private final int deviceBufferCount;
     Array<OpenALMusic> music = new Array<>(false, 1, OpenALMusic.class);
+    /** Decodes playing music ahead on its own thread. */
+    final StreamDecoder decoder = new StreamDecoder("Audio Decoder");
+    /** Decoded samples of short sounds, so that loading one again does not decode it again. */
+    public final SoundCache soundCache = new SoundCache(16 * 1024 * 1024, 1024 * 1024);
     long device;
     long context;
     boolean noDevice = false;
-    private IntArray idleSources, allSources;
-    private LongMap<Integer> soundIdToSource;
-    private IntMap<Long> sourceToSoundId;
-    private long nextSoundId = 0;
+    private IntArray allSources;
+    /** Hardware sources by voice slot. */
+    private int[] sources;
+    /** Durations in seconds of the sounds played by hardware sources, by voice slot. */
+    private float[] durations;
+    private IntIntMap sourceToSlot;
+    private VoicePool voices;
+    /** Mixes the software voices into {@link #mixerSource}, or null without software voices. */
+    SoftwareMixer mixer;
+    private int mixerSource = -1;
+    private IntBuffer mixerBuffers;
+    private short[] mixerSamples;
+    private ShortBuffer mixerData;
     private ObjectMap<String, Class<? extends OpenALSound>> extensionToSoundClass = new ObjectMap<>();
     private ObjectMap<String, Class<? extends OpenALMusic>> extensionToMusicClass = new ObjectMap<>();
-    private OpenALSound[] recentSounds;
-    private int mostRecetSound = -1;
+    private ObjectMap<String, Func<FileHandle, DecodedSound>> extensionToDecoder = new ObjectMap<>();
 
     public OpenALAudio(){
         this(16, 9, 512);
     }
 
     public OpenALAudio(int simultaneousSources, int deviceBufferCount, int deviceBufferSize){
+        this(simultaneousSources, 0, deviceBufferCount, deviceBufferSize);
+    }
+
+    /**
+     * @param simultaneousSources the number of hardware sources to allocate.
+     * @param softwareVoices the number of voices mixed in software into one of those sources when the others are taken, or 0 to
+     * play sounds on hardware sources only.
+     */
+    public OpenALAudio(int simultaneousSources, int softwareVoices, int deviceBufferCount, int deviceBufferSize){
         this.deviceBufferSize = deviceBufferSize;
         this.deviceBufferCount = deviceBufferCount;
 
@@ -52,6 +86,9 @@ public class OpenALAudio extends Audio{
         registerMusic("wav", Wav.Music.class);
         registerSound("mp3", Mp3.Sound.class);
         registerMusic("mp3", Mp3.Music.class);
+        registerDecoder("ogg", Ogg.Sound::decode);
+        registerDecoder("wav", Wav.Sound::decode);
+        registerDecoder("mp3", Mp3.Sound::decode);
 
         device = alcOpenDevice((ByteBuffer)null);
         if(device == 0L){
@@ -77,9 +114,24 @@ public class OpenALAudio extends Audio{
             if(alGetError() != AL_NO_ERROR) break;
             allSources.add(sourceID);
         }
-        idleSources = new IntArray(allSources);
-        soundIdToSource = new LongMap<>();
-        sourceToSoundId = new IntMap<>();
+        if(softwareVoices > 0 && allSources.size > 1){
+            mixerSource = allSources.pop();
+            mixer = new SoftwareMixer(softwareVoices, mixerSampleRate);
+        }else{
+            softwareVoices = 0;
+        }
+        sources = allSources.toArray();
+        durations = new float[sources.length];
+        sourceToSlot = new IntIntMap(sources.length);
+        for(int i = 0; i < sources.length; i++){
+            sourceToSlot.put(sources[i], i);
+        }
+        voices = new VoicePool(sources.length, softwareVoices);
+        voices.setStopListener(this::stopVoice);
+        if(mixer != null){
+            mixer.setEndListener(voice -> voices.free(voice + sources.length));
+            startMixer();
+        }
 
         FloatBuffer orientation = (FloatBuffer)BufferUtils.createFloatBuffer(6)
         .put(new float[]{0.0f, 0.0f, -1.0f, 0.0f, 1.0f, 0.0f}).flip();
@@ -88,8 +140,45 @@ public class OpenALAudio extends Audio{
         alListenerfv(AL_VELOCITY, velocity);
         FloatBuffer position = (FloatBuffer)BufferUtils.createFloatBuffer(3).put(new float[]{0.0f, 0.0f, 0.0f}).flip();
         alListenerfv(AL_POSITION, position);
+    }
+
+    private void startMixer(){
+        mixerSamples = new short[mixerBufferFrames * 2];
+        mixerData = BufferUtils.createShortBuffer(mixerBufferFrames * 2);
+        mixerBuffers = BufferUtils.createIntBuffer(mixerBufferCount);
+        alGenBuffers(mixerBuffers);
+        for(int i = 0; i < mixerBufferCount; i++){
+            int bufferID = mixerBuffers.get(i);
+            fillMixerBuffer(bufferID);
+            alSourceQueueBuffers(mixerSource, bufferID);
+        }
+        alSourcePlay(mixerSource);
+    }
+
+    private void fillMixerBuffer(int bufferID){
+        mixer.mix(mixerSamples, 0, mixerBufferFrames);
+        mixerData.clear();
+        mixerData.put(mixerSamples).flip();
+        alBufferData(bufferID, AL_FORMAT_STEREO16, mixerData, mixerSampleRate);
+    }
+
+    /** Refills the mixer buffers that finished playing, restarting the source if it ran dry. */
+    private void updateMixer(){
+        int processed = alGetSourcei(mixerSource, AL_BUFFERS_PROCESSED);
+        for(int i = 0; i < processed; i++){
+            int bufferID = alSourceUnqueueBuffers(mixerSource);
+            fillMixerBuffer(bufferID);
+            alSourceQueueBuffers(mixerSource, bufferID);
+        }
+        if(processed > 0 && alGetSourcei(mixerSource, AL_SOURCE_STATE) != AL_PLAYING) alSourcePlay(mixerSource);
+    }
 
-        recentSounds = new OpenALSound[simultaneousSources];
+    /**
+     * @return the voices sounds are played with, for tuning {@link VoicePool#softwarePriority} and reading how many sounds were
+     * cut off, or null if there is no audio device.
+     */
+    public VoicePool getVoices(){
+        return voices;
     }
 
     public void registerSound(String extension, Class<? extends OpenALSound> soundClass){
@@ -104,6 +193,16 @@ public class OpenALAudio extends Audio{
         extensionToMusicClass.put(extension, musicClass);
     }
 
+    /**
+     * Registers a thread safe function decoding whole files, which {@link #newSounds(FileHandle...)} uses to decode sounds with
+     * this extension in parallel.
+     */
+    public void registerDecoder(String extension, Func<FileHandle, DecodedSound> decoder){
+        if(extension == null) throw new IllegalArgumentException("extension cannot be null.");
+        if(decoder == null) throw new IllegalArgumentException("decoder cannot be null.");
+        extensionToDecoder.put(extension, decoder);
+    }
+
     @Override
     public OpenALSound newSound(FileHandle file){
         if(file == null) throw new IllegalArgumentException("file cannot be null.");
@@ -116,6 +215,28 @@ public class OpenALAudio extends Audio{
         }
     }
 
+    /**
+     * Decodes the files with a registered decoder in parallel, then creates the sounds from them on this thread. Files without
+     * a decoder are loaded with {@link #newSound(FileHandle)}.
+     */
+    @Override
+    public OpenALSound[] newSounds(FileHandle... files){
+        OpenALSound[] sounds = new OpenALSound[files.length];
+        DecodedSound[] decoded = noDevice ? new DecodedSound[files.length] : DecodedSound.decodeAll(files, file -> {
+            Func<FileHandle, DecodedSound> decoder = extensionToDecoder.get(file.extension().toLowerCase());
+            return decoder == null ? null : soundCache.get(file, decoder);
+        });
+        for(int i = 0; i < files.length; i++){
+            if(decoded[i] == null){
+                sounds[i] = newSound(files[i]);
+            }else{
+                sounds[i] = new OpenALSound(this);
+                sounds[i].setup(decoded[i]);
+            }
+        }
+        return sounds;
+    }
+
     @Override
     public OpenALMusic newMusic(FileHandle file){
         if(file == null) throw new IllegalArgumentException("file cannot be null.");
@@ -128,154 +249,197 @@ public class OpenALAudio extends Audio{
         }
     }
 
-    int obtainSource(boolean isMusic){
+    /** Takes a hardware source for good, for streaming. It must be returned with {@link #freeSource(int)}. */
+    int obtainSource(){
         if(noDevice) return 0;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceId = idleSources.get(i);
-            int state = alGetSourcei(sourceId, AL_SOURCE_STATE);
-            if(state != AL_PLAYING && state != AL_PAUSED){
-                if(isMusic){
-                    idleSources.removeIndex(i);
-                }else{
-                    if(sourceToSoundId.containsKey(sourceId)){
-                        long soundId = sourceToSoundId.get(sourceId);
-                        sourceToSoundId.remove(sourceId);
-                        soundIdToSource.remove(soundId);
-                    }
-
-                    long soundId = nextSoundId++;
-                    sourceToSoundId.put(sourceId, soundId);
-                    soundIdToSource.put(soundId, sourceId);
-                }
-                alSourceStop(sourceId);
-                alSourcei(sourceId, AL_BUFFER, 0);
-                AL10.alSourcef(sourceId, AL10.AL_GAIN, 1);
-                AL10.alSourcef(sourceId, AL10.AL_PITCH, 1);
-                AL10.alSource3f(sourceId, AL10.AL_POSITION, 0, 0, 1f);
-                return sourceId;
-            }
-        }
-        return -1;
+        int slot = voices.slot(voices.reserve());
+        if(slot == -1) return -1;
+        int sourceID = sources[slot];
+        alSourceStop(sourceID);
+        alSourcei(sourceID, AL_BUFFER, 0);
+        alSourcei(sourceID, AL_LOOPING, AL_FALSE);
+        AL10.alSourcef(sourceID, AL10.AL_GAIN, 1);
+        AL10.alSourcef(sourceID, AL10.AL_PITCH, 1);
+        AL10.alSource3f(sourceID, AL10.AL_POSITION, 0, 0, 1f);
+        return sourceID;
     }
 
     void freeSource(int sourceID){
         if(noDevice) return;
         alSourceStop(sourceID);
         alSourcei(sourceID, AL_BUFFER, 0);
-        if(sourceToSoundId.containsKey(sourceID)){
-            long soundId = sourceToSoundId.remove(sourceID);
-            soundIdToSource.remove(soundId);
+        int slot = sourceToSlot.get(sourceID, -1);
+        if(slot != -1) voices.free(slot);
+    }
+
+    /** @return the id of the started voice, or -1 if every voice is taken by a more important one. */
+    long playSound(OpenALSound sound, float volume, float pitch, float pan, boolean looping){
+        if(voices.getFreeHardware() == 0) reclaim();
+        int id = voices.obtain(sound.voices, volume);
+        if(id == -1) return -1;
+        int slot = voices.slot(id);
+        if(voices.isHardware(slot)){
+            int sourceID = sources[slot];
+            alSourcei(sourceID, AL_BUFFER, sound.bufferID);
+            alSourcei(sourceID, AL_LOOPING, looping ? AL_TRUE : AL_FALSE);
+            AL10.alSourcef(sourceID, AL10.AL_PITCH, pitch);
+            setPan(sourceID, pan, volume);
+            alSourcePlay(sourceID);
+            durations[slot] = sound.duration();
+            voices.setEndTime(slot, looping ? Long.MAX_VALUE : endTime(sound.duration() / pitch));
+        }else{
+            mixer.play(slot - sources.length, sound.decoded, volume, pitch, pan, looping);
         }
-        idleSources.add(sourceID);
+        return id;
     }
 
-    void freeBuffer(int bufferID){
-        if(noDevice) return;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceID = idleSources.get(i);
-            if(alGetSourcei(sourceID, AL_BUFFER) == bufferID){
-                if(sourceToSoundId.containsKey(sourceID)){
-                    long soundId = sourceToSoundId.remove(sourceID);
-                    soundIdToSource.remove(soundId);
-                }
-                alSourceStop(sourceID);
-                alSourcei(sourceID, AL_BUFFER, 0);
-            }
+    /** Frees the voices of hardware sources that finished playing, only checking those expected to have finished and one other. */
+    private void reclaim(){
+        voices.eachFinished(Time.nanos(), this::checkSource);
+    }
+
+    /** Frees the voice of a hardware source that finished playing, or sets when it is now expected to finish. */
+    private void checkSource(int slot){
+        int sourceID = sources[slot];
+        int state = alGetSourcei(sourceID, AL_SOURCE_STATE);
+        if(state == AL_STOPPED){
+            alSourcei(sourceID, AL_BUFFER, 0);
+            voices.free(slot);
+        }else if(state == AL_PLAYING && alGetSourcei(sourceID, AL_LOOPING) == AL_FALSE){
+            float remaining = (durations[slot] - alGetSourcef(sourceID, AL11.AL_SEC_OFFSET)) / alGetSourcef(sourceID, AL_PITCH);
+            voices.setEndTime(slot, Math.max(endTime(remaining), Time.nanos() + recheckNanos));
+        }else{
+            voices.setEndTime(slot, Long.MAX_VALUE);
         }
     }
 
-    void stopSourcesWithBuffer(int bufferID){
-        if(noDevice) return;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceID = idleSources.get(i);
-            if(alGetSourcei(sourceID, AL_BUFFER) == bufferID){
-                if(sourceToSoundId.containsKey(sourceID)){
-                    long soundId = sourceToSoundId.remove(sourceID);
-                    soundIdToSource.remove(soundId);
-                }
-                alSourceStop(sourceID);
-            }
+    /** @return the time at which a sound with the given seconds left finishes, or {@link Long#MAX_VALUE} if it never does. */
+    private static long endTime(float seconds){
+        return seconds < 1000000f ? Time.nanos() + (long)(seconds * 1000000000L) : Long.MAX_VALUE;
+    }
+
+    private void stopVoice(int slot){
+        if(voices.isHardware(slot)){
+            alSourceStop(sources[slot]);
+            alSourcei(sources[slot], AL_BUFFER, 0);
+        }else{
+            mixer.stop(slot - sources.length);
         }
     }
 
-    void pauseSourcesWithBuffer(int bufferID){
-        if(noDevice) return;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceID = idleSources.get(i);
-            if(alGetSourcei(sourceID, AL_BUFFER) == bufferID)
-                alSourcePause(sourceID);
+    private void pauseVoice(int slot){
+        if(voices.isHardware(slot)){
+            alSourcePause(sources[slot]);
+            voices.setEndTime(slot, Long.MAX_VALUE);
+        }else{
+            mixer.setPaused(slot - sources.length, true);
         }
     }
 
-    void resumeSourcesWithBuffer(int bufferID){
-        if(noDevice) return;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceID = idleSources.get(i);
-            if(alGetSourcei(sourceID, AL_BUFFER) == bufferID){
-                if(alGetSourcei(sourceID, AL_SOURCE_STATE) == AL_PAUSED)
-                    alSourcePlay(sourceID);
-            }
+    private void resumeVoice(int slot){
+        if(voices.isHardware(slot)){
+            if(alGetSourcei(sources[slot], AL_SOURCE_STATE) == AL_PAUSED) alSourcePlay(sources[slot]);
+            // Checked on the next update, which finds out how much is left.
+            voices.setEndTime(slot, 0);
+        }else{
+            mixer.setPaused(slot - sources.length, false);
         }
     }
 
+    private void setPan(int sourceID, float pan, float volume){
+        AL10.alSource3f(sourceID, AL10.AL_POSITION, Mathf.cos((pan - 1) * Mathf.PI / 2), 0,
+        Mathf.sin((pan + 1) * Mathf.PI / 2));
+        AL10.alSourcef(sourceID, AL10.AL_GAIN, volume);
+    }
+
+    void stopSounds(OpenALSound sound){
+        if(noDevice) return;
+        voices.stopAll(sound.voices);
+    }
+
+    void pauseSounds(OpenALSound sound){
+        if(noDevice) return;
+        voices.each(sound.voices, this::pauseVoice);
+    }
+
+    void resumeSounds(OpenALSound sound){
+        if(noDevice) return;
+        voices.each(sound.voices, this::resumeVoice);
+    }
+
     public void update(){
         if(noDevice) return;
         for(int i = 0; i < music.size; i++)
             music.items[i].update();
-    }
-
-    public long getSoundId(int sourceId){
-        if(!sourceToSoundId.containsKey(sourceId)) return -1;
-        return sourceToSoundId.get(sourceId);
+        reclaim();
+        if(mixer != null) updateMixer();
     }
 
     public void stopSound(long soundId){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId);
-        alSourceStop(sourceId);
+        int slot = voices.slot((int)soundId);
+        if(slot == -1) return;
+        voices.stop(slot);
     }
 
     public void pauseSound(long soundId){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId);
-        alSourcePause(sourceId);
+        int slot = voices.slot((int)soundId);
+        if(slot == -1) return;
+        pauseVoice(slot);
     }
 
     public void resumeSound(long soundId){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId);
-        if(alGetSourcei(sourceId, AL_SOURCE_STATE) == AL_PAUSED)
-            alSourcePlay(sourceId);
+        int slot = voices.slot((int)soundId);
+        if(slot == -1) return;
+        resumeVoice(slot);
     }
 
     public void setSoundGain(long soundId, float volume){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId);
-        AL10.alSourcef(sourceId, AL10.AL_GAIN, volume);
+        int slot = voices.slot((int)soundId);
+        if(slot == -1) return;
+        voices.setVolume(slot, volume);
+        if(voices.isHardware(slot)){
+            AL10.alSourcef(sources[slot], AL10.AL_GAIN, volume);
+        }else{
+            mixer.setVolume(slot - sources.length, volume);
+        }
     }
 
     public void setSoundLooping(long soundId, boolean looping){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId);
-        alSourcei(sourceId, AL10.AL_LOOPING, looping ? AL10.AL_TRUE : AL10.AL_FALSE);
+        int slot = voices.slot((int)soundId);
+        if(slot == -1) return;
+        if(voices.isHardware(slot)){
+            alSourcei(sources[slot], AL10.AL_LOOPING, looping ? AL10.AL_TRUE : AL10.AL_FALSE);
+            voices.setEndTime(slot, looping ? Long.MAX_VALUE : 0);
+        }else{
+            mixer.setLooping(slot - sources.length, looping);
+        }
     }
 
     public void setSoundPitch(long soundId, float pitch){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId);
-        AL10.alSourcef(sourceId, AL10.AL_PITCH, pitch);
+        int slot = voices.slot((int)soundId);
+        if(slot == -1) return;
+        if(voices.isHardware(slot)){
+            AL10.alSourcef(sources[slot], AL10.AL_PITCH, pitch);
+            if(voices.getEndTime(slot) != Long.MAX_VALUE) voices.setEndTime(slot, 0);
+        }else{
+            mixer.setPitch(slot - sources.length, pitch);
+        }
     }
 
     public void setSoundPan(long soundId, float pan, float volume){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId);
-
-        AL10.alSource3f(sourceId, AL10.AL_POSITION, Mathf.cos((pan - 1) * Mathf.PI / 2), 0,
-        Mathf.sin((pan + 1) * Mathf.PI / 2));
-        AL10.alSourcef(sourceId, AL10.AL_GAIN, volume);
+        int slot = voices.slot((int)soundId);
+        if(slot == -1) return;
+        voices.setVolume(slot, volume);
+        if(voices.isHardware(slot)){
+            setPan(sources[slot], pan, volume);
+        }else{
+            mixer.setPan(slot - sources.length, pan);
+            mixer.setVolume(slot - sources.length, volume);
+        }
     }
 
     public void dispose(){
+        decoder.dispose();
         if(noDevice) return;
         for(int i = 0, n = allSources.size; i < n; i++){
             int sourceID = allSources.get(i);
@@ -283,9 +447,11 @@ public class OpenALAudio extends Audio{
             if(state != AL_STOPPED) alSourceStop(sourceID);
             alDeleteSources(sourceID);
         }
-
-        sourceToSoundId.clear();
-        soundIdToSource.clear();
+        if(mixer != null){
+            alSourceStop(mixerSource);
+            alDeleteSources(mixerSource);
+            alDeleteBuffers(mixerBuffers);
+        }
 
         alcDestroyContext(context);
         alcCloseDevice(device);
@@ -300,28 +466,4 @@ public class OpenALAudio extends Audio{
         if(noDevice) return new MockAudioRecorder();
         return new JavaSoundAudioRecorder(samplingRate, isMono);
     }
-
-    /**
-     * Retains a list of the most recently played sounds and stops the sound played least recently if necessary for a new sound to
-     * play
-     */
-    protected void retain(OpenALSound sound, boolean stop){
-        // Move the pointer ahead and wrap
-        mostRecetSound++;
-        mostRecetSound %= recentSounds.length;
-
-        if(stop){
-            // Stop the least recent sound (the one we are about to bump off the buffer)
-            if(recentSounds[mostRecetSound] != null) recentSounds[mostRecetSound].stop();
-        }
-
-        recentSounds[mostRecetSound] = sound;
-    }
-
-    /** Removes the disposed sound from the least recently played list */
-    public void forget(OpenALSound sound){
-        for(int i = 0; i < recentSounds.length; i++){
-            if(recentSounds[i] == sound) recentSounds[i] = null;
-        }
-    }
 }
@@ -67,7 +67,7 @@ public class OpenALAudioDevice implements AudioDevice{
         if(length < 0) throw new IllegalArgumentException("length cannot be < 0.");
 
         if(sourceID == -1){
-            sourceID = audio.obtainSource(true);
+            sourceID = audio.obtainSource();
             if(sourceID == -1) return;
             if(buffers == null){
                 buffers = BufferUtils.createIntBuffer(bufferCount);
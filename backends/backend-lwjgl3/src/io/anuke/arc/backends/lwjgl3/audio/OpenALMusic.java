@@ -13,10 +13,16 @@ import java.nio.*;
 import static org.lwjgl.openal.AL10.*;
 import static org.lwjgl.openal.SOFTDirectChannels.AL_DIRECT_CHANNELS_SOFT;
 
-/** @author Nathan Sweet */
-public abstract class OpenALMusic implements Music{
+/**
+ * Streams music to OpenAL. The file is decoded ahead on the audio's {@link StreamDecoder} thread, and {@link #update()} only
+ * uploads what is already decoded, so slow decoding delays the music rather than the frame.
+ * @author Nathan Sweet
+ */
+public abstract class OpenALMusic implements Music, StreamDecoder.Source{
     static private final int bufferSize = 4096 * 10;
     static private final int bufferCount = 3;
+    /** Buffers decoded ahead of those queued to OpenAL, about a second of stereo 44.1kHz audio. */
+    static private final int chunkCount = 6;
     static private final int bytesPerSample = 2;
     static private final byte[] tempBytes = new byte[bufferSize];
     static private final ByteBuffer tempBuffer = BufferUtils.createByteBuffer(bufferSize);
@@ -25,9 +31,13 @@ public abstract class OpenALMusic implements Music{
     protected int bufferOverhead = 0;
     private FloatArray renderedSecondsQueue = new FloatArray(bufferCount);
     private IntBuffer buffers;
+    /** Buffers played or never queued, waiting for the decoder thread to catch up. */
+    private IntArray idleBuffers = new IntArray(bufferCount);
+    private StreamDecoder.Stream stream;
     private int sourceID = -1;
     private int format, sampleRate;
-    private boolean isLooping, isPlaying;
+    private volatile boolean isLooping;
+    private boolean isPlaying;
     private float volume = 1;
     private float pan = 0;
     private float renderedSeconds, maxSecondsPerBuffer;
@@ -48,7 +58,7 @@ public abstract class OpenALMusic implements Music{
     public void play(){
         if(audio.noDevice) return;
         if(sourceID == -1){
-            sourceID = audio.obtainSource(true);
+            sourceID = audio.obtainSource();
             if(sourceID == -1) return;
 
             audio.music.add(this);
@@ -65,13 +75,8 @@ public abstract class OpenALMusic implements Music{
             alSourcei(sourceID, AL_LOOPING, AL_FALSE);
             setPan(pan, volume);
 
-            boolean filled = false; // Check if there's anything to actually play.
-            for(int i = 0; i < bufferCount; i++){
-                int bufferID = buffers.get(i);
-                if(!fill(bufferID)) break;
-                filled = true;
-                alSourceQueueBuffers(sourceID, bufferID);
-            }
+            stream = audio.decoder.open(this, bufferSize, chunkCount);
+            boolean filled = queueBuffers(); // Check if there's anything to actually play.
             if(!filled && onCompletionListener != null) onCompletionListener.complete(this);
 
             if(alGetError() != AL_NO_ERROR){
@@ -89,6 +94,10 @@ public abstract class OpenALMusic implements Music{
         if(audio.noDevice) return;
         if(sourceID == -1) return;
         audio.music.removeValue(this, true);
+        if(stream != null){
+            stream.close();
+            stream = null;
+        }
         reset();
         audio.freeSource(sourceID);
         sourceID = -1;
@@ -149,26 +158,24 @@ public abstract class OpenALMusic implements Music{
         boolean wasPlaying = isPlaying;
         isPlaying = false;
         alSourceStop(sourceID);
-        alSourceUnqueueBuffers(sourceID, buffers);
-        while(renderedSecondsQueue.size > 0){
-            renderedSeconds = renderedSecondsQueue.pop();
-        }
-        if(position <= renderedSeconds){
-            reset();
-            renderedSeconds = 0;
-        }
-        while(renderedSeconds < (position - maxSecondsPerBuffer)){
-            if(read(tempBytes) <= 0) break;
-            renderedSeconds += maxSecondsPerBuffer;
+        for(int queued = alGetSourcei(sourceID, AL_BUFFERS_QUEUED); queued > 0; queued--){
+            alSourceUnqueueBuffers(sourceID);
         }
+        renderedSecondsQueue.clear();
+        // The decoder has read past the queued buffers, so seek from where it is.
+        stream.flush(() -> {
+            renderedSeconds = maxSecondsPerBuffer * stream.getDecodedBytes() / bufferSize;
+            if(position <= renderedSeconds){
+                stream.reset();
+                renderedSeconds = 0;
+            }
+            while(renderedSeconds < (position - maxSecondsPerBuffer)){
+                if(stream.skip(tempBytes) <= 0) break;
+                renderedSeconds += maxSecondsPerBuffer;
+            }
+        });
         renderedSecondsQueue.add(renderedSeconds);
-        boolean filled = false;
-        for(int i = 0; i < bufferCount; i++){
-            int bufferID = buffers.get(i);
-            if(!fill(bufferID)) break;
-            filled = true;
-            alSourceQueueBuffers(sourceID, bufferID);
-        }
+        boolean filled = queueBuffers();
         renderedSecondsQueue.pop();
         if(!filled){
             stop();
@@ -191,7 +198,7 @@ public abstract class OpenALMusic implements Music{
     abstract public void reset();
 
     /** By default, does just the same as reset(). Used to add special behaviour in Ogg.Music. */
-    protected void loop(){
+    public void loop(){
         reset();
     }
 
@@ -207,19 +214,18 @@ public abstract class OpenALMusic implements Music{
         if(audio.noDevice) return;
         if(sourceID == -1) return;
 
-        boolean end = false;
         int buffers = alGetSourcei(sourceID, AL_BUFFERS_PROCESSED);
         while(buffers-- > 0){
             int bufferID = alSourceUnqueueBuffers(sourceID);
             if(bufferID == AL_INVALID_VALUE) break;
             if(renderedSecondsQueue.size > 0) renderedSeconds = renderedSecondsQueue.pop();
-            if(end) continue;
-            if(fill(bufferID))
-                alSourceQueueBuffers(sourceID, bufferID);
-            else
-                end = true;
+            idleBuffers.add(bufferID);
         }
-        if(end && alGetSourcei(sourceID, AL_BUFFERS_QUEUED) == 0){
+        // Buffers the decoder thread has not caught up with yet are filled on a later update.
+        while(idleBuffers.size > 0 && fill(idleBuffers.peek(), false)){
+            alSourceQueueBuffers(sourceID, idleBuffers.pop());
+        }
+        if(stream.isDrained() && alGetSourcei(sourceID, AL_BUFFERS_QUEUED) == 0){
             stop();
             if(onCompletionListener != null) onCompletionListener.complete(this);
         }
@@ -228,25 +234,42 @@ public abstract class OpenALMusic implements Music{
         if(isPlaying && alGetSourcei(sourceID, AL_SOURCE_STATE) != AL_PLAYING) alSourcePlay(sourceID);
     }
 
-    private boolean fill(int bufferID){
-        tempBuffer.clear();
-        int length = read(tempBytes);
-        if(length <= 0){
-            if(isLooping){
-                loop();
-                length = read(tempBytes);
-                if(length <= 0) return false;
-                if(renderedSecondsQueue.size > 0){
-                    renderedSecondsQueue.set(0, 0);
-                }
-            }else
-                return false;
+    /**
+     * Queues the first buffer, decoding it now if the decoder thread has not yet, and as many others as are decoded.
+     * @return whether there was anything to queue.
+     */
+    private boolean queueBuffers(){
+        idleBuffers.clear();
+        for(int i = bufferCount - 1; i >= 0; i--){
+            idleBuffers.add(buffers.get(i));
+        }
+        if(!fill(idleBuffers.peek(), true)) return false;
+        alSourceQueueBuffers(sourceID, idleBuffers.pop());
+        while(idleBuffers.size > 0 && fill(idleBuffers.peek(), false)){
+            alSourceQueueBuffers(sourceID, idleBuffers.pop());
+        }
+        return true;
+    }
+
+    /**
+     * Fills a buffer with the next chunk decoded by the decoder thread.
+     * @param wait whether to decode the chunk on this thread if the decoder thread has not.
+     * @return false if there was no chunk to fill it with.
+     */
+    private boolean fill(int bufferID, boolean wait){
+        StreamDecoder.Chunk chunk = wait ? stream.take() : stream.poll();
+        if(chunk == null) return false;
+        if(chunk.looped && renderedSecondsQueue.size > 0){
+            renderedSecondsQueue.set(0, 0);
         }
+        int length = chunk.length;
         float previousLoadedSeconds = renderedSecondsQueue.size > 0 ? renderedSecondsQueue.first() : 0;
         float currentBufferSeconds = maxSecondsPerBuffer * (float)length / (float)bufferSize;
         renderedSecondsQueue.insert(0, previousLoadedSeconds + currentBufferSeconds);
 
-        tempBuffer.put(tempBytes, 0, length).flip();
+        tempBuffer.clear();
+        tempBuffer.put(chunk.data, 0, length).flip();
+        stream.recycle(chunk);
         alBufferData(bufferID, format, tempBuffer, sampleRate);
         return true;
     }
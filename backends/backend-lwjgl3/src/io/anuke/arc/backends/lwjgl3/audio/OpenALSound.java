@@ -1,6 +1,8 @@
 package io.anuke.arc.backends.lwjgl3.audio;
 
+import io.anuke.arc.audio.DecodedSound;
 import io.anuke.arc.audio.Sound;
+import io.anuke.arc.audio.VoiceGroup;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -10,76 +12,76 @@ import static org.lwjgl.openal.AL10.*;
 /** @author Nathan Sweet */
 public class OpenALSound implements Sound{
     private final OpenALAudio audio;
-    private int bufferID = -1;
+    /** The voices playing this sound. */
+    final VoiceGroup voices = new VoiceGroup();
+    int bufferID = -1;
+    /** The samples for the software mixer, kept only if the audio has one. */
+    DecodedSound decoded;
     private float duration;
 
     public OpenALSound(OpenALAudio audio){
         this.audio = audio;
     }
 
-    void setup(byte[] pcm, int channels, int sampleRate){
-        int bytes = pcm.length - (pcm.length % (channels > 1 ? 4 : 2));
-        int samples = bytes / (2 * channels);
-        duration = samples / (float)sampleRate;
+    void setup(DecodedSound sound){
+        int bytes = sound.pcm.length - (sound.pcm.length % (sound.channels > 1 ? 4 : 2));
+        int samples = bytes / (2 * sound.channels);
+        duration = samples / (float)sound.sampleRate;
 
         ByteBuffer buffer = ByteBuffer.allocateDirect(bytes);
         buffer.order(ByteOrder.nativeOrder());
-        buffer.put(pcm, 0, bytes);
+        buffer.put(sound.pcm, 0, bytes);
         buffer.flip();
 
         if(bufferID == -1){
             bufferID = alGenBuffers();
-            alBufferData(bufferID, channels > 1 ? AL_FORMAT_STEREO16 : AL_FORMAT_MONO16, buffer.asShortBuffer(), sampleRate);
+            alBufferData(bufferID, sound.channels > 1 ? AL_FORMAT_STEREO16 : AL_FORMAT_MONO16, buffer.asShortBuffer(), sound.sampleRate);
         }
+        if(audio.mixer != null) decoded = sound;
+    }
+
+    void setup(byte[] pcm, int channels, int sampleRate){
+        setup(new DecodedSound(pcm, channels, sampleRate));
     }
 
-    public int play(float volume){
+    @Override
+    public int play(float volume, float pitch, float pan){
         if(audio.noDevice) return -1;
-        int sourceID = audio.obtainSource(false);
-        if(sourceID == -1){
-            // Attempt to recover by stopping the least recently played sound
-            audio.retain(this, true);
-            sourceID = audio.obtainSource(false);
-        }else audio.retain(this, false);
-        // In case it still didn't work
-        if(sourceID == -1) return -1;
-        int soundId = (int)audio.getSoundId(sourceID);
-        alSourcei(sourceID, AL_BUFFER, bufferID);
-        alSourcei(sourceID, AL_LOOPING, AL_FALSE);
-        alSourcef(sourceID, AL_GAIN, volume);
-        alSourcePlay(sourceID);
-        return soundId;
-    }
-
-    public int loop(){
-        return loop(1);
+        return (int)audio.playSound(this, volume, pitch, pan, false);
     }
 
     @Override
-    public int loop(float volume){
+    public int loop(float volume, float pitch, float pan){
         if(audio.noDevice) return -1;
-        int sourceID = audio.obtainSource(false);
-        if(sourceID == -1) return -1;
-        int soundId = (int)audio.getSoundId(sourceID);
-        alSourcei(sourceID, AL_BUFFER, bufferID);
-        alSourcei(sourceID, AL_LOOPING, AL_TRUE);
-        alSourcef(sourceID, AL_GAIN, volume);
-        alSourcePlay(sourceID);
-        return soundId;
+        return (int)audio.playSound(this, volume, pitch, pan, true);
+    }
+
+    @Override
+    public int loop(float volume){
+        return loop(volume, 1f, 0f);
+    }
+
+    @Override
+    public void setPriority(float priority){
+        voices.priority = priority;
+    }
+
+    @Override
+    public void setMaxConcurrent(int max){
+        voices.limit = max;
     }
 
     public void stop(){
-        if(audio.noDevice) return;
-        audio.stopSourcesWithBuffer(bufferID);
+        audio.stopSounds(this);
     }
 
     public void dispose(){
         if(audio.noDevice) return;
         if(bufferID == -1) return;
-        audio.freeBuffer(bufferID);
+        audio.stopSounds(this);
         alDeleteBuffers(bufferID);
         bufferID = -1;
-        audio.forget(this);
+        decoded = null;
     }
 
     @Override
@@ -90,8 +92,7 @@ public class OpenALSound implements Sound{
 
     @Override
     public void pause(){
-        if(audio.noDevice) return;
-        audio.pauseSourcesWithBuffer(bufferID);
+        audio.pauseSounds(this);
     }
 
     @Override
@@ -102,8 +103,7 @@ public class OpenALSound implements Sound{
 
     @Override
     public void resume(){
-        if(audio.noDevice) return;
-        audio.resumeSourcesWithBuffer(bufferID);
+        audio.resumeSounds(this);
     }
 
     @Override
@@ -136,22 +136,6 @@ public class OpenALSound implements Sound{
         audio.setSoundPan(soundId, pan, volume);
     }
 
-    @Override
-    public int play(float volume, float pitch, float pan){
-        int id = play();
-        setPitch(id, pitch);
-        setPan(id, pan, volume);
-        return id;
-    }
-
-    @Override
-    public int loop(float volume, float pitch, float pan){
-        int id = loop();
-        setPitch(id, pitch);
-        setPan(id, pan, volume);
-        return id;
-    }
-
     /** Returns the length of the sound in seconds. */
     public float duration(){
         return duration;
@@ -1,5 +1,6 @@
 package io.anuke.arc.backends.lwjgl3.audio;
 
+import io.anuke.arc.audio.DecodedSound;
 import io.anuke.arc.files.FileHandle;
 import io.anuke.arc.util.ArcRuntimeException;
 import io.anuke.arc.util.io.Streams;
@@ -41,11 +42,15 @@ public class Wav{
         public Sound(OpenALAudio audio, FileHandle file){
             super(audio);
             if(audio.noDevice) return;
+            setup(audio.soundCache.get(file, Sound::decode));
+        }
 
+        /** Decodes a whole file. Thread safe. */
+        public static DecodedSound decode(FileHandle file){
             WavInputStream input = null;
             try{
                 input = new WavInputStream(file);
-                setup(Streams.copyStreamToByteArray(input, input.dataRemaining), input.channels, input.sampleRate);
+                return new DecodedSound(Streams.copyStreamToByteArray(input, input.dataRemaining), input.channels, input.sampleRate);
             }catch(IOException ex){
                 throw new ArcRuntimeException("Error reading WAV file: " + file, ex);
             }finally{
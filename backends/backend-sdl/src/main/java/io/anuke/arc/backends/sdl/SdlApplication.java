@@ -37,7 +37,7 @@ public class SdlApplication implements Application{
         Core.settings = new Settings();
 
         try{
-            Core.audio = config.disableAudio ? new MockAudio() : (audio = new ALAudio(config.audioDeviceSimultaneousSources));
+            Core.audio = config.disableAudio ? new MockAudio() : (audio = new ALAudio(config.audioDeviceSimultaneousSources, config.audioSoftwareVoices));
         }catch(Throwable t){
             Log.err(t);
             Log.err("Error initializing; disabling audio.");
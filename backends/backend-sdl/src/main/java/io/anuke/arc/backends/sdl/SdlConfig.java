@@ -7,6 +7,8 @@ import io.anuke.arc.graphics.glutils.*;
 public class SdlConfig{
     public boolean disableAudio = false;
     public int audioDeviceSimultaneousSources = 32;
+    /** Sounds mixed in software into one of the sources once the others are taken; 0 to disable. */
+    public int audioSoftwareVoices = 0;
 
     public int r = 8, g = 8, b = 8, a = 8;
     public int depth = 16, stencil = 0;
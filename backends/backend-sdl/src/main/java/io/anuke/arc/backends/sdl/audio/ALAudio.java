@@ -5,6 +5,7 @@ import io.anuke.arc.audio.*;
 import io.anuke.arc.audio.mock.*;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.files.*;
+import io.anuke.arc.func.*;
 import io.anuke.arc.math.*;
 import io.anuke.arc.util.*;
 
@@ -13,26 +14,54 @@ import java.nio.*;
 import static io.anuke.arc.backends.sdl.jni.AL.*;
 
 public class ALAudio extends Audio{
+    private static final int mixerSampleRate = 44100, mixerBufferFrames = 1024, mixerBufferCount = 3;
+    /** How long to wait before checking again on a source that is still playing when expected to have finished. */
+    private static final long recheckNanos = 5000000;
+
     Array<ALMusic> music = new Array<>(false, 1, ALMusic.class);
+    /** Decodes playing music ahead on its own thread. */
+    final StreamDecoder decoder = new StreamDecoder("Audio Decoder");
+    /** Decoded samples of short sounds, so that loading one again does not decode it again. */
+    public final SoundCache soundCache = new SoundCache(16 * 1024 * 1024, 1024 * 1024);
     long device;
     long context;
     boolean noDevice = false;
-    private IntArray idleSources, allSources;
-    private IntIntMap soundIdToSource;
-    private IntIntMap sourceToSoundId;
-    private int nextSoundId = 0;
+    private IntArray allSources;
+    /** Hardware sources by voice slot. */
+    private int[] sources;
+    /** Durations in seconds of the sounds played by hardware sources, by voice slot. */
+    private float[] durations;
+    private IntIntMap sourceToSlot;
+    private VoicePool voices;
+    /** Mixes the software voices into {@link #mixerSource}, or null without software voices. */
+    SoftwareMixer mixer;
+    private int mixerSource = -1;
+    private IntBuffer mixerBuffers;
+    private short[] mixerSamples;
+    private ShortBuffer mixerData;
     private ObjectMap<String, SoundConstructor> soundTypes = new ObjectMap<>();
     private ObjectMap<String, MusicConstructor> musicTypes = new ObjectMap<>();
-    private ALSound[] recentSounds;
-    private int mostRecetSound = -1;
+    private ObjectMap<String, Func<FileHandle, DecodedSound>> decoders = new ObjectMap<>();
 
     public ALAudio(int simultaneousSources){
+        this(simultaneousSources, 0);
+    }
+
+    /**
+     * @param simultaneousSources the number of hardware sources to allocate.
+     * @param softwareVoices the number of voices mixed in software into one of those sources when the others are taken, or 0 to
+     * play sounds on hardware sources only.
+     */
+    public ALAudio(int simultaneousSources, int softwareVoices){
         soundTypes.put("ogg", Ogg.Sound::new);
         musicTypes.put("ogg", Ogg.Music::new);
         soundTypes.put("wav", Wav.Sound::new);
         musicTypes.put("wav", Wav.Music::new);
         soundTypes.put("mp3", Mp3.Sound::new);
         musicTypes.put("mp3", Mp3.Music::new);
+        decoders.put("ogg", Ogg.Sound::decode);
+        decoders.put("wav", Wav.Sound::decode);
+        decoders.put("mp3", Mp3.Sound::decode);
 
         device = alcOpenDevice();
         if(device == 0L){
@@ -59,9 +88,24 @@ public class ALAudio extends Audio{
             if(alGetError() != AL_NO_ERROR) break;
             allSources.add(sourceID);
         }
-        idleSources = new IntArray(allSources);
-        soundIdToSource = new IntIntMap();
-        sourceToSoundId = new IntIntMap();
+        if(softwareVoices > 0 && allSources.size > 1){
+            mixerSource = allSources.pop();
+            mixer = new SoftwareMixer(softwareVoices, mixerSampleRate);
+        }else{
+            softwareVoices = 0;
+        }
+        sources = allSources.toArray();
+        durations = new float[sources.length];
+        sourceToSlot = new IntIntMap(sources.length);
+        for(int i = 0; i < sources.length; i++){
+            sourceToSlot.put(sources[i], i);
+        }
+        voices = new VoicePool(sources.length, softwareVoices);
+        voices.setStopListener(this::stopVoice);
+        if(mixer != null){
+            mixer.setEndListener(voice -> voices.free(voice + sources.length));
+            startMixer();
+        }
 
         FloatBuffer orientation = (FloatBuffer)BufferUtils.newFloatBuffer(6).put(new float[]{0.0f, 0.0f, -1.0f, 0.0f, 1.0f, 0.0f}).flip();
         alListenerfv(AL_ORIENTATION, orientation);
@@ -69,8 +113,45 @@ public class ALAudio extends Audio{
         alListenerfv(AL_VELOCITY, velocity);
         FloatBuffer position = (FloatBuffer)BufferUtils.newFloatBuffer(3).put(new float[]{0.0f, 0.0f, 0.0f}).flip();
         alListenerfv(AL_POSITION, position);
+    }
 
-        recentSounds = new ALSound[simultaneousSources];
+    private void startMixer(){
+        mixerSamples = new short[mixerBufferFrames * 2];
+        mixerData = BufferUtils.newShortBuffer(mixerBufferFrames * 2);
+        mixerBuffers = BufferUtils.newIntBuffer(mixerBufferCount);
+        alGenBuffers(mixerBufferCount, mixerBuffers);
+        for(int i = 0; i < mixerBufferCount; i++){
+            int bufferID = mixerBuffers.get(i);
+            fillMixerBuffer(bufferID);
+            alSourceQueueBuffers(mixerSource, bufferID);
+        }
+        alSourcePlay(mixerSource);
+    }
+
+    private void fillMixerBuffer(int bufferID){
+        mixer.mix(mixerSamples, 0, mixerBufferFrames);
+        mixerData.clear();
+        mixerData.put(mixerSamples).flip();
+        alBufferDataShort(bufferID, AL_FORMAT_STEREO16, mixerData, mixerSamples.length * 2, mixerSampleRate);
+    }
+
+    /** Refills the mixer buffers that finished playing, restarting the source if it ran dry. */
+    private void updateMixer(){
+        int processed = alGetSourcei(mixerSource, AL_BUFFERS_PROCESSED);
+        for(int i = 0; i < processed; i++){
+            int bufferID = alSourceUnqueueBuffers(mixerSource);
+            fillMixerBuffer(bufferID);
+            alSourceQueueBuffers(mixerSource, bufferID);
+        }
+        if(processed > 0 && alGetSourcei(mixerSource, AL_SOURCE_STATE) != AL_PLAYING) alSourcePlay(mixerSource);
+    }
+
+    /**
+     * @return the voices sounds are played with, for tuning {@link VoicePool#softwarePriority} and reading how many sounds were
+     * cut off, or null if there is no audio device.
+     */
+    public VoicePool getVoices(){
+        return voices;
     }
 
     void checkError(){
@@ -88,6 +169,28 @@ public class ALAudio extends Audio{
         return soundClass.make(this, file);
     }
 
+    /**
+     * Decodes the files of known types in parallel, then creates the sounds from them on this thread. Other files are loaded
+     * with {@link #newSound(FileHandle)}.
+     */
+    @Override
+    public ALSound[] newSounds(FileHandle... files){
+        ALSound[] sounds = new ALSound[files.length];
+        DecodedSound[] decoded = noDevice ? new DecodedSound[files.length] : DecodedSound.decodeAll(files, file -> {
+            Func<FileHandle, DecodedSound> decoder = decoders.get(file.extension().toLowerCase());
+            return decoder == null ? null : soundCache.get(file, decoder);
+        });
+        for(int i = 0; i < files.length; i++){
+            if(decoded[i] == null){
+                sounds[i] = newSound(files[i]);
+            }else{
+                sounds[i] = new ALSound(this);
+                sounds[i].setup(decoded[i]);
+            }
+        }
+        return sounds;
+    }
+
     @Override
     public ALMusic newMusic(FileHandle file){
         if(file == null) throw new IllegalArgumentException("file cannot be null.");
@@ -96,153 +199,196 @@ public class ALAudio extends Audio{
         return musicClass.make(this, file);
     }
 
-    int obtainSource(boolean isMusic){
+    /** Takes a hardware source for good, for streaming. It must be returned with {@link #freeSource(int)}. */
+    int obtainSource(){
         if(noDevice) return 0;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceId = idleSources.get(i);
-            int state = alGetSourcei(sourceId, AL_SOURCE_STATE);
-            if(state != AL_PLAYING && state != AL_PAUSED){
-                if(isMusic){
-                    idleSources.removeIndex(i);
-                }else{
-                    if(sourceToSoundId.containsKey(sourceId)){
-                        int soundId = sourceToSoundId.get(sourceId, 0);
-                        sourceToSoundId.remove(sourceId, 0);
-                        soundIdToSource.remove(soundId, 0);
-                    }
-
-                    int soundId = nextSoundId++;
-                    sourceToSoundId.put(sourceId, soundId);
-                    soundIdToSource.put(soundId, sourceId);
-                }
-                alSourceStop(sourceId);
-                alSourcei(sourceId, AL_BUFFER, 0);
-                alSourcef(sourceId, AL_GAIN, 1);
-                alSourcef(sourceId, AL_PITCH, 1);
-                alSource3f(sourceId, AL_POSITION, 0, 0, 1f);
-                return sourceId;
-            }
-        }
-        return -1;
+        int slot = voices.slot(voices.reserve());
+        if(slot == -1) return -1;
+        int sourceID = sources[slot];
+        alSourceStop(sourceID);
+        alSourcei(sourceID, AL_BUFFER, 0);
+        alSourcei(sourceID, AL_LOOPING, AL_FALSE);
+        alSourcef(sourceID, AL_GAIN, 1);
+        alSourcef(sourceID, AL_PITCH, 1);
+        alSource3f(sourceID, AL_POSITION, 0, 0, 1f);
+        return sourceID;
     }
 
     void freeSource(int sourceID){
         if(noDevice) return;
         alSourceStop(sourceID);
         alSourcei(sourceID, AL_BUFFER, 0);
-        if(sourceToSoundId.containsKey(sourceID)){
-            int soundId = sourceToSoundId.remove(sourceID, 0);
-            soundIdToSource.remove(soundId, 0);
+        int slot = sourceToSlot.get(sourceID, -1);
+        if(slot != -1) voices.free(slot);
+    }
+
+    /** @return the id of the started voice, or -1 if every voice is taken by a more important one. */
+    int playSound(ALSound sound, float volume, float pitch, float pan, boolean looping){
+        if(voices.getFreeHardware() == 0) reclaim();
+        int id = voices.obtain(sound.voices, volume);
+        if(id == -1) return -1;
+        int slot = voices.slot(id);
+        if(voices.isHardware(slot)){
+            int sourceID = sources[slot];
+            alSourcei(sourceID, AL_BUFFER, sound.bufferID);
+            alSourcei(sourceID, AL_LOOPING, looping ? AL_TRUE : AL_FALSE);
+            alSourcef(sourceID, AL_PITCH, pitch);
+            setPan(sourceID, pan, volume);
+            alSourcePlay(sourceID);
+            durations[slot] = sound.duration();
+            voices.setEndTime(slot, looping ? Long.MAX_VALUE : endTime(sound.duration() / pitch));
+        }else{
+            mixer.play(slot - sources.length, sound.decoded, volume, pitch, pan, looping);
         }
-        idleSources.add(sourceID);
+        return id;
     }
 
-    void freeBuffer(int bufferID){
-        if(noDevice) return;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceID = idleSources.get(i);
-            if(alGetSourcei(sourceID, AL_BUFFER) == bufferID){
-                if(sourceToSoundId.containsKey(sourceID)){
-                    int soundId = sourceToSoundId.remove(sourceID, 0);
-                    soundIdToSource.remove(soundId, 0);
-                }
-                alSourceStop(sourceID);
-                alSourcei(sourceID, AL_BUFFER, 0);
-            }
+    /** Frees the voices of hardware sources that finished playing, only checking those expected to have finished and one other. */
+    private void reclaim(){
+        voices.eachFinished(Time.nanos(), this::checkSource);
+    }
+
+    /** Frees the voice of a hardware source that finished playing, or sets when it is now expected to finish. */
+    private void checkSource(int slot){
+        int sourceID = sources[slot];
+        int state = alGetSourcei(sourceID, AL_SOURCE_STATE);
+        if(state == AL_STOPPED){
+            alSourcei(sourceID, AL_BUFFER, 0);
+            voices.free(slot);
+        }else if(state == AL_PLAYING && alGetSourcei(sourceID, AL_LOOPING) == AL_FALSE){
+            float remaining = (durations[slot] - alGetSourcef(sourceID, AL_SEC_OFFSET)) / alGetSourcef(sourceID, AL_PITCH);
+            voices.setEndTime(slot, Math.max(endTime(remaining), Time.nanos() + recheckNanos));
+        }else{
+            voices.setEndTime(slot, Long.MAX_VALUE);
         }
     }
 
-    void stopSourcesWithBuffer(int bufferID){
-        if(noDevice) return;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceID = idleSources.get(i);
-            if(alGetSourcei(sourceID, AL_BUFFER) == bufferID){
-                if(sourceToSoundId.containsKey(sourceID)){
-                    int soundId = sourceToSoundId.remove(sourceID, 0);
-                    soundIdToSource.remove(soundId, 0);
-                }
-                alSourceStop(sourceID);
-            }
+    /** @return the time at which a sound with the given seconds left finishes, or {@link Long#MAX_VALUE} if it never does. */
+    private static long endTime(float seconds){
+        return seconds < 1000000f ? Time.nanos() + (long)(seconds * 1000000000L) : Long.MAX_VALUE;
+    }
+
+    private void stopVoice(int slot){
+        if(voices.isHardware(slot)){
+            alSourceStop(sources[slot]);
+            alSourcei(sources[slot], AL_BUFFER, 0);
+        }else{
+            mixer.stop(slot - sources.length);
         }
     }
 
-    void pauseSourcesWithBuffer(int bufferID){
-        if(noDevice) return;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceID = idleSources.get(i);
-            if(alGetSourcei(sourceID, AL_BUFFER) == bufferID)
-                alSourcePause(sourceID);
+    private void pauseVoice(int slot){
+        if(voices.isHardware(slot)){
+            alSourcePause(sources[slot]);
+            voices.setEndTime(slot, Long.MAX_VALUE);
+        }else{
+            mixer.setPaused(slot - sources.length, true);
         }
     }
 
-    void resumeSourcesWithBuffer(int bufferID){
-        if(noDevice) return;
-        for(int i = 0, n = idleSources.size; i < n; i++){
-            int sourceID = idleSources.get(i);
-            if(alGetSourcei(sourceID, AL_BUFFER) == bufferID){
-                if(alGetSourcei(sourceID, AL_SOURCE_STATE) == AL_PAUSED)
-                    alSourcePlay(sourceID);
-            }
+    private void resumeVoice(int slot){
+        if(voices.isHardware(slot)){
+            if(alGetSourcei(sources[slot], AL_SOURCE_STATE) == AL_PAUSED) alSourcePlay(sources[slot]);
+            // Checked on the next update, which finds out how much is left.
+            voices.setEndTime(slot, 0);
+        }else{
+            mixer.setPaused(slot - sources.length, false);
         }
     }
 
+    private void setPan(int sourceID, float pan, float volume){
+        alSource3f(sourceID, AL_POSITION, Mathf.cos((pan - 1) * Mathf.PI / 2), 0, Mathf.sin((pan + 1) * Mathf.PI / 2));
+        alSourcef(sourceID, AL_GAIN, volume);
+    }
+
+    void stopSounds(ALSound sound){
+        if(noDevice) return;
+        voices.stopAll(sound.voices);
+    }
+
+    void pauseSounds(ALSound sound){
+        if(noDevice) return;
+        voices.each(sound.voices, this::pauseVoice);
+    }
+
+    void resumeSounds(ALSound sound){
+        if(noDevice) return;
+        voices.each(sound.voices, this::resumeVoice);
+    }
+
     public void update(){
         if(noDevice) return;
         for(int i = 0; i < music.size; i++)
             music.items[i].update();
-    }
-
-    public int getSoundId(int sourceId){
-        if(!sourceToSoundId.containsKey(sourceId)) return -1;
-        return sourceToSoundId.get(sourceId, 0);
+        reclaim();
+        if(mixer != null) updateMixer();
     }
 
     public void stopSound(int soundId){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId, 0);
-        alSourceStop(sourceId);
+        int slot = voices.slot(soundId);
+        if(slot == -1) return;
+        voices.stop(slot);
     }
 
     public void pauseSound(int soundId){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId, 0);
-        alSourcePause(sourceId);
+        int slot = voices.slot(soundId);
+        if(slot == -1) return;
+        pauseVoice(slot);
     }
 
     public void resumeSound(int soundId){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId, 0);
-        if(alGetSourcei(sourceId, AL_SOURCE_STATE) == AL_PAUSED)
-            alSourcePlay(sourceId);
+        int slot = voices.slot(soundId);
+        if(slot == -1) return;
+        resumeVoice(slot);
     }
 
     public void setSoundGain(int soundId, float volume){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId, 0);
-        alSourcef(sourceId, AL_GAIN, volume);
+        int slot = voices.slot(soundId);
+        if(slot == -1) return;
+        voices.setVolume(slot, volume);
+        if(voices.isHardware(slot)){
+            alSourcef(sources[slot], AL_GAIN, volume);
+        }else{
+            mixer.setVolume(slot - sources.length, volume);
+        }
     }
 
     public void setSoundLooping(int soundId, boolean looping){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId, 0);
-        alSourcei(sourceId, AL_LOOPING, looping ? AL_TRUE : AL_FALSE);
+        int slot = voices.slot(soundId);
+        if(slot == -1) return;
+        if(voices.isHardware(slot)){
+            alSourcei(sources[slot], AL_LOOPING, looping ? AL_TRUE : AL_FALSE);
+            voices.setEndTime(slot, looping ? Long.MAX_VALUE : 0);
+        }else{
+            mixer.setLooping(slot - sources.length, looping);
+        }
     }
 
     public void setSoundPitch(int soundId, float pitch){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId, 0);
-        alSourcef(sourceId, AL_PITCH, pitch);
+        int slot = voices.slot(soundId);
+        if(slot == -1) return;
+        if(voices.isHardware(slot)){
+            alSourcef(sources[slot], AL_PITCH, pitch);
+            if(voices.getEndTime(slot) != Long.MAX_VALUE) voices.setEndTime(slot, 0);
+        }else{
+            mixer.setPitch(slot - sources.length, pitch);
+        }
     }
 
     public void setSoundPan(int soundId, float pan, float volume){
-        if(!soundIdToSource.containsKey(soundId)) return;
-        int sourceId = soundIdToSource.get(soundId, 0);
-
-        alSource3f(sourceId, AL_POSITION, Mathf.cos((pan - 1) * Mathf.PI / 2), 0, Mathf.sin((pan + 1) * Mathf.PI / 2));
-        alSourcef(sourceId, AL_GAIN, volume);
+        int slot = voices.slot(soundId);
+        if(slot == -1) return;
+        voices.setVolume(slot, volume);
+        if(voices.isHardware(slot)){
+            setPan(sources[slot], pan, volume);
+        }else{
+            mixer.setPan(slot - sources.length, pan);
+            mixer.setVolume(slot - sources.length, volume);
+        }
     }
 
     public void dispose(){
+        decoder.dispose();
         if(noDevice) return;
         for(int i = 0, n = allSources.size; i < n; i++){
             int sourceID = allSources.get(i);
@@ -250,9 +396,13 @@ public class ALAudio extends Audio{
             if(state != AL_STOPPED) alSourceStop(sourceID);
             alDeleteSources(sourceID);
         }
-
-        sourceToSoundId.clear();
-        soundIdToSource.clear();
+        if(mixer != null){
+            alSourceStop(mixerSource);
+            alDeleteSources(mixerSource);
+            for(int i = 0; i < mixerBufferCount; i++){
+                alDeleteBuffers(mixerBuffers.get(i));
+            }
+        }
 
         alcDestroyContext(context);
         alcCloseDevice(device);
@@ -266,30 +416,6 @@ public class ALAudio extends Audio{
         return new MockAudioRecorder();
     }
 
-    /**
-     * Retains a list of the most recently played sounds and stops the sound played least recently if necessary for a new sound to
-     * play
-     */
-    protected void retain(ALSound sound, boolean stop){
-        // Move the pointer ahead and wrap
-        mostRecetSound++;
-        mostRecetSound %= recentSounds.length;
-
-        if(stop){
-            // Stop the least recent sound (the one we are about to bump off the buffer)
-            if(recentSounds[mostRecetSound] != null) recentSounds[mostRecetSound].stop();
-        }
-
-        recentSounds[mostRecetSound] = sound;
-    }
-
-    /** Removes the disposed sound from the least recently played list */
-    public void forget(ALSound sound){
-        for(int i = 0; i < recentSounds.length; i++){
-            if(recentSounds[i] == sound) recentSounds[i] = null;
-        }
-    }
-
     public interface SoundConstructor{
         ALSound make(ALAudio audio, FileHandle file);
     }
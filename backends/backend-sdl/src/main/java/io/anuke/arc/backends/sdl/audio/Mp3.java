@@ -1,5 +1,6 @@
 package io.anuke.arc.backends.sdl.audio;
 
+import io.anuke.arc.audio.*;
 import io.anuke.arc.files.*;
 import io.anuke.arc.util.*;
 import javazoom.jl.decoder.*;
@@ -87,6 +88,11 @@ public class Mp3{
         public Sound(ALAudio audio, FileHandle file){
             super(audio);
             if(audio.noDevice) return;
+            setup(audio.soundCache.get(file, Sound::decode));
+        }
+
+        /** Decodes a whole file. Thread safe. */
+        public static DecodedSound decode(FileHandle file){
             ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
 
             Bitstream bitstream = new Bitstream(file.read());
@@ -113,7 +119,7 @@ public class Mp3{
                     output.write(outputBuffer.getBuffer(), 0, outputBuffer.reset());
                 }
                 bitstream.close();
-                setup(output.toByteArray(), channels, sampleRate);
+                return new DecodedSound(output.toByteArray(), channels, sampleRate);
             }catch(Throwable ex){
                 throw new ArcRuntimeException("Error reading audio data.", ex);
             }
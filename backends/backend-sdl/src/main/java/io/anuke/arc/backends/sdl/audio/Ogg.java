@@ -1,5 +1,6 @@
 package io.anuke.arc.backends.sdl.audio;
 
+import io.anuke.arc.audio.*;
 import io.anuke.arc.files.*;
 import io.anuke.arc.util.io.*;
 
@@ -36,7 +37,7 @@ public class Ogg{
         }
 
         @Override
-        protected void loop(){
+        public void loop(){
             Streams.closeQuietly(input);
             previousInput = input;
             input = null;
@@ -47,6 +48,11 @@ public class Ogg{
         public Sound(ALAudio audio, FileHandle file){
             super(audio);
             if(audio.noDevice) return;
+            setup(audio.soundCache.get(file, Sound::decode));
+        }
+
+        /** Decodes a whole file. Thread safe. */
+        public static DecodedSound decode(FileHandle file){
             OggInputStream input = null;
             try{
                 input = new OggInputStream(file.read());
@@ -57,7 +63,7 @@ public class Ogg{
                     if(length == -1) break;
                     output.write(buffer, 0, length);
                 }
-                setup(output.toByteArray(), input.getChannels(), input.getSampleRate());
+                return new DecodedSound(output.toByteArray(), input.getChannels(), input.getSampleRate());
             }finally{
                 Streams.closeQuietly(input);
             }
@@ -1,5 +1,6 @@
 package io.anuke.arc.backends.sdl.audio;
 
+import io.anuke.arc.audio.*;
 import io.anuke.arc.files.*;
 import io.anuke.arc.util.*;
 import io.anuke.arc.util.io.*;
@@ -39,11 +40,15 @@ public class Wav{
         public Sound(ALAudio audio, FileHandle file){
             super(audio);
             if(audio.noDevice) return;
+            setup(audio.soundCache.get(file, Sound::decode));
+        }
 
+        /** Decodes a whole file. Thread safe. */
+        public static DecodedSound decode(FileHandle file){
             WavInputStream input = null;
             try{
                 input = new WavInputStream(file);
-                setup(Streams.copyStreamToByteArray(input, input.dataRemaining), input.channels, input.sampleRate);
+                return new DecodedSound(Streams.copyStreamToByteArray(input, input.dataRemaining), input.channels, input.sampleRate);
             }catch(IOException ex){
                 throw new ArcRuntimeException("Error reading WAV file: " + file, ex);
             }finally{
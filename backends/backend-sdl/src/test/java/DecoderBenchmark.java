@@ -0,0 +1,88 @@
+import io.anuke.arc.audio.*;
+import io.anuke.arc.backends.sdl.audio.*;
+import io.anuke.arc.collection.*;
+import io.anuke.arc.files.*;
+import io.anuke.arc.func.*;
+import io.anuke.arc.util.*;
+
+/**
+ * Measures how fast the Ogg, MP3 and WAV decoders run, one file at a time and all files in parallel. Needs no audio device, so
+ * it can run headless, for example on a build server: pass the audio files, or directories of them, as arguments. The LWJGL3
+ * backend decodes with the same code. Part of the test sources, so it is not shipped.
+ */
+public class DecoderBenchmark{
+
+    public static void main(String[] args){
+        if(args.length == 0){
+            System.out.println("Usage: DecoderBenchmark <audio files or directories...> [-rounds n]");
+            return;
+        }
+        int rounds = 5;
+        Array<FileHandle> files = new Array<>();
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("-rounds") && i + 1 < args.length){
+                rounds = Integer.parseInt(args[++i]);
+                continue;
+            }
+            FileHandle file = new FileHandle(args[i]);
+            if(file.isDirectory()){
+                for(FileHandle child : file.list()){
+                    if(decoder(child) != null) files.add(child);
+                }
+            }else if(decoder(file) != null){
+                files.add(file);
+            }else{
+                throw new ArcRuntimeException("Unknown file extension for sound: " + file);
+            }
+        }
+        FileHandle[] array = files.toArray(FileHandle.class);
+        Func<FileHandle, DecodedSound> decoder = file -> decoder(file).get(file);
+
+        //warm up the JIT before timing anything
+        DecodedSound.decodeAll(array, decoder);
+
+        long bytes = 0;
+        float seconds = 0;
+        long sequential = Long.MAX_VALUE, parallel = Long.MAX_VALUE;
+        for(int round = 0; round < rounds; round++){
+            long start = System.nanoTime();
+            for(FileHandle file : array){
+                DecodedSound sound = decoder.get(file);
+                if(round == 0){
+                    bytes += sound.pcm.length;
+                    seconds += sound.duration();
+                    System.out.println(file.name() + ": " + sound.channels + " channels, " + sound.sampleRate + "Hz, "
+                        + sound.duration() + "s");
+                }
+            }
+            sequential = Math.min(sequential, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            DecodedSound.decodeAll(array, decoder);
+            parallel = Math.min(parallel, System.nanoTime() - start);
+        }
+
+        System.out.println("Decoded " + array.length + " files, " + seconds + "s of audio, best of " + rounds + " rounds:");
+        print("sequential", sequential, bytes, seconds);
+        print("parallel on " + Runtime.getRuntime().availableProcessors() + " processors", parallel, bytes, seconds);
+    }
+
+    static void print(String name, long nanos, long bytes, float seconds){
+        float elapsed = nanos / 1000000000f;
+        System.out.println("  " + name + ": " + nanos / 1000000f + "ms, " + bytes / elapsed / 1024f / 1024f + "MB/s of PCM, "
+            + seconds / elapsed + "x realtime");
+    }
+
+    static Func<FileHandle, DecodedSound> decoder(FileHandle file){
+        switch(file.extension().toLowerCase()){
+            case "ogg":
+                return Ogg.Sound::decode;
+            case "mp3":
+                return Mp3.Sound::decode;
+            case "wav":
+                return Wav.Sound::decode;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package io.anuke.arc.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe pool of byte buffers in power of two sizes, shared by connections so that idle connections do not hold on
+ * to memory. Direct buffers up to the slab size are cut from larger slabs, so that many small buffers do not each need
+ * their own native allocation; larger buffers are allocated on demand and not kept once freed.
+ * <p>
+ * Heap pools allocate every buffer on its own, so that {@link ByteBuffer#array()} can be used with an offset of 0.
+ */
+public class BufferPool{
+    /** The pool used by new connections. May be replaced before any end points are created. */
+    public static BufferPool shared = new BufferPool(true, 1024, 64 * 1024);
+
+    private final boolean direct;
+    private final int minShift, slabSize;
+    private final ConcurrentLinkedQueue<ByteBuffer>[] free;
+
+    private final AtomicLong reserved = new AtomicLong(), used = new AtomicLong(), peak = new AtomicLong();
+    private final AtomicInteger borrowed = new AtomicInteger();
+
+    /**
+     * @param direct Whether to allocate direct buffers, which sockets can read and write without an intermediate copy.
+     * @param minSize The smallest buffer size. Rounded up to a power of two.
+     * @param slabSize The largest pooled buffer size, and the size of the slabs smaller buffers are cut from. Rounded up to a
+     * power of two.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool(boolean direct, int minSize, int slabSize){
+        if(minSize <= 0) throw new IllegalArgumentException("minSize must be > 0: " + minSize);
+        if(slabSize < minSize) throw new IllegalArgumentException("slabSize cannot be smaller than minSize: " + slabSize);
+
+        this.direct = direct;
+        this.minShift = shift(minSize);
+        this.slabSize = 1 << shift(slabSize);
+        this.free = new ConcurrentLinkedQueue[shift(slabSize) - minShift + 1];
+        for(int i = 0; i < free.length; i++){
+            free[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /** @return a cleared buffer with a capacity of at least the specified size. */
+    public ByteBuffer obtain(int size){
+        int shift = Math.max(shift(size), minShift), capacity = 1 << shift;
+        ByteBuffer buffer;
+
+        if(capacity > slabSize){
+            buffer = allocate(capacity);
+            reserved.addAndGet(capacity);
+        }else{
+            ConcurrentLinkedQueue<ByteBuffer> queue = free[shift - minShift];
+            buffer = queue.poll();
+            if(buffer == null) buffer = fill(queue, capacity);
+        }
+
+        borrowed.incrementAndGet();
+        long total = used.addAndGet(capacity);
+        long max;
+        while(total > (max = peak.get()) && !peak.compareAndSet(max, total));
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer obtained from this pool. The buffer must not be used afterwards.
+     * Does nothing if the buffer is null.
+     */
+    public void free(ByteBuffer buffer){
+        if(buffer == null) return;
+        int capacity = buffer.capacity();
+        if(Integer.bitCount(capacity) != 1 || capacity < 1 << minShift) throw new IllegalArgumentException("Buffer was not obtained from this pool.");
+
+        borrowed.decrementAndGet();
+        used.addAndGet(-capacity);
+
+        if(capacity > slabSize){
+            reserved.addAndGet(-capacity);
+        }else{
+            free[shift(capacity) - minShift].add(buffer);
+        }
+    }
+
+    /**
+     * Returns a buffer of at least the specified size containing the remaining bytes of the specified buffer, and frees
+     * it. The returned buffer is positioned after the copied bytes.
+     */
+    public ByteBuffer grow(ByteBuffer buffer, int size){
+        ByteBuffer result = obtain(size);
+        buffer.flip();
+        result.put(buffer);
+        free(buffer);
+        return result;
+    }
+
+    /** @return the number of bytes allocated by this pool, whether in use or not. */
+    public long getReservedBytes(){
+        return reserved.get();
+    }
+
+    /** @return the number of bytes in buffers that are currently obtained. */
+    public long getUsedBytes(){
+        return used.get();
+    }
+
+    /** @return the highest value {@link #getUsedBytes()} has had. */
+    public long getPeakUsedBytes(){
+        return peak.get();
+    }
+
+    /** @return the number of buffers that are currently obtained. */
+    public int getBorrowed(){
+        return borrowed.get();
+    }
+
+    public boolean isDirect(){
+        return direct;
+    }
+
+    /** Adds buffers for a size class, and returns one of them. */
+    private synchronized ByteBuffer fill(ConcurrentLinkedQueue<ByteBuffer> queue, int capacity){
+        //another thread may have filled the queue while this one waited
+        ByteBuffer buffer = queue.poll();
+        if(buffer != null) return buffer;
+
+        if(!direct){
+            reserved.addAndGet(capacity);
+            return ByteBuffer.allocate(capacity);
+        }
+
+        ByteBuffer slab = ByteBuffer.allocateDirect(slabSize);
+        reserved.addAndGet(slabSize);
+        for(int offset = capacity; offset < slabSize; offset += capacity){
+            slab.limit(offset + capacity).position(offset);
+            queue.add(slab.slice());
+        }
+        slab.limit(capacity).position(0);
+        return slab.slice();
+    }
+
+    private ByteBuffer allocate(int capacity){
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /** @return the exponent of the smallest power of two that is at least the value. */
+    private static int shift(int value){
+        return 32 - Integer.numberOfLeadingZeros(Math.max(value, 1) - 1);
+    }
+}
@@ -47,6 +47,8 @@ public class Client extends Connection implements EndPoint{
     private InetAddress connectHost;
     private int connectTcpPort;
     private int connectUdpPort;
+    private Server connectServer;
+    private boolean connectSerialize;
     private boolean isClosed;
     private AsyncExecutor discoverExecutor = new AsyncExecutor(6);
     private Prov<DatagramPacket> discoveryPacket = () -> new DatagramPacket(new byte[256], 256);
@@ -60,9 +62,11 @@ public class Client extends Connection implements EndPoint{
     }
 
     /**
-     * @param writeBufferSize One buffer of this size is allocated. Objects are serialized
-     * to the write buffer where the bytes are queued until they can
-     * be written to the TCP socket.
+     * @param writeBufferSize The most bytes that may be queued for a TCP
+     * connection. Objects are serialized to a write buffer borrowed
+     * from the {@link BufferPool}, where the bytes are queued until
+     * they can be written to the TCP socket. The buffer grows as
+     * needed and is returned once all bytes are written.
      * <p>
      * Normally the socket is writable and the bytes are written
      * immediately. If the socket cannot be written to and enough
@@ -70,7 +74,7 @@ public class Client extends Connection implements EndPoint{
      * connection will be closed.
      * <p>
      * The write buffer should be sized at least as large as the
-     * largest object that will be sent, plus some head room to allow
+     * largest object that will be sent while others are queued, plus some head room to allow
      * for some serialized objects to be queued in case the buffer is
      * temporarily not writable. The amount of head room needed is
      * dependent upon the size of objects being sent and how often
@@ -80,8 +84,11 @@ public class Client extends Connection implements EndPoint{
      * bytes for a single object graph until it can be sent over the
      * network or deserialized.
      * <p>
-     * The object buffers should be sized at least as large as the
-     * largest object that will be sent or received.
+     * The UDP object buffers should be sized at least as large as the
+     * largest object that will be sent or received. For TCP, this is
+     * the size of the read buffer borrowed from the {@link BufferPool},
+     * which grows for larger objects up to
+     * {@link Connection#setMaxObjectSize(int) the maximum object size}.
      */
     public Client(int writeBufferSize, int objectBufferSize, NetSerializer serialization){
         super();
@@ -89,7 +96,7 @@ public class Client extends Connection implements EndPoint{
 
         this.serialization = serialization;
 
-        initialize(serialization, writeBufferSize, objectBufferSize);
+        initialize(serialization, writeBufferSize, objectBufferSize, BufferPool.shared, null);
 
         try{
             selector = Selector.open();
@@ -150,12 +157,13 @@ public class Client extends Connection implements EndPoint{
         this.connectHost = host;
         this.connectTcpPort = tcpPort;
         this.connectUdpPort = udpPort;
+        this.connectServer = null;
         close();
         id = -1;
         try{
             if(udpPort != -1)
                 udp = new UdpConnection(serialization,
-                tcp.readBuffer.capacity());
+                tcp.objectBufferSize);
 
             long endTime;
             synchronized(updateLock){
@@ -166,20 +174,7 @@ public class Client extends Connection implements EndPoint{
                 5000);
             }
 
-            // Wait for RegisterTCP.
-            synchronized(tcpRegistrationLock){
-                while(!tcpRegistered && System.currentTimeMillis() < endTime){
-                    try{
-                        tcpRegistrationLock.wait(100);
-                    }catch(InterruptedException ignored){
-                    }
-                }
-                if(!tcpRegistered){
-                    throw new SocketTimeoutException(
-                    "Connected, but timed out during TCP registration.\n"
-                    + "Note: Client#update must be called in a separate thread during connect.");
-                }
-            }
+            awaitRegistration(endTime);
 
             if(udpPort != -1){
                 InetSocketAddress udpAddress = new InetSocketAddress(host,
@@ -196,7 +191,7 @@ public class Client extends Connection implements EndPoint{
                     && System.currentTimeMillis() < endTime){
                         RegisterUDP registerUDP = new RegisterUDP();
                         registerUDP.connectionID = id;
-                        udp.send(registerUDP, udpAddress);
+                        udp.send(this, registerUDP, udpAddress);
                         try{
                             udpRegistrationLock.wait(100);
                         }catch(InterruptedException ignored){
@@ -214,6 +209,66 @@ public class Client extends Connection implements EndPoint{
         }
     }
 
+    /**
+     * Connects to a server in the same process, without sockets. Objects sent
+     * by either end are queued for the other and received on its update
+     * thread, with the same listener events as a TCP connection. Objects sent
+     * over UDP are delivered reliably as well.
+     * <p>
+     * As with {@link #connect(int, InetAddress, int, int)}, {@link #update(int)}
+     * must be called on a separate thread, and the server must be updated.
+     * The server does not need to be bound.
+     * @param serialize If true, objects are serialized when sent and
+     * deserialized when received, so that the ends do not share objects. If
+     * false, objects are passed as they are and must not be modified after
+     * being sent, which avoids the serialization cost.
+     * @throws IOException if connecting times out.
+     */
+    public void connectLocal(int timeout, Server server, boolean serialize) throws IOException{
+        if(server == null)
+            throw new IllegalArgumentException("server cannot be null.");
+        if(Thread.currentThread() == getUpdateThread())
+            throw new IllegalStateException(
+            "Cannot connect on the connection's update thread.");
+        this.connectTimeout = timeout;
+        this.connectHost = null;
+        this.connectServer = server;
+        this.connectSerialize = serialize;
+        close();
+        id = -1;
+        try{
+            long endTime;
+            synchronized(updateLock){
+                tcpRegistered = false;
+                endTime = System.currentTimeMillis() + timeout;
+                LocalLink link = new LocalLink(this, selector, serialize);
+                local = link;
+                server.acceptLocal(link);
+            }
+            awaitRegistration(endTime);
+        }catch(IOException ex){
+            close();
+            throw ex;
+        }
+    }
+
+    /** Waits for RegisterTCP. */
+    private void awaitRegistration(long endTime) throws IOException{
+        synchronized(tcpRegistrationLock){
+            while(!tcpRegistered && System.currentTimeMillis() < endTime){
+                try{
+                    tcpRegistrationLock.wait(100);
+                }catch(InterruptedException ignored){
+                }
+            }
+            if(!tcpRegistered){
+                throw new SocketTimeoutException(
+                "Connected, but timed out during TCP registration.\n"
+                + "Note: Client#update must be called in a separate thread during connect.");
+            }
+        }
+    }
+
     /**
      * Calls {@link #connect(int, InetAddress, int, int) connect} with the
      * values last passed to connect.
@@ -225,10 +280,16 @@ public class Client extends Connection implements EndPoint{
 
     /**
      * Calls {@link #connect(int, InetAddress, int, int) connect} with the
-     * specified timeout and the other values last passed to connect.
+     * specified timeout and the other values last passed to connect, or
+     * {@link #connectLocal(int, Server, boolean) connectLocal} if that was
+     * called last.
      * @throws IllegalStateException if connect has never been called.
      */
     public void reconnect(int timeout) throws IOException{
+        if(connectServer != null){
+            connectLocal(timeout, connectServer, connectSerialize);
+            return;
+        }
         if(connectHost == null)
             throw new IllegalStateException(
             "This client has never been connected.");
@@ -255,8 +316,11 @@ public class Client extends Connection implements EndPoint{
         }else{
             select = selector.selectNow();
         }
+        LocalLink local = this.local;
+        boolean receivedLocal = local != null && local.receive(localReceiver);
         if(select == 0){
-            emptySelects++;
+            // Woken to receive local objects, which is not an empty select.
+            if(!receivedLocal) emptySelects++;
             if(emptySelects == 100){
                 emptySelects = 0;
                 // NIO freaks and returns immediately with 0 sometimes, so try
@@ -285,9 +349,15 @@ public class Client extends Connection implements EndPoint{
                                     Object object = tcp.readObject();
                                     if(object == null)
                                         break;
+                                    if(object instanceof EnableCompression){
+                                        // The server agreed, and compresses everything it sends after this.
+                                        tcp.compressInput = tcp.compressOutput = true;
+                                    }
                                     if(!tcpRegistered){
                                         if(object instanceof RegisterTCP){
                                             id = ((RegisterTCP)object).connectionID;
+                                            if(tcp.compressionThreshold > 0)
+                                                sendTCP(new EnableCompression());
                                             synchronized(tcpRegistrationLock){
                                                 tcpRegistered = true;
                                                 tcpRegistrationLock.notifyAll();
@@ -317,9 +387,10 @@ public class Client extends Connection implements EndPoint{
                             }else{
                                 if(udp.readFromAddress() == null)
                                     continue;
-                                Object object = udp.readObject();
+                                Object object = udp.readObject(this);
                                 if(object == null)
                                     continue;
+                                stats.received(object, udp.lastReadLength);
                                 notifyReceived(object);
                             }
                         }
@@ -332,21 +403,41 @@ public class Client extends Connection implements EndPoint{
             }
         }
         if(isConnected){
+            tcp.flush();
             long time = System.currentTimeMillis();
-            if(tcp.isTimedOut(time)){
+            if(isTimedOut(time)){
                 close();
             }else
                 keepAlive();
-            if(isIdle())
-                notifyIdle();
+            updateIdle();
         }
     }
 
+    /** Handles objects received from a server in the same process. */
+    private final NetListener localReceiver = new NetListener(){
+        public void received(Connection connection, Object object){
+            if(!tcpRegistered){
+                if(object instanceof RegisterTCP){
+                    id = ((RegisterTCP)object).connectionID;
+                    synchronized(tcpRegistrationLock){
+                        tcpRegistered = true;
+                        tcpRegistrationLock.notifyAll();
+                        setConnected(true);
+                    }
+                    notifyConnected();
+                }
+                return;
+            }
+            if(isConnected)
+                notifyReceived(object);
+        }
+    };
+
     void keepAlive(){
         if(!isConnected)
             return;
         long time = System.currentTimeMillis();
-        if(tcp.needsKeepAlive(time))
+        if(needsKeepAlive(time))
             sendTCP(FrameworkMessage.keepAlive);
         if(udp != null && udpRegistered && udp.needsKeepAlive(time))
             sendUDP(FrameworkMessage.keepAlive);
@@ -419,6 +510,16 @@ public class Client extends Connection implements EndPoint{
         udp.keepAliveMillis = keepAliveMillis;
     }
 
+    /**
+     * Sets the pool TCP buffers are borrowed from. Must not be called while
+     * connected.
+     */
+    public void setBufferPool(BufferPool pool){
+        if(pool == null) throw new IllegalArgumentException("pool cannot be null.");
+        tcp.close();
+        tcp.pool = pool;
+    }
+
     public Thread getUpdateThread(){
         return updateThread;
     }
@@ -19,12 +19,20 @@
 
 package io.anuke.arc.net;
 
+import io.anuke.arc.net.FrameworkMessage.EnableCompression;
+import io.anuke.arc.util.TrafficStats;
+import io.anuke.arc.util.io.TrafficRecorder;
 import io.anuke.arc.net.FrameworkMessage.Ping;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
 
 /**
  * Represents a TCP and optionally a UDP connection between a {@link Client} and
@@ -38,22 +46,31 @@ public class Connection{
     EndPoint endPoint;
     TcpConnection tcp;
     UdpConnection udp;
-    InetSocketAddress udpRemoteAddress;
+    volatile InetSocketAddress udpRemoteAddress;
+    /** Set instead of a socket when the other end is in the same process. */
+    volatile LocalLink local;
     private NetListener[] listeners = {};
     private final Object listenerLock = new Object();
     private int lastPingID;
-    private long lastPingSendTime;
+    private long lastPingSendTime, lastPingSendNanos;
     private int returnTripTime;
     volatile boolean isConnected;
     volatile ArcNetException lastProtocolError;
     private Object arbitraryData;
+    TrafficStats stats;
+    volatile TrafficRecorder recorder;
+    /** If set, listeners are notified of connects, disconnects and received objects through it. */
+    Executor listenerExecutor;
 
     protected Connection(){
     }
 
-    void initialize(NetSerializer serialization, int writeBufferSize, int objectBufferSize){
+    void initialize(NetSerializer serialization, int writeBufferSize, int objectBufferSize, BufferPool pool, TrafficStats parentStats){
+        stats = new TrafficStats(parentStats);
         tcp = new TcpConnection(serialization, writeBufferSize,
-        objectBufferSize);
+        objectBufferSize, pool);
+        tcp.connection = this;
+        tcp.stats = stats;
     }
 
     /**
@@ -89,7 +106,10 @@ public class Connection{
         if(object == null) throw new IllegalArgumentException("object cannot be null.");
 
         try{
-            return tcp.send(object);
+            LocalLink local = this.local;
+            int length = local != null ? local.send(object) : tcp.send(object);
+            stats.sent(object, length);
+            return length;
         }catch(IOException | ArcNetException ex){
             close(DcReason.error);
             return 0;
@@ -104,6 +124,17 @@ public class Connection{
     public int sendUDP(Object object){
         if(object == null)
             throw new IllegalArgumentException("object cannot be null.");
+        LocalLink local = this.local;
+        if(local != null){
+            try{
+                int length = local.send(object);
+                stats.sent(object, length);
+                return length;
+            }catch(ArcNetException ex){
+                close(DcReason.error);
+                return 0;
+            }
+        }
         SocketAddress address = udpRemoteAddress;
         if(address == null && udp != null)
             address = udp.connectedAddress;
@@ -113,7 +144,9 @@ public class Connection{
         try{
             if(address == null) throw new SocketException("Connection is closed.");
 
-            return udp.send(object, address);
+            int length = udp.send(this, object, address);
+            if(length > 0) stats.sent(object, length);
+            return length;
         }catch(IOException | ArcNetException ex){
             close(DcReason.error);
             return 0;
@@ -123,6 +156,11 @@ public class Connection{
     public void close(DcReason reason){
         boolean wasConnected = isConnected;
         isConnected = false;
+        LocalLink local = this.local;
+        if(local != null){
+            local.close();
+            this.local = null;
+        }
         tcp.close();
         if(udp != null && udp.connectedAddress != null)
             udp.close();
@@ -143,6 +181,7 @@ public class Connection{
         Ping ping = new Ping();
         ping.id = lastPingID++;
         lastPingSendTime = System.currentTimeMillis();
+        lastPingSendNanos = System.nanoTime();
         sendTCP(ping);
     }
 
@@ -178,11 +217,35 @@ public class Connection{
      * of the connection will be constantly sending objects, and setting the
      * timeout higher than the keep alive allows for network latency. Set to
      * zero to disable. Defaults to 12000.
+     * <p>
+     * Local connections use the same keep alive and timeout, so that a stalled
+     * end point in the same process is detected as well.
      */
     public void setTimeout(int timeoutMillis){
         tcp.timeoutMillis = timeoutMillis;
     }
 
+    boolean needsKeepAlive(long time){
+        LocalLink local = this.local;
+        return local != null ? local.needsKeepAlive(time) : tcp.needsKeepAlive(time);
+    }
+
+    boolean isTimedOut(long time){
+        LocalLink local = this.local;
+        return local != null ? local.isTimedOut(time) : tcp.isTimedOut(time);
+    }
+
+    /**
+     * Fires the idle event if due: on every update while the TCP write buffer
+     * is below the idle threshold, or for local connections, once each time
+     * the other end has received everything sent.
+     */
+    void updateIdle(){
+        LocalLink local = this.local;
+        if(local != null ? local.takeDrained() : isIdle())
+            notifyIdle();
+    }
+
     /**
      * Adds a listener to the connection. If the listener already exists, it is
      * not added again.
@@ -226,12 +289,31 @@ public class Connection{
     }
 
     void notifyConnected(){
+        Executor executor = listenerExecutor;
+        if(executor != null){
+            executor.execute(this::notifyListenersConnected);
+        }else{
+            notifyListenersConnected();
+        }
+    }
+
+    private void notifyListenersConnected(){
         NetListener[] listeners = this.listeners;
         for(int i = 0, n = listeners.length; i < n; i++)
             listeners[i].connected(this);
     }
 
     void notifyDisconnected(DcReason reason){
+        if(endPoint instanceof Server) ((Server)endPoint).removeConnection(this);
+        Executor executor = listenerExecutor;
+        if(executor != null){
+            executor.execute(() -> notifyListenersDisconnected(reason));
+        }else{
+            notifyListenersDisconnected(reason);
+        }
+    }
+
+    private void notifyListenersDisconnected(DcReason reason){
         NetListener[] listeners = this.listeners;
         for(int i = 0, n = listeners.length; i < n; i++)
             listeners[i].disconnected(this, reason);
@@ -246,19 +328,39 @@ public class Connection{
         }
     }
 
+    /**
+     * Handles framework messages on the thread that read them, as the replies
+     * and compression state must follow the stream, then notifies listeners.
+     */
     void notifyReceived(Object object){
+        if(object instanceof EnableCompression && !(this instanceof Client) && tcp.compressionThreshold > 0 && !tcp.compressOutput){
+            // The client may compress as soon as it gets the reply, which is itself uncompressed.
+            tcp.compressInput = true;
+            sendTCP(object);
+            tcp.compressOutput = true;
+        }
         if(object instanceof Ping){
             Ping ping = (Ping)object;
             if(ping.isReply){
                 if(ping.id == lastPingID - 1){
                     returnTripTime = (int)(System.currentTimeMillis()
                     - lastPingSendTime);
+                    stats.recordRoundTrip((System.nanoTime() - lastPingSendNanos) / 1000);
                 }
             }else{
                 ping.isReply = true;
                 sendTCP(ping);
             }
         }
+        Executor executor = listenerExecutor;
+        if(executor != null){
+            executor.execute(() -> notifyListenersReceived(object));
+        }else{
+            notifyListenersReceived(object);
+        }
+    }
+
+    private void notifyListenersReceived(Object object){
         NetListener[] listeners = this.listeners;
         for(int i = 0, n = listeners.length; i < n; i++)
             listeners[i].received(this, object);
@@ -272,9 +374,17 @@ public class Connection{
         return endPoint;
     }
 
+    /**
+     * Returns true if the remote end is in the same process, connected with
+     * {@link Client#connectLocal(int, Server, boolean)}.
+     */
+    public boolean isLocal(){
+        return local != null;
+    }
+
     /**
      * Returns the IP address and port of the remote end of the TCP connection,
-     * or null if this connection is not connected.
+     * or null if this connection is not connected or is local.
      */
     public InetSocketAddress getRemoteAddressTCP(){
         SocketChannel socketChannel = tcp.socketChannel;
@@ -325,15 +435,170 @@ public class Connection{
      * socket, if any.
      */
     public int getTcpWriteBufferSize(){
-        return tcp.writeBuffer.position();
+        return tcp.getQueuedBytes();
+    }
+
+    /**
+     * Sets the size of the largest object that can be sent or received over
+     * TCP. Buffers grow as needed for objects larger than the object buffer
+     * size, up to this size. Larger objects are not sent; the connection is
+     * closed instead. Defaults to the larger of the object buffer size and
+     * 1MB. Never more than the length bytes of the serializer can express,
+     * which is 32767 bytes for the default of 2.
+     */
+    public void setMaxObjectSize(int maxObjectSize){
+        tcp.maxObjectSize = Math.min(maxObjectSize, TcpConnection.maxLength(tcp.serialization));
+    }
+
+    /**
+     * If true, objects sent over TCP are queued and only written to the
+     * socket on {@link #flush()} or on the next update of the end point, so
+     * that all objects sent in a tick are written together. Defaults to false.
+     */
+    public void setCoalesceWrites(boolean coalesce){
+        tcp.coalesce = coalesce;
+    }
+
+    /** Writes all TCP objects queued by {@link #setCoalesceWrites(boolean) coalescing}. */
+    public void flush(){
+        try{
+            tcp.flush();
+        }catch(IOException ex){
+            close(DcReason.error);
+        }
+    }
+
+    /**
+     * Sets the size above which serialized TCP objects are compressed, or 0
+     * to never compress. Compression is only used if both ends enable it
+     * before connecting; the serializers must then support
+     * {@link EnableCompression}. Defaults to 0.
+     */
+    public void setCompressionThreshold(int bytes){
+        tcp.compressionThreshold = bytes;
+    }
+
+    /** @return whether both ends agreed to compress large TCP objects. */
+    public boolean isCompressed(){
+        return tcp.compressOutput;
+    }
+
+    /**
+     * Sends a file over TCP, from the start.
+     * @see #sendFile(FileChannel, int, long, int)
+     */
+    public FileTransfer sendFile(File file, int id) throws IOException{
+        return sendFile(file, id, 0, 0);
+    }
+
+    /**
+     * Sends a file over TCP. The file is opened until the transfer completes or is cancelled.
+     * @see #sendFile(FileChannel, int, long, int)
+     */
+    public FileTransfer sendFile(File file, int id, long offset, int priority) throws IOException{
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try{
+            FileTransfer transfer = new FileTransfer(channel, id, offset, priority, true);
+            tcp.sendFile(transfer);
+            return transfer;
+        }catch(IOException | RuntimeException ex){
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Sends the contents of a channel over TCP, in chunks that are written
+     * whenever no objects are queued. The bytes are copied from the channel
+     * to the socket by the operating system where it supports it, and
+     * objects are never compressed or transformed, so the remote end must
+     * have a {@link #setFileReceiver(FileReceiver) file receiver} that
+     * handles the raw bytes. Chunks are not framed by the serializer, so
+     * both ends must use a version of this library that supports file
+     * transfers.
+     * <p>
+     * Transfers with a higher priority are sent first; transfers with equal
+     * priority are sent in order. The channel is not closed.
+     * @param id Identifies the transfer to the receiver.
+     * @param offset The offset of the first byte to send, to resume a
+     * transfer that was interrupted.
+     * @see #setFileBandwidth(long)
+     */
+    public FileTransfer sendFile(FileChannel channel, int id, long offset, int priority) throws IOException{
+        FileTransfer transfer = new FileTransfer(channel, id, offset, priority, false);
+        tcp.sendFile(transfer);
+        return transfer;
+    }
+
+    /**
+     * Limits the rate at which file bytes are sent, so that transfers leave
+     * room for other traffic. Throttled transfers resume on the next update
+     * of the end point. 0 for no limit, the default.
+     */
+    public void setFileBandwidth(long bytesPerSecond){
+        tcp.fileBandwidth = bytesPerSecond;
+    }
+
+    /**
+     * Sets the receiver of files sent by the remote end. If null, received
+     * file bytes are discarded.
+     */
+    public void setFileReceiver(FileReceiver receiver){
+        tcp.fileReceiver = receiver;
+    }
+
+    /**
+     * Returns the traffic of this connection: messages and bytes sent and
+     * received by class, {@link #updateReturnTripTime() round trip times}, and
+     * how long sent TCP objects waited in the write buffer before being
+     * written to the socket. May be read from any thread. For connections of a
+     * server, everything is also counted in {@link Server#getStats()}.
+     */
+    public TrafficStats getStats(){
+        return stats;
+    }
+
+    /**
+     * Records the serialized bytes of every object sent and received by this
+     * connection, including framework messages, so that the traffic can be
+     * replayed with a {@link TrafficReplayer}. The stream of the messages is
+     * the {@link #getID() ID}. Null to stop recording.
+     * @see Server#setRecorder(TrafficRecorder)
+     */
+    public void setRecorder(TrafficRecorder recorder){
+        this.recorder = recorder;
+    }
+
+    void record(int flags, ByteBuffer buffer, int offset, int length){
+        TrafficRecorder recorder = this.recorder;
+        if(recorder == null) return;
+        if(this instanceof Client) flags |= TrafficRecorder.clientSide;
+        recorder.record(id, flags, buffer, offset, length);
+    }
+
+    /** @return the number of TCP bytes serialized, before compression. */
+    public long getTcpBytesSerialized(){
+        return tcp.bytesSerialized;
+    }
+
+    /** @return the number of TCP bytes written to the socket. */
+    public long getTcpBytesSent(){
+        return tcp.bytesSent;
+    }
+
+    /** @return the number of writes made to the TCP socket. */
+    public long getTcpSocketWrites(){
+        return tcp.socketWrites;
     }
 
     /**
      * @see #setIdleThreshold(float)
      */
     public boolean isIdle(){
-        return tcp.writeBuffer.position()
-        / (float)tcp.writeBuffer.capacity() < tcp.idleThreshold;
+        LocalLink local = this.local;
+        if(local != null) return local.isIdle();
+        return tcp.getQueuedBytes()
+        / (float)tcp.writeBufferSize < tcp.idleThreshold;
     }
 
     /**
@@ -0,0 +1,19 @@
+package io.anuke.arc.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the bytes of files sent with {@link Connection#sendFile(java.nio.channels.FileChannel, int, long, int)}.
+ * Called on the update thread of the end point, as bytes arrive; bytes of a transfer are received in order.
+ * @see Connection#setFileReceiver(FileReceiver)
+ */
+public interface FileReceiver{
+    /**
+     * @param id The ID of the transfer given by the sender.
+     * @param offset The offset in the file of the first byte in the buffer.
+     * @param length The length of the file. The transfer is complete when offset plus the remaining bytes reaches it.
+     * @param data The received bytes, between the position and limit of the buffer. Only valid during this call.
+     */
+    void received(Connection connection, int id, long offset, long length, ByteBuffer data) throws IOException;
+}
@@ -0,0 +1,80 @@
+package io.anuke.arc.net;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file being streamed over a TCP connection, created by {@link Connection#sendFile(FileChannel, int, long, int)}.
+ * The bytes are copied from the file to the socket by the operating system where possible, and are only written when no
+ * objects are queued, so that file data never delays objects by more than one chunk.
+ * <p>
+ * The position can be stored to resume an interrupted transfer by sending the file again from that offset.
+ * @see FileReceiver
+ */
+public class FileTransfer{
+    final int id, priority;
+    final FileChannel channel;
+    final long length;
+    final boolean closeChannel;
+    volatile long position;
+    volatile boolean done, cancelled;
+
+    FileTransfer(FileChannel channel, int id, long offset, int priority, boolean closeChannel) throws IOException{
+        this.channel = channel;
+        this.id = id;
+        this.priority = priority;
+        this.closeChannel = closeChannel;
+        this.length = channel.size();
+        if(offset < 0 || offset > length)
+            throw new IllegalArgumentException("offset must be between 0 and the file length: " + offset);
+        this.position = offset;
+    }
+
+    /** @return the ID given by the sender, used by the receiver to tell transfers apart. */
+    public int getID(){
+        return id;
+    }
+
+    public int getPriority(){
+        return priority;
+    }
+
+    /** @return the offset of the next byte to send. Bytes before it have been written to the socket. */
+    public long getPosition(){
+        return position;
+    }
+
+    /** @return the length of the file. */
+    public long getLength(){
+        return length;
+    }
+
+    /** @return whether all bytes of the file have been written to the socket. */
+    public boolean isDone(){
+        return done;
+    }
+
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Stops sending the file. A chunk that was partially written is still completed, so the receiver may get bytes up to
+     * the end of that chunk.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    void close(){
+        if(!closeChannel) return;
+        try{
+            channel.close();
+        }catch(IOException ignored){
+        }
+    }
+
+    public String toString(){
+        return "FileTransfer " + id + " (" + position + "/" + length + ")";
+    }
+}
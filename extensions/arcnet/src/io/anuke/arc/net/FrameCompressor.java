@@ -0,0 +1,96 @@
+package io.anuke.arc.net;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses the payload of TCP frames. Compressed payloads start with their uncompressed size.
+ * Not thread safe; each connection uses one for writing and one for reading. The zlib streams are created on first use
+ * and hold native memory until {@link #dispose()}.
+ */
+class FrameCompressor{
+    private Deflater deflater;
+    private Inflater inflater;
+    private byte[] input = new byte[0], output = new byte[0];
+
+    /**
+     * Compresses the bytes in the buffer from the offset, replacing them if the result is smaller.
+     * @return the new length, or -1 if the bytes were left as they were.
+     */
+    int compress(ByteBuffer buffer, int offset, int length){
+        byte[] input = input(length);
+        buffer.position(offset);
+        buffer.get(input, 0, length);
+
+        if(deflater == null) deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.reset();
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+
+        //only worth it if the result is smaller, so never output more than the original
+        byte[] output = output(length);
+        int size = 0;
+        while(!deflater.finished() && size < length - 4){
+            size += deflater.deflate(output, size, length - 4 - size);
+        }
+        if(!deflater.finished()){
+            buffer.position(offset + length);
+            return -1;
+        }
+
+        buffer.position(offset);
+        buffer.putInt(length);
+        buffer.put(output, 0, size);
+        return size + 4;
+    }
+
+    /**
+     * Decompresses the bytes in the buffer from its position, advancing past them.
+     * @return a buffer with the decompressed bytes, valid until the next call.
+     */
+    ByteBuffer decompress(ByteBuffer buffer, int length, int maxSize){
+        int size = buffer.getInt();
+        if(size <= 0 || size > maxSize) throw new ArcNetException("Invalid decompressed object length: " + size);
+
+        byte[] input = input(length - 4);
+        buffer.get(input, 0, length - 4);
+
+        if(inflater == null) inflater = new Inflater();
+        inflater.reset();
+        inflater.setInput(input, 0, length - 4);
+        //one spare byte, so the inflater can reach the end of the stream
+        byte[] output = output(size + 1);
+        try{
+            int total = 0;
+            while(total <= size && !inflater.finished()){
+                int count = inflater.inflate(output, total, size + 1 - total);
+                if(count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                total += count;
+            }
+            if(total != size || !inflater.finished()) throw new ArcNetException("Compressed object has the wrong length.");
+        }catch(DataFormatException ex){
+            throw new ArcNetException("Invalid compressed object.", ex);
+        }
+        return ByteBuffer.wrap(output, 0, size);
+    }
+
+    void dispose(){
+        if(deflater != null) deflater.end();
+        if(inflater != null) inflater.end();
+        deflater = null;
+        inflater = null;
+        input = output = new byte[0];
+    }
+
+    private byte[] input(int size){
+        if(input.length < size) input = new byte[Math.max(size, input.length * 2)];
+        return input;
+    }
+
+    private byte[] output(int size){
+        if(output.length < size) output = new byte[Math.max(size, output.length * 2)];
+        return output;
+    }
+}
@@ -54,6 +54,13 @@ public interface FrameworkMessage{
     class DiscoverHost implements FrameworkMessage{
     }
 
+    /**
+     * Internal message to agree on compressing TCP frames. Sent by clients that
+     * want compression, and answered by servers that also want it.
+     */
+    class EnableCompression implements FrameworkMessage{
+    }
+
     /**
      * Internal message to determine round trip time.
      */
@@ -0,0 +1,172 @@
+package io.anuke.arc.net;
+
+import io.anuke.arc.util.io.TrafficRecorder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One end of an in-process connection between a {@link Client} and a {@link Server}, used instead of sockets.
+ * Objects sent through a link are queued for the other end and received on the update thread of its end point, like
+ * objects read from a socket. TCP and UDP objects are both delivered reliably and in order.
+ * <p>
+ * Objects are either passed as they are, in which case they must not be modified after being sent, or serialized into
+ * pooled buffers, which keeps the ends isolated like a socket would.
+ */
+class LocalLink{
+    /** Queued for the other end when this end closes. */
+    private static final Object closed = new Object();
+
+    final Connection connection;
+    private final boolean serialize;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Object> inbound = new ConcurrentLinkedQueue<>();
+    /** Set when objects were queued since the end point last received, so the selector is woken once per batch. */
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    /** Set when the other end received everything sent by this end, until the idle event is fired. */
+    private final AtomicBoolean drained = new AtomicBoolean(true);
+    private volatile LocalLink peer;
+    private volatile boolean open = true;
+    private volatile long lastSendTime, lastReceiveTime;
+
+    LocalLink(Connection connection, Selector selector, boolean serialize){
+        this.connection = connection;
+        this.selector = selector;
+        this.serialize = serialize;
+        lastSendTime = lastReceiveTime = System.currentTimeMillis();
+    }
+
+    static void pair(LocalLink a, LocalLink b){
+        a.peer = b;
+        b.peer = a;
+    }
+
+    boolean isOpen(){
+        return open;
+    }
+
+    boolean isSerialized(){
+        return serialize;
+    }
+
+    /** @return the number of bytes the object was serialized to, or 0 if it is passed as is. */
+    int send(Object object){
+        LocalLink peer = this.peer;
+        if(!open || peer == null || !peer.open) throw new ArcNetException("Connection is closed.");
+        lastSendTime = System.currentTimeMillis();
+
+        if(!serialize){
+            peer.offer(object);
+            return 0;
+        }
+
+        TcpConnection tcp = connection.tcp;
+        ByteBuffer buffer = tcp.pool.obtain(tcp.objectBufferSize);
+        while(true){
+            try{
+                tcp.serialization.write(buffer, object);
+                break;
+            }catch(Throwable ex){
+                if(!TcpConnection.isOverflow(ex) || buffer.capacity() >= tcp.maxObjectSize){
+                    tcp.pool.free(buffer);
+                    throw new ArcNetException("Error serializing object of type: " + object.getClass().getName(), ex);
+                }
+                tcp.pool.free(buffer);
+                buffer = tcp.pool.obtain(Math.min(buffer.capacity() * 2, tcp.maxObjectSize));
+            }
+        }
+        buffer.flip();
+        int length = buffer.remaining();
+        connection.record(0, buffer, 0, length);
+        peer.offer(buffer);
+        return length;
+    }
+
+    private void offer(Object object){
+        inbound.add(object);
+        if(signalled.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    /**
+     * Passes queued objects to the receiver, and closes the connection if the other end closed. Called on the update
+     * thread of the end point.
+     * @return whether anything was received or signalled, or the other end received everything sent by this one. A
+     * wakeup for objects that an earlier call already received is not an empty select either.
+     */
+    boolean receive(NetListener receiver){
+        boolean woken = signalled.getAndSet(false);
+        boolean received = false;
+        Object object;
+        while(open && (object = inbound.poll()) != null){
+            if(!received) lastReceiveTime = System.currentTimeMillis();
+            received = true;
+            if(object == closed){
+                connection.close(DcReason.closed);
+                break;
+            }
+            int length = 0;
+            if(serialize){
+                ByteBuffer buffer = (ByteBuffer)object;
+                length = buffer.remaining();
+                connection.record(TrafficRecorder.inbound, buffer, buffer.position(), length);
+                try{
+                    object = connection.tcp.serialization.read(buffer);
+                }catch(Exception ex){
+                    throw new ArcNetException("Error during deserialization.", ex);
+                }finally{
+                    connection.tcp.pool.free(buffer);
+                }
+            }
+            connection.stats.received(object, length);
+            receiver.received(connection, object);
+        }
+
+        //like a drained TCP write buffer, wakes the other end so that it fires its idle event
+        LocalLink peer = this.peer;
+        if(received && peer != null && inbound.isEmpty() && peer.drained.compareAndSet(false, true)){
+            peer.selector.wakeup();
+        }
+        return received || woken || drained.get();
+    }
+
+    /** @return whether the other end has received everything sent by this end. */
+    boolean isIdle(){
+        LocalLink peer = this.peer;
+        return peer == null || peer.inbound.isEmpty();
+    }
+
+    /**
+     * @return true once each time the other end received everything sent by this end, when the idle event should be
+     * fired.
+     */
+    boolean takeDrained(){
+        if(!drained.getAndSet(false)) return false;
+        return isIdle();
+    }
+
+    boolean needsKeepAlive(long time){
+        int keepAliveMillis = connection.tcp.keepAliveMillis;
+        return open && keepAliveMillis > 0 && time - lastSendTime > keepAliveMillis;
+    }
+
+    /** @return whether nothing was received from the other end for longer than the connection's timeout. */
+    boolean isTimedOut(long time){
+        int timeoutMillis = connection.tcp.timeoutMillis;
+        return open && timeoutMillis > 0 && time - lastReceiveTime > timeoutMillis;
+    }
+
+    void close(){
+        if(!open) return;
+        open = false;
+        //the server may not have paired this link yet
+        if(peer != null) peer.offer(closed);
+
+        //objects that were not received are dropped
+        Object object;
+        while((object = inbound.poll()) != null){
+            if(serialize && object != closed) connection.tcp.pool.free((ByteBuffer)object);
+        }
+    }
+}
@@ -22,6 +22,8 @@ package io.anuke.arc.net;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.func.*;
 import io.anuke.arc.net.FrameworkMessage.*;
+import io.anuke.arc.util.TrafficStats;
+import io.anuke.arc.util.io.TrafficRecorder;
 import io.anuke.arc.util.async.*;
 
 import java.io.*;
@@ -29,6 +31,7 @@ import java.net.*;
 import java.nio.*;
 import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Manages TCP and optionally UDP connections from many {@linkplain Client
@@ -42,7 +45,8 @@ public class Server implements EndPoint{
     private int emptySelects;
     private ServerSocketChannel serverChannel;
     private UdpConnection udp;
-    private Connection[] connections = {};
+    private volatile Connection[] connections = {};
+    private final Object connectionLock = new Object();
     private IntMap<Connection> pendingConnections = new IntMap<>();
     NetListener[] listeners = {};
     private Object listenerLock = new Object();
@@ -55,6 +59,18 @@ public class Server implements EndPoint{
     private InetAddress multicastGroup;
     private DiscoveryReceiver discoveryReceiver;
     private ServerDiscoveryHandler discoveryHandler;
+    private int selectorThreads;
+    private volatile SelectorLoop[] loops = {};
+    private int nextLoop;
+    private Executor receiveExecutor;
+    private BufferPool bufferPool = BufferPool.shared;
+    private boolean coalesceWrites;
+    private int compressionThreshold;
+    private FileReceiver fileReceiver;
+    private volatile TrafficRecorder recorder;
+    private final TrafficStats stats = new TrafficStats();
+    /** Links of clients in the same process, waiting to be registered on the update thread. */
+    private final ConcurrentLinkedQueue<LocalLink> localAccepts = new ConcurrentLinkedQueue<>();
 
     private NetListener dispatchListener = new NetListener(){
         public void connected(Connection connection){
@@ -64,7 +80,6 @@ public class Server implements EndPoint{
         }
 
         public void disconnected(Connection connection, DcReason reason){
-            removeConnection(connection);
             NetListener[] listeners = Server.this.listeners;
             for(int i = 0, n = listeners.length; i < n; i++)
                 listeners[i].disconnected(connection, reason);
@@ -84,9 +99,11 @@ public class Server implements EndPoint{
     };
 
     /**
-     * @param writeBufferSize One buffer of this size is allocated for each connected
-     * client. Objects are serialized to the write buffer where the
-     * bytes are queued until they can be written to the TCP socket.
+     * @param writeBufferSize The most bytes that may be queued for a TCP
+     * connection. Objects are serialized to a write buffer borrowed
+     * from the {@link BufferPool}, where the bytes are queued until
+     * they can be written to the TCP socket. The buffer grows as
+     * needed and is returned once all bytes are written.
      * <p>
      * Normally the socket is writable and the bytes are written
      * immediately. If the socket cannot be written to and enough
@@ -94,7 +111,7 @@ public class Server implements EndPoint{
      * connection will be closed.
      * <p>
      * The write buffer should be sized at least as large as the
-     * largest object that will be sent, plus some head room to allow
+     * largest object that will be sent while others are queued, plus some head room to allow
      * for some serialized objects to be queued in case the buffer is
      * temporarily not writable. The amount of head room needed is
      * dependent upon the size of objects being sent and how often
@@ -104,8 +121,11 @@ public class Server implements EndPoint{
      * bytes for a single object graph until it can be sent over the
      * network or deserialized.
      * <p>
-     * The object buffers should be sized at least as large as the
-     * largest object that will be sent or received.
+     * The UDP object buffers should be sized at least as large as the
+     * largest object that will be sent or received. For TCP, this is
+     * the size of the read buffer borrowed from the {@link BufferPool},
+     * which grows for larger objects up to
+     * {@link Connection#setMaxObjectSize(int) the maximum object size}.
      */
     public Server(int writeBufferSize, int objectBufferSize, NetSerializer serializer){
         this.writeBufferSize = writeBufferSize;
@@ -138,6 +158,104 @@ public class Server implements EndPoint{
         discoveryHandler = newDiscoveryHandler;
     }
 
+    /**
+     * Sets the number of threads that read and write TCP connections. With
+     * zero (the default), everything is done by the thread calling
+     * {@link #update(int)}. Otherwise, that thread only accepts connections and
+     * handles UDP, and each accepted connection is assigned to one of the
+     * selector threads in turn, which reads, deserializes and writes it from
+     * then on. Listeners are then notified from several threads, and the
+     * serializer must be thread safe. Takes effect on the next bind.
+     */
+    public void setSelectorThreads(int threads){
+        if(threads < 0) throw new IllegalArgumentException("threads cannot be < 0: " + threads);
+        this.selectorThreads = threads;
+    }
+
+    public int getSelectorThreads(){
+        return selectorThreads;
+    }
+
+    /**
+     * Sets whether new connections {@link Connection#setCoalesceWrites(boolean)
+     * coalesce writes}. Queued objects are written on every update, or when
+     * {@link #flush()} is called.
+     */
+    public void setCoalesceWrites(boolean coalesce){
+        this.coalesceWrites = coalesce;
+    }
+
+    /**
+     * Sets the {@link Connection#setCompressionThreshold(int) compression
+     * threshold} of new connections. Compression is used with clients that
+     * enable it too.
+     */
+    public void setCompressionThreshold(int bytes){
+        this.compressionThreshold = bytes;
+    }
+
+    /**
+     * Sets the {@link Connection#setFileReceiver(FileReceiver) file receiver}
+     * of new connections, so that files sent right after connecting are not
+     * missed.
+     */
+    public void setFileReceiver(FileReceiver receiver){
+        this.fileReceiver = receiver;
+    }
+
+    /**
+     * Sets the {@link Connection#setRecorder(TrafficRecorder) recorder} of
+     * all current and new connections. Null to stop recording.
+     */
+    public void setRecorder(TrafficRecorder recorder){
+        this.recorder = recorder;
+        for(Connection connection : connections){
+            connection.recorder = recorder;
+        }
+    }
+
+    /**
+     * Returns the traffic of all connections of this server, including those
+     * that were closed. May be read from any thread.
+     * @see Connection#getStats()
+     */
+    public TrafficStats getStats(){
+        return stats;
+    }
+
+    /** Writes the queued objects of all connections. */
+    public void flush(){
+        Connection[] connections = this.connections;
+        for(int i = 0, n = connections.length; i < n; i++)
+            connections[i].flush();
+    }
+
+    /**
+     * Sets the pool that the TCP buffers of new connections are borrowed from.
+     * Defaults to {@link BufferPool#shared}.
+     */
+    public void setBufferPool(BufferPool pool){
+        if(pool == null) throw new IllegalArgumentException("pool cannot be null.");
+        this.bufferPool = pool;
+    }
+
+    public BufferPool getBufferPool(){
+        return bufferPool;
+    }
+
+    /**
+     * If set, listeners of new connections are notified of connects,
+     * disconnects and received objects through this executor instead of on
+     * the thread that read them, so that slow listeners do not hold up the
+     * network. Framework messages are still handled by the network thread
+     * first, and idle events are not passed through the executor. Events of
+     * one connection are only delivered in order if the executor runs tasks
+     * in order. May be null.
+     */
+    public void setReceiveExecutor(Executor executor){
+        this.receiveExecutor = executor;
+    }
+
     /**
      * Opens a TCP only server.
      * @throws IOException if the server could not be opened.
@@ -175,6 +293,21 @@ public class Server implements EndPoint{
                     udp.bind(selector, udpPort);
                 }
 
+                SelectorLoop[] loops = new SelectorLoop[selectorThreads];
+                try{
+                    for(int i = 0; i < loops.length; i++){
+                        loops[i] = new SelectorLoop(i);
+                    }
+                }catch(IOException ex){
+                    // The loops are not known to close() yet.
+                    for(SelectorLoop loop : loops){
+                        if(loop != null) loop.stop();
+                    }
+                    throw ex;
+                }
+                this.loops = loops;
+                nextLoop = 0;
+
                 if(multicastGroup != null && (udpPort == null || multicastPort != udpPort.getPort())){
                     discoveryReceiver = new DiscoveryReceiver(multicastPort);
                     discoveryReceiver.start();
@@ -206,8 +339,10 @@ public class Server implements EndPoint{
         }else{
             select = selector.selectNow();
         }
+        boolean receivedLocal = receiveLocal();
         if(select == 0){
-            emptySelects++;
+            // Woken to receive local objects, which is not an empty select.
+            if(!receivedLocal) emptySelects++;
             if(emptySelects == 100){
                 emptySelects = 0;
                 // NIO freaks and returns immediately with 0 sometimes, so try
@@ -224,7 +359,7 @@ public class Server implements EndPoint{
             synchronized(keys){
                 UdpConnection udp = this.udp;
                 for(Iterator<SelectionKey> iter = keys.iterator(); iter.hasNext();){
-                    keepAlive();
+                    if(loops.length == 0) keepAlive(this.connections);
                     SelectionKey selectionKey = iter.next();
                     iter.remove();
                     Connection fromConnection = (Connection)selectionKey.attachment();
@@ -233,30 +368,7 @@ public class Server implements EndPoint{
 
                         if(fromConnection != null){ // Must be a TCP read or
                             // write operation.
-                            if(udp != null && fromConnection.udpRemoteAddress == null){
-                                fromConnection.close(DcReason.error);
-                                continue;
-                            }
-                            if((ops & SelectionKey.OP_READ) == SelectionKey.OP_READ){
-                                try{
-                                    while(true){
-                                        Object object = fromConnection.tcp.readObject();
-                                        if(object == null)
-                                            break;
-                                        fromConnection.notifyReceived(object);
-                                    }
-                                }catch(IOException | ArcNetException ex){
-                                    errorHandler.get(new ArcNetException("Error reading TCP from connection: " + fromConnection, ex));
-                                    fromConnection.close(ex.getMessage() != null && ex.getMessage().contains("closed") ? DcReason.closed : DcReason.error);
-                                }
-                            }
-                            if((ops & SelectionKey.OP_WRITE) == SelectionKey.OP_WRITE){
-                                try{
-                                    fromConnection.tcp.writeOperation();
-                                }catch(IOException ex){
-                                    fromConnection.close(ex.getMessage() != null && ex.getMessage().contains("closed") ? DcReason.closed : DcReason.error);
-                                }
-                            }
+                            processTcp(fromConnection, ops);
                             continue;
                         }
 
@@ -299,7 +411,7 @@ public class Server implements EndPoint{
 
                         Object object;
                         try{
-                            object = udp.readObject();
+                            object = udp.readObject(fromConnection);
                         }catch(ArcNetException ex){
                             errorHandler.get(new ArcNetException("Error reading UDP from connection: " + (fromConnection == null ? fromAddress : fromAddress), ex));
                             continue;
@@ -311,8 +423,10 @@ public class Server implements EndPoint{
                                 // reply over TCP with a RegisterUDP to indicate
                                 // success.
                                 int fromConnectionID = ((RegisterUDP)object).connectionID;
-                                Connection connection = pendingConnections
-                                .remove(fromConnectionID);
+                                Connection connection;
+                                synchronized(connectionLock){
+                                    connection = pendingConnections.remove(fromConnectionID);
+                                }
                                 if(connection != null){
                                     if(connection.udpRemoteAddress != null) continue;
                                     connection.udpRemoteAddress = fromAddress;
@@ -333,6 +447,7 @@ public class Server implements EndPoint{
                         }
 
                         if(fromConnection != null){
+                            fromConnection.stats.received(object, udp.lastReadLength);
                             fromConnection.notifyReceived(object);
                             continue;
                         }
@@ -345,27 +460,96 @@ public class Server implements EndPoint{
                 }
             }
         }
-        long time = System.currentTimeMillis();
+        // Connections owned by selector threads are checked by those threads.
+        Connection[] connections = this.connections;
+        checkConnections(connections, connections.length, loops.length > 0);
+    }
+
+    private void processTcp(Connection fromConnection, int ops){
+        if(udp != null && fromConnection.udpRemoteAddress == null){
+            fromConnection.close(DcReason.error);
+            return;
+        }
+        if((ops & SelectionKey.OP_READ) == SelectionKey.OP_READ){
+            try{
+                while(true){
+                    Object object = fromConnection.tcp.readObject();
+                    if(object == null)
+                        break;
+                    fromConnection.notifyReceived(object);
+                }
+            }catch(IOException | ArcNetException ex){
+                errorHandler.get(new ArcNetException("Error reading TCP from connection: " + fromConnection, ex));
+                fromConnection.close(ex.getMessage() != null && ex.getMessage().contains("closed") ? DcReason.closed : DcReason.error);
+            }
+        }
+        if((ops & SelectionKey.OP_WRITE) == SelectionKey.OP_WRITE){
+            try{
+                fromConnection.tcp.writeOperation();
+            }catch(IOException ex){
+                fromConnection.close(ex.getMessage() != null && ex.getMessage().contains("closed") ? DcReason.closed : DcReason.error);
+            }
+        }
+    }
+
+    /**
+     * Registers new local connections, and receives the objects queued by local clients.
+     * @return whether there was anything to do.
+     */
+    private boolean receiveLocal(){
+        boolean received = false;
+        LocalLink accepted;
+        while((accepted = localAccepts.poll()) != null){
+            received = true;
+            registerLocal(accepted);
+        }
+
         Connection[] connections = this.connections;
         for(int i = 0, n = connections.length; i < n; i++){
             Connection connection = connections[i];
-            if(connection.tcp.isTimedOut(time)){
+            LocalLink local = connection.local;
+            if(local == null) continue;
+            try{
+                received |= local.receive(localReceiver);
+            }catch(ArcNetException ex){
+                errorHandler.get(new ArcNetException("Error reading from local connection: " + connection, ex));
+                connection.close(DcReason.error);
+            }
+        }
+        return received;
+    }
+
+    private final NetListener localReceiver = new NetListener(){
+        public void received(Connection connection, Object object){
+            connection.notifyReceived(object);
+        }
+    };
+
+    /**
+     * Closes timed out connections, sends keep alives and fires idle events.
+     * @param localOnly Whether to skip TCP connections, which are checked by their selector threads.
+     */
+    private void checkConnections(Connection[] connections, int n, boolean localOnly){
+        long time = System.currentTimeMillis();
+        for(int i = 0; i < n; i++){
+            Connection connection = connections[i];
+            if(localOnly && connection.local == null) continue;
+            connection.flush();
+            if(connection.isTimedOut(time)){
                 connection.close(DcReason.timeout);
             }else{
-                if(connection.tcp.needsKeepAlive(time))
+                if(connection.needsKeepAlive(time))
                     connection.sendTCP(FrameworkMessage.keepAlive);
             }
-            if(connection.isIdle())
-                connection.notifyIdle();
+            connection.updateIdle();
         }
     }
 
-    private void keepAlive(){
+    private void keepAlive(Connection[] connections){
         long time = System.currentTimeMillis();
-        Connection[] connections = this.connections;
         for(int i = 0, n = connections.length; i < n; i++){
             Connection connection = connections[i];
-            if(connection.tcp.needsKeepAlive(time))
+            if(connection.needsKeepAlive(time))
                 connection.sendTCP(FrameworkMessage.keepAlive);
         }
     }
@@ -395,36 +579,96 @@ public class Server implements EndPoint{
     private void acceptOperation(SocketChannel socketChannel){
         Connection connection = newConnection();
         connection.initialize(serializer,
-        writeBufferSize, objectBufferSize);
+        writeBufferSize, objectBufferSize, bufferPool, stats);
         connection.endPoint = this;
+        connection.tcp.coalesce = coalesceWrites;
+        connection.tcp.compressionThreshold = compressionThreshold;
+        connection.tcp.fileReceiver = fileReceiver;
+        connection.recorder = recorder;
+        connection.listenerExecutor = receiveExecutor;
         UdpConnection udp = this.udp;
         if(udp != null)
             connection.udp = udp;
+
+        int id = nextConnectionID++;
+        if(nextConnectionID == -1)
+            nextConnectionID = 1;
+        connection.id = id;
+
+        if(loops.length == 0){
+            registerConnection(connection, socketChannel, selector);
+        }else{
+            SelectorLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            loop.execute(() -> {
+                if(registerConnection(connection, socketChannel, loop.selector)) loop.owned.add(connection);
+            });
+        }
+    }
+
+    /** Queues a client in the same process to be connected on the next update. */
+    void acceptLocal(LocalLink clientLink){
+        localAccepts.add(clientLink);
+        selector.wakeup();
+    }
+
+    private void registerLocal(LocalLink clientLink){
+        // The client may have given up already.
+        if(!clientLink.isOpen())
+            return;
+        Connection connection = newConnection();
+        connection.initialize(serializer,
+        writeBufferSize, objectBufferSize, bufferPool, stats);
+        connection.endPoint = this;
+        connection.recorder = recorder;
+        connection.listenerExecutor = receiveExecutor;
+        LocalLink link = new LocalLink(connection, selector, clientLink.isSerialized());
+        LocalLink.pair(link, clientLink);
+        connection.local = link;
+
+        int id = nextConnectionID++;
+        if(nextConnectionID == -1)
+            nextConnectionID = 1;
+        connection.id = id;
+
+        connection.setConnected(true);
+        connection.addListener(dispatchListener);
+        addConnection(connection);
+
+        RegisterTCP registerConnection = new RegisterTCP();
+        registerConnection.connectionID = id;
+        connection.sendTCP(registerConnection);
+        connection.notifyConnected();
+    }
+
+    /** Registers an accepted connection with a selector and starts the handshake. */
+    private boolean registerConnection(Connection connection, SocketChannel socketChannel, Selector selector){
+        UdpConnection udp = connection.udp;
         try{
             SelectionKey selectionKey = connection.tcp.accept(selector,
             socketChannel);
             selectionKey.attach(connection);
 
-            int id = nextConnectionID++;
-            if(nextConnectionID == -1)
-                nextConnectionID = 1;
-            connection.id = id;
             connection.setConnected(true);
             connection.addListener(dispatchListener);
 
             if(udp == null)
                 addConnection(connection);
             else
-                pendingConnections.put(id, connection);
+                synchronized(connectionLock){
+                    pendingConnections.put(connection.id, connection);
+                }
 
             RegisterTCP registerConnection = new RegisterTCP();
-            registerConnection.connectionID = id;
+            registerConnection.connectionID = connection.id;
             connection.sendTCP(registerConnection);
 
             if(udp == null)
                 connection.notifyConnected();
+            return true;
         }catch(IOException ex){
             connection.close(DcReason.error);
+            return false;
         }
     }
 
@@ -437,18 +681,22 @@ public class Server implements EndPoint{
     }
 
     private void addConnection(Connection connection){
-        Connection[] newConnections = new Connection[connections.length + 1];
-        newConnections[0] = connection;
-        System.arraycopy(connections, 0, newConnections, 1, connections.length);
-        connections = newConnections;
+        synchronized(connectionLock){
+            Connection[] newConnections = new Connection[connections.length + 1];
+            newConnections[0] = connection;
+            System.arraycopy(connections, 0, newConnections, 1, connections.length);
+            connections = newConnections;
+        }
     }
 
     void removeConnection(Connection connection){
-        ArrayList<Connection> temp = new ArrayList<>(Arrays.asList(connections));
-        temp.remove(connection);
-        connections = temp.toArray(new Connection[0]);
+        synchronized(connectionLock){
+            ArrayList<Connection> temp = new ArrayList<>(Arrays.asList(connections));
+            temp.remove(connection);
+            connections = temp.toArray(new Connection[0]);
 
-        pendingConnections.remove(connection.id);
+            pendingConnections.remove(connection.id);
+        }
     }
 
     // BOZO - Provide mechanism for sending to multiple clients without
@@ -554,11 +802,19 @@ public class Server implements EndPoint{
      * Closes all open connections and the server port(s).
      */
     public void close(){
+        // Clients that were not registered yet time out.
+        localAccepts.clear();
+
         Connection[] connections = this.connections;
         for(int i = 0, n = connections.length; i < n; i++)
             connections[i].close(DcReason.closed);
         this.connections = new Connection[0];
 
+        for(SelectorLoop loop : loops){
+            loop.stop();
+        }
+        loops = new SelectorLoop[0];
+
         ServerSocketChannel serverChannel = this.serverChannel;
         if(serverChannel != null){
             try{
@@ -611,6 +867,93 @@ public class Server implements EndPoint{
         return connections;
     }
 
+    /** A thread with its own selector that reads and writes a share of the TCP connections. */
+    class SelectorLoop implements Runnable{
+        final Selector selector;
+        final Array<Connection> owned = new Array<>(false, 16, Connection.class);
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        private volatile boolean running = true;
+        private int emptySelects;
+
+        SelectorLoop(int index) throws IOException{
+            selector = Selector.open();
+            thread = new Thread(this, "Server Selector " + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /** Runs a task on this loop's thread. */
+        void execute(Runnable task){
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void stop(){
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run(){
+            while(running){
+                try{
+                    update(250);
+                }catch(IOException ex){
+                    errorHandler.get(ex);
+                }
+            }
+
+            for(Connection connection : owned){
+                connection.close(DcReason.closed);
+            }
+            owned.clear();
+            try{
+                selector.close();
+            }catch(IOException ignored){
+            }
+        }
+
+        private void update(int timeout) throws IOException{
+            Runnable task;
+            while((task = tasks.poll()) != null){
+                task.run();
+            }
+
+            long startTime = System.currentTimeMillis();
+            int select = selector.select(timeout);
+            if(select == 0){
+                if(++emptySelects == 100){
+                    emptySelects = 0;
+                    // Same protection against spinning selectors as update().
+                    long elapsedTime = System.currentTimeMillis() - startTime;
+                    try{
+                        if(elapsedTime < 25) Thread.sleep(25 - elapsedTime);
+                    }catch(InterruptedException ignored){
+                    }
+                }
+            }else{
+                emptySelects = 0;
+                Set<SelectionKey> keys = selector.selectedKeys();
+                for(Iterator<SelectionKey> iter = keys.iterator(); iter.hasNext();){
+                    SelectionKey selectionKey = iter.next();
+                    iter.remove();
+                    Connection connection = (Connection)selectionKey.attachment();
+                    try{
+                        processTcp(connection, selectionKey.readyOps());
+                    }catch(CancelledKeyException ex){
+                        connection.close(DcReason.error);
+                    }
+                }
+            }
+
+            for(int i = owned.size - 1; i >= 0; i--){
+                if(owned.get(i).tcp.socketChannel == null) owned.remove(i);
+            }
+            checkConnections(owned.items, owned.size, false);
+        }
+    }
+
     class DiscoveryReceiver{
         MulticastSocket socket = null;
         Thread multicastThread;
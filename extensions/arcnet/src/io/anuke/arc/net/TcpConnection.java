@@ -19,9 +19,14 @@
 
 package io.anuke.arc.net;
 
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.util.TrafficStats;
+import io.anuke.arc.util.io.TrafficRecorder;
+
 import java.io.IOException;
 import java.net.Socket;
 import java.net.*;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 
@@ -31,29 +36,60 @@ import java.nio.channels.*;
 class TcpConnection{
     SocketChannel socketChannel;
     int keepAliveMillis = 8000;
-    final ByteBuffer readBuffer, writeBuffer;
+    /** Borrowed from the pool while there is data in them, null otherwise. */
+    ByteBuffer readBuffer, writeBuffer;
+    final int writeBufferSize, objectBufferSize;
+    int maxObjectSize;
+    BufferPool pool;
     boolean bufferPositionFix;
     int timeoutMillis = 12000;
     float idleThreshold = 0.1f;
+    /** If true, sent objects are only written to the socket on {@link #flush()}. */
+    boolean coalesce;
+    /** Objects that serialize to more bytes than this are compressed once compression is negotiated. 0 to disable. */
+    int compressionThreshold;
+    /** Whether compressed frames may be received, and whether frames are compressed when sent. Enabled after negotiation. */
+    volatile boolean compressInput, compressOutput;
+    /** Counters for sent data: bytes before compression, bytes put on the wire, and socket writes. */
+    volatile long bytesSerialized, bytesSent, socketWrites;
+    /** Maximum number of file bytes sent per second, or 0 for no limit. */
+    long fileBandwidth;
+    int fileChunkSize = 32 * 1024;
+    FileReceiver fileReceiver;
+    Connection connection;
+    TrafficStats stats;
 
     final NetSerializer serialization;
     private SelectionKey selectionKey;
     private volatile long lastWriteTime, lastReadTime;
     private int currentObjectLength;
-    private final Object writeLock = new Object();
-
-    public TcpConnection(NetSerializer serialization, int writeBufferSize, int objectBufferSize){
+    /** When the oldest queued object was sent, in nanoseconds. */
+    private long queuedTime;
+    private boolean currentObjectCompressed;
+    private final FrameCompressor writeCompressor = new FrameCompressor(), readCompressor = new FrameCompressor();
+    private final Object writeLock = new Object(), readLock = new Object();
+
+    // File chunks are framed by an object length of 0, followed by the transfer ID, offset, chunk length and file length.
+    private static final int chunkHeaderLength = 4 + 8 + 4 + 8, minChunkSize = 4096;
+    private final Array<FileTransfer> transfers = new Array<>();
+    private FileTransfer chunkTransfer;
+    private ByteBuffer chunkHeader;
+    private int chunkRemaining;
+    private long fileAllowance, lastAllowanceTime;
+    private boolean readingChunkHeader;
+    private int readChunkID, readChunkRemaining;
+    private long readChunkOffset, readChunkTotal;
+
+    public TcpConnection(NetSerializer serialization, int writeBufferSize, int objectBufferSize, BufferPool pool){
         this.serialization = serialization;
-        writeBuffer = ByteBuffer.allocate(writeBufferSize);
-        readBuffer = ByteBuffer.allocate(objectBufferSize);
-        readBuffer.flip();
+        this.writeBufferSize = writeBufferSize;
+        this.objectBufferSize = objectBufferSize;
+        this.maxObjectSize = Math.min(Math.max(objectBufferSize, 1024 * 1024), maxLength(serialization));
+        this.pool = pool;
     }
 
     public SelectionKey accept(Selector selector, SocketChannel socketChannel) throws IOException{
-        writeBuffer.clear();
-        readBuffer.clear();
-        readBuffer.flip();
-        currentObjectLength = 0;
+        releaseBuffers();
         try{
             this.socketChannel = socketChannel;
             socketChannel.configureBlocking(false);
@@ -74,10 +110,6 @@ class TcpConnection{
 
     public void connect(Selector selector, SocketAddress remoteAddress, int timeout) throws IOException{
         close();
-        writeBuffer.clear();
-        readBuffer.clear();
-        readBuffer.flip();
-        currentObjectLength = 0;
         try{
             SocketChannel socketChannel = selector.provider().openSocketChannel();
             Socket socket = socketChannel.socket();
@@ -100,14 +132,67 @@ class TcpConnection{
     }
 
     public Object readObject() throws IOException{
-        SocketChannel socketChannel = this.socketChannel;
-        if(socketChannel == null)
-            throw new SocketException("Connection is closed.");
+        synchronized(readLock){
+            SocketChannel socketChannel = this.socketChannel;
+            if(socketChannel == null)
+                throw new SocketException("Connection is closed.");
 
-        if(currentObjectLength == 0){
-            // Read the length of the next object from the socket.
-            int lengthLength = serialization.getLengthLength();
-            if(readBuffer.remaining() < lengthLength){
+            if(readBuffer == null){
+                readBuffer = pool.obtain(objectBufferSize);
+                readBuffer.flip();
+            }
+
+            while(currentObjectLength == 0){
+                if((readingChunkHeader || readChunkRemaining > 0) && !readChunk(socketChannel))
+                    return releaseRead();
+
+                // Read the length of the next object from the socket.
+                int lengthLength = serialization.getLengthLength();
+                if(readBuffer.remaining() < lengthLength){
+                    readBuffer.compact();
+                    int bytesRead = socketChannel.read(readBuffer);
+                    readBuffer.flip();
+                    if(bytesRead == -1)
+                        throw new SocketException("Connection is closed.");
+                    lastReadTime = System.currentTimeMillis();
+
+                    if(readBuffer.remaining() < lengthLength)
+                        return releaseRead();
+                }
+                currentObjectLength = serialization.readLength(readBuffer);
+                if(currentObjectLength == 0){
+                    // A file chunk follows.
+                    readingChunkHeader = true;
+                    continue;
+                }
+                currentObjectCompressed = false;
+                if(compressInput){
+                    // The highest bit of the length marks compressed objects.
+                    int flag = compressedFlag(lengthLength);
+                    currentObjectCompressed = (currentObjectLength & flag) != 0;
+                    currentObjectLength &= flag - 1;
+                }
+
+                if(currentObjectLength <= 0)
+                    throw new ArcNetException(
+                    "Invalid object length: " + currentObjectLength);
+                if(currentObjectLength > maxObjectSize)
+                    throw new ArcNetException(
+                    "Unable to read object larger than the maximum object size: "
+                    + currentObjectLength);
+                if(currentObjectLength > readBuffer.capacity()){
+                    // Grow for an oversized object, keeping what was already read.
+                    ByteBuffer buffer = pool.obtain(currentObjectLength);
+                    buffer.put(readBuffer);
+                    buffer.flip();
+                    pool.free(readBuffer);
+                    readBuffer = buffer;
+                }
+            }
+
+            int length = currentObjectLength;
+            if(readBuffer.remaining() < length){
+                // Fill the tcpInputStream.
                 readBuffer.compact();
                 int bytesRead = socketChannel.read(readBuffer);
                 readBuffer.flip();
@@ -115,57 +200,110 @@ class TcpConnection{
                     throw new SocketException("Connection is closed.");
                 lastReadTime = System.currentTimeMillis();
 
-                if(readBuffer.remaining() < lengthLength)
+                if(readBuffer.remaining() < length)
                     return null;
             }
-            currentObjectLength = serialization.readLength(readBuffer);
-
-            if(currentObjectLength <= 0)
-                throw new ArcNetException(
-                "Invalid object length: " + currentObjectLength);
-            if(currentObjectLength > readBuffer.capacity())
-                throw new ArcNetException(
-                "Unable to read object larger than read buffer: "
-                + currentObjectLength);
-        }
+            currentObjectLength = 0;
+
+            if(currentObjectCompressed){
+                ByteBuffer data = readCompressor.decompress(readBuffer, length, maxObjectSize);
+                connection.record(TrafficRecorder.inbound, data, data.position(), data.remaining());
+                Object object;
+                try{
+                    object = serialization.read(data);
+                }catch(Exception ex){
+                    throw new ArcNetException("Error during deserialization.", ex);
+                }
+                if(data.hasRemaining())
+                    throw new ArcNetException("Incorrect number of bytes ("
+                    + data.remaining()
+                    + " remaining) used to deserialize object: " + object);
+                stats.received(object, serialization.getLengthLength() + length);
+                return object;
+            }
 
-        int length = currentObjectLength;
-        if(readBuffer.remaining() < length){
-            // Fill the tcpInputStream.
-            readBuffer.compact();
-            int bytesRead = socketChannel.read(readBuffer);
-            readBuffer.flip();
-            if(bytesRead == -1)
-                throw new SocketException("Connection is closed.");
-            lastReadTime = System.currentTimeMillis();
+            int startPosition = readBuffer.position();
+            int oldLimit = readBuffer.limit();
+            readBuffer.limit(startPosition + length);
+            Object object;
+            try{
+                object = serialization.read(readBuffer);
+            }catch(Exception ex){
+                throw new ArcNetException("Error during deserialization.", ex);
+            }
+
+            readBuffer.limit(oldLimit);
+            if(readBuffer.position() - startPosition != length)
+                throw new ArcNetException("Incorrect number of bytes ("
+                + (startPosition + length - readBuffer.position())
+                + " remaining) used to deserialize object: " + object);
 
-            if(readBuffer.remaining() < length)
-                return null;
+            connection.record(TrafficRecorder.inbound, readBuffer, startPosition, length);
+            stats.received(object, serialization.getLengthLength() + length);
+            return object;
         }
-        currentObjectLength = 0;
+    }
 
-        int startPosition = readBuffer.position();
-        int oldLimit = readBuffer.limit();
-        readBuffer.limit(startPosition + length);
-        Object object;
-        try{
-            object = serialization.read(readBuffer);
-        }catch(Exception ex){
-            throw new ArcNetException("Error during deserialization.", ex);
+    /**
+     * Passes the bytes of the current file chunk to the receiver as they arrive.
+     * @return whether the chunk was completely read.
+     */
+    private boolean readChunk(SocketChannel socketChannel) throws IOException{
+        if(readingChunkHeader){
+            if(readBuffer.remaining() < chunkHeaderLength && !fill(socketChannel, chunkHeaderLength))
+                return false;
+            readingChunkHeader = false;
+            readChunkID = readBuffer.getInt();
+            readChunkOffset = readBuffer.getLong();
+            readChunkRemaining = readBuffer.getInt();
+            readChunkTotal = readBuffer.getLong();
+            if(readChunkRemaining <= 0 || readChunkOffset < 0 || readChunkOffset + readChunkRemaining > readChunkTotal)
+                throw new ArcNetException("Invalid file chunk: " + readChunkRemaining + " bytes at " + readChunkOffset
+                + " of " + readChunkTotal);
+        }
+
+        while(readChunkRemaining > 0){
+            if(!readBuffer.hasRemaining() && !fill(socketChannel, 1))
+                return false;
+
+            int count = Math.min(readBuffer.remaining(), readChunkRemaining);
+            int start = readBuffer.position(), limit = readBuffer.limit();
+            FileReceiver receiver = fileReceiver;
+            if(receiver != null){
+                readBuffer.limit(start + count);
+                receiver.received(connection, readChunkID, readChunkOffset, readChunkTotal, readBuffer);
+                readBuffer.limit(limit);
+            }
+            readBuffer.position(start + count);
+            readChunkOffset += count;
+            readChunkRemaining -= count;
         }
+        return true;
+    }
 
-        readBuffer.limit(oldLimit);
-        if(readBuffer.position() - startPosition != length)
-            throw new ArcNetException("Incorrect number of bytes ("
-            + (startPosition + length - readBuffer.position())
-            + " remaining) used to deserialize object: " + object);
+    /** Reads from the socket into the read buffer. @return whether the buffer has at least the required bytes. */
+    private boolean fill(SocketChannel socketChannel, int required) throws IOException{
+        readBuffer.compact();
+        int bytesRead = socketChannel.read(readBuffer);
+        readBuffer.flip();
+        if(bytesRead == -1)
+            throw new SocketException("Connection is closed.");
+        lastReadTime = System.currentTimeMillis();
+        return readBuffer.remaining() >= required;
+    }
 
-        return object;
+    /** Returns the read buffer to the pool if it holds no partial object. */
+    private Object releaseRead(){
+        if(currentObjectLength == 0 && !readingChunkHeader && readBuffer != null && !readBuffer.hasRemaining()){
+            pool.free(readBuffer);
+            readBuffer = null;
+        }
+        return null;
     }
 
     public void writeOperation() throws IOException{
         synchronized(writeLock){
-            if(writeToSocket()){
+            if(writeToSocket(true)){
                 // Write successful, clear OP_WRITE.
                 selectionKey.interestOps(SelectionKey.OP_READ);
             }
@@ -173,24 +311,169 @@ class TcpConnection{
         }
     }
 
-    private boolean writeToSocket() throws IOException{
+    /**
+     * Writes the rest of the current file chunk, then queued objects, then new file chunks. File data is only written if
+     * requested, which only the thread that selects for this connection does, so that copying from the file never
+     * happens in {@link #send(Object)}.
+     * @return whether everything that may be written now was written.
+     */
+    private boolean writeToSocket(boolean files) throws IOException{
         SocketChannel socketChannel = this.socketChannel;
         if(socketChannel == null)
             throw new SocketException("Connection is closed.");
 
+        // Objects cannot be written in the middle of a chunk.
+        if(chunkTransfer != null && (!files || !writeChunk(socketChannel))) return false;
+        if(!writeBuffer(socketChannel)) return false;
+        return !files || writeFiles(socketChannel);
+    }
+
+    private boolean writeBuffer(SocketChannel socketChannel) throws IOException{
         ByteBuffer buffer = writeBuffer;
+        if(buffer == null) return true;
         buffer.flip();
         while(buffer.hasRemaining()){
             if(bufferPositionFix){
                 buffer.compact();
                 buffer.flip();
             }
-            if(socketChannel.write(buffer) == 0)
+            int written = socketChannel.write(buffer);
+            socketWrites++;
+            if(written == 0)
                 break;
+            bytesSent += written;
         }
         buffer.compact();
 
-        return buffer.position() == 0;
+        if(buffer.position() == 0){
+            pool.free(buffer);
+            writeBuffer = null;
+            stats.recordQueueLatency((System.nanoTime() - queuedTime) / 1000);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts chunks of the pending file transfers, highest priority first, within the bandwidth allowance.
+     * @return false if the socket could not take more data.
+     */
+    private boolean writeFiles(SocketChannel socketChannel) throws IOException{
+        refillAllowance();
+
+        // Bytes written per call are limited, so that other connections and reads are not starved by a fast socket.
+        int budget = fileChunkSize * 4;
+        while(transfers.size > 0){
+            if(budget <= 0) return false;
+
+            FileTransfer transfer = nextTransfer();
+            if(transfer.cancelled){
+                transfers.remove(transfer);
+                transfer.close();
+                continue;
+            }
+
+            long size = Math.min(fileChunkSize, transfer.length - transfer.position);
+            if(fileBandwidth > 0){
+                // Wait for enough allowance to not send tiny chunks.
+                if(fileAllowance < Math.min(size, minChunkSize)) return true;
+                size = Math.min(size, fileAllowance);
+                fileAllowance -= size;
+            }
+            budget -= size;
+
+            if(chunkHeader == null) chunkHeader = ByteBuffer.allocate(serialization.getLengthLength() + chunkHeaderLength);
+            chunkHeader.clear();
+            serialization.writeLength(chunkHeader, 0);
+            chunkHeader.putInt(transfer.id);
+            chunkHeader.putLong(transfer.position);
+            chunkHeader.putInt((int)size);
+            chunkHeader.putLong(transfer.length);
+            chunkHeader.flip();
+            chunkTransfer = transfer;
+            chunkRemaining = (int)size;
+
+            if(!writeChunk(socketChannel)) return false;
+        }
+        return true;
+    }
+
+    private void refillAllowance(){
+        if(fileBandwidth > 0 && transfers.size > 0){
+            long time = System.nanoTime(), elapsed = Math.min(time - lastAllowanceTime, 1000000000L);
+            lastAllowanceTime = time;
+            // Allow bursts of a quarter second, so throttled transfers still make progress between updates.
+            fileAllowance = Math.min(fileAllowance + elapsed * fileBandwidth / 1000000000L, Math.max(fileBandwidth / 4, minChunkSize));
+        }
+    }
+
+    /** @return the pending transfer with the highest priority. */
+    private FileTransfer nextTransfer(){
+        FileTransfer transfer = transfers.first();
+        for(int i = 1; i < transfers.size; i++){
+            if(transfers.get(i).priority > transfer.priority) transfer = transfers.get(i);
+        }
+        return transfer;
+    }
+
+    /** @return whether a file chunk can be started within the bandwidth allowance. */
+    private boolean filesReady(){
+        if(transfers.size == 0) return false;
+        if(fileBandwidth <= 0) return true;
+        refillAllowance();
+        FileTransfer transfer = nextTransfer();
+        return transfer.cancelled || fileAllowance >= Math.min(transfer.length - transfer.position, minChunkSize);
+    }
+
+    /**
+     * Writes the rest of the current file chunk, copying from the file to the socket without passing through the heap.
+     * @return whether the chunk is complete.
+     */
+    private boolean writeChunk(SocketChannel socketChannel) throws IOException{
+        FileTransfer transfer = chunkTransfer;
+        if(transfer == null) return true;
+
+        while(chunkHeader.hasRemaining()){
+            int written = socketChannel.write(chunkHeader);
+            socketWrites++;
+            if(written == 0) return false;
+            bytesSent += written;
+        }
+
+        while(chunkRemaining > 0){
+            long written = transfer.channel.transferTo(transfer.position, chunkRemaining, socketChannel);
+            socketWrites++;
+            if(written == 0){
+                if(transfer.position >= transfer.channel.size())
+                    throw new IOException("File was truncated while being sent: " + transfer);
+                return false;
+            }
+            transfer.position += written;
+            chunkRemaining -= written;
+            bytesSent += written;
+        }
+
+        chunkTransfer = null;
+        if(transfer.position >= transfer.length){
+            transfer.done = true;
+            transfers.remove(transfer);
+            transfer.close();
+        }
+        return true;
+    }
+
+    /**
+     * Queues a file to be sent in chunks, between queued objects. This method is thread safe.
+     */
+    public void sendFile(FileTransfer transfer) throws IOException{
+        if(socketChannel == null)
+            throw new SocketException("Connection is closed.");
+        synchronized(writeLock){
+            transfers.add(transfer);
+            // Written on the update thread, as soon as the socket is writable.
+            selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            selectionKey.selector().wakeup();
+        }
     }
 
     /**
@@ -201,32 +484,66 @@ class TcpConnection{
         if(socketChannel == null)
             throw new SocketException("Connection is closed.");
         synchronized(writeLock){
-
-            int start = writeBuffer.position();
             int lengthLength = serialization.getLengthLength();
+            if(writeBuffer == null) writeBuffer = pool.obtain(lengthLength);
 
-            try{
-                // Leave room for length.
-                writeBuffer.position(writeBuffer.position() + lengthLength);
-
-                // Write data.
-                serialization.write(writeBuffer, object);
-            }catch(Throwable ex){
-                throw new ArcNetException("Error serializing object of type: "
-                + object.getClass().getName(), ex);
+            int start = writeBuffer.position();
+            if(start == 0) queuedTime = System.nanoTime();
+            // Queued data may not exceed the write buffer size, but a single object may be as large as the maximum object size.
+            int maxSize = start == 0 ? Math.max(writeBufferSize, maxObjectSize + lengthLength) : writeBufferSize;
+
+            while(true){
+                try{
+                    // Leave room for length.
+                    writeBuffer.position(start + lengthLength);
+
+                    // Write data.
+                    serialization.write(writeBuffer, object);
+                    break;
+                }catch(Throwable ex){
+                    if(!isOverflow(ex) || writeBuffer.capacity() >= maxSize){
+                        discard(start);
+                        throw new ArcNetException("Error serializing object of type: "
+                        + object.getClass().getName(), ex);
+                    }
+
+                    // Grow and serialize again.
+                    writeBuffer.position(start);
+                    writeBuffer = pool.grow(writeBuffer, Math.min(writeBuffer.capacity() * 2, maxSize));
+                }
             }
             int end = writeBuffer.position();
+            int length = end - lengthLength - start;
+            if(length > maxObjectSize){
+                // The length would not fit in the length bytes, and the other end would not read it anyway.
+                discard(start);
+                throw new ArcNetException("Unable to send object larger than the maximum object size: "
+                + length + " bytes of type: " + object.getClass().getName());
+            }
+            bytesSerialized += length;
+            connection.record(0, writeBuffer, start + lengthLength, length);
+
+            if(compressOutput && compressionThreshold > 0 && length > compressionThreshold){
+                int compressed = writeCompressor.compress(writeBuffer, start + lengthLength, length);
+                if(compressed != -1){
+                    end = start + lengthLength + compressed;
+                    length = compressed | compressedFlag(lengthLength);
+                }
+            }
 
             // Write data length.
             writeBuffer.position(start);
-            serialization.writeLength(writeBuffer, end - lengthLength - start);
+            serialization.writeLength(writeBuffer, length);
             writeBuffer.position(end);
 
-            // Write to socket if no data was queued.
-            if(start == 0 && !writeToSocket()){
-                // A partial write, set OP_WRITE to be notified when more
-                // writing can occur.
+            if(coalesce){
+                // Written by flush(), together with everything else sent before it.
+            }else if(start == 0 && !writeToSocket(false)){
+                // Write to socket if no data was queued.
+                // A partial write or a file chunk in progress, set OP_WRITE
+                // to be notified when more writing can occur.
                 selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                selectionKey.selector().wakeup();
             }else{
                 // Full write, wake up selector so idle event will be fired.
                 selectionKey.selector().wakeup();
@@ -237,7 +554,84 @@ class TcpConnection{
         }
     }
 
+    /**
+     * Writes all queued objects to the socket, if they are not already waiting for it to become writable. Pending file
+     * transfers are resumed by the selecting thread, as the socket becomes writable.
+     * This method is thread safe.
+     */
+    public void flush() throws IOException{
+        synchronized(writeLock){
+            if((writeBuffer == null && transfers.size == 0) || socketChannel == null
+            || (selectionKey.interestOps() & SelectionKey.OP_WRITE) != 0) return;
+
+            if(!writeToSocket(false) || filesReady()){
+                selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                selectionKey.selector().wakeup();
+            }
+            lastWriteTime = System.currentTimeMillis();
+        }
+    }
+
+    /** Drops a partially written object from the write buffer, returning the buffer if nothing else is queued. */
+    private void discard(int start){
+        writeBuffer.position(start);
+        if(start == 0){
+            pool.free(writeBuffer);
+            writeBuffer = null;
+        }
+    }
+
+    private static int compressedFlag(int lengthLength){
+        return 1 << (lengthLength * 8 - 1);
+    }
+
+    /**
+     * @return the largest object length that can be written in the length bytes of the serializer, leaving the highest
+     * bit free to mark compressed objects.
+     */
+    static int maxLength(NetSerializer serialization){
+        int lengthLength = serialization.getLengthLength();
+        return lengthLength >= 4 ? Integer.MAX_VALUE : compressedFlag(lengthLength) - 1;
+    }
+
+    /** @return the number of bytes waiting to be written to the socket. */
+    public int getQueuedBytes(){
+        ByteBuffer buffer = writeBuffer;
+        return buffer == null ? 0 : buffer.position();
+    }
+
+    static boolean isOverflow(Throwable ex){
+        for(Throwable t = ex; t != null; t = t.getCause()){
+            if(t instanceof BufferOverflowException) return true;
+        }
+        return false;
+    }
+
+    private void releaseBuffers(){
+        synchronized(readLock){
+            pool.free(readBuffer);
+            readBuffer = null;
+            currentObjectLength = 0;
+            readingChunkHeader = false;
+            readChunkRemaining = 0;
+            readCompressor.dispose();
+        }
+        synchronized(writeLock){
+            pool.free(writeBuffer);
+            writeBuffer = null;
+            for(FileTransfer transfer : transfers){
+                transfer.close();
+            }
+            transfers.clear();
+            chunkTransfer = null;
+            chunkRemaining = 0;
+            compressInput = compressOutput = false;
+            writeCompressor.dispose();
+        }
+    }
+
     public void close(){
+        releaseBuffers();
         try{
             if(socketChannel != null){
                 socketChannel.close();
@@ -0,0 +1,166 @@
+package io.anuke.arc.net;
+
+import io.anuke.arc.collection.IntMap;
+import io.anuke.arc.func.Prov;
+import io.anuke.arc.util.io.TrafficLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link Server} with client traffic recorded by a
+ * {@link Connection#setRecorder(io.anuke.arc.util.io.TrafficRecorder) recorder},
+ * for repeatable load tests. Logs recorded by a server or by clients can both
+ * be replayed; only objects that were sent to the server are used.
+ * <p>
+ * Each recorded connection is replayed by its own client, connected when its
+ * first object is due. Objects are deserialized with the serializer of the
+ * clients and sent again, at the recorded times scaled by the
+ * {@link #setSpeed(float) speed}, over TCP or UDP as recorded. Framework
+ * messages are left to the clients.
+ */
+public class TrafficReplayer implements Closeable{
+    private final TrafficLog log;
+    private final Prov<Client> clients;
+    private final IntMap<Client> streams = new IntMap<>();
+    private float speed = 1f;
+    private int timeout = 5000;
+    private long objects, bytes, elapsed, maxLag;
+
+    /**
+     * @param clients Creates a client for each recorded connection, with a
+     * serializer that can read the log.
+     */
+    public TrafficReplayer(TrafficLog log, Prov<Client> clients){
+        this.log = log;
+        this.clients = clients;
+    }
+
+    /**
+     * Sets how much faster than recorded objects are sent. 0 sends them as
+     * fast as possible. Defaults to 1.
+     */
+    public void setSpeed(float speed){
+        this.speed = speed;
+    }
+
+    /** Sets the connection timeout of the clients, in milliseconds. */
+    public void setTimeout(int timeout){
+        this.timeout = timeout;
+    }
+
+    /**
+     * Replays the log to a remote server, blocking until every object was
+     * sent. Objects recorded over UDP are sent over TCP if the UDP port is -1.
+     * The clients stay connected until {@link #close()}.
+     */
+    public void replay(String host, int tcpPort, int udpPort) throws IOException{
+        replay(client -> {
+            if(udpPort == -1){
+                client.connect(timeout, host, tcpPort);
+            }else{
+                client.connect(timeout, host, tcpPort, udpPort);
+            }
+        });
+    }
+
+    /**
+     * Replays the log to a server in this process through
+     * {@link Client#connectLocal(int, Server, boolean) serializing local
+     * connections}, so that the server deserializes every object as it would
+     * from a socket.
+     */
+    public void replay(Server server) throws IOException{
+        replay(client -> client.connectLocal(timeout, server, true));
+    }
+
+    private void replay(Connector connector) throws IOException{
+        log.rewind();
+        objects = bytes = maxLag = 0;
+
+        long first = -1, start = System.nanoTime();
+        while(log.next()){
+            if(!log.isToServer()) continue;
+
+            Client client = streams.get(log.getStream());
+            if(client == null){
+                client = clients.get();
+                client.start();
+                connector.connect(client);
+                streams.put(log.getStream(), client);
+            }
+
+            int length = log.getData().remaining();
+            Object object = client.getSerialization().read(log.getData());
+            if(object instanceof FrameworkMessage) continue;
+
+            if(first == -1) first = log.getTime();
+            if(speed > 0){
+                long due = start + (long)((log.getTime() - first) / speed);
+                long lag = awaitTime(due);
+                maxLag = Math.max(maxLag, lag);
+            }
+
+            if(log.isUnreliable() && client.udp != null){
+                client.sendUDP(object);
+            }else{
+                client.sendTCP(object);
+            }
+            objects++;
+            bytes += length;
+        }
+        elapsed = System.nanoTime() - start;
+    }
+
+    /** @return how late the time was when it was reached, in nanoseconds. */
+    private static long awaitTime(long time){
+        long remaining;
+        while((remaining = time - System.nanoTime()) > 0){
+            //sleep most of the wait, and spin the rest for precision
+            if(remaining > 2000000){
+                LockSupport.parkNanos(remaining - 1000000);
+            }else{
+                Thread.yield();
+            }
+        }
+        return -remaining;
+    }
+
+    /** @return the number of objects sent by the last replay. */
+    public long getObjects(){
+        return objects;
+    }
+
+    /** @return the number of serialized bytes sent by the last replay. */
+    public long getBytes(){
+        return bytes;
+    }
+
+    /** @return how long the last replay took, in nanoseconds. */
+    public long getElapsed(){
+        return elapsed;
+    }
+
+    /**
+     * @return the most an object of the last replay was sent after its
+     * scaled recorded time, in nanoseconds. High values mean the clients could
+     * not keep up with the speed.
+     */
+    public long getMaxLag(){
+        return maxLag;
+    }
+
+    /** Stops all clients. */
+    @Override
+    public void close(){
+        for(Client client : streams.values()){
+            client.stop();
+        }
+        streams.clear();
+    }
+
+    private interface Connector{
+        void connect(Client client) throws IOException;
+    }
+}
@@ -19,6 +19,8 @@
 
 package io.anuke.arc.net;
 
+import io.anuke.arc.util.io.TrafficRecorder;
+
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
@@ -32,6 +34,8 @@ class UdpConnection{
     DatagramChannel datagramChannel;
     int keepAliveMillis = 19000;
     final ByteBuffer readBuffer, writeBuffer;
+    /** Number of bytes the last object was read from. */
+    int lastReadLength;
     private final NetSerializer serialization;
     private SelectionKey selectionKey;
     private final Object writeLock = new Object();
@@ -93,9 +97,12 @@ class UdpConnection{
         return connectedAddress;
     }
 
-    public Object readObject(){
+    /** @param from The connection the object was received from, if known. */
+    public Object readObject(Connection from){
         readBuffer.flip();
+        lastReadLength = readBuffer.limit();
         try{
+            if(from != null) from.record(TrafficRecorder.inbound | TrafficRecorder.unreliable, readBuffer, 0, lastReadLength);
             try{
                 Object object = serialization.read(readBuffer);
                 if(readBuffer.hasRemaining())
@@ -115,7 +122,7 @@ class UdpConnection{
     /**
      * This method is thread safe.
      */
-    public int send(Object object, SocketAddress address) throws IOException{
+    public int send(Connection from, Object object, SocketAddress address) throws IOException{
         DatagramChannel datagramChannel = this.datagramChannel;
         if(datagramChannel == null)
             throw new SocketException("Connection is closed.");
@@ -128,6 +135,7 @@ class UdpConnection{
                 }
                 writeBuffer.flip();
                 int length = writeBuffer.limit();
+                from.record(TrafficRecorder.unreliable, writeBuffer, 0, length);
                 datagramChannel.send(writeBuffer, address);
 
                 lastCommunicationTime = System.currentTimeMillis();
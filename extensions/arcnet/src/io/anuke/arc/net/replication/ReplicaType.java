@@ -0,0 +1,185 @@
+package io.anuke.arc.net.replication;
+
+import io.anuke.arc.collection.Array;
+import io.anuke.arc.func.*;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describes which fields of a class are replicated, and how to create instances of it on clients. The server and clients
+ * must register the same types with the same fields, in the same order.
+ * <p>
+ * Field values are compared between snapshots, and only fields that changed since the last snapshot a client acknowledged
+ * are sent to it. A type can have at most 64 fields.
+ */
+public class ReplicaType<T>{
+    final Class<T> type;
+    final Prov<T> creator;
+    final Array<Field<T>> fields = new Array<>();
+    Floatf<T> x, y;
+    float priority = 1f;
+    int id;
+
+    /** @param creator Creates instances on clients. */
+    public ReplicaType(Class<T> type, Prov<T> creator){
+        this.type = type;
+        this.creator = creator;
+    }
+
+    public ReplicaType<T> addFloat(Floatf<T> getter, FloatSetter<T> setter){
+        return add(new Field<T>(){
+            long get(T entity){
+                return Float.floatToIntBits(getter.get(entity));
+            }
+
+            void set(T entity, long value){
+                setter.set(entity, Float.intBitsToFloat((int)value));
+            }
+
+            void write(ByteBuffer buffer, long value){
+                buffer.putInt((int)value);
+            }
+
+            long read(ByteBuffer buffer){
+                return buffer.getInt();
+            }
+        });
+    }
+
+    public ReplicaType<T> addInt(Intf<T> getter, IntSetter<T> setter){
+        return add(new Field<T>(){
+            long get(T entity){
+                return getter.get(entity);
+            }
+
+            void set(T entity, long value){
+                setter.set(entity, (int)value);
+            }
+
+            void write(ByteBuffer buffer, long value){
+                Varints.write(buffer, Varints.zigZag(value));
+            }
+
+            long read(ByteBuffer buffer){
+                return Varints.unZigZag(Varints.read(buffer));
+            }
+        });
+    }
+
+    public ReplicaType<T> addBool(Boolf<T> getter, BoolSetter<T> setter){
+        return add(new Field<T>(){
+            long get(T entity){
+                return getter.get(entity) ? 1 : 0;
+            }
+
+            void set(T entity, long value){
+                setter.set(entity, value != 0);
+            }
+
+            void write(ByteBuffer buffer, long value){
+                buffer.put((byte)value);
+            }
+
+            long read(ByteBuffer buffer){
+                return buffer.get();
+            }
+        });
+    }
+
+    /**
+     * Sets the position used for interest management. Types without a position are sent to every client, regardless of
+     * its view.
+     */
+    public ReplicaType<T> position(Floatf<T> x, Floatf<T> y){
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    /**
+     * Sets how much the priority of instances increases every update in which they have changes that are not sent. When
+     * the bandwidth of a client is limited, instances with the highest accumulated priority are sent first. Defaults to 1.
+     */
+    public ReplicaType<T> priority(float priority){
+        this.priority = priority;
+        return this;
+    }
+
+    public Class<T> getType(){
+        return type;
+    }
+
+    public int getFieldCount(){
+        return fields.size;
+    }
+
+    private ReplicaType<T> add(Field<T> field){
+        if(fields.size >= 64) throw new IllegalArgumentException("A replicated type can have at most 64 fields: " + type.getName());
+        fields.add(field);
+        return this;
+    }
+
+    /** Reads the values of all fields into the array. */
+    @SuppressWarnings("unchecked")
+    void sample(Object entity, long[] values, int offset){
+        for(int i = 0; i < fields.size; i++){
+            values[offset + i] = fields.get(i).get((T)entity);
+        }
+    }
+
+    /** Sets the fields in the mask to their values in the array. */
+    @SuppressWarnings("unchecked")
+    void apply(Object entity, long[] values, int offset, long mask){
+        for(int i = 0; i < fields.size; i++){
+            if((mask & (1L << i)) != 0) fields.get(i).set((T)entity, values[offset + i]);
+        }
+    }
+
+    /** @return a mask of the fields that differ between the two value ranges. */
+    long diff(long[] values, int offset, long[] baseline, int baselineOffset){
+        long mask = 0;
+        for(int i = 0; i < fields.size; i++){
+            if(values[offset + i] != baseline[baselineOffset + i]) mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    long fullMask(){
+        return fields.size == 64 ? -1L : (1L << fields.size) - 1;
+    }
+
+    void write(ByteBuffer buffer, long[] values, int offset, long mask){
+        for(int i = 0; i < fields.size; i++){
+            if((mask & (1L << i)) != 0) fields.get(i).write(buffer, values[offset + i]);
+        }
+    }
+
+    void read(ByteBuffer buffer, long[] values, int offset, long mask){
+        for(int i = 0; i < fields.size; i++){
+            if((mask & (1L << i)) != 0) values[offset + i] = fields.get(i).read(buffer);
+        }
+    }
+
+    /** A replicated field. Values of all kinds are stored as longs, so they can be compared without boxing. */
+    abstract static class Field<T>{
+        abstract long get(T entity);
+
+        abstract void set(T entity, long value);
+
+        abstract void write(ByteBuffer buffer, long value);
+
+        abstract long read(ByteBuffer buffer);
+    }
+
+    public interface FloatSetter<T>{
+        void set(T entity, float value);
+    }
+
+    public interface IntSetter<T>{
+        void set(T entity, int value);
+    }
+
+    public interface BoolSetter<T>{
+        void set(T entity, boolean value);
+    }
+}
@@ -0,0 +1,253 @@
+package io.anuke.arc.net.replication;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.func.Cons;
+import io.anuke.arc.net.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static io.anuke.arc.net.replication.Replicator.*;
+
+/**
+ * Receives objects replicated by a {@link Replicator}. Add this as a listener of the {@link Client}, and call
+ * {@link #update()} once per tick on the thread that uses the objects; received snapshots are only applied there.
+ * <p>
+ * Objects are created with the {@link ReplicaType} creators when they are first received, and discarded when the server
+ * removes them or the connection is lost.
+ */
+public class Replicas implements NetListener{
+    private final ReplicaType<?>[] types;
+    private final IntMap<Replica> replicas = new IntMap<>();
+    /** Frames in which objects were removed, so that records reordered behind the removal are ignored. */
+    private final IntIntMap removed = new IntIntMap();
+    private final ConcurrentLinkedQueue<SnapshotMessage> pending = new ConcurrentLinkedQueue<>();
+    private final Array<Replica> discarded = new Array<>();
+    private final IntArray pruned = new IntArray();
+    private volatile Connection connection;
+    private volatile boolean cleared;
+    private ReplicaListener listener;
+    private long[] values = new long[64], changed = new long[64];
+    private int lastFrame;
+    private boolean udp;
+
+    /** @param types The replicated types, in the same order as those of the server. */
+    public Replicas(ReplicaType<?>... types){
+        this.types = types;
+        for(int i = 0; i < types.length; i++){
+            types[i].id = i;
+        }
+    }
+
+    /** Sets the listener notified on the updating thread when objects are created and removed. */
+    public void setListener(ReplicaListener listener){
+        this.listener = listener;
+    }
+
+    /** Sets whether acknowledgements are sent over UDP. Defaults to false. */
+    public void setUDP(boolean udp){
+        this.udp = udp;
+    }
+
+    /** Applies all received snapshots. */
+    public void update(){
+        if(cleared){
+            cleared = false;
+            clear();
+        }
+
+        SnapshotMessage message;
+        while((message = pending.poll()) != null){
+            int frame = apply(ByteBuffer.wrap(message.data));
+            Connection connection = this.connection;
+            if(frame < 0 || connection == null) continue;
+
+            //acknowledge only once applied, so that the server never uses a baseline missing here
+            if(udp){
+                connection.sendUDP(new SnapshotAck(frame));
+            }else{
+                connection.sendTCP(new SnapshotAck(frame));
+            }
+        }
+    }
+
+    /** @return the replicated object with this ID, or null. */
+    @SuppressWarnings("unchecked")
+    public <T> T get(int id){
+        Replica replica = replicas.get(id);
+        return replica == null ? null : (T)replica.entity;
+    }
+
+    public void each(Cons<Object> cons){
+        for(Replica replica : replicas.values()){
+            cons.get(replica.entity);
+        }
+    }
+
+    public int size(){
+        return replicas.size;
+    }
+
+    /** @return the frame of the newest applied snapshot. */
+    public int getFrame(){
+        return lastFrame;
+    }
+
+    @Override
+    public void connected(Connection connection){
+        this.connection = connection;
+    }
+
+    @Override
+    public void disconnected(Connection connection, DcReason reason){
+        this.connection = null;
+        pending.clear();
+        cleared = true;
+    }
+
+    @Override
+    public void received(Connection connection, Object object){
+        if(object instanceof SnapshotMessage){
+            this.connection = connection;
+            pending.add((SnapshotMessage)object);
+        }
+    }
+
+    /** @return the frame of the snapshot, or -1 if it could not be applied completely. */
+    private int apply(ByteBuffer buffer){
+        int frame = Varints.readInt(buffer);
+        int count = buffer.getInt();
+        boolean complete = true;
+
+        for(int i = 0; i < count; i++){
+            int id = Varints.readInt(buffer);
+            byte kind = buffer.get();
+            Replica replica = replicas.get(id);
+
+            if(kind == recordRemove){
+                if(replica != null && frame > replica.lastFrame){
+                    replicas.remove(id);
+                    removed.put(id, frame);
+                    if(listener != null) listener.removed(id, replica.entity);
+                }
+                continue;
+            }
+
+            ReplicaType<?> type;
+            int baseline = -1;
+            long mask;
+
+            if(kind == recordFull){
+                int typeID = Varints.readInt(buffer);
+                //malformed snapshot; it is not acknowledged, so the server keeps sending full state
+                if(typeID >= types.length) return -1;
+                type = types[typeID];
+                mask = type.fullMask();
+            }else{
+                //the fields of an unknown object cannot be skipped, so the rest of the snapshot is lost
+                if(replica == null) return -1;
+                type = replica.type;
+                baseline = frame - Varints.readInt(buffer);
+                mask = Varints.read(buffer);
+            }
+
+            int fields = type.fields.size;
+            if(values.length < fields){
+                values = new long[fields];
+                changed = new long[fields];
+            }
+            type.read(buffer, changed, 0, mask);
+
+            if(frame <= removed.get(id, -1)) continue;
+
+            if(replica == null){
+                replica = new Replica(id, type, type.creator.get());
+                replicas.put(id, replica);
+            }else if(baseline >= 0){
+                int slot = baseline % history;
+                //the baseline is gone; the snapshot is not acknowledged, so the server's baseline ages out into full state
+                if(replica.frames[slot] != baseline){
+                    complete = false;
+                    continue;
+                }
+
+                //unchanged fields come from the baseline
+                System.arraycopy(replica.states, slot * fields, values, 0, fields);
+            }
+
+            for(int f = 0; f < fields; f++){
+                if((mask & (1L << f)) != 0) values[f] = changed[f];
+            }
+            replica.store(frame, values);
+
+            if(frame > replica.lastFrame){
+                boolean created = replica.lastFrame == 0;
+                type.apply(replica.entity, values, 0, created ? type.fullMask() : mask);
+                replica.lastFrame = frame;
+                if(created && listener != null) listener.created(id, replica.entity);
+            }
+        }
+
+        if(frame > lastFrame){
+            lastFrame = frame;
+            if(removed.size > 64) pruneRemoved();
+        }
+        return complete ? frame : -1;
+    }
+
+    private void pruneRemoved(){
+        pruned.clear();
+        for(IntIntMap.Entry entry : removed.entries()){
+            if(lastFrame - entry.value > history * 2) pruned.add(entry.key);
+        }
+        for(int i = 0; i < pruned.size; i++){
+            removed.remove(pruned.get(i), 0);
+        }
+    }
+
+    private void clear(){
+        for(Replica replica : replicas.values()){
+            discarded.add(replica);
+        }
+        replicas.clear();
+        removed.clear();
+        lastFrame = 0;
+        if(listener != null){
+            for(Replica replica : discarded){
+                listener.removed(replica.id, replica.entity);
+            }
+        }
+        discarded.clear();
+    }
+
+    /** A received object and its recent states. */
+    static class Replica{
+        final int id;
+        final ReplicaType<?> type;
+        final Object entity;
+        final long[] states;
+        final int[] frames = new int[history];
+        int lastFrame;
+
+        Replica(int id, ReplicaType<?> type, Object entity){
+            this.id = id;
+            this.type = type;
+            this.entity = entity;
+            this.states = new long[history * type.fields.size];
+        }
+
+        void store(int frame, long[] values){
+            int slot = frame % history, fields = type.fields.size;
+            System.arraycopy(values, 0, states, slot * fields, fields);
+            frames[slot] = frame;
+        }
+    }
+
+    public interface ReplicaListener{
+        default void created(int id, Object entity){
+        }
+
+        default void removed(int id, Object entity){
+        }
+    }
+}
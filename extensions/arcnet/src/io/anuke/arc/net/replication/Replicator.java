@@ -0,0 +1,396 @@
+package io.anuke.arc.net.replication;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.net.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Replicates the state of registered objects from a server to its clients, which receive it with {@link Replicas}.
+ * Add this as a listener of the {@link Server}, and call {@link #update()} once per tick on the thread that changes the
+ * objects.
+ * <p>
+ * Every update, the fields of all objects are sampled. Each client is then sent a snapshot containing, for each object it
+ * is interested in, the fields that changed since the last snapshot it acknowledged that contained the object. Objects
+ * it has not acknowledged yet are sent in full. Because snapshots are encoded against acknowledged baselines, lost
+ * snapshots need not be resent, so they can be sent over UDP.
+ * <p>
+ * Clients with a {@link #setView(Connection, float, float, float) view} only get objects within range of it, and are
+ * told to remove objects that leave it. With a {@link #setBandwidth(int) bandwidth limit}, objects that do not fit into a
+ * snapshot accumulate priority, so that every object is eventually sent.
+ */
+public class Replicator implements NetListener{
+    /** Number of frames of state kept, which is how old a baseline can be. */
+    static final int history = 32;
+    /** Record kinds. */
+    static final byte recordDelta = 0, recordFull = 1, recordRemove = 2;
+
+    private final ReplicaType<?>[] types;
+    private final ObjectMap<Class<?>, ReplicaType<?>> typeMap = new ObjectMap<>();
+    private final IntMap<Entry> entities = new IntMap<>();
+    private final Array<Entry> entries = new Array<>(false, 64, Entry.class);
+    private final ConcurrentHashMap<Connection, ClientState> clients = new ConcurrentHashMap<>();
+    private final Array<Known> candidates = new Array<>(false, 64, Known.class);
+    private final Array<Known> removals = new Array<>(false, 16, Known.class);
+    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+    private int frame, nextID = 1;
+    private int bandwidth;
+    private boolean udp;
+    private long lastUpdate;
+
+    /** @param types The replicated types, in the same order as those of the clients. */
+    public Replicator(ReplicaType<?>... types){
+        this.types = types;
+        for(int i = 0; i < types.length; i++){
+            types[i].id = i;
+            typeMap.put(types[i].type, types[i]);
+        }
+    }
+
+    /**
+     * Starts replicating an object.
+     * @return the ID of the object, which is the same on clients.
+     * @throws IllegalArgumentException if the class of the object was not registered.
+     */
+    public int add(Object entity){
+        ReplicaType<?> type = typeMap.get(entity.getClass());
+        if(type == null) throw new IllegalArgumentException("Class is not replicated: " + entity.getClass().getName());
+
+        Entry entry = new Entry(nextID++, entity, type);
+        entities.put(entry.id, entry);
+        entries.add(entry);
+        return entry.id;
+    }
+
+    /** Stops replicating an object, and removes it from clients. */
+    public void remove(int id){
+        Entry entry = entities.remove(id);
+        if(entry != null){
+            entry.removed = true;
+            entries.remove(entry);
+        }
+    }
+
+    /** @return the replicated object with this ID, or null. */
+    @SuppressWarnings("unchecked")
+    public <T> T get(int id){
+        Entry entry = entities.get(id);
+        return entry == null ? null : (T)entry.entity;
+    }
+
+    public int size(){
+        return entries.size;
+    }
+
+    /** @return the number of the last update. Snapshots are numbered by the update they were sent in. */
+    public int getFrame(){
+        return frame;
+    }
+
+    /**
+     * Limits the bytes per second of snapshot data sent to each new client. Objects that do not fit are sent in a later
+     * update, in order of accumulated priority. 0 for no limit, the default.
+     */
+    public void setBandwidth(int bytesPerSecond){
+        this.bandwidth = bytesPerSecond;
+    }
+
+    /** Limits the bytes per second of snapshot data sent to a client. */
+    public void setBandwidth(Connection connection, int bytesPerSecond){
+        ClientState client = clients.get(connection);
+        if(client != null) client.bandwidth = bytesPerSecond;
+    }
+
+    /**
+     * Sets whether snapshots are sent over UDP. All connections must then have UDP, and the UDP object buffer must be
+     * large enough for the snapshots, which can be bounded with a bandwidth limit. Defaults to false.
+     */
+    public void setUDP(boolean udp){
+        this.udp = udp;
+    }
+
+    /**
+     * Limits the objects sent to a client to those within range of a point, in the units of the type
+     * {@link ReplicaType#position(io.anuke.arc.func.Floatf, io.anuke.arc.func.Floatf) positions}.
+     * Objects without a position are always sent.
+     */
+    public void setView(Connection connection, float x, float y, float range){
+        ClientState client = clients.get(connection);
+        if(client == null) return;
+        client.viewX = x;
+        client.viewY = y;
+        client.viewRange = range;
+        client.hasView = true;
+    }
+
+    /** Removes the view of a client, so that it is sent all objects. */
+    public void clearView(Connection connection){
+        ClientState client = clients.get(connection);
+        if(client != null) client.hasView = false;
+    }
+
+    /** Samples all objects and sends a snapshot to every client. */
+    public void update(){
+        long time = System.nanoTime();
+        float delta = lastUpdate == 0 ? 0f : Math.min((time - lastUpdate) / 1000000000f, 1f);
+        lastUpdate = time;
+
+        frame++;
+        int slot = frame % history;
+        Entry[] items = entries.items;
+        for(int i = 0; i < entries.size; i++){
+            Entry entry = items[i];
+            entry.type.sample(entry.entity, entry.states, slot * entry.type.fields.size);
+            entry.frames[slot] = frame;
+            if(entry.type.x != null){
+                entry.x = sampleX(entry);
+                entry.y = sampleY(entry);
+            }
+        }
+
+        for(ClientState client : clients.values()){
+            if(client.connection.isConnected()) send(client, delta);
+        }
+    }
+
+    @Override
+    public void connected(Connection connection){
+        ClientState client = new ClientState(connection);
+        client.bandwidth = bandwidth;
+        clients.put(connection, client);
+    }
+
+    @Override
+    public void disconnected(Connection connection, DcReason reason){
+        clients.remove(connection);
+    }
+
+    @Override
+    public void received(Connection connection, Object object){
+        if(object instanceof SnapshotAck){
+            ClientState client = clients.get(connection);
+            if(client != null) client.acks.add(((SnapshotAck)object).frame);
+        }
+    }
+
+    private void send(ClientState client, float delta){
+        Integer ack;
+        while((ack = client.acks.poll()) != null){
+            acknowledge(client, ack);
+        }
+
+        int slot = frame % history;
+        IntArray sent = client.sent[slot];
+        sent.clear();
+        client.sentFrames[slot] = frame;
+        candidates.clear();
+        removals.clear();
+
+        Entry[] items = entries.items;
+        for(int i = 0; i < entries.size; i++){
+            Entry entry = items[i];
+            if(!interested(client, entry)) continue;
+
+            Known known = client.known.get(entry.id);
+            if(known == null){
+                known = new Known(entry, frame);
+                client.known.put(entry.id, known);
+            }else if(known.removing){
+                //came back into view before the removal was acknowledged; send it again from scratch
+                known.removing = false;
+                known.acked = -1;
+                known.since = frame;
+            }
+
+            ReplicaType<?> type = entry.type;
+            int fields = type.fields.size, baseline = known.acked;
+            if(baseline >= 0 && frame - baseline < history && entry.frames[baseline % history] == baseline){
+                known.mask = type.diff(entry.states, slot * fields, entry.states, (baseline % history) * fields);
+                known.full = false;
+                if(known.mask == 0){
+                    known.priority = 0f;
+                    continue;
+                }
+            }else{
+                known.mask = type.fullMask();
+                known.full = true;
+            }
+            known.priority += type.priority;
+            candidates.add(known);
+        }
+
+        for(Known known : client.known.values()){
+            if(known.entry.removed || !interested(client, known.entry)){
+                known.removing = true;
+                removals.add(known);
+            }
+        }
+
+        if(candidates.size == 0 && removals.size == 0) return;
+
+        if(client.bandwidth > 0){
+            //allow bursts of a quarter second
+            client.allowance = Math.min(client.allowance + client.bandwidth * delta, client.bandwidth / 4f);
+        }
+
+        buffer.clear();
+        Varints.write(buffer, frame);
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+        int count = 0;
+
+        //removals are small and always sent, so that clients do not keep stale objects
+        for(int i = 0; i < removals.size; i++){
+            Known known = removals.get(i);
+            ensureCapacity(16);
+            Varints.write(buffer, known.entry.id);
+            buffer.put(recordRemove);
+            sent.add(-known.entry.id);
+            count++;
+        }
+
+        candidates.sort(Replicator::compare);
+        for(int i = 0; i < candidates.size; i++){
+            if(client.bandwidth > 0 && client.allowance <= 0) break;
+
+            Known known = candidates.get(i);
+            Entry entry = known.entry;
+            ReplicaType<?> type = entry.type;
+            int fields = type.fields.size;
+            ensureCapacity(32 + fields * 10);
+
+            int start = buffer.position();
+            Varints.write(buffer, entry.id);
+            if(known.full){
+                buffer.put(recordFull);
+                Varints.write(buffer, type.id);
+            }else{
+                buffer.put(recordDelta);
+                Varints.write(buffer, frame - known.acked);
+                Varints.write(buffer, known.mask);
+            }
+            type.write(buffer, entry.states, slot * fields, known.mask);
+
+            if(client.bandwidth > 0) client.allowance -= buffer.position() - start;
+            known.priority = 0f;
+            sent.add(entry.id);
+            count++;
+        }
+
+        buffer.putInt(countPosition, count);
+        byte[] data = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(data);
+
+        SnapshotMessage message = new SnapshotMessage(data);
+        if(udp){
+            client.connection.sendUDP(message);
+        }else{
+            client.connection.sendTCP(message);
+        }
+    }
+
+    private void acknowledge(ClientState client, int ackFrame){
+        int slot = ackFrame % history;
+        if(ackFrame <= 0 || client.sentFrames[slot] != ackFrame) return;
+        client.sentFrames[slot] = -1;
+
+        IntArray ids = client.sent[slot];
+        for(int i = 0; i < ids.size; i++){
+            int id = ids.get(i);
+            Known known = client.known.get(Math.abs(id));
+            if(known == null || ackFrame < known.since) continue;
+
+            if(id < 0){
+                if(known.removing) client.known.remove(-id);
+            }else if(!known.removing && ackFrame > known.acked){
+                known.acked = ackFrame;
+            }
+        }
+    }
+
+    private boolean interested(ClientState client, Entry entry){
+        if(!client.hasView || entry.type.x == null) return true;
+        float dx = entry.x - client.viewX, dy = entry.y - client.viewY;
+        return dx * dx + dy * dy <= client.viewRange * client.viewRange;
+    }
+
+    private void ensureCapacity(int bytes){
+        if(buffer.remaining() < bytes){
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static float sampleX(Entry entry){
+        return ((ReplicaType<Object>)entry.type).x.get(entry.entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static float sampleY(Entry entry){
+        return ((ReplicaType<Object>)entry.type).y.get(entry.entity);
+    }
+
+    private static int compare(Known a, Known b){
+        return Float.compare(b.priority, a.priority);
+    }
+
+    /** A replicated object and its recent states. */
+    static class Entry{
+        final int id;
+        final Object entity;
+        final ReplicaType<?> type;
+        final long[] states;
+        final int[] frames = new int[history];
+        float x, y;
+        boolean removed;
+
+        Entry(int id, Object entity, ReplicaType<?> type){
+            this.id = id;
+            this.entity = entity;
+            this.type = type;
+            this.states = new long[history * type.fields.size];
+        }
+    }
+
+    /** What a client knows about an object. */
+    static class Known{
+        final Entry entry;
+        /** The last acknowledged frame containing the object, or -1. */
+        int acked = -1;
+        /** Frame since which acknowledgements are valid; older ones may refer to an earlier removal. */
+        int since;
+        boolean removing;
+        float priority;
+        long mask;
+        boolean full;
+
+        Known(Entry entry, int since){
+            this.entry = entry;
+            this.since = since;
+        }
+    }
+
+    static class ClientState{
+        final Connection connection;
+        final IntMap<Known> known = new IntMap<>();
+        final ConcurrentLinkedQueue<Integer> acks = new ConcurrentLinkedQueue<>();
+        final int[] sentFrames = new int[history];
+        final IntArray[] sent = new IntArray[history];
+        float viewX, viewY, viewRange, allowance;
+        boolean hasView;
+        int bandwidth;
+
+        ClientState(Connection connection){
+            this.connection = connection;
+            for(int i = 0; i < history; i++){
+                sent[i] = new IntArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.anuke.arc.net.replication;
+
+/**
+ * Sent by {@link Replicas} when a snapshot was received, so that the server can encode later snapshots against it. The
+ * serializers of both ends must support this class, by writing the frame as an int.
+ */
+public class SnapshotAck{
+    public int frame;
+
+    public SnapshotAck(){
+    }
+
+    public SnapshotAck(int frame){
+        this.frame = frame;
+    }
+}
@@ -0,0 +1,17 @@
+package io.anuke.arc.net.replication;
+
+/**
+ * Sent by a {@link Replicator} to each client every update. The serializers of both ends must support this class, by writing
+ * the data as a length followed by the bytes.
+ */
+public class SnapshotMessage{
+    /** The encoded snapshot. Owned by this message. */
+    public byte[] data;
+
+    public SnapshotMessage(){
+    }
+
+    public SnapshotMessage(byte[] data){
+        this.data = data;
+    }
+}
@@ -0,0 +1,40 @@
+package io.anuke.arc.net.replication;
+
+import io.anuke.arc.net.ArcNetException;
+
+import java.nio.ByteBuffer;
+
+/** Variable length encoding of non-negative numbers, 7 bits per byte. */
+final class Varints{
+
+    static void write(ByteBuffer buffer, long value){
+        while((value & ~0x7FL) != 0){
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    static long read(ByteBuffer buffer){
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            byte b = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new ArcNetException("Malformed variable length number.");
+    }
+
+    static int readInt(ByteBuffer buffer){
+        return (int)read(buffer);
+    }
+
+    /** Maps signed values to unsigned ones, so that small negative values stay small. */
+    static long zigZag(long value){
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value){
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,162 @@
+package net;
+
+import io.anuke.arc.func.Boolp;
+import io.anuke.arc.net.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest{
+    static final int port = 54780;
+
+    private volatile DcReason serverReason, clientReason;
+
+    @Test
+    public void cutsSlabs(){
+        BufferPool pool = new BufferPool(true, 1024, 16 * 1024);
+        ByteBuffer first = pool.obtain(1000);
+        assertEquals(1024, first.capacity());
+        assertTrue(first.isDirect());
+        assertEquals(16 * 1024, pool.getReservedBytes());
+
+        //the rest of the slab serves the same size
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for(int i = 1; i < 16; i++){
+            buffers.add(pool.obtain(1024));
+        }
+        assertEquals(16 * 1024, pool.getReservedBytes());
+        assertEquals(16, pool.getBorrowed());
+        assertEquals(16 * 1024, pool.getUsedBytes());
+
+        buffers.add(pool.obtain(1024));
+        assertEquals(32 * 1024, pool.getReservedBytes());
+
+        //freed buffers are reused
+        pool.free(first);
+        for(ByteBuffer buffer : buffers){
+            pool.free(buffer);
+        }
+        assertEquals(0, pool.getBorrowed());
+        assertEquals(0, pool.getUsedBytes());
+        assertEquals(17 * 1024, pool.getPeakUsedBytes());
+        pool.obtain(512);
+        assertEquals(32 * 1024, pool.getReservedBytes());
+
+        //buffers above the slab size are not kept
+        ByteBuffer large = pool.obtain(20000);
+        assertEquals(32 * 1024, large.capacity());
+        assertEquals(64 * 1024, pool.getReservedBytes());
+        pool.free(large);
+        assertEquals(32 * 1024, pool.getReservedBytes());
+
+        try{
+            pool.free(ByteBuffer.allocate(1000));
+            fail("Foreign buffers must be rejected");
+        }catch(IllegalArgumentException ignored){
+        }
+    }
+
+    @Test
+    public void growsKeepingContents(){
+        BufferPool pool = new BufferPool(false, 64, 1024);
+        ByteBuffer buffer = pool.obtain(64);
+        assertTrue(buffer.hasArray());
+        for(int i = 0; i < 64; i++){
+            buffer.put((byte)i);
+        }
+
+        ByteBuffer grown = pool.grow(buffer, 100);
+        assertEquals(128, grown.capacity());
+        assertEquals(64, grown.position());
+        for(int i = 0; i < 64; i++){
+            assertEquals(i, grown.get(i));
+        }
+        assertEquals(1, pool.getBorrowed());
+        assertEquals(128, pool.getUsedBytes());
+
+        //the old buffer went back to the pool
+        assertSame(buffer, pool.obtain(10));
+    }
+
+    @Test
+    public void largeObjectsRoundTrip() throws IOException{
+        BufferPool pool = new BufferPool(true, 1024, 8192);
+        List<Object> serverReceived = Collections.synchronizedList(new ArrayList<>());
+        List<Object> clientReceived = Collections.synchronizedList(new ArrayList<>());
+
+        Server server = new Server(8192, 2048, new TestSerializer());
+        server.setBufferPool(pool);
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof byte[]){
+                    serverReceived.add(object);
+                    connection.sendTCP(object);
+                }
+            }
+
+            @Override
+            public void disconnected(Connection connection, DcReason reason){
+                serverReason = reason;
+            }
+        });
+        server.bind(port);
+        server.start();
+
+        Client client = new Client(8192, 2048, new TestSerializer());
+        client.setBufferPool(pool);
+        client.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof byte[]) clientReceived.add(object);
+            }
+
+            @Override
+            public void disconnected(Connection connection, DcReason reason){
+                clientReason = reason;
+            }
+        });
+        client.start();
+
+        try{
+            client.connect(5000, "localhost", port);
+
+            //larger than the object buffers and the slabs, so the buffers grow on both ends
+            byte[] large = new byte[30000];
+            new Random(2).nextBytes(large);
+            client.sendTCP(large);
+            client.sendTCP(new byte[]{1, 2, 3});
+            await(() -> clientReceived.size() == 2);
+            assertArrayEquals(large, (byte[])serverReceived.get(0));
+            assertArrayEquals(large, (byte[])clientReceived.get(0));
+            assertArrayEquals(new byte[]{1, 2, 3}, (byte[])clientReceived.get(1));
+            assertTrue(pool.getPeakUsedBytes() >= 32 * 1024);
+
+            //the length of this one does not fit in 2 bytes, so it is rejected instead of corrupting the stream
+            assertEquals(0, client.sendTCP(new byte[40000]));
+            await(() -> serverReason != null && clientReason != null);
+            assertEquals(DcReason.error, clientReason);
+            assertEquals(DcReason.closed, serverReason);
+            assertEquals(2, serverReceived.size());
+        }finally{
+            client.stop();
+            server.stop();
+            client.dispose();
+            server.dispose();
+        }
+        //every buffer was returned
+        assertEquals(0, pool.getBorrowed());
+    }
+
+    private static void await(Boolp condition){
+        long end = System.currentTimeMillis() + 5000;
+        while(!condition.get()){
+            if(System.currentTimeMillis() > end) fail("timed out");
+            Thread.yield();
+        }
+    }
+}
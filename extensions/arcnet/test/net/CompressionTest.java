@@ -0,0 +1,298 @@
+package net;
+
+import io.anuke.arc.func.Boolp;
+import io.anuke.arc.net.*;
+import io.anuke.arc.net.FrameworkMessage.EnableCompression;
+import io.anuke.arc.net.FrameworkMessage.RegisterTCP;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+/** Checks the negotiation and wire format of compressed frames, and coalesced writes. */
+public class CompressionTest{
+    static final int port = 54781;
+    static final int flag = 0x8000;
+
+    private final TestSerializer serializer = new TestSerializer();
+    private final List<Object> serverReceived = Collections.synchronizedList(new ArrayList<>());
+    private final List<Object> clientReceived = Collections.synchronizedList(new ArrayList<>());
+    private Server server;
+    private Client client;
+    private ServerSocket raw;
+
+    @After
+    public void teardown() throws IOException{
+        if(client != null){
+            client.stop();
+            client.dispose();
+        }
+        if(server != null){
+            server.stop();
+            server.dispose();
+        }
+        if(raw != null) raw.close();
+    }
+
+    @Test
+    public void negotiates() throws IOException{
+        assertCompressed(100, 100, true);
+        assertCompressed(100, 0, false);
+        assertCompressed(0, 100, false);
+    }
+
+    private void assertCompressed(int serverThreshold, int clientThreshold, boolean compressed) throws IOException{
+        teardown();
+        serverReceived.clear();
+        startServer(serverThreshold);
+        startClient(clientThreshold);
+        client.connect(5000, "localhost", port);
+        Connection connection = server.getConnections()[0];
+
+        //objects sent after the request and its reply arrive after them, so both ends have agreed once these are received
+        client.sendTCP(1);
+        await(() -> serverReceived.contains(1));
+        connection.sendTCP(2);
+        await(() -> clientReceived.contains(2));
+        assertEquals(compressed, client.isCompressed());
+        assertEquals(compressed, connection.isCompressed());
+
+        String text = text(20000);
+        client.sendTCP(text);
+        connection.sendTCP(text);
+        await(() -> serverReceived.contains(text) && clientReceived.contains(text));
+        if(compressed){
+            assertTrue(client.getTcpBytesSent() < client.getTcpBytesSerialized() / 4);
+            assertTrue(connection.getTcpBytesSent() < connection.getTcpBytesSerialized() / 4);
+        }else{
+            assertTrue(client.getTcpBytesSent() > 20000);
+            assertTrue(connection.getTcpBytesSent() > 20000);
+        }
+    }
+
+    @Test
+    public void writesFlaggedFrames() throws IOException{
+        raw = new ServerSocket(port);
+        startClient(100);
+        try(Socket socket = connectRaw()){
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            assertTrue(readFrame(in) instanceof EnableCompression);
+            writeFrame(out, new EnableCompression(), false);
+            await(client::isCompressed);
+
+            //small objects are sent as they are
+            client.sendTCP(5);
+            assertEquals(5, readFrame(in));
+
+            String text = text(10000);
+            client.sendTCP(text);
+            int length = in.readUnsignedShort();
+            assertTrue((length & flag) != 0);
+            byte[] payload = new byte[length & ~flag];
+            in.readFully(payload);
+            ByteBuffer data = ByteBuffer.wrap(payload);
+            byte[] expected = serialize(text);
+            assertEquals(expected.length, data.getInt());
+            assertArrayEquals(expected, inflate(payload, 4, expected.length));
+        }
+    }
+
+    @Test
+    public void readsFlaggedFrames() throws IOException{
+        raw = new ServerSocket(port);
+        startClient(100);
+        try(Socket socket = connectRaw()){
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            readFrame(in);
+            writeFrame(out, new EnableCompression(), false);
+
+            String text = text(10000);
+            writeFrame(out, text, true);
+            writeFrame(out, 6, false);
+            await(() -> clientReceived.contains(6));
+            assertEquals(Arrays.asList(text, 6), clientReceived);
+        }
+    }
+
+    @Test
+    public void boundsDecompressedSize() throws IOException{
+        raw = new ServerSocket(port);
+        startClient(100);
+        try(Socket socket = connectRaw()){
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            readFrame(in);
+            writeFrame(out, new EnableCompression(), false);
+
+            //claims to decompress to more than the maximum object size, which the default length bytes limit to 32767
+            byte[] compressed = deflate(new byte[40000]);
+            out.writeShort(flag | (compressed.length + 4));
+            out.writeInt(40000);
+            out.write(compressed);
+            out.flush();
+            await(() -> client.getLastProtocolError() != null);
+            assertTrue(client.getLastProtocolError().getMessage().contains("decompressed"));
+            await(() -> !client.isConnected());
+            assertTrue(clientReceived.isEmpty());
+        }
+    }
+
+    @Test
+    public void coalescesWrites() throws IOException{
+        startServer(0);
+        startClient(0);
+        client.setCoalesceWrites(true);
+        //sent from the update thread, so nothing is flushed until the listener returns
+        client.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(Integer.valueOf(-1).equals(object)){
+                    for(int i = 0; i < 50; i++){
+                        connection.sendTCP(i);
+                    }
+                }
+            }
+        });
+        client.connect(5000, "localhost", port);
+        Connection connection = server.getConnections()[0];
+        await(() -> client.getTcpWriteBufferSize() == 0);
+
+        long writes = client.getTcpSocketWrites();
+        connection.sendTCP(-1);
+        await(() -> serverReceived.size() == 50);
+        for(int i = 0; i < 50; i++){
+            assertEquals(i, serverReceived.get(i));
+        }
+        assertEquals(1, client.getTcpSocketWrites() - writes);
+    }
+
+    private void startServer(int threshold) throws IOException{
+        server = new Server(65536, 2048, serializer);
+        server.setCompressionThreshold(threshold);
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(!(object instanceof FrameworkMessage)) serverReceived.add(object);
+            }
+        });
+        server.bind(port);
+        server.start();
+    }
+
+    private void startClient(int threshold){
+        clientReceived.clear();
+        client = new Client(65536, 2048, serializer);
+        client.setCompressionThreshold(threshold);
+        client.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(!(object instanceof FrameworkMessage)) clientReceived.add(object);
+            }
+        });
+        client.start();
+    }
+
+    /** Connects the client to the raw server socket and registers it by hand. */
+    private Socket connectRaw() throws IOException{
+        Socket[] accepted = new Socket[1];
+        Thread thread = new Thread(() -> {
+            try{
+                accepted[0] = raw.accept();
+                RegisterTCP register = new RegisterTCP();
+                register.connectionID = 1;
+                writeFrame(new DataOutputStream(accepted[0].getOutputStream()), register, false);
+            }catch(IOException e){
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        client.connect(5000, "localhost", port);
+        try{
+            thread.join();
+        }catch(InterruptedException e){
+            throw new RuntimeException(e);
+        }
+        return accepted[0];
+    }
+
+    private Object readFrame(DataInputStream in) throws IOException{
+        int length = in.readUnsignedShort();
+        assertEquals(0, length & flag);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return serializer.read(ByteBuffer.wrap(payload));
+    }
+
+    private void writeFrame(DataOutputStream out, Object object, boolean compress) throws IOException{
+        byte[] payload = serialize(object);
+        if(compress){
+            byte[] compressed = deflate(payload);
+            out.writeShort(flag | (compressed.length + 4));
+            out.writeInt(payload.length);
+            out.write(compressed);
+        }else{
+            out.writeShort(payload.length);
+            out.write(payload);
+        }
+        out.flush();
+    }
+
+    private byte[] serialize(Object object){
+        ByteBuffer buffer = ByteBuffer.allocate(32768);
+        serializer.write(buffer, object);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static byte[] deflate(byte[] bytes){
+        Deflater deflater = new Deflater();
+        deflater.setInput(bytes);
+        deflater.finish();
+        byte[] output = new byte[bytes.length + 64];
+        int length = deflater.deflate(output);
+        deflater.end();
+        return Arrays.copyOf(output, length);
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int size){
+        Inflater inflater = new Inflater();
+        inflater.setInput(bytes, offset, bytes.length - offset);
+        byte[] output = new byte[size];
+        try{
+            assertEquals(size, inflater.inflate(output));
+            assertTrue(inflater.finished());
+        }catch(Exception e){
+            throw new AssertionError(e);
+        }finally{
+            inflater.end();
+        }
+        return output;
+    }
+
+    private static String text(int length){
+        StringBuilder builder = new StringBuilder();
+        while(builder.length() < length){
+            builder.append("compressible ").append(builder.length() % 7);
+        }
+        return builder.toString();
+    }
+
+    private static void await(Boolp condition){
+        long end = System.currentTimeMillis() + 5000;
+        while(!condition.get()){
+            if(System.currentTimeMillis() > end) fail("timed out");
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package net;
+
+import io.anuke.arc.func.Boolp;
+import io.anuke.arc.net.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FileTransferTest{
+    static final int port = 54779;
+
+    private Server server;
+    private Client client;
+    private Connection connection;
+    private File file;
+    private byte[] contents;
+    private final Map<Integer, byte[]> received = Collections.synchronizedMap(new HashMap<>());
+    private final Set<Integer> complete = Collections.synchronizedSet(new HashSet<>());
+    private final AtomicInteger objects = new AtomicInteger();
+
+    @Before
+    public void setup() throws IOException{
+        contents = new byte[3 * 1024 * 1024 + 17];
+        new Random(1).nextBytes(contents);
+        file = File.createTempFile("arcnet", ".bin");
+        try(RandomAccessFile out = new RandomAccessFile(file, "rw")){
+            out.write(contents);
+        }
+
+        server = new Server(16384, 2048, new TestSerializer());
+        server.bind(port);
+        server.start();
+
+        client = new Client(16384, 2048, new TestSerializer());
+        client.setFileReceiver((connection, id, offset, length, data) -> {
+            byte[] bytes = received.computeIfAbsent(id, i -> new byte[(int)length]);
+            int count = data.remaining();
+            data.get(bytes, (int)offset, count);
+            if(offset + count == length) complete.add(id);
+        });
+        client.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof Integer) objects.incrementAndGet();
+            }
+        });
+        client.start();
+        client.connect(5000, "localhost", port);
+        connection = server.getConnections()[0];
+    }
+
+    @After
+    public void teardown() throws IOException{
+        client.stop();
+        server.stop();
+        client.dispose();
+        server.dispose();
+        file.delete();
+    }
+
+    @Test
+    public void sendsFileBetweenObjects() throws IOException{
+        FileTransfer transfer = connection.sendFile(file, 1);
+        for(int i = 0; i < 200; i++){
+            connection.sendTCP(i);
+        }
+        await(transfer::isDone);
+        await(() -> complete.contains(1) && objects.get() == 200);
+        assertArrayEquals(contents, received.get(1));
+        assertEquals(contents.length, transfer.getPosition());
+    }
+
+    @Test
+    public void copiesOnlyOnTheUpdateThread() throws IOException{
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        //throttled, so the socket is often writable while the transfer waits for its allowance
+        connection.setFileBandwidth(8 * 1024 * 1024);
+        try(FileChannel channel = new RecordingChannel(new RandomAccessFile(file, "r").getChannel(), threads)){
+            FileTransfer transfer = connection.sendFile(channel, 2, 0, 0);
+            //objects sent and flushed from this thread during the transfer never write file data
+            while(!transfer.isDone()){
+                connection.sendTCP(0);
+                server.flush();
+                Thread.yield();
+            }
+        }
+        await(() -> complete.contains(2));
+        assertArrayEquals(contents, received.get(2));
+        assertEquals(Collections.singleton(server.getUpdateThread()), threads);
+    }
+
+    @Test
+    public void resumesFromOffset() throws IOException{
+        int offset = contents.length - 1000;
+        FileTransfer transfer = connection.sendFile(file, 3, offset, 0);
+        await(transfer::isDone);
+        await(() -> complete.contains(3));
+        byte[] bytes = received.get(3);
+        assertArrayEquals(Arrays.copyOfRange(contents, offset, contents.length), Arrays.copyOfRange(bytes, offset, bytes.length));
+        assertEquals(0, bytes[0]);
+    }
+
+    @Test
+    public void throttledAndPrioritized() throws IOException, InterruptedException{
+        connection.setFileBandwidth(4 * 1024 * 1024);
+        FileTransfer low = connection.sendFile(file, 4, 0, 0), high = connection.sendFile(file, 5, 0, 1);
+        await(() -> complete.contains(5));
+        assertTrue(low.getPosition() < contents.length);
+        low.cancel();
+        Thread.sleep(300);
+        assertTrue(low.isCancelled());
+        assertFalse(low.isDone());
+        assertArrayEquals(contents, received.get(5));
+    }
+
+    private static void await(Boolp condition){
+        long end = System.currentTimeMillis() + 10000;
+        while(!condition.get()){
+            if(System.currentTimeMillis() > end) fail("timed out");
+            Thread.yield();
+        }
+    }
+
+    /** Records the threads that copy file data to sockets. */
+    static class RecordingChannel extends FileChannel{
+        final FileChannel channel;
+        final Set<Thread> threads;
+
+        RecordingChannel(FileChannel channel, Set<Thread> threads){
+            this.channel = channel;
+            this.threads = threads;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException{
+            threads.add(Thread.currentThread());
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException{
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException{
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException{
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException{
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException{
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException{
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException{
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException{
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException{
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException{
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException{
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException{
+            return channel.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException{
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException{
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException{
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException{
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package net;
+
+import io.anuke.arc.net.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Bounces an Integer between a client and a server, over TCP loopback and over local connections, and reports the time
+ * and the process CPU time per round trip.
+ * <p>
+ * Arguments: round trips. Defaults to 20000.
+ */
+public class LocalBenchmark{
+    static final int port = 54778;
+
+    public static void main(String[] args) throws Exception{
+        int trips = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        //warm up every mode before measuring
+        for(int mode = 0; mode < 3; mode++){
+            run(mode, trips / 4);
+        }
+        for(int mode = 0; mode < 3; mode++){
+            long[] result = run(mode, trips);
+            System.out.println(new String[]{"TCP loopback", "local", "local serialized"}[mode] + ": "
+                + result[0] / trips / 1000f + "us per round trip, " + result[1] / trips / 1000f + "us CPU");
+        }
+        System.exit(0);
+    }
+
+    /** @return the elapsed and the CPU nanoseconds. */
+    static long[] run(int mode, int trips) throws Exception{
+        Server server = new Server(8192, 2048, new TestSerializer());
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof Integer) connection.sendTCP(object);
+            }
+        });
+        if(mode == 0) server.bind(port);
+        server.start();
+
+        CountDownLatch done = new CountDownLatch(1);
+        Client client = new Client(8192, 2048, new TestSerializer());
+        client.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof Integer){
+                    int count = (Integer)object + 1;
+                    if(count >= trips){
+                        done.countDown();
+                    }else{
+                        connection.sendTCP(count);
+                    }
+                }
+            }
+        });
+        client.start();
+        if(mode == 0){
+            client.connect(5000, "localhost", port);
+        }else{
+            client.connectLocal(5000, server, mode == 2);
+        }
+
+        long cpu = cpuTime(), start = System.nanoTime();
+        client.sendTCP(0);
+        done.await();
+        long[] result = {System.nanoTime() - start, cpuTime() - cpu};
+
+        client.stop();
+        server.stop();
+        client.dispose();
+        server.dispose();
+        return result;
+    }
+
+    static long cpuTime(){
+        return ((com.sun.management.OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+}
@@ -0,0 +1,98 @@
+package net;
+
+import io.anuke.arc.func.Boolp;
+import io.anuke.arc.net.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LocalConnectionTest{
+    private Server server;
+    private Client client;
+    private final AtomicInteger received = new AtomicInteger(), idles = new AtomicInteger();
+    private volatile DcReason serverReason;
+
+    @Before
+    public void setup(){
+        server = new Server(8192, 2048, new TestSerializer());
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof Integer) received.incrementAndGet();
+            }
+
+            @Override
+            public void disconnected(Connection connection, DcReason reason){
+                serverReason = reason;
+            }
+        });
+        server.start();
+
+        client = new Client(8192, 2048, new TestSerializer());
+        client.addListener(new NetListener(){
+            @Override
+            public void idle(Connection connection){
+                idles.incrementAndGet();
+            }
+        });
+        client.start();
+    }
+
+    @After
+    public void teardown(){
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void idleFiresWhenDrained() throws IOException, InterruptedException{
+        client.connectLocal(5000, server, true);
+        await(() -> idles.get() > 0);
+
+        //updates without traffic do not fire it again
+        int quiet = idles.get();
+        Thread.sleep(600);
+        assertEquals(quiet, idles.get());
+
+        int before = idles.get();
+        for(int i = 0; i < 100; i++){
+            client.sendTCP(i);
+        }
+        await(() -> received.get() == 100);
+        await(() -> idles.get() > before);
+        assertTrue(idles.get() - before <= 100);
+        assertTrue(client.isIdle());
+    }
+
+    @Test
+    public void stalledEndsTimeOut() throws IOException, InterruptedException{
+        client.setKeepAliveTCP(50);
+        client.connectLocal(5000, server, false);
+        Connection connection = server.getConnections()[0];
+        connection.setTimeout(300);
+
+        //kept alive
+        Thread.sleep(600);
+        assertTrue(connection.isConnected());
+        assertNull(serverReason);
+
+        //a client that stops sending is dropped
+        client.setKeepAliveTCP(0);
+        await(() -> serverReason != null);
+        assertEquals(DcReason.timeout, serverReason);
+        assertFalse(connection.isConnected());
+    }
+
+    private static void await(Boolp condition){
+        long end = System.currentTimeMillis() + 5000;
+        while(!condition.get()){
+            if(System.currentTimeMillis() > end) fail("timed out");
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package net;
+
+import io.anuke.arc.func.Boolp;
+import io.anuke.arc.net.*;
+import io.anuke.arc.net.FrameworkMessage.Ping;
+import io.anuke.arc.net.replication.*;
+import io.anuke.arc.net.replication.Replicas.ReplicaListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ReplicationTest{
+    private Server server;
+    private Client client;
+    private Replicator replicator;
+    private Replicas replicas;
+    private Connection connection;
+    private final AtomicInteger connects = new AtomicInteger(), acks = new AtomicInteger(), pings = new AtomicInteger();
+    private final ArrayList<SnapshotMessage> snapshots = new ArrayList<>();
+    private int created, removed;
+
+    @Before
+    public void setup() throws IOException{
+        replicator = new Replicator(unitType());
+        replicas = new Replicas(unitType());
+        replicas.setListener(new ReplicaListener(){
+            @Override
+            public void created(int id, Object entity){
+                created++;
+            }
+
+            @Override
+            public void removed(int id, Object entity){
+                removed++;
+            }
+        });
+
+        server = new Server(8192, 8192, new UnusedSerializer());
+        //added first, so it is notified after the replicator has added the client or queued the acknowledgement
+        server.addListener(new NetListener(){
+            @Override
+            public void connected(Connection connection){
+                connects.incrementAndGet();
+            }
+
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof SnapshotAck) acks.incrementAndGet();
+            }
+        });
+        server.addListener(replicator);
+        server.start();
+
+        client = new Client(8192, 8192, new UnusedSerializer());
+        client.addListener(replicas);
+        client.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof SnapshotMessage){
+                    synchronized(snapshots){
+                        snapshots.add((SnapshotMessage)object);
+                    }
+                }else if(object instanceof Ping && ((Ping)object).isReply){
+                    pings.incrementAndGet();
+                }
+            }
+        });
+        client.start();
+        client.connectLocal(5000, server, false);
+
+        await(() -> connects.get() == 1);
+        connection = server.getConnections()[0];
+    }
+
+    @After
+    public void teardown(){
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void createsAndSendsDeltas(){
+        Unit a = new Unit(1f, 2f, 100), b = new Unit(3f, 4f, 50);
+        int idA = replicator.add(a), idB = replicator.add(b);
+        tick();
+
+        assertEquals(2, replicas.size());
+        assertEquals(2, created);
+        Unit replicaA = replicas.get(idA), replicaB = replicas.get(idB);
+        assertEquals(1f, replicaA.x, 0f);
+        assertEquals(2f, replicaA.y, 0f);
+        assertEquals(100, replicaA.health);
+        assertEquals(50, replicaB.health);
+        int full = lastSnapshot().data.length;
+
+        //only the changed field of the changed object is sent
+        a.health = 90;
+        tick();
+        assertEquals(90, replicaA.health);
+        assertEquals(3f, replicaB.x, 0f);
+        assertTrue(lastSnapshot().data.length < full / 2);
+
+        //nothing changed, nothing sent; the ping reply arrives after anything sent before it
+        int frame = replicas.getFrame(), sent = snapshotCount(), lastPings = pings.get();
+        replicator.update();
+        client.updateReturnTripTime();
+        await(() -> pings.get() > lastPings);
+        replicas.update();
+        assertEquals(frame, replicas.getFrame());
+        assertEquals(sent, snapshotCount());
+
+        replicator.remove(idB);
+        tick();
+        assertEquals(1, replicas.size());
+        assertNull(replicas.get(idB));
+        assertEquals(1, removed);
+    }
+
+    @Test
+    public void viewRemovesAndRestores(){
+        Unit near = new Unit(0f, 0f, 1), far = new Unit(100f, 0f, 2);
+        replicator.add(near);
+        int idFar = replicator.add(far);
+        replicator.setView(connection, 0f, 0f, 10f);
+        tick();
+        assertEquals(1, replicas.size());
+        assertNull(replicas.get(idFar));
+
+        far.x = 5f;
+        tick();
+        assertEquals(2, replicas.size());
+        assertEquals(5f, replicas.<Unit>get(idFar).x, 0f);
+
+        far.x = 50f;
+        tick();
+        assertNull(replicas.get(idFar));
+        assertEquals(1, removed);
+
+        //re-entering creates it again in full, with the changes made while it was out of view
+        far.health = 7;
+        far.x = 1f;
+        tick();
+        Unit restored = replicas.get(idFar);
+        assertNotNull(restored);
+        assertEquals(1f, restored.x, 0f);
+        assertEquals(7, restored.health);
+        assertEquals(3, created);
+    }
+
+    @Test
+    public void bandwidthBudgetSendsEverythingEventually() throws InterruptedException{
+        Unit[] units = new Unit[100];
+        for(int i = 0; i < units.length; i++){
+            units[i] = new Unit(i, i, i);
+            replicator.add(units[i]);
+        }
+        //a full record is about 12 bytes, and at most a quarter second of budget accumulates
+        replicator.setBandwidth(connection, 4000);
+
+        replicator.update();
+        int ticks = 0;
+        while(replicas.size() < units.length && ticks++ < 100){
+            Thread.sleep(50);
+            tick();
+            if(ticks == 1){
+                assertTrue(replicas.size() > 0);
+                assertTrue(replicas.size() < units.length);
+            }
+        }
+        assertEquals(units.length, replicas.size());
+        assertTrue(ticks > 1);
+    }
+
+    @Test
+    public void missingBaselineIsNotAcknowledged(){
+        Unit unit = new Unit(0f, 0f, 10);
+        int id = replicator.add(unit);
+        tick();
+        unit.health = 11;
+        tick();
+        unit.health = 12;
+        tick();
+
+        //a second receiver that saw the first snapshot, but not the second one the third is based on
+        ArrayList<Object> sent = new ArrayList<>();
+        Connection recorder = new Connection(){
+            @Override
+            public int sendTCP(Object object){
+                sent.add(object);
+                return 0;
+            }
+        };
+        Replicas other = new Replicas(unitType());
+        other.received(recorder, snapshots.get(0));
+        other.update();
+        assertEquals(1, sent.size());
+        assertEquals(10, other.<Unit>get(id).health);
+
+        other.received(recorder, snapshots.get(2));
+        other.update();
+        assertEquals(1, sent.size());
+        assertEquals(10, other.<Unit>get(id).health);
+    }
+
+    /** Sends a snapshot and waits until it is applied and acknowledged. */
+    private void tick(){
+        int lastAcks = acks.get();
+        replicator.update();
+        int frame = replicator.getFrame();
+        await(() -> {
+            replicas.update();
+            return replicas.getFrame() >= frame;
+        });
+        await(() -> acks.get() > lastAcks);
+    }
+
+    private SnapshotMessage lastSnapshot(){
+        synchronized(snapshots){
+            return snapshots.get(snapshots.size() - 1);
+        }
+    }
+
+    private int snapshotCount(){
+        synchronized(snapshots){
+            return snapshots.size();
+        }
+    }
+
+    private static void await(Boolp condition){
+        long end = System.currentTimeMillis() + 5000;
+        while(!condition.get()){
+            if(System.currentTimeMillis() > end) fail("timed out");
+            Thread.yield();
+        }
+    }
+
+    private static ReplicaType<Unit> unitType(){
+        return new ReplicaType<>(Unit.class, Unit::new)
+            .addFloat(u -> u.x, (u, v) -> u.x = v)
+            .addFloat(u -> u.y, (u, v) -> u.y = v)
+            .addInt(u -> u.health, (u, v) -> u.health = v)
+            .position(u -> u.x, u -> u.y);
+    }
+
+    static class Unit{
+        float x, y;
+        int health;
+
+        Unit(){
+        }
+
+        Unit(float x, float y, int health){
+            this.x = x;
+            this.y = y;
+            this.health = health;
+        }
+    }
+
+    /** Local connections pass objects by reference, so nothing is serialized. */
+    static class UnusedSerializer implements NetSerializer{
+        @Override
+        public void write(ByteBuffer buffer, Object object){
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object read(ByteBuffer buffer){
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net;
+
+import io.anuke.arc.net.*;
+import io.anuke.arc.util.Histogram;
+
+import java.io.IOException;
+
+/**
+ * Echoes timestamps between a server and many clients over loopback TCP, and reports the messages per second and the
+ * round trip percentiles for each number of selector threads.
+ * <p>
+ * Arguments: connections, seconds, then the selector thread counts to compare. Defaults to 500 connections for 5
+ * seconds with 0 and 4 selector threads.
+ */
+public class SelectorBenchmark{
+    static final int port = 54777;
+
+    public static void main(String[] args) throws Exception{
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int[] threads = {0, 4};
+        if(args.length > 2){
+            threads = new int[args.length - 2];
+            for(int i = 0; i < threads.length; i++){
+                threads[i] = Integer.parseInt(args[i + 2]);
+            }
+        }
+
+        for(int selectors : threads){
+            run(connections, seconds, selectors);
+        }
+        System.exit(0);
+    }
+
+    static void run(int connections, int seconds, int selectors) throws IOException, InterruptedException{
+        Server server = new Server(8192, 2048, new TestSerializer());
+        server.setSelectorThreads(selectors);
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof Long) connection.sendTCP(object);
+            }
+        });
+        server.bind(port);
+        server.start();
+
+        //round trips in microseconds
+        Histogram latency = new Histogram(10_000_000);
+        Client[] clients = new Client[connections];
+        for(int i = 0; i < connections; i++){
+            Client client = new Client(8192, 2048, new TestSerializer());
+            client.addListener(new NetListener(){
+                @Override
+                public void received(Connection connection, Object object){
+                    if(object instanceof Long){
+                        long time = System.nanoTime();
+                        latency.record((time - (Long)object) / 1000);
+                        connection.sendTCP(time);
+                    }
+                }
+            });
+            client.start();
+            client.connect(5000, "localhost", port);
+            clients[i] = client;
+        }
+
+        for(Client client : clients){
+            client.sendTCP(System.nanoTime());
+        }
+
+        //warm up, then measure
+        Thread.sleep(1000);
+        latency.reset();
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        Histogram result = latency.copy();
+        double elapsed = (System.nanoTime() - start) / 1000000000.0;
+
+        System.out.println(connections + " connections, " + selectors + " selector threads: "
+            + (long)(result.getCount() / elapsed) + " round trips/s, "
+            + "p50 " + result.getMedian() + "us, p99 " + result.getPercentile(99) + "us, max " + result.getMax() + "us");
+
+        for(Client client : clients){
+            client.stop();
+        }
+        server.stop();
+        server.dispose();
+    }
+}
@@ -0,0 +1,209 @@
+package net;
+
+import io.anuke.arc.func.Boolp;
+import io.anuke.arc.net.*;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/** Runs a server with several selector threads. */
+public class SelectorLoopTest{
+    static final int port = 54783;
+
+    private final Server server = new Server(8192, 2048, new TestSerializer());
+    private final List<Client> clients = new ArrayList<>();
+
+    @After
+    public void teardown() throws IOException{
+        for(Client client : clients){
+            client.stop();
+            client.dispose();
+        }
+        server.stop();
+        server.dispose();
+    }
+
+    @Test
+    public void spreadsConnections() throws IOException{
+        Map<Integer, Set<String>> threads = Collections.synchronizedMap(new HashMap<>());
+        server.setSelectorThreads(3);
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(!(object instanceof Integer)) return;
+                threads.computeIfAbsent(connection.getID(), id -> Collections.synchronizedSet(new HashSet<>())).add(Thread.currentThread().getName());
+                connection.sendTCP(object);
+            }
+        });
+        server.bind(port);
+        server.start();
+
+        List<List<Object>> echoes = new ArrayList<>();
+        for(int i = 0; i < 6; i++){
+            List<Object> echo = Collections.synchronizedList(new ArrayList<>());
+            echoes.add(echo);
+            Client client = client();
+            client.addListener(new NetListener(){
+                @Override
+                public void received(Connection connection, Object object){
+                    if(object instanceof Integer) echo.add(object);
+                }
+            });
+            client.connect(5000, "localhost", port);
+        }
+        for(int n = 0; n < 50; n++){
+            for(Client client : clients){
+                client.sendTCP(n);
+            }
+        }
+        await(() -> echoes.stream().allMatch(echo -> echo.size() == 50));
+
+        for(List<Object> echo : echoes){
+            for(int n = 0; n < 50; n++){
+                assertEquals(n, echo.get(n));
+            }
+        }
+        //connections are assigned to the loops in turn, and each is only read by its own
+        Set<String> used = new HashSet<>();
+        assertEquals(6, threads.size());
+        for(Set<String> names : threads.values()){
+            assertEquals(1, names.size());
+            String name = names.iterator().next();
+            assertTrue(name, name.startsWith("Server Selector"));
+            used.add(name);
+        }
+        assertEquals(3, used.size());
+    }
+
+    @Test
+    public void ordersListenerEvents() throws IOException{
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Listener"));
+        server.setSelectorThreads(2);
+        server.setReceiveExecutor(executor);
+        server.addListener(new NetListener(){
+            @Override
+            public void connected(Connection connection){
+                event("connected");
+            }
+
+            @Override
+            public void disconnected(Connection connection, DcReason reason){
+                event("disconnected");
+            }
+
+            @Override
+            public void received(Connection connection, Object object){
+                if(!(object instanceof Integer)) return;
+                //slow, so that the disconnect is read long before the objects are handled
+                try{
+                    Thread.sleep(2);
+                }catch(InterruptedException ignored){
+                }
+                event(object.toString());
+            }
+
+            void event(String event){
+                threads.add(Thread.currentThread().getName());
+                events.add(event);
+            }
+        });
+        server.bind(port);
+        server.start();
+
+        try{
+            Client client = client();
+            client.connect(5000, "localhost", port);
+            for(int n = 0; n < 100; n++){
+                client.sendTCP(n);
+            }
+            //the server only removes the connection once it read everything before the close
+            await(() -> server.getConnections().length == 1);
+            client.close();
+            await(() -> server.getConnections().length == 0);
+            await(() -> events.contains("disconnected"));
+
+            List<String> expected = new ArrayList<>();
+            expected.add("connected");
+            for(int n = 0; n < 100; n++){
+                expected.add(Integer.toString(n));
+            }
+            expected.add("disconnected");
+            assertEquals(expected, events);
+            assertEquals(Collections.singleton("Listener"), threads);
+        }finally{
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void recoversFromFailedBind() throws IOException{
+        //loops of servers stopped by other tests may still be finishing
+        await(() -> selectorThreads() == 0);
+        server.setSelectorThreads(2);
+        server.start();
+        server.bind(port);
+        assertEquals(2, selectorThreads());
+
+        //rebinding stops the running loops first, and the failed bind leaves none behind
+        try(ServerSocket taken = new ServerSocket(port + 1)){
+            server.bind(port + 1);
+            fail("The port is in use");
+        }catch(IOException expected){
+        }
+        await(() -> selectorThreads() == 0);
+        server.close();
+
+        //the server can still be bound again
+        server.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof Integer) connection.sendTCP(object);
+            }
+        });
+        server.bind(port);
+        assertEquals(2, selectorThreads());
+        List<Object> echo = Collections.synchronizedList(new ArrayList<>());
+        Client client = client();
+        client.addListener(new NetListener(){
+            @Override
+            public void received(Connection connection, Object object){
+                if(object instanceof Integer) echo.add(object);
+            }
+        });
+        client.connect(5000, "localhost", port);
+        client.sendTCP(7);
+        await(() -> echo.contains(7));
+    }
+
+    private Client client(){
+        Client client = new Client(8192, 2048, new TestSerializer());
+        client.start();
+        clients.add(client);
+        return client;
+    }
+
+    private static int selectorThreads(){
+        int count = 0;
+        for(Thread thread : Thread.getAllStackTraces().keySet()){
+            if(thread.isAlive() && thread.getName().startsWith("Server Selector")) count++;
+        }
+        return count;
+    }
+
+    private static void await(Boolp condition){
+        long end = System.currentTimeMillis() + 5000;
+        while(!condition.get()){
+            if(System.currentTimeMillis() > end) fail("timed out");
+            Thread.yield();
+        }
+    }
+}
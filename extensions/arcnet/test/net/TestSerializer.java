@@ -0,0 +1,96 @@
+package net;
+
+import io.anuke.arc.net.ArcNetException;
+import io.anuke.arc.net.FrameworkMessage.*;
+import io.anuke.arc.net.NetSerializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Serializes the framework messages and a few plain types, for tests and benchmarks. */
+public class TestSerializer implements NetSerializer{
+
+    @Override
+    public void write(ByteBuffer buffer, Object object){
+        if(object instanceof Long){
+            buffer.put((byte)0);
+            buffer.putLong((Long)object);
+        }else if(object instanceof Integer){
+            buffer.put((byte)1);
+            buffer.putInt((Integer)object);
+        }else if(object instanceof String){
+            byte[] bytes = ((String)object).getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte)2);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }else if(object instanceof byte[]){
+            byte[] bytes = (byte[])object;
+            buffer.put((byte)3);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }else if(object instanceof RegisterTCP){
+            buffer.put((byte)10);
+            buffer.putInt(((RegisterTCP)object).connectionID);
+        }else if(object instanceof RegisterUDP){
+            buffer.put((byte)11);
+            buffer.putInt(((RegisterUDP)object).connectionID);
+        }else if(object instanceof KeepAlive){
+            buffer.put((byte)12);
+        }else if(object instanceof DiscoverHost){
+            buffer.put((byte)13);
+        }else if(object instanceof EnableCompression){
+            buffer.put((byte)14);
+        }else if(object instanceof Ping){
+            buffer.put((byte)15);
+            buffer.putInt(((Ping)object).id);
+            buffer.put(((Ping)object).isReply ? (byte)1 : 0);
+        }else{
+            throw new ArcNetException("Cannot serialize: " + object.getClass().getName());
+        }
+    }
+
+    @Override
+    public Object read(ByteBuffer buffer){
+        byte type = buffer.get();
+        switch(type){
+            case 0:
+                return buffer.getLong();
+            case 1:
+                return buffer.getInt();
+            case 2:{
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            case 3:{
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                return bytes;
+            }
+            case 10:{
+                RegisterTCP message = new RegisterTCP();
+                message.connectionID = buffer.getInt();
+                return message;
+            }
+            case 11:{
+                RegisterUDP message = new RegisterUDP();
+                message.connectionID = buffer.getInt();
+                return message;
+            }
+            case 12:
+                return new KeepAlive();
+            case 13:
+                return new DiscoverHost();
+            case 14:
+                return new EnableCompression();
+            case 15:{
+                Ping ping = new Ping();
+                ping.id = buffer.getInt();
+                ping.isReply = buffer.get() != 0;
+                return ping;
+            }
+            default:
+                throw new ArcNetException("Unknown type: " + type);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package net;
+
+import io.anuke.arc.func.Boolp;
+import io.anuke.arc.net.*;
+import io.anuke.arc.net.FrameworkMessage.RegisterTCP;
+import io.anuke.arc.util.io.TrafficLog;
+import io.anuke.arc.util.io.TrafficRecorder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/** Records an exchange between a server and a client on both ends, then replays it to another server. */
+public class TrafficRecorderTest{
+    static final int port = 54782;
+
+    private final TestSerializer serializer = new TestSerializer();
+    private final List<Object> received = Collections.synchronizedList(new ArrayList<>());
+    private final List<Object> replies = Collections.synchronizedList(new ArrayList<>());
+    private File serverFile, clientFile;
+
+    @Before
+    public void setup() throws IOException{
+        serverFile = File.createTempFile("server", ".traffic");
+        clientFile = File.createTempFile("client", ".traffic");
+    }
+
+    @After
+    public void teardown(){
+        serverFile.delete();
+        clientFile.delete();
+    }
+
+    @Test
+    public void recordsAndReplays() throws IOException{
+        List<Object> sent = Arrays.asList(1, "first", new byte[]{1, 2, 3}, 2L, "second");
+        Server server = new Server(8192, 2048, serializer);
+        Client client = new Client(8192, 2048, serializer);
+        //small mappings, so that recording continues in new ones
+        TrafficRecorder serverRecorder = new TrafficRecorder(serverFile, 4096), clientRecorder = new TrafficRecorder(clientFile, 4096);
+        int id;
+        try{
+            server.setRecorder(serverRecorder);
+            server.addListener(new NetListener(){
+                @Override
+                public void received(Connection connection, Object object){
+                    if(object instanceof FrameworkMessage) return;
+                    received.add(object);
+                    connection.sendTCP("reply" + received.size());
+                }
+            });
+            server.bind(port);
+            server.start();
+
+            client.addListener(new NetListener(){
+                @Override
+                public void received(Connection connection, Object object){
+                    if(!(object instanceof FrameworkMessage)) replies.add(object);
+                }
+            });
+            client.start();
+            client.setRecorder(clientRecorder);
+            client.connect(5000, "localhost", port);
+            id = client.getID();
+
+            for(Object object : sent){
+                client.sendTCP(object);
+            }
+            //larger than a mapping
+            client.sendTCP(new byte[6000]);
+            await(() -> replies.size() == sent.size() + 1);
+        }finally{
+            client.stop();
+            server.stop();
+            client.dispose();
+            server.dispose();
+            serverRecorder.close();
+            clientRecorder.close();
+        }
+        assertNull(serverRecorder.getError());
+        assertEquals(serverFile.length(), serverRecorder.getSize());
+
+        List<Object> expected = new ArrayList<>(sent);
+        expected.add(new byte[6000]);
+        List<Object> expectedReplies = new ArrayList<>();
+        for(int i = 1; i <= expected.size(); i++){
+            expectedReplies.add("reply" + i);
+        }
+
+        //the server received what the client sent, and sent the replies
+        try(TrafficLog log = new TrafficLog(serverFile, 4096)){
+            assertEquals(serverRecorder.getMessages(), checkLog(log, id, false, expected, expectedReplies));
+        }
+        //the client sent and received the same bytes, flagged as the other end
+        try(TrafficLog log = new TrafficLog(clientFile, 4096)){
+            assertEquals(clientRecorder.getMessages(), checkLog(log, id, true, expected, expectedReplies));
+        }
+
+        //replaying either log sends the client's objects to a new server, in order
+        for(File file : new File[]{serverFile, clientFile}){
+            received.clear();
+            Server replayed = new Server(8192, 2048, serializer);
+            replayed.addListener(new NetListener(){
+                @Override
+                public void received(Connection connection, Object object){
+                    if(!(object instanceof FrameworkMessage)) received.add(object);
+                }
+            });
+            replayed.start();
+            try(TrafficLog log = new TrafficLog(file); TrafficReplayer replayer = new TrafficReplayer(log, () -> new Client(8192, 2048, serializer))){
+                replayer.setSpeed(0f);
+                replayer.replay(replayed);
+                assertEquals(expected.size(), replayer.getObjects());
+                await(() -> received.size() == expected.size());
+                assertObjects(expected, received);
+            }finally{
+                replayed.stop();
+                replayed.dispose();
+            }
+        }
+    }
+
+    /**
+     * Checks the messages of a log against the objects that were sent each way.
+     * @return the number of messages in the log, including framework messages.
+     */
+    private long checkLog(TrafficLog log, int id, boolean clientSide, List<Object> toServer, List<Object> toClient) throws IOException{
+        List<Object> logToServer = new ArrayList<>(), logToClient = new ArrayList<>();
+        long messages = 0, lastTime = 0;
+        while(log.next()){
+            messages++;
+            assertFalse(log.isUnreliable());
+            assertEquals(clientSide, (log.getFlags() & TrafficRecorder.clientSide) != 0);
+            assertEquals(log.isToServer(), clientSide != log.isInbound());
+            assertTrue(log.getTime() >= lastTime);
+            lastTime = log.getTime();
+
+            //the payload is exactly what the serializer writes for the object
+            ByteBuffer data = log.getData();
+            int length = data.remaining();
+            Object object = serializer.read(data.duplicate());
+            ByteBuffer written = ByteBuffer.allocate(length + 16);
+            serializer.write(written, object);
+            written.flip();
+            assertEquals(written, data);
+
+            //a client reads its registration before it knows its ID
+            assertEquals(object instanceof RegisterTCP && clientSide ? -1 : id, log.getStream());
+            if(!(object instanceof FrameworkMessage)) (log.isToServer() ? logToServer : logToClient).add(object);
+        }
+        assertObjects(toServer, logToServer);
+        assertObjects(toClient, logToClient);
+        return messages;
+    }
+
+    private static void assertObjects(List<Object> expected, List<Object> actual){
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++){
+            if(expected.get(i) instanceof byte[]){
+                assertArrayEquals((byte[])expected.get(i), (byte[])actual.get(i));
+            }else{
+                assertEquals(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    private static void await(Boolp condition){
+        long end = System.currentTimeMillis() + 5000;
+        while(!condition.get()){
+            if(System.currentTimeMillis() > end) fail("timed out");
+            Thread.yield();
+        }
+    }
+}
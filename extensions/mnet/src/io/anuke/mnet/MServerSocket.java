@@ -1,11 +1,14 @@
 package io.anuke.mnet;
 
 import io.anuke.arc.collection.*;
+import io.anuke.arc.util.TrafficStats;
+import io.anuke.arc.util.io.TrafficRecorder;
 import io.anuke.arc.util.async.*;
 
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Job of a server socket is to accept new connections and handle subsockets.
@@ -23,6 +26,9 @@ public class MServerSocket{
     MSerializer serializer;
     Supplier<MSerializer> serializerSupplier;
     private AtomicQueue<ConnectionRequest> connectionRequests;
+    private final TrafficStats stats = new TrafficStats();
+    final AtomicInteger nextStream = new AtomicInteger();
+    volatile TrafficRecorder recorder;
 
     public MServerSocket(int port, ServerAuthenticator authenticator, Supplier<MSerializer> serializerSupplier, DiscoveryHandler discoverer) throws SocketException{
         this(new JavaUDPSocket(port), 1024, 15000, 2500, 125, authenticator, serializerSupplier, discoverer);
@@ -157,6 +163,22 @@ public class MServerSocket{
         return udp.isClosed();
     }
 
+    /**
+     * Returns the traffic of all sockets of this server, including those that
+     * were closed. May be read from any thread.
+     */
+    public TrafficStats getStats(){
+        return stats;
+    }
+
+    /**
+     * Sets the {@link MSocket#setRecorder(TrafficRecorder) recorder} of
+     * sockets accepted from now on. Null to stop recording new sockets.
+     */
+    public void setRecorder(TrafficRecorder recorder){
+        this.recorder = recorder;
+    }
+
     public UDPSocket getUdp(){
         return udp;
     }
@@ -1,6 +1,8 @@
 package io.anuke.mnet;
 
 import io.anuke.arc.collection.*;
+import io.anuke.arc.util.TrafficStats;
+import io.anuke.arc.util.io.TrafficRecorder;
 import io.anuke.arc.util.async.*;
 import io.anuke.arc.util.pooling.*;
 
@@ -40,6 +42,8 @@ public class MSocket{
     private volatile int lastInsertedSeq = -1;
     private MSerializer writeSerializer;
     private MSerializer readSerializer;
+    /** Identifies the messages of this socket in traffic logs. */
+    int stream;
     private Pool<ResendPacket> sendPacketPool = new Pool<ResendPacket>(){
         protected ResendPacket newObject(){
             return new ResendPacket();
@@ -70,6 +74,7 @@ public class MSocket{
     private Object userData = null;
     private float currentPing;
     private long lastPingSendTime;
+    private TrafficStats stats = new TrafficStats();
 
     public MSocket(InetAddress address, int port, Supplier<MSerializer> serializer) throws SocketException{
         this(address, port, 1024, 7000, 2500, 100, serializer);
@@ -115,6 +120,9 @@ public class MSocket{
         this.writeSerializer = serializer.get();
         this.state = SocketState.CONNECTED;
         this.server = serverSocket;
+        this.stats = new TrafficStats(serverSocket.getStats());
+        this.stream = serverSocket.nextStream.incrementAndGet();
+        if(serverSocket.recorder != null) setRecorder(serverSocket.recorder);
         this.lastTimeReceivedMsg = System.currentTimeMillis();
         this.lastPingSendTime = System.currentTimeMillis();
         this.pingCD = pingFrequency;
@@ -260,6 +268,7 @@ public class MSocket{
             sendBuffer[0] = PacketType.unreliable;
             int size = writeSerializer.serialize(o, sendBuffer, 1);
             sendPacket.setLength(size + 1);
+            stats.sent(o, size + 1);
             try{
                 udp.send(sendPacket);
             }catch(IOException e){
@@ -274,6 +283,7 @@ public class MSocket{
             int seq = this.seq.getAndIncrement();
             fullPackage[0] = PacketType.reliableRequest;
             PacketType.putInt(fullPackage, seq, 1);
+            stats.sent(o, fullPackage.length);
             saveRequest(seq, fullPackage);
             sendData(fullPackage);
         }
@@ -286,6 +296,7 @@ public class MSocket{
             sendSerialized(big);
         }else{
             if(isConnected()){
+                stats.sent(o, big.length);
                 int maxPerPacket = bufferSize - 9; //503
 
                 int packs = big.length / maxPerPacket;
@@ -326,6 +337,9 @@ public class MSocket{
             int bufferSize = this.bufferSize;
 
             ByteBatch bb = batch.convertAndGet(writeSerializer);
+            for(int i = 0; i < size; i++){
+                stats.sent(batch.get(i), bb.get(i).length);
+            }
             int i = 0;
             while(i < size){
                 int seq = this.seq.getAndIncrement();
@@ -342,6 +356,7 @@ public class MSocket{
         if(isConnected()){
             int seq = this.seq.getAndIncrement();
             byte[] fullPackage = PacketType.build5byte(PacketType.reliableRequest, seq, data);
+            stats.sent(byte[].class, fullPackage.length);
             saveRequest(seq, fullPackage);
             sendData(fullPackage);
         }
@@ -351,6 +366,7 @@ public class MSocket{
         if(isConnected()){
             sendBuffer[0] = PacketType.unreliable;
             System.arraycopy(data, 0, sendBuffer, 1, data.length);
+            stats.sent(byte[].class, data.length + 1);
             sendPacket.setLength(data.length + 1);
             try{
                 udp.send(sendPacket);
@@ -479,6 +495,34 @@ public class MSocket{
         return bufferSize;
     }
 
+    /**
+     * Returns the traffic of this socket: messages and bytes by class, round
+     * trip times of pings, and the time reliable packets waited for their
+     * acknowledgement. May be read from any thread. For sockets of a server,
+     * everything is also counted in {@link MServerSocket#getStats()}.
+     */
+    public TrafficStats getStats(){
+        return stats;
+    }
+
+    /**
+     * Records the serialized bytes of every object this socket sends and
+     * receives, including those of batches and big packets. Null to stop
+     * recording. Should be set before the socket is used by other threads.
+     */
+    public void setRecorder(TrafficRecorder recorder){
+        int side = isClientSocket ? TrafficRecorder.clientSide : 0;
+        readSerializer = RecordingSerializer.wrap(readSerializer, recorder, stream, side | TrafficRecorder.inbound);
+        writeSerializer = RecordingSerializer.wrap(writeSerializer, recorder, stream, side);
+    }
+
+    /** @return the number of reliable packets that were not acknowledged yet. */
+    public int getPendingReliable(){
+        synchronized(requestList){
+            return requestList.size;
+        }
+    }
+
     public InetAddress getRemoteAddress(){
         return address;
     }
@@ -499,8 +543,10 @@ public class MSocket{
             e.printStackTrace();
             return;
         }
-        if(obj != null)
+        if(obj != null){
+            stats.received(obj, length);
             queue.put(obj);
+        }
     }
 
     private void launchReceiveThread(){
@@ -554,8 +600,10 @@ public class MSocket{
                         e.printStackTrace();
                         break;
                     }
-                    if(obj != null)
+                    if(obj != null){
+                        stats.received(obj, length - 5);
                         addToWaitings(seq, obj);
+                    }
                 }
                 break;
             case PacketType.reliableAck:
@@ -576,12 +624,14 @@ public class MSocket{
                     if(seq == expectedSeq2){
                         lastInsertedSeq = seq;
                         batchPackets = PacketType.breakBatchDown(fullPacket, readSerializer);
+                        receivedBatch(batchPackets, length);
                         for(Object batchPacket : batchPackets){
                             queue.put(batchPacket);
                         }
                         updateReceiveOrderQueue();
                     }else{
                         batchPackets = PacketType.breakBatchDown(fullPacket, readSerializer);
+                        receivedBatch(batchPackets, length);
                         addToWaitings(seq, batchPackets);
                     }
                 }catch(Exception ignore){
@@ -611,6 +661,7 @@ public class MSocket{
                 final long startingTime = PacketType.extractLong(fullPacket, 5);
                 boolean removed = removeFromWaitingForAck(seq, lastTimeReceivedMsg);
                 if(removed){
+                    stats.recordRoundTrip((System.nanoTime() - startingTime) / 1000);
                     PingPacket ping = new PingPacket(((float)(System.nanoTime() - startingTime)) / 1000000f);
                     queue.put(ping);
                 }
@@ -637,6 +688,13 @@ public class MSocket{
         }
     }
 
+    /** Counts the objects of a batch, splitting its length between them. */
+    private void receivedBatch(Object[] objects, int length){
+        for(Object object : objects){
+            if(object != null) stats.received(object, length / objects.length);
+        }
+    }
+
     private void toBigAccumulator(int seq, byte[] fullPacketBig){
         byte[] userData = new byte[fullPacketBig.length - 9];
         System.arraycopy(fullPacketBig, 9, userData, 0, userData.length);
@@ -668,6 +726,7 @@ public class MSocket{
             Object deserialized = null;
             try{
                 deserialized = readSerializer.deserialize(result);
+                if(deserialized != null) stats.received(deserialized, result.length);
             }catch(Exception e){
                 e.printStackTrace();
             }
@@ -721,6 +780,7 @@ public class MSocket{
         synchronized(requestList){
             ResendPacket removed = requestList.remove(seq);
             if(removed != null){
+                stats.recordQueueLatency((System.nanoTime() - removed.queuedTime) / 1000);
                 sendPacketPool.free(removed);
                 resendCD = cm.calculateDelay(removed, currentTime, resendCD);
                 return true;
@@ -909,11 +969,14 @@ public class MSocket{
 
     public class ResendPacket{
         public long sendTime;
+        /** When the packet was first sent, in nanoseconds. */
+        public long queuedTime;
         public int resends;
         public byte[] data;
 
         public ResendPacket set(byte[] data){
             this.sendTime = System.currentTimeMillis();
+            this.queuedTime = System.nanoTime();
             this.data = data;
             this.resends = 0;
             return this;
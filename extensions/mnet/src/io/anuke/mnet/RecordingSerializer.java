@@ -0,0 +1,61 @@
+package io.anuke.mnet;
+
+import io.anuke.arc.util.io.TrafficRecorder;
+
+/** Passes everything a serializer writes or reads to a recorder. */
+class RecordingSerializer implements MSerializer{
+    final MSerializer serializer;
+    private final TrafficRecorder recorder;
+    private final int stream, flags;
+
+    RecordingSerializer(MSerializer serializer, TrafficRecorder recorder, int stream, int flags){
+        this.serializer = serializer;
+        this.recorder = recorder;
+        this.stream = stream;
+        this.flags = flags;
+    }
+
+    /**
+     * Removes any recording from the serializer, then wraps it to record into the recorder.
+     * @param recorder Null to only remove the recording.
+     */
+    static MSerializer wrap(MSerializer serializer, TrafficRecorder recorder, int stream, int flags){
+        while(serializer instanceof RecordingSerializer){
+            serializer = ((RecordingSerializer)serializer).serializer;
+        }
+        return recorder == null ? serializer : new RecordingSerializer(serializer, recorder, stream, flags);
+    }
+
+    @Override
+    public byte[] serialize(Object o){
+        byte[] bytes = serializer.serialize(o);
+        recorder.record(stream, flags, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    @Override
+    public byte[] serialize(Object o, int offset){
+        byte[] bytes = serializer.serialize(o, offset);
+        recorder.record(stream, flags, bytes, offset, bytes.length - offset);
+        return bytes;
+    }
+
+    @Override
+    public int serialize(Object o, byte[] buffer, int offset){
+        int length = serializer.serialize(o, buffer, offset);
+        recorder.record(stream, flags, buffer, offset, length);
+        return length;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes){
+        recorder.record(stream, flags, bytes, 0, bytes.length);
+        return serializer.deserialize(bytes);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, int offset, int length){
+        recorder.record(stream, flags, bytes, offset, length);
+        return serializer.deserialize(bytes, offset, length);
+    }
+}
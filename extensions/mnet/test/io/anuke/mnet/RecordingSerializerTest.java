@@ -0,0 +1,106 @@
+package io.anuke.mnet;
+
+import io.anuke.arc.util.io.TrafficLog;
+import io.anuke.arc.util.io.TrafficRecorder;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/** Checks the serializer wrapping that {@link MSocket#setRecorder(TrafficRecorder)} does for each socket. */
+public class RecordingSerializerTest{
+
+    @Test
+    public void recordsAndSwaps() throws IOException{
+        File first = File.createTempFile("first", ".traffic"), second = File.createTempFile("second", ".traffic");
+        try{
+            MSerializer plain = new StringSerializer();
+            TrafficRecorder firstRecorder = new TrafficRecorder(first), secondRecorder = new TrafficRecorder(second);
+
+            MSerializer write = RecordingSerializer.wrap(plain, firstRecorder, 3, TrafficRecorder.clientSide);
+            MSerializer read = RecordingSerializer.wrap(plain, firstRecorder, 3, TrafficRecorder.clientSide | TrafficRecorder.inbound);
+            assertArrayEquals(bytes("a"), write.serialize("a"));
+            byte[] buffer = new byte[16];
+            assertEquals(2, write.serialize("bc", buffer, 4));
+            byte[] offset = write.serialize("def", 5);
+            assertEquals("def", new String(offset, 5, 3, StandardCharsets.UTF_8));
+            assertEquals("gh", read.deserialize(bytes("xxgh"), 2, 2));
+
+            //setting another recorder replaces the first, instead of recording into both
+            write = RecordingSerializer.wrap(write, secondRecorder, 4, 0);
+            read = RecordingSerializer.wrap(read, secondRecorder, 4, TrafficRecorder.inbound);
+            write.serialize("i");
+            read.deserialize(bytes("j"));
+
+            //and null removes the recording
+            assertSame(plain, RecordingSerializer.wrap(write, null, 4, 0));
+            assertSame(plain, RecordingSerializer.wrap(read, null, 4, TrafficRecorder.inbound));
+            firstRecorder.close();
+            secondRecorder.close();
+
+            assertLog(first, 3, new String[]{"a", "bc", "def", "gh"}, new boolean[]{false, false, false, true}, true);
+            assertLog(second, 4, new String[]{"i", "j"}, new boolean[]{false, true}, false);
+        }finally{
+            first.delete();
+            second.delete();
+        }
+    }
+
+    private static void assertLog(File file, int stream, String[] messages, boolean[] inbound, boolean clientSide) throws IOException{
+        try(TrafficLog log = new TrafficLog(file)){
+            for(int i = 0; i < messages.length; i++){
+                assertTrue(log.next());
+                assertEquals(stream, log.getStream());
+                assertEquals(inbound[i], log.isInbound());
+                assertEquals(clientSide, (log.getFlags() & TrafficRecorder.clientSide) != 0);
+                ByteBuffer data = log.getData();
+                byte[] bytes = new byte[data.remaining()];
+                data.get(bytes);
+                assertEquals(messages[i], new String(bytes, StandardCharsets.UTF_8));
+            }
+            assertFalse(log.next());
+        }
+    }
+
+    private static byte[] bytes(String text){
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static class StringSerializer implements MSerializer{
+
+        @Override
+        public byte[] serialize(Object o){
+            return bytes((String)o);
+        }
+
+        @Override
+        public byte[] serialize(Object o, int offset){
+            byte[] bytes = bytes((String)o);
+            byte[] result = new byte[offset + bytes.length];
+            System.arraycopy(bytes, 0, result, offset, bytes.length);
+            return result;
+        }
+
+        @Override
+        public int serialize(Object o, byte[] buffer, int offset){
+            byte[] bytes = bytes((String)o);
+            System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+            return bytes.length;
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes){
+            return deserialize(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes, int offset, int length){
+            return new String(Arrays.copyOfRange(bytes, offset, offset + length), StandardCharsets.UTF_8);
+        }
+    }
+}
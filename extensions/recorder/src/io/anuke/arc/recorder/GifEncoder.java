@@ -0,0 +1,479 @@
+package io.anuke.arc.recorder;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes an animated GIF one frame at a time, without keeping earlier frames around.
+ * <p>
+ * Only the rectangle of pixels that changed since the previous frame is encoded, with unchanged pixels inside it left
+ * transparent, and frames that do not change anything just extend the previous one. Each frame has its own palette of up
+ * to 255 colors, but palettes are only quantized again when the colors of a frame are no longer covered by the previous
+ * palette, which is rare for most recordings.
+ */
+public class GifEncoder implements Closeable{
+	private static final int transparent = 255, maxColors = 255;
+	/** Fraction of changed pixels with colors that are not in the palette above which the palette is rebuilt. */
+	private static final float rebuildThreshold = 1f / 64f;
+
+	private final OutputStream output;
+	private final int width, height;
+	private final int[] previous, current;
+	private final byte[] indices;
+	private boolean first = true;
+
+	private final Quantizer quantizer = new Quantizer();
+	private final Lzw lzw = new Lzw();
+	/** The last frame, encoded but not written yet, as its delay is only known once the next frame arrives. */
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private boolean hasPending, pendingTransparent;
+	private long pendingTime;
+	/** Delay time lost to rounding to hundredths of a second, carried over to the next frame. */
+	private long remainder;
+
+	private int frames, skipped, palettes;
+
+	public GifEncoder(OutputStream output, int width, int height) throws IOException{
+		this.output = output;
+		this.width = width;
+		this.height = height;
+		this.previous = new int[width * height];
+		this.current = new int[width * height];
+		this.indices = new byte[width * height];
+
+		output.write(new byte[]{'G', 'I', 'F', '8', '9', 'a'});
+		writeShort(width);
+		writeShort(height);
+		//no global color table, 8 bit color resolution
+		output.write(0x70);
+		output.write(0);
+		output.write(0);
+
+		//loop forever
+		output.write(new byte[]{0x21, (byte)0xff, 0x0b, 'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0', 0x03, 0x01, 0x00, 0x00, 0x00});
+	}
+
+	/**
+	 * Adds a frame.
+	 * @param rgba pixels as returned by glReadPixels: 4 bytes per pixel, of which alpha is ignored.
+	 * @param flipY whether the rows are stored from the bottom up.
+	 * @param time when the frame was captured, in milliseconds. Determines how long the previous frame is shown.
+	 */
+	public void addFrame(byte[] rgba, boolean flipY, long time) throws IOException{
+		for(int y = 0; y < height; y++){
+			int src = (flipY ? height - 1 - y : y) * width * 4, dst = y * width;
+			for(int x = 0; x < width; x++, src += 4){
+				current[dst + x] = ((rgba[src] & 0xff) << 16) | ((rgba[src + 1] & 0xff) << 8) | (rgba[src + 2] & 0xff);
+			}
+		}
+		addFrame(current, time);
+	}
+
+	/** Adds a frame of RGB888 pixels, row by row from the top. */
+	public void addFrame(int[] rgb, long time) throws IOException{
+		int minX = 0, minY = 0, maxX = width - 1, maxY = height - 1;
+		if(!first){
+			minX = width;
+			minY = height;
+			maxX = maxY = -1;
+			for(int y = 0; y < height; y++){
+				int row = y * width;
+				for(int x = 0; x < width; x++){
+					if(rgb[row + x] != previous[row + x]){
+						if(x < minX) minX = x;
+						if(x > maxX) maxX = x;
+						if(y < minY) minY = y;
+						maxY = y;
+					}
+				}
+			}
+
+			if(maxX == -1){
+				skipped++;
+				return;
+			}
+		}
+
+		int rectWidth = maxX - minX + 1, rectHeight = maxY - minY + 1;
+		boolean delta = !first;
+
+		quantizer.begin();
+		int uncovered = 0, changed = 0;
+		for(int y = minY; y <= maxY; y++){
+			int row = y * width;
+			for(int x = minX; x <= maxX; x++){
+				int color = rgb[row + x];
+				if(delta && color == previous[row + x]) continue;
+				changed++;
+				if(!quantizer.add(color)) uncovered++;
+			}
+		}
+		if(quantizer.isEmpty() || uncovered > changed * rebuildThreshold){
+			quantizer.rebuild();
+			palettes++;
+		}
+
+		int i = 0;
+		for(int y = minY; y <= maxY; y++){
+			int row = y * width;
+			for(int x = minX; x <= maxX; x++){
+				int color = rgb[row + x];
+				indices[i++] = delta && color == previous[row + x] ? (byte)transparent : (byte)quantizer.index(color);
+			}
+		}
+		if(rgb != previous) System.arraycopy(rgb, 0, previous, 0, rgb.length);
+
+		flushPending(time);
+		writeImage(minX, minY, rectWidth, rectHeight, rectWidth * rectHeight);
+		pendingTransparent = delta;
+		pendingTime = time;
+		hasPending = true;
+		first = false;
+		frames++;
+	}
+
+	/** Writes the last frame, shown for the given number of milliseconds, and ends the GIF. Does not close the stream. */
+	public void finish(long lastDelay) throws IOException{
+		flushPending(hasPending ? pendingTime + lastDelay : 0);
+		output.write(0x3b);
+		output.flush();
+	}
+
+	@Override
+	public void close() throws IOException{
+		output.close();
+	}
+
+	/** @return the number of frames written, not counting frames that did not change anything. */
+	public int getFrames(){
+		return frames;
+	}
+
+	/** @return the number of frames that did not change anything, and were merged into the previous frame. */
+	public int getSkipped(){
+		return skipped;
+	}
+
+	/** @return how many times the palette had to be quantized again. */
+	public int getPalettes(){
+		return palettes;
+	}
+
+	private void flushPending(long time) throws IOException{
+		if(!hasPending) return;
+
+		long millis = Math.max(0, time - pendingTime) + remainder;
+		int delay = (int)Math.min(0xffff, millis / 10);
+		remainder = millis - delay * 10L;
+
+		output.write(0x21);
+		output.write(0xf9);
+		output.write(4);
+		//disposal method 1, "do not dispose": frames are drawn over the previous ones
+		output.write((1 << 2) | (pendingTransparent ? 1 : 0));
+		writeShort(delay);
+		output.write(transparent);
+		output.write(0);
+		pending.writeTo(output);
+		pending.reset();
+		hasPending = false;
+	}
+
+	private void writeImage(int x, int y, int width, int height, int count){
+		ByteArrayOutputStream out = pending;
+		out.write(0x2c);
+		writeShort(out, x);
+		writeShort(out, y);
+		writeShort(out, width);
+		writeShort(out, height);
+		//local color table of 256 colors
+		out.write(0x80 | 7);
+		quantizer.writePalette(out);
+		out.write(8);
+		lzw.encode(indices, count, out);
+		out.write(0);
+	}
+
+	private void writeShort(int value) throws IOException{
+		output.write(value & 0xff);
+		output.write((value >> 8) & 0xff);
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int value){
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+	}
+
+	/**
+	 * Reduces colors to a palette with median cut, over a histogram of colors with 5 bits per channel. Colors are mapped to
+	 * the closest palette entry through a table that is filled in as colors are seen.
+	 */
+	static class Quantizer{
+		private static final int bins = 1 << 15;
+
+		private final int[] count = new int[bins], red = new int[bins], green = new int[bins], blue = new int[bins];
+		private final int[] used = new int[bins];
+		private int usedSize;
+
+		/** Palette index + 1 of each bin, valid when the stamp of the bin matches. */
+		private final int[] lookup = new int[bins], lookupStamp = new int[bins];
+		/** Whether a bin was one of the bins the palette was built from. */
+		private final int[] member = new int[bins];
+		private int stamp = 1;
+
+		private final int[] palette = new int[maxColors];
+		private int size;
+
+		void begin(){
+			for(int i = 0; i < usedSize; i++){
+				int bin = used[i];
+				count[bin] = red[bin] = green[bin] = blue[bin] = 0;
+			}
+			usedSize = 0;
+		}
+
+		/** Adds a color to the histogram. @return whether the palette covers its bin. */
+		boolean add(int color){
+			int bin = bin(color);
+			if(count[bin]++ == 0) used[usedSize++] = bin;
+			red[bin] += (color >> 16) & 0xff;
+			green[bin] += (color >> 8) & 0xff;
+			blue[bin] += color & 0xff;
+			return member[bin] == stamp;
+		}
+
+		boolean isEmpty(){
+			return size == 0;
+		}
+
+		/** Builds a new palette from the colors added since {@link #begin()}. */
+		void rebuild(){
+			stamp++;
+			size = 0;
+			if(usedSize <= maxColors){
+				for(int i = 0; i < usedSize; i++){
+					addColor(used[i]);
+				}
+			}else{
+				cut();
+			}
+		}
+
+		private void cut(){
+			//boxes are ranges of the used array, split at the weighted median of their widest channel
+			int[] starts = new int[maxColors], ends = new int[maxColors];
+			int boxes = 1;
+			starts[0] = 0;
+			ends[0] = usedSize;
+
+			while(boxes < maxColors){
+				int best = -1, bestRange = 0;
+				for(int b = 0; b < boxes; b++){
+					if(ends[b] - starts[b] < 2) continue;
+					int range = widest(starts[b], ends[b]) >> 8;
+					if(range > bestRange){
+						bestRange = range;
+						best = b;
+					}
+				}
+				if(best == -1) break;
+
+				int start = starts[best], end = ends[best], shift = widest(start, end) & 0xff;
+				sort(start, end, shift);
+				int total = 0, half = 0, split = start + 1;
+				for(int i = start; i < end; i++) total += count[used[i]];
+				for(int i = start; i < end - 1; i++){
+					half += count[used[i]];
+					split = i + 1;
+					if(half * 2 >= total) break;
+				}
+				starts[boxes] = split;
+				ends[boxes] = end;
+				ends[best] = split;
+				boxes++;
+			}
+
+			for(int b = 0; b < boxes; b++){
+				addBox(starts[b], ends[b]);
+			}
+		}
+
+		/** @return the range of the widest channel of a box shifted left by 8, or'd with the bit shift of that channel. */
+		private int widest(int start, int end){
+			int best = 0;
+			for(int shift = 0; shift <= 10; shift += 5){
+				int min = 31, max = 0;
+				for(int i = start; i < end; i++){
+					int value = (used[i] >> shift) & 31;
+					if(value < min) min = value;
+					if(value > max) max = value;
+				}
+				int range = max - min;
+				if(range > best >> 8) best = (range << 8) | shift;
+			}
+			return best;
+		}
+
+		private void sort(int start, int end, int shift){
+			//counting sort of the bins by one 5 bit channel
+			int[] offsets = new int[33];
+			for(int i = start; i < end; i++) offsets[((used[i] >> shift) & 31) + 1]++;
+			for(int i = 1; i < 33; i++) offsets[i] += offsets[i - 1];
+			int[] sorted = new int[end - start];
+			for(int i = start; i < end; i++) sorted[offsets[(used[i] >> shift) & 31]++] = used[i];
+			System.arraycopy(sorted, 0, used, start, sorted.length);
+		}
+
+		private void addBox(int start, int end){
+			long r = 0, g = 0, b = 0, total = 0;
+			for(int i = start; i < end; i++){
+				int bin = used[i];
+				r += red[bin];
+				g += green[bin];
+				b += blue[bin];
+				total += count[bin];
+				member[bin] = stamp;
+			}
+			if(total == 0) return;
+			palette[size++] = ((int)(r / total) << 16) | ((int)(g / total) << 8) | (int)(b / total);
+			for(int i = start; i < end; i++){
+				lookup[used[i]] = size;
+				lookupStamp[used[i]] = stamp;
+			}
+		}
+
+		private void addColor(int bin){
+			palette[size++] = ((red[bin] / count[bin]) << 16) | ((green[bin] / count[bin]) << 8) | (blue[bin] / count[bin]);
+			member[bin] = stamp;
+			lookup[bin] = size;
+			lookupStamp[bin] = stamp;
+		}
+
+		/** @return the palette index of the closest color. */
+		int index(int color){
+			int bin = bin(color);
+			if(lookupStamp[bin] == stamp) return lookup[bin] - 1;
+
+			int r = (color >> 16) & 0xff, g = (color >> 8) & 0xff, b = color & 0xff;
+			int best = 0, bestDistance = Integer.MAX_VALUE;
+			for(int i = 0; i < size; i++){
+				int p = palette[i], dr = ((p >> 16) & 0xff) - r, dg = ((p >> 8) & 0xff) - g, db = (p & 0xff) - b;
+				int distance = dr * dr * 3 + dg * dg * 4 + db * db * 2;
+				if(distance < bestDistance){
+					bestDistance = distance;
+					best = i;
+				}
+			}
+			lookup[bin] = best + 1;
+			lookupStamp[bin] = stamp;
+			return best;
+		}
+
+		void writePalette(ByteArrayOutputStream out){
+			for(int i = 0; i < 256; i++){
+				int color = i < size ? palette[i] : 0;
+				out.write((color >> 16) & 0xff);
+				out.write((color >> 8) & 0xff);
+				out.write(color & 0xff);
+			}
+		}
+
+		private static int bin(int color){
+			return ((color >> 9) & 0x7c00) | ((color >> 6) & 0x3e0) | ((color >> 3) & 0x1f);
+		}
+	}
+
+	/** GIF flavored LZW compression with variable code sizes up to 12 bits, written in sub-blocks of up to 255 bytes. */
+	static class Lzw{
+		private static final int tableSize = 5003, maxCode = 4096, clearCode = 256, endCode = 257;
+
+		private final int[] keys = new int[tableSize], codes = new int[tableSize];
+		private final byte[] block = new byte[255];
+		private int blockSize, bits, accumulator, codeSize, nextCode, limit;
+		private boolean clearing;
+		private ByteArrayOutputStream out;
+
+		void encode(byte[] indices, int length, ByteArrayOutputStream out){
+			this.out = out;
+			blockSize = bits = accumulator = 0;
+			codeSize = 9;
+			limit = (1 << codeSize) - 1;
+			nextCode = endCode + 1;
+			clearing = false;
+			Arrays.fill(keys, -1);
+
+			write(clearCode);
+			int prefix = indices[0] & 0xff;
+
+			outer:
+			for(int i = 1; i < length; i++){
+				int c = indices[i] & 0xff, key = (c << 12) + prefix, h = (c << 4) ^ prefix;
+
+				if(keys[h] == key){
+					prefix = codes[h];
+					continue;
+				}else if(keys[h] >= 0){
+					int step = h == 0 ? 1 : tableSize - h;
+					do{
+						h -= step;
+						if(h < 0) h += tableSize;
+						if(keys[h] == key){
+							prefix = codes[h];
+							continue outer;
+						}
+					}while(keys[h] >= 0);
+				}
+
+				write(prefix);
+				prefix = c;
+				if(nextCode < maxCode){
+					codes[h] = nextCode++;
+					keys[h] = key;
+				}else{
+					Arrays.fill(keys, -1);
+					nextCode = endCode + 1;
+					clearing = true;
+					write(clearCode);
+				}
+			}
+
+			write(prefix);
+			write(endCode);
+			if(bits > 0) put(accumulator & 0xff);
+			flushBlock();
+			this.out = null;
+		}
+
+		private void write(int code){
+			accumulator |= code << bits;
+			bits += codeSize;
+			while(bits >= 8){
+				put(accumulator & 0xff);
+				accumulator >>>= 8;
+				bits -= 8;
+			}
+
+			//the decoder grows its codes one code later than the encoder adds them
+			if(clearing){
+				codeSize = 9;
+				limit = (1 << codeSize) - 1;
+				clearing = false;
+			}else if(nextCode > limit && codeSize < 12){
+				codeSize++;
+				limit = codeSize == 12 ? maxCode : (1 << codeSize) - 1;
+			}
+		}
+
+		private void put(int value){
+			block[blockSize++] = (byte)value;
+			if(blockSize == 255) flushBlock();
+		}
+
+		private void flushBlock(){
+			if(blockSize == 0) return;
+			out.write(blockSize);
+			out.write(block, 0, blockSize);
+			blockSize = 0;
+		}
+	}
+}
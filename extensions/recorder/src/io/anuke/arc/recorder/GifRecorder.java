@@ -1,25 +1,21 @@
 package io.anuke.arc.recorder;
 
 import io.anuke.arc.Core;
-import io.anuke.arc.collection.Array;
 import io.anuke.arc.files.FileHandle;
 import io.anuke.arc.graphics.Color;
 import io.anuke.arc.graphics.g2d.Draw;
 import io.anuke.arc.graphics.g2d.Fill;
+import io.anuke.arc.graphics.glutils.PixelReadback;
 import io.anuke.arc.input.KeyCode;
 import io.anuke.arc.math.Matrix3;
 import io.anuke.arc.math.geom.Rectangle;
 import io.anuke.arc.util.*;
 
-import javax.imageio.stream.FileImageOutputStream;
-import javax.imageio.stream.ImageOutputStream;
-import java.awt.image.BufferedImage;
 import java.io.*;
 
-/** Records and saves GIFs. */
+/** Records and saves GIFs. Frames are encoded on a background thread while recording, see {@link GifStream}. */
 public class GifRecorder{
 	private static final float defaultSize = 300;
-	private static BufferedImage outImage;
 
 	private KeyCode
 			resizeKey = KeyCode.CONTROL_LEFT,
@@ -36,7 +32,10 @@ public class GifRecorder{
 	private boolean disableGUI;
 	private float speedMultiplier = 1f;
 	
-	private Array<byte[]> frames = new Array<>();
+	private int queueSize = 16;
+	private GifStream stream;
+	private PixelReadback readback;
+	private int frameIndex, recordwidth, recordheight;
 	private float frametime;
 	private boolean recording, open;
 	private boolean saving;
@@ -69,7 +68,7 @@ public class GifRecorder{
 					startRecording();
 				}else{
 					finishRecording();
-					writeGIF(exportdirectory);
+					writeGIF();
 				}
 			}
 		}
@@ -79,6 +78,7 @@ public class GifRecorder{
 	public void update(){
 		Draw.flush();
 		
+		checkSaving();
 		doInput();
 		float delta = Core.graphics.getDeltaTime();
 		
@@ -153,14 +153,22 @@ public class GifRecorder{
 			giftime += delta;
 			frametime += delta*61f*speedMultiplier;
 			if(frametime >= (60 / recordfps)){
-				byte[] pix = ScreenUtils.getFrameBufferPixels((int) (gifx + offsetx) + 1 + Core.graphics.getWidth() / 2, 
-						(int) (gify + offsety) + 1 + Core.graphics.getHeight() / 2, 
-						(int) (gifwidth) - 2, (int) (gifheight) - 2, false);
-				frames.add(pix);
+				GifStream target = stream;
+				//frames are shown at the recording rate; dropped frames extend the frame before them
+				long time = frameIndex * 1000L / recordfps;
+				//the pixels arrive a frame or two later, so capturing does not wait for the GPU
+				readback().read((int) (gifx + offsetx) + 1 + Core.graphics.getWidth() / 2,
+						(int) (gify + offsety) + 1 + Core.graphics.getHeight() / 2,
+						recordwidth, recordheight, false, pixels -> {
+							if(target == null || !target.add(pixels, time)) readback.free(pixels);
+						});
+				frameIndex++;
 				frametime = 0;
 			}
 		}
 
+		if(readback != null) readback.update();
+
 		Draw.color();
 		Draw.flush();
 		Draw.proj(matrix);
@@ -180,6 +188,27 @@ public class GifRecorder{
 		return saving;
 	}
 
+	private void checkSaving(){
+		if(saving && stream != null){
+			saveprogress = stream.getProgress();
+			if(stream.isDone()){
+				if(stream.getError() != null) Log.err(stream.getError());
+				saving = false;
+				stream = null;
+			}
+		}
+	}
+
+	/** Sets how many captured frames may wait for the encoder before frames are dropped. */
+	public void setQueueSize(int queueSize){
+		this.queueSize = queueSize;
+	}
+
+	/** @return the number of frames dropped in the current recording because the encoder fell behind. */
+	public int getDroppedFrames(){
+		return stream == null ? 0 : stream.getDropped();
+	}
+
 	public boolean isOpen(){
 		return open;
 	}
@@ -198,6 +227,20 @@ public class GifRecorder{
 
 	public void startRecording(){
 		clearFrames();
+		try{
+			String time = "" + (int) (System.currentTimeMillis() / 1000);
+			exportdirectory.mkdirs();
+			File file = exportdirectory.child("recording" + time + ".gif").file();
+			//the size of a GIF is fixed, so resizing the bounds while recording only moves them
+			recordwidth = (int) (gifwidth) - 2;
+			recordheight = (int) (gifheight) - 2;
+			stream = new GifStream(file, recordwidth, recordheight, queueSize, true);
+			stream.setRecycler(readback()::free);
+		}catch(IOException e){
+			Log.err(e);
+			return;
+		}
+		frameIndex = 0;
 		recording = true;
 	}
 
@@ -210,8 +253,12 @@ public class GifRecorder{
 		giftime = 0;
 	}
 
+	/** Stops recording and discards the GIF that was being recorded, unless it is being saved. */
 	public void clearFrames(){
-		frames.clear();
+		if(stream != null && !saving){
+			stream.cancel();
+			stream = null;
+		}
 		giftime = 0;
 		recording = false;
 	}
@@ -248,66 +295,17 @@ public class GifRecorder{
 		setBounds(rect.x, rect.y, rect.width, rect.height);
 	}
 
-	private void writeGIF(final FileHandle writedirectory){
-		if(saving) return;
+	private void writeGIF(){
+		if(saving || stream == null) return;
 		saving = true;
-
-		int width = (int) (gifwidth) - 2, height = (int) (gifheight) - 2;
 		saveprogress = 0f;
-
-		new Thread(() -> {
-			compileGIF(frames, width, height, writedirectory);
-			saving = false;
-        }).start();
+		//frames still being read belong at the end of the GIF
+		if(readback != null) readback.flush();
+		stream.finish(1000L / recordfps);
 	}
 
-	private File compileGIF(Array<byte[]> pixmaps, int width, int height, FileHandle directory){
-		if(pixmaps.size == 0){
-			throw new RuntimeException("No input files!");
-		}
-
-		try{
-			String time = "" + (int) (System.currentTimeMillis() / 1000);
-			new File(directory.absolutePath()).mkdir();
-			BufferedImage firstImage = toImage(pixmaps.first(), width, height);
-			File file = new File(directory.absolutePath() + "/recording" + time + ".gif");
-			ImageOutputStream output = new FileImageOutputStream(file);
-			GifSequenceWriter writer = new GifSequenceWriter(output, firstImage.getType(), (int) (1f / recordfps * 1000f), true);
-
-			writer.writeToSequence(firstImage);
-
-			for(int i = 1; i < pixmaps.size; i++){
-				BufferedImage after = toImage(pixmaps.get(i), width, height);
-				saveprogress += (1f / frames.size);
-				writer.writeToSequence(after);
-			}
-			writer.close();
-			output.close();
-			return file;
-		}catch(Exception e){
-			e.printStackTrace();
-			return null;
-		}
-	}
-
-	private BufferedImage toImage(byte[] frames, int width, int height){
-		if(outImage == null || outImage.getWidth() != width || outImage.getHeight() != height){
-			outImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-		}
-		BufferedImage image = outImage;
-
-		for(int i = 0; i < width*height*4; i += 4){
-			int r = frames[i];
-			int g = frames[i + 1];
-			int b = frames[i + 2];
-			if(r < 0) r += 256;
-			if(g < 0) g += 256;
-			if(b < 0) b += 256;
-
-			int result = Color.argb8888(1f, r / 255f, g / 255f, b / 255f);
-			int index = i / 4;
-			image.setRGB(index % width, height - 1 - index / width, result);
-		}
-		return image;
+	private PixelReadback readback(){
+		if(readback == null) readback = new PixelReadback();
+		return readback;
 	}
 }
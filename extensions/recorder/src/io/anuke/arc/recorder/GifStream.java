@@ -0,0 +1,142 @@
+package io.anuke.arc.recorder;
+
+import io.anuke.arc.func.Cons;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Encodes frames into a GIF file on a background thread while they are being captured. Up to a number of frames wait in a
+ * queue; frames added while it is full are dropped, and the frame before them is shown for longer instead, so capturing
+ * never waits for the encoder and memory use stays bounded however long the recording is.
+ */
+public class GifStream{
+	private static final Frame end = new Frame(null, 0);
+
+	private final File file;
+	private final GifEncoder encoder;
+	private final BlockingQueue<Frame> queue;
+	private final boolean flipY;
+	private final AtomicInteger added = new AtomicInteger(), dropped = new AtomicInteger(), encoded = new AtomicInteger();
+	private volatile boolean done, cancelled;
+	private volatile Throwable error;
+	private volatile Cons<byte[]> recycler;
+	private long lastDelay;
+
+	/**
+	 * @param queueSize how many frames may wait for the encoder before frames are dropped.
+	 * @param flipY whether frames are stored from the bottom up, as glReadPixels returns them.
+	 */
+	public GifStream(File file, int width, int height, int queueSize, boolean flipY) throws IOException{
+		this.file = file;
+		this.flipY = flipY;
+		this.queue = new ArrayBlockingQueue<>(queueSize + 1);
+		this.encoder = new GifEncoder(new BufferedOutputStream(new FileOutputStream(file)), width, height);
+
+		Thread thread = new Thread(this::run, "GifStream");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues a frame for encoding. The array must not be modified afterwards.
+	 * @param time when the frame should be shown, in milliseconds since the start.
+	 * @return false if the frame was dropped as the encoder is behind.
+	 */
+	public boolean add(byte[] rgba, long time){
+		if(done || cancelled) return false;
+		//one slot is kept free for the end of the stream
+		if(queue.remainingCapacity() <= 1 || !queue.offer(new Frame(rgba, time))){
+			dropped.incrementAndGet();
+			return false;
+		}
+		added.incrementAndGet();
+		return true;
+	}
+
+	/** Sets a function that receives the arrays of frames once they are encoded, on the encoding thread, to reuse them. */
+	public void setRecycler(Cons<byte[]> recycler){
+		this.recycler = recycler;
+	}
+
+	/** Ends the GIF once all queued frames are encoded, showing the last frame for the given number of milliseconds. */
+	public void finish(long lastDelay){
+		this.lastDelay = lastDelay;
+		queue.offer(end);
+	}
+
+	/** Stops encoding and deletes the file. */
+	public void cancel(){
+		cancelled = true;
+		queue.clear();
+		queue.offer(end);
+	}
+
+	/** @return whether the GIF is complete, or encoding stopped because it was cancelled or failed. */
+	public boolean isDone(){
+		return done;
+	}
+
+	/** @return the exception that stopped encoding, or null. */
+	public Throwable getError(){
+		return error;
+	}
+
+	public File getFile(){
+		return file;
+	}
+
+	/** @return the fraction of added frames that have been encoded. */
+	public float getProgress(){
+		int total = added.get();
+		return total == 0 ? 1f : (float)encoded.get() / total;
+	}
+
+	public int getDropped(){
+		return dropped.get();
+	}
+
+	/** @return the number of frames waiting for the encoder. */
+	public int getQueued(){
+		return Math.max(queue.size() - (queue.contains(end) ? 1 : 0), 0);
+	}
+
+	public GifEncoder getEncoder(){
+		return encoder;
+	}
+
+	private void run(){
+		try{
+			while(true){
+				Frame frame = queue.take();
+				if(frame == end) break;
+				encoder.addFrame(frame.pixels, flipY, frame.time);
+				encoded.incrementAndGet();
+				Cons<byte[]> recycler = this.recycler;
+				if(recycler != null) recycler.get(frame.pixels);
+			}
+			if(!cancelled) encoder.finish(lastDelay);
+		}catch(Throwable e){
+			error = e;
+		}finally{
+			try{
+				encoder.close();
+			}catch(IOException ignored){
+			}
+			if(cancelled) file.delete();
+			queue.clear();
+			done = true;
+		}
+	}
+
+	private static class Frame{
+		final byte[] pixels;
+		final long time;
+
+		Frame(byte[] pixels, long time){
+			this.pixels = pixels;
+			this.time = time;
+		}
+	}
+}